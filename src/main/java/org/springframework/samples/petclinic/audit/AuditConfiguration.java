@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.audit;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Optional audit log of owner, pet and visit changes, enabled with
+ * {@code petclinic.audit.enabled=true}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "petclinic.audit.enabled")
+class AuditConfiguration {
+
+	@Bean(destroyMethod = "close")
+	AuditLog auditLog(@Value("${petclinic.audit.directory:data/audit}") Path directory,
+			@Value("${petclinic.audit.segment-size:67108864}") int segmentSize,
+			@Value("${petclinic.audit.max-segments:64}") int maxSegments) throws IOException {
+		return new AuditLog(directory, segmentSize, maxSegments);
+	}
+
+	@Bean(destroyMethod = "close")
+	AuditRecorder auditRecorder(AuditLog log, @Value("${petclinic.audit.ring-size:4096}") int ringSize,
+			@Value("${petclinic.audit.batch-size:512}") int batchSize) {
+		return new AuditRecorder(new AuditRing(ringSize, 2048), log, batchSize);
+	}
+
+	@Bean
+	AuditListener auditListener(AuditRecorder recorder, EntityManagerFactory entityManagerFactory) {
+		AuditListener listener = new AuditListener(recorder);
+		listener.register(entityManagerFactory);
+		return listener;
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.audit;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A change to an owner, pet or visit read back from the audit log, with the fields that
+ * changed. Inserts only have values after, deletes only values before.
+ * <p>
+ * A record is encoded as {@code [epochMilli][ownerId][entityId][entity][operation]
+ * [fieldCount]} followed by {@code [name][before][after]} per field, where each string is
+ * a {@code short} length, {@code -1} for {@code null}, and its UTF-8 bytes.
+ *
+ * @see AuditRecorder
+ */
+public record AuditEntry(Instant time, int ownerId, String entity, int entityId, String operation,
+		List<Change> changes) {
+
+	static final int HEADER_SIZE = 20;
+
+	static final String[] ENTITIES = { "owner", "pet", "visit" };
+
+	static final byte INSERT = 'I';
+
+	static final byte UPDATE = 'U';
+
+	static final byte DELETE = 'D';
+
+	static int ownerId(ByteBuffer buffer, int offset) {
+		return buffer.getInt(offset + Long.BYTES);
+	}
+
+	static AuditEntry decode(ByteBuffer buffer, int offset) {
+		Instant time = Instant.ofEpochMilli(buffer.getLong(offset));
+		int ownerId = buffer.getInt(offset + 8);
+		int entityId = buffer.getInt(offset + 12);
+		String entity = ENTITIES[buffer.get(offset + 16)];
+		String operation = switch (buffer.get(offset + 17)) {
+			case INSERT -> "insert";
+			case UPDATE -> "update";
+			default -> "delete";
+		};
+		int fields = buffer.getShort(offset + 18);
+		List<Change> changes = new ArrayList<>(fields);
+		int[] position = { offset + HEADER_SIZE };
+		for (int i = 0; i < fields; i++) {
+			changes.add(new Change(readString(buffer, position), readString(buffer, position),
+					readString(buffer, position)));
+		}
+		return new AuditEntry(time, ownerId, entity, entityId, operation, changes);
+	}
+
+	private static String readString(ByteBuffer buffer, int[] position) {
+		int length = buffer.getShort(position[0]);
+		position[0] += Short.BYTES;
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(position[0], bytes);
+		position[0] += length;
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * A field with its value before and after the change.
+	 */
+	public record Change(String field, String before, String after) {
+	}
+
+}
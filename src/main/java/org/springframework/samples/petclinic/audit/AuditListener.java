@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.audit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.SessionOwners;
+import org.springframework.samples.petclinic.owner.SessionOwners.Member;
+import org.springframework.samples.petclinic.owner.Visit;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Hibernate listener that records every committed insert, update and delete of an
+ * {@link Owner}, {@link Pet} or {@link Visit} with the {@link AuditRecorder}. Updates
+ * only carry the dirty properties; collections are left out, as their elements are
+ * audited as entities of their own. Rows written with plain JDBC are recorded from their
+ * {@link OwnerRowsWritten} events once their transaction has committed.
+ * <p>
+ * The owner of pets and visits is found with {@link SessionOwners}; changes whose owner
+ * is not found are recorded for owner 0.
+ */
+class AuditListener
+		implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+	private final AuditRecorder recorder;
+
+	private final Map<String, AuditedEntity> entities = new ConcurrentHashMap<>();
+
+	private final SessionOwners owners = new SessionOwners();
+
+	AuditListener(AuditRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	void register(EntityManagerFactory entityManagerFactory) {
+		SessionOwners.register(entityManagerFactory, this);
+	}
+
+	@Override
+	public boolean requiresPostCommitHandling(EntityPersister persister) {
+		return entity(persister.getMappedClass()) >= 0;
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		record(event.getEntity(), event.getId(), event.getPersister(), event.getSession(), AuditEntry.INSERT, null,
+				event.getState(), null);
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		record(event.getEntity(), event.getId(), event.getPersister(), event.getSession(), AuditEntry.UPDATE,
+				event.getOldState(), event.getState(), event.getDirtyProperties());
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		record(event.getEntity(), event.getId(), event.getPersister(), event.getSession(), AuditEntry.DELETE,
+				event.getDeletedState(), null, null);
+	}
+
+	@Override
+	public void onPostInsertCommitFailed(PostInsertEvent event) {
+		// rolled back, nothing changed
+	}
+
+	@Override
+	public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+		// rolled back, nothing changed
+	}
+
+	@Override
+	public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+		// rolled back, nothing changed
+	}
+
+	private void record(Object entity, Object id, EntityPersister persister, EventSource session, byte operation,
+			Object[] before, Object[] after, int[] dirty) {
+		int code = entity(persister.getMappedClass());
+		if (code < 0) {
+			return;
+		}
+		AuditedEntity audited = this.entities.get(persister.getEntityName());
+		if (audited == null) {
+			audited = AuditedEntity.of(persister);
+			this.entities.put(persister.getEntityName(), audited);
+		}
+		this.recorder.record(code, ((Number) id).intValue(), ownerId(entity, session), operation, audited.names(),
+				before, after, (dirty != null) ? dirty : audited.properties(), audited.auditable());
+	}
+
+	private static int entity(Class<?> type) {
+		if (type == Owner.class) {
+			return 0;
+		}
+		if (type == Pet.class) {
+			return 1;
+		}
+		return (type == Visit.class) ? 2 : -1;
+	}
+
+	private int ownerId(Object entity, EventSource session) {
+		Member member = this.owners.find(entity, session);
+		return (member != null) ? member.owner().getId() : 0;
+	}
+
+	/**
+	 * The property names of an entity, which of them are audited, and all their indexes
+	 * for inserts and deletes.
+	 */
+	private record AuditedEntity(String[] names, boolean[] auditable, int[] properties) {
+
+		static AuditedEntity of(EntityPersister persister) {
+			boolean[] auditable = new boolean[persister.getPropertyNames().length];
+			for (int i = 0; i < auditable.length; i++) {
+				auditable[i] = !persister.getPropertyTypes()[i].isCollectionType();
+			}
+			return new AuditedEntity(persister.getPropertyNames(), auditable,
+					IntStream.range(0, auditable.length).toArray());
+		}
+
+	}
+
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Append-only audit log, split into memory-mapped segment files of a fixed size that roll
+ * over when full. Only the newest {@code maxSegments} segments are kept.
+ * <p>
+ * A segment starts with a small header, followed by records of
+ * {@code [length][crc32][payload]} as described in {@link AuditEntry}. Records are in the
+ * order they were written, so each segment keeps a sparse index to find the changes of an
+ * owner: a Bloom filter of the owner ids of every block of about 64 KB of records. A
+ * search only decodes the blocks whose filter may contain the owner. The index is rebuilt
+ * by scanning the segments when the log is opened, which also finds the end of the last
+ * segment, up to the first empty or corrupt record.
+ * <p>
+ * Segments are unmapped when they are deleted or the log is closed, rather than when
+ * their buffer is garbage collected, so that deleted segments do not keep holding disk
+ * space and address space.
+ */
+class AuditLog implements Closeable {
+
+	private static final Log logger = LogFactory.getLog(AuditLog.class);
+
+	private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+	private static final int MAGIC = 0x41554454;
+
+	private static final int HEADER_SIZE = 16;
+
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	private static final int BLOCK_SIZE = 64 * 1024;
+
+	private static final int BLOOM_LONGS = 8;
+
+	private final Path directory;
+
+	private final int segmentSize;
+
+	private final int maxSegments;
+
+	private final List<Segment> segments = new ArrayList<>();
+
+	private final CRC32 crc = new CRC32();
+
+	AuditLog(Path directory, int segmentSize, int maxSegments) throws IOException {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.maxSegments = maxSegments;
+		Files.createDirectories(directory);
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : files.filter(AuditLog::isSegment).sorted().toList()) {
+				this.segments.add(Segment.open(file, Files.size(file)));
+			}
+		}
+		if (this.segments.isEmpty()) {
+			this.segments.add(Segment.open(segmentFile(1), segmentSize));
+		}
+	}
+
+	private static MethodHandle invokeCleaner() {
+		try {
+			Class<?> type = Class.forName("sun.misc.Unsafe");
+			Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			return MethodHandles.lookup()
+				.findVirtual(type, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+				.bindTo(field.get(null));
+		}
+		catch (ReflectiveOperationException | RuntimeException ex) {
+			logger.info("Cannot unmap audit log segments, they are released when garbage collected", ex);
+			return null;
+		}
+	}
+
+	private static boolean isSegment(Path file) {
+		return file.getFileName().toString().matches("audit-\\d{10}\\.log");
+	}
+
+	private Path segmentFile(long sequence) {
+		return this.directory.resolve(String.format("audit-%010d.log", sequence));
+	}
+
+	/**
+	 * Append the record between the position and the limit of the buffer, rolling over to
+	 * a new segment when the current one is full. Must only be called by one thread.
+	 */
+	synchronized void append(ByteBuffer record) {
+		Segment segment = this.segments.get(this.segments.size() - 1);
+		if (!segment.fits(record.remaining())) {
+			segment = roll(segment);
+		}
+		segment.append(record, this.crc);
+	}
+
+	private Segment roll(Segment full) {
+		try {
+			full.force();
+			Segment next = Segment.open(segmentFile(full.sequence() + 1), this.segmentSize);
+			this.segments.add(next);
+			while (this.segments.size() > this.maxSegments) {
+				Segment oldest = this.segments.remove(0);
+				oldest.close();
+				Files.delete(oldest.file);
+			}
+			return next;
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/**
+	 * Force the records appended since the last call to disk.
+	 */
+	void force() {
+		Segment segment;
+		synchronized (this) {
+			segment = this.segments.get(this.segments.size() - 1);
+		}
+		segment.force();
+	}
+
+	/**
+	 * Return the last {@code limit} changes of the given owner, newest first.
+	 */
+	synchronized List<AuditEntry> find(int ownerId, int limit) {
+		List<AuditEntry> entries = new ArrayList<>();
+		for (int i = this.segments.size() - 1; i >= 0 && entries.size() < limit; i--) {
+			this.segments.get(i).find(ownerId, limit, entries);
+		}
+		return entries;
+	}
+
+	int segmentCount() {
+		return this.segments.size();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		for (Segment segment : this.segments) {
+			segment.force();
+			segment.close();
+		}
+		this.segments.clear();
+	}
+
+	private static final class Segment {
+
+		private final Path file;
+
+		private final FileChannel channel;
+
+		private final MappedByteBuffer buffer;
+
+		private final int capacity;
+
+		private int end = HEADER_SIZE;
+
+		private int forced = HEADER_SIZE;
+
+		private int[] blockStarts = new int[16];
+
+		private long[] blooms = new long[16 * BLOOM_LONGS];
+
+		private int blocks;
+
+		private Segment(Path file, FileChannel channel, MappedByteBuffer buffer, int capacity) {
+			this.file = file;
+			this.channel = channel;
+			this.buffer = buffer;
+			this.capacity = capacity;
+		}
+
+		static Segment open(Path file, long size) throws IOException {
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			int capacity = (int) size;
+			Segment segment = new Segment(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity),
+					capacity);
+			segment.recover();
+			return segment;
+		}
+
+		long sequence() {
+			String name = this.file.getFileName().toString();
+			return Long.parseLong(name.substring("audit-".length(), name.length() - ".log".length()));
+		}
+
+		private void recover() {
+			if (this.buffer.getInt(0) != MAGIC) {
+				this.buffer.putInt(0, MAGIC);
+				this.buffer.putInt(HEADER_SIZE, 0);
+				this.buffer.force(0, HEADER_SIZE + Integer.BYTES);
+				return;
+			}
+			CRC32 crc = new CRC32();
+			int position = HEADER_SIZE;
+			while (position + RECORD_HEADER_SIZE <= this.capacity) {
+				int length = this.buffer.getInt(position);
+				if (length < AuditEntry.HEADER_SIZE || position + RECORD_HEADER_SIZE + length > this.capacity) {
+					break;
+				}
+				crc.reset();
+				crc.update(this.buffer.slice(position + RECORD_HEADER_SIZE, length));
+				if ((int) crc.getValue() != this.buffer.getInt(position + Integer.BYTES)) {
+					break;
+				}
+				index(position, AuditEntry.ownerId(this.buffer, position + RECORD_HEADER_SIZE));
+				position += RECORD_HEADER_SIZE + length;
+			}
+			this.end = position;
+			this.forced = position;
+		}
+
+		boolean fits(int length) {
+			return this.end + RECORD_HEADER_SIZE + length + Integer.BYTES <= this.capacity;
+		}
+
+		void append(ByteBuffer record, CRC32 crc) {
+			int position = this.end;
+			int length = record.remaining();
+			this.buffer.put(position + RECORD_HEADER_SIZE, record, record.position(), length);
+			crc.reset();
+			crc.update(record);
+			this.buffer.putInt(position + Integer.BYTES, (int) crc.getValue());
+			// terminate the log so that recovery never reads past the last record
+			this.buffer.putInt(position + RECORD_HEADER_SIZE + length, 0);
+			this.buffer.putInt(position, length);
+			index(position, AuditEntry.ownerId(this.buffer, position + RECORD_HEADER_SIZE));
+			this.end = position + RECORD_HEADER_SIZE + length;
+		}
+
+		private void index(int position, int ownerId) {
+			if (this.blocks == 0 || position - this.blockStarts[this.blocks - 1] >= BLOCK_SIZE) {
+				if (this.blocks == this.blockStarts.length) {
+					this.blockStarts = Arrays.copyOf(this.blockStarts, this.blocks * 2);
+					this.blooms = Arrays.copyOf(this.blooms, this.blocks * 2 * BLOOM_LONGS);
+				}
+				this.blockStarts[this.blocks++] = position;
+			}
+			int bloom = (this.blocks - 1) * BLOOM_LONGS;
+			int hash = ownerId * 0x9e3779b9;
+			for (int shift = 23; shift > 0; shift -= 9) {
+				int bit = (hash >>> shift) & (BLOOM_LONGS * Long.SIZE - 1);
+				this.blooms[bloom + (bit >>> 6)] |= 1L << bit;
+			}
+		}
+
+		private boolean mayContain(int block, int ownerId) {
+			int bloom = block * BLOOM_LONGS;
+			int hash = ownerId * 0x9e3779b9;
+			for (int shift = 23; shift > 0; shift -= 9) {
+				int bit = (hash >>> shift) & (BLOOM_LONGS * Long.SIZE - 1);
+				if ((this.blooms[bloom + (bit >>> 6)] & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		void find(int ownerId, int limit, List<AuditEntry> entries) {
+			for (int block = this.blocks - 1; block >= 0 && entries.size() < limit; block--) {
+				if (!mayContain(block, ownerId)) {
+					continue;
+				}
+				int blockEnd = (block + 1 < this.blocks) ? this.blockStarts[block + 1] : this.end;
+				List<AuditEntry> matches = new ArrayList<>();
+				for (int position = this.blockStarts[block]; position < blockEnd; position += RECORD_HEADER_SIZE
+						+ this.buffer.getInt(position)) {
+					if (AuditEntry.ownerId(this.buffer, position + RECORD_HEADER_SIZE) == ownerId) {
+						matches.add(AuditEntry.decode(this.buffer, position + RECORD_HEADER_SIZE));
+					}
+				}
+				for (int i = matches.size() - 1; i >= 0 && entries.size() < limit; i--) {
+					entries.add(matches.get(i));
+				}
+			}
+		}
+
+		void force() {
+			int end = this.end;
+			if (end > this.forced) {
+				this.buffer.force(this.forced, end + Integer.BYTES - this.forced);
+				this.forced = end;
+			}
+		}
+
+		/**
+		 * Close the file and unmap the segment, which must not be read afterwards.
+		 */
+		void close() throws IOException {
+			this.channel.close();
+			if (INVOKE_CLEANER != null) {
+				try {
+					INVOKE_CLEANER.invokeExact((ByteBuffer) this.buffer);
+				}
+				catch (Throwable ex) {
+					logger.warn("Could not unmap audit log segment " + this.file, ex);
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.audit;
+
+import java.io.Closeable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Records changes without waiting for them to be written. A change is encoded straight
+ * into a slot of the {@link AuditRing}, and a single writer thread appends the published
+ * slots to the {@link AuditLog}, forcing it to disk once per batch.
+ * <p>
+ * Changes are therefore durable shortly after they are recorded, not when the transaction
+ * commits: those still in the ring when the process dies are lost.
+ */
+class AuditRecorder implements Closeable {
+
+	private static final Log logger = LogFactory.getLog(AuditRecorder.class);
+
+	private static final int MAX_VALUE_BYTES = 256;
+
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final AuditRing ring;
+
+	private final AuditLog log;
+
+	private final int batchSize;
+
+	private final AuditRing.Consumer append;
+
+	private final Thread writer;
+
+	private volatile boolean running = true;
+
+	private volatile long durable;
+
+	AuditRecorder(AuditRing ring, AuditLog log, int batchSize) {
+		this.ring = ring;
+		this.log = log;
+		this.batchSize = batchSize;
+		this.append = this::append;
+		this.writer = new Thread(this::write, "audit-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Record a change to an entity, with the given properties of its state before and
+	 * after. Properties that are not {@code auditable}, and properties of an update whose
+	 * value did not change, are left out. Values are truncated to
+	 * {@value #MAX_VALUE_BYTES} bytes, and the last properties are left out if they do
+	 * not fit in a slot.
+	 */
+	void record(int entity, int entityId, int ownerId, byte operation, String[] names, Object[] before, Object[] after,
+			int[] properties, boolean[] auditable) {
+		long position = this.ring.claim();
+		if (position < 0) {
+			logger.warn("Audit log closed, dropping a change to " + AuditEntry.ENTITIES[entity] + " " + entityId);
+			return;
+		}
+		ByteBuffer buffer = this.ring.buffer();
+		int start = this.ring.offset(position);
+		int end = start + this.ring.capacity();
+		int offset = start + AuditEntry.HEADER_SIZE;
+		short fields = 0;
+		try {
+			buffer.putLong(start, System.currentTimeMillis());
+			buffer.putInt(start + 8, ownerId);
+			buffer.putInt(start + 12, entityId);
+			buffer.put(start + 16, (byte) entity);
+			buffer.put(start + 17, operation);
+			for (int property : properties) {
+				Object previous = (before != null) ? before[property] : null;
+				Object next = (after != null) ? after[property] : null;
+				if (!auditable[property] || (operation == AuditEntry.UPDATE && Objects.equals(previous, next))) {
+					continue;
+				}
+				String name = names[property];
+				int room = end - offset - 3 * Short.BYTES - 3 * name.length();
+				if (room < 0) {
+					break;
+				}
+				offset = putString(buffer, offset, name, 3 * name.length());
+				offset = putString(buffer, offset, toText(previous), Math.min(MAX_VALUE_BYTES, room / 2));
+				offset = putString(buffer, offset, toText(next), Math.min(MAX_VALUE_BYTES, end - offset - Short.BYTES));
+				fields++;
+			}
+		}
+		finally {
+			// always publish, as the writer waits for every claimed slot in turn
+			buffer.putShort(start + 18, fields);
+			this.ring.publish(position, offset - start);
+		}
+	}
+
+	private static CharSequence toText(Object value) {
+		return (value == null || value instanceof CharSequence) ? (CharSequence) value : value.toString();
+	}
+
+	/**
+	 * Write a string as UTF-8 without allocating, truncated at a character boundary.
+	 */
+	private static int putString(ByteBuffer buffer, int offset, CharSequence text, int maxBytes) {
+		if (text == null) {
+			buffer.putShort(offset, (short) -1);
+			return offset + Short.BYTES;
+		}
+		int start = offset + Short.BYTES;
+		int position = start;
+		for (int i = 0; i < text.length(); i++) {
+			int c = text.charAt(i);
+			int length = (c < 0x80) ? 1 : (c < 0x800) ? 2 : 3;
+			if (Character.isHighSurrogate((char) c) && i + 1 < text.length()
+					&& Character.isLowSurrogate(text.charAt(i + 1))) {
+				c = Character.toCodePoint((char) c, text.charAt(++i));
+				length = 4;
+			}
+			else if (Character.isSurrogate((char) c)) {
+				c = '?';
+				length = 1;
+			}
+			if (position + length - start > maxBytes) {
+				break;
+			}
+			switch (length) {
+				case 1 -> buffer.put(position, (byte) c);
+				case 2 -> {
+					buffer.put(position, (byte) (0xc0 | (c >> 6)));
+					buffer.put(position + 1, (byte) (0x80 | (c & 0x3f)));
+				}
+				case 3 -> {
+					buffer.put(position, (byte) (0xe0 | (c >> 12)));
+					buffer.put(position + 1, (byte) (0x80 | ((c >> 6) & 0x3f)));
+					buffer.put(position + 2, (byte) (0x80 | (c & 0x3f)));
+				}
+				default -> {
+					buffer.put(position, (byte) (0xf0 | (c >> 18)));
+					buffer.put(position + 1, (byte) (0x80 | ((c >> 12) & 0x3f)));
+					buffer.put(position + 2, (byte) (0x80 | ((c >> 6) & 0x3f)));
+					buffer.put(position + 3, (byte) (0x80 | (c & 0x3f)));
+				}
+			}
+			position += length;
+		}
+		buffer.putShort(offset, (short) (position - start));
+		return position;
+	}
+
+	private void write() {
+		while (true) {
+			int drained = this.ring.drain(this.append, this.batchSize);
+			if (drained > 0) {
+				this.log.force();
+				this.durable = this.ring.consumed();
+			}
+			else if (!this.running) {
+				return;
+			}
+			else {
+				LockSupport.parkNanos(IDLE_PARK_NANOS);
+			}
+		}
+	}
+
+	private void append(ByteBuffer record) {
+		try {
+			this.log.append(record);
+		}
+		catch (UncheckedIOException ex) {
+			logger.error("Could not append a change to the audit log", ex);
+		}
+	}
+
+	/**
+	 * Wait until every change recorded so far is on disk.
+	 * @return {@code false} if that took longer than the timeout
+	 */
+	boolean awaitDurable(long timeout, TimeUnit unit) {
+		long recorded = this.ring.claimed();
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (this.durable < recorded) {
+			if (System.nanoTime() > deadline) {
+				return false;
+			}
+			LockSupport.parkNanos(IDLE_PARK_NANOS);
+		}
+		return true;
+	}
+
+	@Override
+	public void close() {
+		this.ring.close();
+		this.running = false;
+		try {
+			this.writer.join(TimeUnit.SECONDS.toMillis(5));
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
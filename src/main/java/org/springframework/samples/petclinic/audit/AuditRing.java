@@ -0,0 +1,183 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.audit;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, lock-free ring of fixed size byte slots with many producers and a single
+ * consumer. A producer {@link #claim() claims} the next position with one compare and
+ * set, encodes a record straight into the slot of that position and
+ * {@link #publish(long, int) publishes} it. The consumer takes published slots in
+ * position order and hands them back for reuse, so nothing is allocated per record.
+ * <p>
+ * Each slot has a sequence number, as in Dmitry Vyukov's bounded queue: it equals the
+ * position when the slot is free for that position, and the position plus one once the
+ * record is published.
+ */
+class AuditRing {
+
+	private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	private final ByteBuffer slots;
+
+	private final ByteBuffer consumerView;
+
+	private final AtomicLongArray sequences;
+
+	private final AtomicLong tail = new AtomicLong();
+
+	private final int slotSize;
+
+	private final int mask;
+
+	private volatile long head;
+
+	private volatile boolean closed;
+
+	AuditRing(int capacity, int slotSize) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+		}
+		this.slots = ByteBuffer.allocateDirect(capacity * slotSize);
+		this.consumerView = this.slots.duplicate();
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			this.sequences.set(i, i);
+		}
+		this.slotSize = slotSize;
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Claim the next position, waiting while the ring is full.
+	 * @return the position, or {@code -1} if the ring has been closed
+	 */
+	long claim() {
+		while (!this.closed) {
+			long position = this.tail.get();
+			long sequence = this.sequences.get(index(position));
+			if (sequence == position) {
+				if (this.tail.compareAndSet(position, position + 1)) {
+					return position;
+				}
+			}
+			else if (sequence < position) {
+				// full: the consumer has not freed the slot from the previous lap yet
+				LockSupport.parkNanos(FULL_PARK_NANOS);
+			}
+			else {
+				Thread.onSpinWait();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Return the buffer that holds every slot, for absolute puts at
+	 * {@link #offset(long)}.
+	 */
+	ByteBuffer buffer() {
+		return this.slots;
+	}
+
+	/**
+	 * Return the offset in the {@link #buffer() buffer} of the first byte a record
+	 * claimed at the given position can use.
+	 */
+	int offset(long position) {
+		return index(position) * this.slotSize + Integer.BYTES;
+	}
+
+	/**
+	 * Return how many bytes a record can use in a slot.
+	 */
+	int capacity() {
+		return this.slotSize - Integer.BYTES;
+	}
+
+	void publish(long position, int length) {
+		int index = index(position);
+		this.slots.putInt(index * this.slotSize, length);
+		this.sequences.set(index, position + 1);
+	}
+
+	/**
+	 * Hand up to {@code max} published records to the consumer, in position order. Must
+	 * only be called from the consumer thread.
+	 * @return the number of records consumed
+	 */
+	int drain(Consumer consumer, int max) {
+		int drained = 0;
+		while (drained < max) {
+			long position = this.head;
+			int index = index(position);
+			if (this.sequences.get(index) != position + 1) {
+				break;
+			}
+			int start = index * this.slotSize;
+			int length = this.consumerView.getInt(start);
+			this.consumerView.limit(start + Integer.BYTES + length).position(start + Integer.BYTES);
+			consumer.accept(this.consumerView);
+			this.consumerView.clear();
+			this.sequences.set(index, position + this.mask + 1);
+			this.head = position + 1;
+			drained++;
+		}
+		return drained;
+	}
+
+	/**
+	 * Return the number of positions claimed so far.
+	 */
+	long claimed() {
+		return this.tail.get();
+	}
+
+	/**
+	 * Return the number of records consumed so far.
+	 */
+	long consumed() {
+		return this.head;
+	}
+
+	/**
+	 * Stop accepting records, releasing producers waiting for a free slot.
+	 */
+	void close() {
+		this.closed = true;
+	}
+
+	private int index(long position) {
+		return (int) position & this.mask;
+	}
+
+	/**
+	 * Receives a record, as the bytes between the position and the limit of a buffer that
+	 * is only valid during the call.
+	 */
+	interface Consumer {
+
+		void accept(ByteBuffer record);
+
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.audit;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.samples.petclinic.owner.OwnerRowsWritten;
+import org.springframework.samples.petclinic.owner.OwnerRowsWritten.Operation;
+import org.springframework.samples.petclinic.owner.OwnerRowsWritten.Row;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Records the owner, pet and visit rows written with plain JDBC, which the
+ * {@link AuditListener} does not see, once their transaction has committed.
+ */
+@Component
+@ConditionalOnProperty(name = "petclinic.audit.enabled")
+class AuditedJdbcWrites {
+
+	private final AuditRecorder recorder;
+
+	AuditedJdbcWrites(AuditRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	@TransactionalEventListener
+	void onRowsWritten(OwnerRowsWritten event) {
+		int entity = Arrays.asList(AuditEntry.ENTITIES).indexOf(event.entity());
+		boolean insert = event.operation() == Operation.INSERT;
+		for (Row row : event.rows()) {
+			String[] names = row.values().keySet().toArray(new String[0]);
+			Object[] values = row.values().values().toArray();
+			boolean[] auditable = new boolean[names.length];
+			Arrays.fill(auditable, true);
+			this.recorder.record(entity, row.id(), row.ownerId(), insert ? AuditEntry.INSERT : AuditEntry.DELETE, names,
+					insert ? null : values, insert ? values : null, IntStream.range(0, names.length).toArray(),
+					auditable);
+		}
+	}
+
+}
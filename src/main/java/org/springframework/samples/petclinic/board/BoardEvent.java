@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.board;
+
+import java.time.LocalDate;
+
+/**
+ * An update shown on the {@link VisitBoard}: a new visit, a new or updated pet, or a
+ * {@link #RESET} telling a subscriber that it fell behind and missed updates.
+ *
+ * @param seq the position of the event in the board, which increases by one with every
+ * event
+ * @param type {@link #VISIT}, {@link #PET} or {@link #RESET}
+ * @param ownerId the owner of the visit or pet, {@code 0} for a reset
+ * @param data a {@link VisitData} or {@link PetData}, {@code null} for a reset
+ */
+public record BoardEvent(long seq, String type, int ownerId, Object data) {
+
+	public static final String VISIT = "visit";
+
+	public static final String PET = "pet";
+
+	public static final String RESET = "reset";
+
+	/**
+	 * A recorded visit. The id is {@code null} for visits inserted in a JDBC batch.
+	 */
+	public record VisitData(Integer id, int petId, LocalDate date, String description) {
+	}
+
+	/**
+	 * A new or updated pet.
+	 */
+	public record PetData(int id, String name, LocalDate birthDate, String type) {
+	}
+
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.board;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Fans out visit and pet updates to many subscribers without a thread per subscriber.
+ * <p>
+ * Publishers hand their updates to a single dispatcher thread, the only writer of a ring
+ * of the most recent events. Each subscription keeps its own cursor into the ring and is
+ * served by a small pool of sender threads, at most one at a time and a bounded batch per
+ * turn. A subscriber that falls so far behind that its next event has been overwritten
+ * gets a single {@link BoardEvent#RESET} instead of the events it missed, and continues
+ * from the newest event. Publishing never blocks: when the dispatcher cannot keep up,
+ * updates are dropped and counted.
+ */
+public class VisitBoard implements Closeable {
+
+	private static final Log logger = LogFactory.getLog(VisitBoard.class);
+
+	private static final int MAX_BATCH = 256;
+
+	private final BoardEvent[] ring;
+
+	private final int mask;
+
+	private final BlockingQueue<BoardEvent> inbox;
+
+	private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+	private final Thread dispatcher;
+
+	private final ExecutorService senders;
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final AtomicLong resets = new AtomicLong();
+
+	private volatile long published;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Create a board.
+	 * @param capacity the number of recent events kept for subscribers, a power of two
+	 * @param senders the number of threads sending events to subscribers
+	 */
+	public VisitBoard(int capacity, int senders) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+		}
+		this.ring = new BoardEvent[capacity];
+		this.mask = capacity - 1;
+		this.inbox = new ArrayBlockingQueue<>(capacity);
+		this.senders = Executors.newFixedThreadPool(senders, new CustomizableThreadFactory("visit-board-"));
+		this.dispatcher = new Thread(this::dispatch, "visit-board-dispatcher");
+		this.dispatcher.setDaemon(true);
+		this.dispatcher.start();
+	}
+
+	/**
+	 * Publish an update, typically once the transaction that made it has committed.
+	 * @param type {@link BoardEvent#VISIT} or {@link BoardEvent#PET}
+	 */
+	public void publish(String type, int ownerId, Object data) {
+		if (!this.inbox.offer(new BoardEvent(0, type, ownerId, data))) {
+			this.dropped.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Subscribe to the updates published from now on, or from just after {@code lastSeq}
+	 * when a subscriber reconnects.
+	 * @param ownerId the owner to receive updates of, or {@code null} for every owner
+	 * @param lastSeq the last event the subscriber has seen, or {@code null}
+	 */
+	public Subscription subscribe(Integer ownerId, Long lastSeq, Sink sink) {
+		long published = this.published;
+		long cursor = (lastSeq != null && lastSeq < published) ? Math.max(lastSeq, 0) : published;
+		Subscription subscription = new Subscription(ownerId, cursor, sink);
+		this.subscriptions.add(subscription);
+		schedule(subscription);
+		return subscription;
+	}
+
+	/**
+	 * Return the number of open subscriptions.
+	 */
+	public int getSubscriptionCount() {
+		return this.subscriptions.size();
+	}
+
+	/**
+	 * Return the number of events published so far.
+	 */
+	public long getPublishedCount() {
+		return this.published;
+	}
+
+	/**
+	 * Return the number of updates dropped because the dispatcher fell behind.
+	 */
+	public long getDroppedCount() {
+		return this.dropped.get();
+	}
+
+	/**
+	 * Return the number of times a slow subscriber was reset.
+	 */
+	public long getResetCount() {
+		return this.resets.get();
+	}
+
+	private void dispatch() {
+		List<BoardEvent> batch = new ArrayList<>();
+		while (this.running) {
+			try {
+				BoardEvent first = this.inbox.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				this.inbox.drainTo(batch, this.ring.length - 1);
+			}
+			catch (InterruptedException ex) {
+				return;
+			}
+			long seq = this.published;
+			for (BoardEvent event : batch) {
+				seq++;
+				this.ring[(int) (seq & this.mask)] = new BoardEvent(seq, event.type(), event.ownerId(), event.data());
+			}
+			this.published = seq;
+			batch.clear();
+			this.subscriptions.forEach(this::schedule);
+		}
+	}
+
+	private void schedule(Subscription subscription) {
+		if (subscription.cursor < this.published && subscription.scheduled.compareAndSet(false, true)) {
+			try {
+				this.senders.execute(() -> send(subscription));
+			}
+			catch (RejectedExecutionException ex) {
+				// closed
+			}
+		}
+	}
+
+	private void send(Subscription subscription) {
+		try {
+			List<BoardEvent> events = new ArrayList<>();
+			long published = this.published;
+			while (subscription.cursor < published && events.size() < MAX_BATCH) {
+				long seq = subscription.cursor + 1;
+				BoardEvent event = this.ring[(int) (seq & this.mask)];
+				if (event == null || event.seq() != seq) {
+					// overwritten by the dispatcher, the subscriber missed events
+					this.resets.incrementAndGet();
+					events.clear();
+					events.add(new BoardEvent(published, BoardEvent.RESET, 0, null));
+					subscription.cursor = published;
+					break;
+				}
+				if (subscription.ownerId == null || subscription.ownerId == event.ownerId()) {
+					events.add(event);
+				}
+				subscription.cursor = seq;
+			}
+			if (!events.isEmpty()) {
+				subscription.sink.send(events);
+			}
+		}
+		catch (IOException | RuntimeException ex) {
+			logger.debug("Closing visit board subscription", ex);
+			subscription.cancel();
+			return;
+		}
+		finally {
+			subscription.scheduled.set(false);
+		}
+		// the dispatcher may have published while this subscription was being served
+		schedule(subscription);
+	}
+
+	@Override
+	public void close() {
+		this.running = false;
+		this.dispatcher.interrupt();
+		this.senders.shutdownNow();
+		this.subscriptions.clear();
+	}
+
+	/**
+	 * Receives the events of one subscription, on a sender thread.
+	 */
+	@FunctionalInterface
+	public interface Sink {
+
+		/**
+		 * Send events to the subscriber. Throwing cancels the subscription.
+		 */
+		void send(List<BoardEvent> events) throws IOException;
+
+	}
+
+	/**
+	 * A subscriber's position in the board.
+	 */
+	public final class Subscription {
+
+		private final Integer ownerId;
+
+		private final Sink sink;
+
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+		private volatile long cursor;
+
+		private Subscription(Integer ownerId, long cursor, Sink sink) {
+			this.ownerId = ownerId;
+			this.cursor = cursor;
+			this.sink = sink;
+		}
+
+		/**
+		 * Stop sending events to this subscriber.
+		 */
+		public void cancel() {
+			VisitBoard.this.subscriptions.remove(this);
+		}
+
+	}
+
+}
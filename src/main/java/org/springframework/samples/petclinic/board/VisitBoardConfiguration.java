@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.board;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Wires the {@link VisitBoard}, fed by the {@link VisitBoardListener}, and exposes its
+ * subscriptions and event counts as metrics.
+ */
+@Configuration(proxyBeanMethods = false)
+class VisitBoardConfiguration {
+
+	@Bean(destroyMethod = "close")
+	VisitBoard visitBoard(ObjectProvider<MeterRegistry> meterRegistry,
+			@Value("${petclinic.visits.board.capacity:1024}") int capacity,
+			@Value("${petclinic.visits.board.senders:2}") int senders) {
+		VisitBoard board = new VisitBoard(capacity, senders);
+		meterRegistry.ifAvailable(registry -> {
+			Gauge.builder("petclinic.visits.board.connections", board, VisitBoard::getSubscriptionCount)
+				.description("Open visit board connections")
+				.register(registry);
+			FunctionCounter.builder("petclinic.visits.board.events", board, VisitBoard::getPublishedCount)
+				.description("Events published to the visit board")
+				.register(registry);
+			FunctionCounter.builder("petclinic.visits.board.dropped", board, VisitBoard::getDroppedCount)
+				.description("Updates dropped because the dispatcher fell behind")
+				.register(registry);
+			FunctionCounter.builder("petclinic.visits.board.resets", board, VisitBoard::getResetCount)
+				.description("Slow connections reset after missing events")
+				.register(registry);
+		});
+		return board;
+	}
+
+	@Bean
+	VisitBoardListener visitBoardListener(VisitBoard board, EntityManagerFactory entityManagerFactory) {
+		VisitBoardListener listener = new VisitBoardListener(board);
+		listener.register(entityManagerFactory);
+		return listener;
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.board;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.board.VisitBoard.Subscription;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Streams the {@link VisitBoard} as server-sent events at {@code /api/visits/board},
+ * optionally for one owner with {@code ?ownerId=}. Event ids are board sequence numbers,
+ * so a reconnecting browser resumes after its {@code Last-Event-ID} while that event is
+ * still on the board; a {@code reset} event means updates were missed and the page should
+ * be reloaded.
+ */
+@RestController
+class VisitBoardController {
+
+	private final VisitBoard board;
+
+	private final Duration timeout;
+
+	VisitBoardController(VisitBoard board, @Value("${petclinic.visits.board.timeout:PT30M}") Duration timeout) {
+		this.board = board;
+		this.timeout = timeout;
+	}
+
+	@GetMapping(path = "/api/visits/board", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter streamBoard(@RequestParam(required = false) Integer ownerId,
+			@RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+		SseEmitter emitter = new SseEmitter(this.timeout.toMillis());
+		Subscription subscription = this.board.subscribe(ownerId, lastEventId, events -> {
+			for (BoardEvent event : events) {
+				SseEmitter.SseEventBuilder builder = SseEmitter.event()
+					.id(Long.toString(event.seq()))
+					.name(event.type());
+				emitter.send((event.data() != null) ? builder.data(event.data(), MediaType.APPLICATION_JSON)
+						: builder.data(""));
+			}
+		});
+		emitter.onCompletion(subscription::cancel);
+		emitter.onTimeout(subscription::cancel);
+		emitter.onError(ex -> subscription.cancel());
+		return emitter;
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.board;
+
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.samples.petclinic.board.BoardEvent.PetData;
+import org.springframework.samples.petclinic.board.BoardEvent.VisitData;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.SessionOwners;
+import org.springframework.samples.petclinic.owner.SessionOwners.Member;
+import org.springframework.samples.petclinic.owner.Visit;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Hibernate listener that publishes committed new visits and new or updated pets to the
+ * {@link VisitBoard}. Their owner is found with {@link SessionOwners}; changes whose
+ * owner is not found are not published.
+ */
+class VisitBoardListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener {
+
+	private final VisitBoard board;
+
+	private final SessionOwners owners = new SessionOwners();
+
+	VisitBoardListener(VisitBoard board) {
+		this.board = board;
+	}
+
+	void register(EntityManagerFactory entityManagerFactory) {
+		SessionOwners.register(entityManagerFactory, this);
+	}
+
+	@Override
+	public boolean requiresPostCommitHandling(EntityPersister persister) {
+		return persister.getMappedClass() == Pet.class || persister.getMappedClass() == Visit.class;
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		publish(event.getEntity(), event.getSession());
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		if (event.getEntity() instanceof Pet) {
+			publish(event.getEntity(), event.getSession());
+		}
+	}
+
+	@Override
+	public void onPostInsertCommitFailed(PostInsertEvent event) {
+		// rolled back, nothing to show
+	}
+
+	@Override
+	public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+		// rolled back, nothing to show
+	}
+
+	private void publish(Object entity, EventSource session) {
+		Member member = this.owners.find(entity, session);
+		if (member == null) {
+			return;
+		}
+		Pet pet = member.pet();
+		if (entity instanceof Visit visit) {
+			this.board.publish(BoardEvent.VISIT, member.owner().getId(),
+					new VisitData(visit.getId(), pet.getId(), visit.getDate(), visit.getDescription()));
+		}
+		else {
+			this.board.publish(BoardEvent.PET, member.owner().getId(), new PetData(pet.getId(), pet.getName(),
+					pet.getBirthDate(), (pet.getType() != null) ? pet.getType().getName() : null));
+		}
+	}
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.changes;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Feed of inserted and updated owners, pets, visits and vets in the order of their
+ * {@code change_seq} column, which the schema of every database bumps on each insert and
+ * update. Clients pass the cursor of the previous page to read only what changed since.
+ * <p>
+ * Sequence numbers are taken when a row is written but become visible when its
+ * transaction commits, so a small number can show up after a larger one has already been
+ * read. The feed therefore only serves numbers up to a horizon that was sampled at least
+ * {@code petclinic.changes.feed.settle} ago, long enough for the writing transactions to
+ * have committed. A transaction that commits later than that is not detected: its rows
+ * are skipped by the clients whose cursor is already past them, until the rows change
+ * again or the clients read the feed again from cursor {@code 0}. The settle time has to
+ * cover the longest transactions that write these tables. Deleted rows are not reported.
+ * <p>
+ * Sequence numbers are unsigned 64-bit values, as MySQL's {@code UUID_SHORT()} can exceed
+ * {@link Long#MAX_VALUE}. They are held in a {@code long} and compared with
+ * {@link Long#compareUnsigned}, and written to JSON as unsigned numbers.
+ */
+@Component
+public class ChangeFeed {
+
+	private static final List<Source> SOURCES = List.of(
+			new Source("owner", "owners", "first_name, last_name, address, city, telephone"),
+			new Source("pet", "pets", "name, birth_date, type_id, owner_id"),
+			new Source("visit", "visits", "pet_id, visit_date, description"),
+			new Source("vet", "vets", "first_name, last_name"));
+
+	private static final String RANGE = " WHERE change_seq > ? AND change_seq <= ? ORDER BY change_seq LIMIT ?";
+
+	private static final String FROM = " WHERE change_seq > ? ORDER BY change_seq LIMIT ?";
+
+	// no sample has settled yet
+	private static final long NO_HORIZON = 0;
+
+	// every change is served straight away
+	private static final long UNBOUNDED = -1;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final Duration settle;
+
+	private final Deque<Sample> settling = new ArrayDeque<>();
+
+	private long horizon = NO_HORIZON;
+
+	public ChangeFeed(JdbcTemplate jdbcTemplate, @Value("${petclinic.changes.feed.settle:PT5S}") Duration settle) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.settle = settle;
+	}
+
+	/**
+	 * Return up to {@code limit} changes with a sequence number above {@code after},
+	 * compared as unsigned values.
+	 */
+	public Page read(long after, int limit) {
+		long horizon = horizon();
+		List<Change> changes = new ArrayList<>();
+		for (Source source : SOURCES) {
+			changes.addAll((horizon != UNBOUNDED)
+					? this.jdbcTemplate.query(source.query(RANGE), source.mapper(), unsigned(after), unsigned(horizon),
+							limit + 1)
+					: this.jdbcTemplate.query(source.query(FROM), source.mapper(), unsigned(after), limit + 1));
+		}
+		changes.sort(Comparator.comparing(Change::seq, Long::compareUnsigned));
+		boolean more = changes.size() > limit;
+		List<Change> page = more ? changes.subList(0, limit) : changes;
+		long cursor = page.isEmpty() ? after : page.get(page.size() - 1).seq();
+		return new Page(List.copyOf(page), cursor, more);
+	}
+
+	/**
+	 * Record the current highest sequence number, which becomes the horizon of the feed
+	 * once it is older than the settle time. Samples are only kept until they settle.
+	 */
+	@Scheduled(fixedDelayString = "${petclinic.changes.feed.sample-delay:1000}")
+	public void sample() {
+		if (this.settle.isZero()) {
+			return;
+		}
+		long maxSeq = maxSeq();
+		synchronized (this.settling) {
+			this.settling.addLast(new Sample(System.nanoTime(), maxSeq));
+			settle();
+		}
+	}
+
+	private long horizon() {
+		if (this.settle.isZero()) {
+			return UNBOUNDED;
+		}
+		synchronized (this.settling) {
+			settle();
+			return this.horizon;
+		}
+	}
+
+	private void settle() {
+		long settledBefore = System.nanoTime() - this.settle.toNanos();
+		while (!this.settling.isEmpty() && this.settling.peekFirst().nanoTime() - settledBefore <= 0) {
+			this.horizon = this.settling.removeFirst().maxSeq();
+		}
+	}
+
+	private long maxSeq() {
+		long max = 0;
+		for (Source source : SOURCES) {
+			String seq = this.jdbcTemplate.queryForObject("SELECT MAX(change_seq) FROM " + source.table(),
+					String.class);
+			if (seq != null && Long.compareUnsigned(Long.parseUnsignedLong(seq), max) > 0) {
+				max = Long.parseUnsignedLong(seq);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Bind an unsigned sequence number, as a {@code long} while it is one.
+	 */
+	private static Object unsigned(long seq) {
+		return (seq >= 0) ? seq : new BigDecimal(Long.toUnsignedString(seq));
+	}
+
+	private static Map<String, Object> data(ResultSet rs) throws SQLException {
+		ResultSetMetaData metaData = rs.getMetaData();
+		Map<String, Object> data = new LinkedHashMap<>();
+		for (int column = 3; column <= metaData.getColumnCount(); column++) {
+			Object value = JdbcUtils.getResultSetValue(rs, column);
+			data.put(JdbcUtils.convertUnderscoreNameToPropertyName(JdbcUtils.lookupColumnName(metaData, column)),
+					(value instanceof Date date) ? date.toLocalDate() : value);
+		}
+		return data;
+	}
+
+	/**
+	 * An inserted or updated entity with its current column values.
+	 */
+	public record Change(@JsonSerialize(using = UnsignedSerializer.class) long seq, String entity, int id,
+			Map<String, Object> data) {
+	}
+
+	/**
+	 * A page of changes, and the cursor to pass to read the next one.
+	 */
+	public record Page(List<Change> changes, @JsonSerialize(using = UnsignedSerializer.class) long cursor,
+			boolean more) {
+	}
+
+	/**
+	 * Writes a sequence number as an unsigned JSON number.
+	 */
+	static final class UnsignedSerializer extends StdSerializer<Long> {
+
+		UnsignedSerializer() {
+			super(Long.class);
+		}
+
+		@Override
+		public void serialize(Long value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+			generator.writeNumber(Long.toUnsignedString(value));
+		}
+
+	}
+
+	private record Sample(long nanoTime, long maxSeq) {
+	}
+
+	private record Source(String entity, String table, String columns) {
+
+		String query(String where) {
+			return "SELECT change_seq, id, " + this.columns + " FROM " + this.table + where;
+		}
+
+		RowMapper<Change> mapper() {
+			return (rs, rowNum) -> new Change(Long.parseUnsignedLong(rs.getString(1)), this.entity, rs.getInt(2),
+					data(rs));
+		}
+
+	}
+
+}
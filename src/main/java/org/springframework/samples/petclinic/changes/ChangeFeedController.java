@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.changes;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.changes.ChangeFeed.Page;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Incremental sync at {@code /api/changes?after=<cursor>&limit=}. A client starts from
+ * cursor {@code 0} and passes the cursor of each page to the next request, reading on
+ * while {@code more} is set.
+ */
+@RestController
+class ChangeFeedController {
+
+	private static final int MAX_LIMIT = 1000;
+
+	private final ChangeFeed feed;
+
+	ChangeFeedController(ChangeFeed feed) {
+		this.feed = feed;
+	}
+
+	@GetMapping("/api/changes")
+	public Page readChanges(@RequestParam(defaultValue = "0") String after,
+			@RequestParam(defaultValue = "100") int limit) {
+		if (limit < 1 || limit > MAX_LIMIT) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_LIMIT);
+		}
+		try {
+			// cursors are unsigned 64-bit numbers
+			return this.feed.read(Long.parseUnsignedLong(after), limit);
+		}
+		catch (NumberFormatException ex) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "after must be a cursor of the feed");
+		}
+	}
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.changes;
+
+/**
+ * Broadcasts {@link EntityChangedEvent entity changes} to every running instance of the
+ * application, where they are republished as application events so that per-JVM caches
+ * and read models can react with an {@code @EventListener}.
+ */
+public interface EntityChangeBus {
+
+	/**
+	 * Announce a change to all instances, including this one. If a transaction is active
+	 * the change is part of it and is only delivered once it commits.
+	 * @param event the change
+	 */
+	void publish(EntityChangedEvent event);
+
+}
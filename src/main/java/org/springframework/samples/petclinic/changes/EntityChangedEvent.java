@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.changes;
+
+/**
+ * Announces that an entity was created, updated or deleted, on this or another instance.
+ * Changes to a pet or a visit are reported as a change to the owning {@link #OWNER}
+ * aggregate.
+ *
+ * @param entity the kind of entity that changed
+ * @param id the identifier of the changed entity, or {@code null} if any entity of that
+ * kind may have changed
+ */
+public record EntityChangedEvent(String entity, Integer id) {
+
+	public static final String OWNER = "owner";
+
+	public static final String PET_TYPE = "petType";
+
+	public static final String VET = "vet";
+
+	public static final String SPECIALTY = "specialty";
+
+	public static EntityChangedEvent owner(Integer ownerId) {
+		return new EntityChangedEvent(OWNER, ownerId);
+	}
+
+	public static EntityChangedEvent vet(Integer vetId) {
+		return new EntityChangedEvent(VET, vetId);
+	}
+
+}
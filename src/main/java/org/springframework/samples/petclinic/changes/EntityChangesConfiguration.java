@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.changes;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Wires the {@link EntityChangeBus}. The change table is always polled; with the
+ * {@code postgres} database a {@code LISTEN/NOTIFY} channel shortcuts the poll delay.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableScheduling
+class EntityChangesConfiguration {
+
+	private static final String NOTIFY_CHANNEL = "entity_changes";
+
+	@Bean
+	JdbcEntityChangeBus entityChangeBus(DataSource dataSource, ApplicationEventPublisher events,
+			@Value("${database}") String database, @Value("${petclinic.changes.batch-size:1000}") int batchSize,
+			@Value("${petclinic.changes.gap-timeout:PT1M}") Duration gapTimeout,
+			@Value("${petclinic.changes.retention:P1D}") Duration retention) {
+		JdbcEntityChangeBus bus = new JdbcEntityChangeBus(dataSource, events, batchSize, gapTimeout, retention);
+		if ("postgres".equals(database)) {
+			bus.setNotifyChannel(NOTIFY_CHANNEL);
+		}
+		return bus;
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "database", havingValue = "postgres")
+	PostgresChangeListener postgresChangeListener(DataSource dataSource, JdbcEntityChangeBus bus) {
+		return new PostgresChangeListener(dataSource, bus, NOTIFY_CHANNEL);
+	}
+
+}
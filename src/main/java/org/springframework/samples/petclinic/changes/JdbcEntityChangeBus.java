@@ -0,0 +1,183 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.changes;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * {@link EntityChangeBus} backed by the {@code entity_changes} table. Changes are
+ * inserted in the caller's transaction and picked up by every other instance by polling
+ * the table above a watermark. Identities are not necessarily committed in order, so an
+ * id that is missing below a newer one is skipped by the watermark but re-checked on
+ * every poll until it shows up or the gap timeout expires. A rolled-back insert therefore
+ * never holds back later changes, and a late commit is still delivered within the
+ * timeout.
+ * <p>
+ * Rows can also be inserted by other tools, for example after editing the vets from the
+ * database console; they are then delivered to every instance.
+ */
+public class JdbcEntityChangeBus implements EntityChangeBus {
+
+	private static final String INSERT_CHANGE = "INSERT INTO entity_changes (entity, entity_id, origin, changed_at) VALUES (?, ?, ?, ?)";
+
+	private static final String SELECT_CHANGES = "SELECT id, entity, entity_id, origin FROM entity_changes WHERE id > ? ORDER BY id";
+
+	private static final String SELECT_SKIPPED = "SELECT id, entity, entity_id, origin FROM entity_changes WHERE id IN (:ids)";
+
+	private static final int MAX_SKIPPED = 10_000;
+
+	private static final RowMapper<Change> CHANGE_MAPPER = (rs, rowNum) -> new Change(rs.getLong("id"),
+			new EntityChangedEvent(rs.getString("entity"), rs.getObject("entity_id", Integer.class)),
+			rs.getString("origin"));
+
+	private final String origin = UUID.randomUUID().toString();
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final JdbcTemplate pollTemplate;
+
+	private final NamedParameterJdbcTemplate skippedTemplate;
+
+	private final ApplicationEventPublisher events;
+
+	private final Duration gapTimeout;
+
+	private final Duration retention;
+
+	private String notifyChannel;
+
+	private long watermark = -1;
+
+	/**
+	 * Ids below the watermark that were missing when it passed them, with the time they
+	 * were skipped, oldest first.
+	 */
+	private final Map<Long, Long> skipped = new LinkedHashMap<>();
+
+	public JdbcEntityChangeBus(DataSource dataSource, ApplicationEventPublisher events, int batchSize,
+			Duration gapTimeout, Duration retention) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.pollTemplate = new JdbcTemplate(dataSource);
+		this.pollTemplate.setMaxRows(batchSize);
+		this.skippedTemplate = new NamedParameterJdbcTemplate(this.jdbcTemplate);
+		this.events = events;
+		this.gapTimeout = gapTimeout;
+		this.retention = retention;
+	}
+
+	/**
+	 * Also send a Postgres {@code NOTIFY} on the given channel with every change, so that
+	 * a {@link PostgresChangeListener} can poll straight away.
+	 */
+	void setNotifyChannel(String notifyChannel) {
+		this.notifyChannel = notifyChannel;
+	}
+
+	@Override
+	public void publish(EntityChangedEvent event) {
+		this.jdbcTemplate.update(INSERT_CHANGE, event.entity(), event.id(), this.origin, Timestamp.from(Instant.now()));
+		if (this.notifyChannel != null) {
+			this.jdbcTemplate.execute("NOTIFY " + this.notifyChannel);
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					JdbcEntityChangeBus.this.events.publishEvent(event);
+				}
+			});
+		}
+		else {
+			this.events.publishEvent(event);
+		}
+	}
+
+	/**
+	 * Deliver changes made by other instances since the last poll.
+	 */
+	@Scheduled(fixedDelayString = "${petclinic.changes.poll-delay:1000}")
+	public synchronized void poll() {
+		if (this.watermark < 0) {
+			// changes made before this instance started are already reflected in its
+			// state
+			Long max = this.jdbcTemplate.queryForObject("SELECT MAX(id) FROM entity_changes", Long.class);
+			this.watermark = (max != null) ? max : 0;
+			return;
+		}
+		long now = System.nanoTime();
+		for (Change change : this.pollTemplate.query(SELECT_CHANGES, CHANGE_MAPPER, this.watermark)) {
+			for (long id = Math.max(this.watermark + 1, change.id() - MAX_SKIPPED); id < change.id(); id++) {
+				this.skipped.put(id, now);
+			}
+			this.watermark = change.id();
+			deliver(change);
+		}
+		recheckSkipped(now);
+	}
+
+	private void recheckSkipped(long now) {
+		Iterator<Long> skippedAt = this.skipped.values().iterator();
+		while (skippedAt.hasNext()) {
+			long since = skippedAt.next();
+			if (now - since <= this.gapTimeout.toNanos() && this.skipped.size() <= MAX_SKIPPED) {
+				break;
+			}
+			// the insert rolled back, or committed too late to be seen
+			skippedAt.remove();
+		}
+		if (this.skipped.isEmpty()) {
+			return;
+		}
+		for (Change change : this.skippedTemplate.query(SELECT_SKIPPED, Map.of("ids", this.skipped.keySet()),
+				CHANGE_MAPPER)) {
+			this.skipped.remove(change.id());
+			deliver(change);
+		}
+	}
+
+	private void deliver(Change change) {
+		if (!this.origin.equals(change.origin())) {
+			this.events.publishEvent(change.event());
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${petclinic.changes.prune-delay:3600000}")
+	public void prune() {
+		this.jdbcTemplate.update("DELETE FROM entity_changes WHERE changed_at < ?",
+				Timestamp.from(Instant.now().minus(this.retention)));
+	}
+
+	private record Change(long id, EntityChangedEvent event, String origin) {
+	}
+
+}
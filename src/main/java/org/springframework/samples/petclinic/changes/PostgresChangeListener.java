@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.changes;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Waits for Postgres notifications sent by {@link JdbcEntityChangeBus} and polls as soon
+ * as one arrives, so changes propagate without waiting for the next scheduled poll. Holds
+ * one connection from the pool while running.
+ */
+class PostgresChangeListener implements SmartLifecycle, Runnable {
+
+	private static final Log logger = LogFactory.getLog(PostgresChangeListener.class);
+
+	private static final int TIMEOUT_MILLIS = 1000;
+
+	private final DataSource dataSource;
+
+	private final JdbcEntityChangeBus bus;
+
+	private final String channel;
+
+	private volatile boolean running;
+
+	private Thread thread;
+
+	PostgresChangeListener(DataSource dataSource, JdbcEntityChangeBus bus, String channel) {
+		this.dataSource = dataSource;
+		this.bus = bus;
+		this.channel = channel;
+	}
+
+	@Override
+	public void start() {
+		this.running = true;
+		this.thread = new Thread(this, "entity-changes-listener");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	@Override
+	public void stop() {
+		this.running = false;
+		this.thread.interrupt();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public void run() {
+		while (this.running) {
+			try (Connection connection = this.dataSource.getConnection()) {
+				try (Statement statement = connection.createStatement()) {
+					statement.execute("LISTEN " + this.channel);
+				}
+				PGConnection notifications = connection.unwrap(PGConnection.class);
+				while (this.running) {
+					PGNotification[] received = notifications.getNotifications(TIMEOUT_MILLIS);
+					if (received != null && received.length > 0) {
+						this.bus.poll();
+					}
+				}
+			}
+			catch (SQLException ex) {
+				if (this.running) {
+					logger.warn("Lost Postgres notification connection, reconnecting", ex);
+					pause();
+				}
+			}
+		}
+	}
+
+	private void pause() {
+		try {
+			Thread.sleep(TIMEOUT_MILLIS);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.jobs;
+
+/**
+ * A clinic-wide job run by the {@link BatchJobRunner}. The job's table is partitioned
+ * into chunks of consecutive ids and each chunk is processed in its own transaction, so a
+ * job must only touch rows derived from the ids it is given.
+ */
+public interface BatchJob {
+
+	/**
+	 * The unique name of the job, used to start it and to find its checkpoints.
+	 */
+	String getName();
+
+	/**
+	 * The table whose {@code id} column is partitioned into chunks.
+	 */
+	String getTable();
+
+	/**
+	 * Process the rows with ids between {@code firstId} and {@code lastId}, both
+	 * inclusive. Called within a transaction that also records the chunk as done.
+	 * @return the number of items the chunk produced, for progress reporting
+	 */
+	int processChunk(long firstId, long lastId);
+
+}
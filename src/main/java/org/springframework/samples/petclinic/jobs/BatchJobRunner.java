@@ -0,0 +1,218 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.jobs;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.LongStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.samples.petclinic.jobs.JobProgress.Status;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs {@link BatchJob batch jobs} on a bounded worker pool. A run partitions the job's
+ * table into chunks of consecutive ids between the minimum and maximum id at the time the
+ * run was created. Each chunk is processed in its own transaction, which also records the
+ * chunk in {@code job_chunks}. A run that did not complete, because of a failed chunk or
+ * a restart, is resumed the next time the job is started and only its missing chunks are
+ * processed.
+ * <p>
+ * If two instances resume the same run, the checkpoint's primary key lets only one of
+ * them commit each chunk.
+ */
+@Component
+public class BatchJobRunner implements DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(BatchJobRunner.class);
+
+	private static final String SELECT_UNFINISHED_RUNS = "SELECT id, first_id, last_id, chunk_size FROM job_runs"
+			+ " WHERE job_name = ? AND status <> 'COMPLETED' ORDER BY id DESC";
+
+	private static final String INSERT_RUN = "INSERT INTO job_runs (job_name, first_id, last_id, chunk_size, status, started_at)"
+			+ " VALUES (?, ?, ?, ?, 'RUNNING', ?)";
+
+	private static final String UPDATE_RUN = "UPDATE job_runs SET status = ?, finished_at = ? WHERE id = ?";
+
+	private static final String INSERT_CHUNK = "INSERT INTO job_chunks (run_id, first_id, items, completed_at) VALUES (?, ?, ?, ?)";
+
+	private static final RowMapper<Run> RUN_MAPPER = (rs, rowNum) -> new Run(rs.getLong("id"),
+			rs.getObject("first_id", Long.class), rs.getObject("last_id", Long.class), rs.getInt("chunk_size"));
+
+	private final ObjectProvider<BatchJob> jobs;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final int chunkSize;
+
+	private final ExecutorService executor;
+
+	private final Map<String, JobProgress> progress = new ConcurrentHashMap<>();
+
+	public BatchJobRunner(ObjectProvider<BatchJob> jobs, JdbcTemplate jdbcTemplate,
+			PlatformTransactionManager transactionManager, @Value("${petclinic.jobs.chunk-size:1000}") int chunkSize,
+			@Value("${petclinic.jobs.parallelism:4}") int parallelism) {
+		this.jobs = jobs;
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.chunkSize = chunkSize;
+		this.executor = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("batch-job-"));
+	}
+
+	/**
+	 * Start or resume a run of the given job, unless it is already running on this
+	 * instance.
+	 * @return the progress of the run
+	 * @throws IllegalArgumentException if there is no job with that name
+	 */
+	public synchronized JobProgress start(String name) {
+		BatchJob job = this.jobs.orderedStream()
+			.filter(candidate -> candidate.getName().equals(name))
+			.findFirst()
+			.orElseThrow(() -> new IllegalArgumentException("No batch job named " + name));
+		JobProgress current = this.progress.get(name);
+		if (current != null && current.getStatus() == Status.RUNNING) {
+			return current;
+		}
+		Run run = resumeOrCreateRun(job);
+		Set<Long> done = Set.copyOf(this.jdbcTemplate.queryForList("SELECT first_id FROM job_chunks WHERE run_id = ?",
+				Long.class, run.id()));
+		List<Long> chunks = run.chunks();
+		JobProgress started = new JobProgress(name, run.id(), chunks.size(),
+				(int) chunks.stream().filter(done::contains).count());
+		this.progress.put(name, started);
+		if (!started.hasRemainingChunks()) {
+			finish(run, started);
+		}
+		for (long firstId : chunks) {
+			if (!done.contains(firstId)) {
+				this.executor.execute(() -> runChunk(job, run, firstId, started));
+			}
+		}
+		return started;
+	}
+
+	/**
+	 * Return the progress of the latest run of each job on this instance.
+	 */
+	public Map<String, JobProgress> getProgress() {
+		return new TreeMap<>(this.progress);
+	}
+
+	private Run resumeOrCreateRun(BatchJob job) {
+		List<Run> unfinished = this.jdbcTemplate.query(SELECT_UNFINISHED_RUNS, RUN_MAPPER, job.getName());
+		if (!unfinished.isEmpty()) {
+			Run run = unfinished.get(0);
+			logger.info("Resuming run " + run.id() + " of batch job " + job.getName());
+			this.jdbcTemplate.update(UPDATE_RUN, Status.RUNNING.name(), null, run.id());
+			return run;
+		}
+		Map<String, Object> range = this.jdbcTemplate
+			.queryForMap("SELECT MIN(id) AS first_id, MAX(id) AS last_id FROM " + job.getTable());
+		Long firstId = toLong(range.get("first_id"));
+		Long lastId = toLong(range.get("last_id"));
+		KeyHolder keyHolder = new GeneratedKeyHolder();
+		this.jdbcTemplate.update(connection -> {
+			PreparedStatement ps = connection.prepareStatement(INSERT_RUN, new String[] { "id" });
+			ps.setString(1, job.getName());
+			ps.setObject(2, firstId);
+			ps.setObject(3, lastId);
+			ps.setInt(4, this.chunkSize);
+			ps.setTimestamp(5, Timestamp.from(Instant.now()));
+			return ps;
+		}, keyHolder);
+		return new Run(keyHolder.getKey().longValue(), firstId, lastId, this.chunkSize);
+	}
+
+	private void runChunk(BatchJob job, Run run, long firstId, JobProgress progress) {
+		long lastId = Math.min(run.lastId(), firstId + run.chunkSize() - 1);
+		boolean last;
+		try {
+			Integer items = this.transactionTemplate.execute(status -> {
+				int processed = job.processChunk(firstId, lastId);
+				this.jdbcTemplate.update(INSERT_CHUNK, run.id(), firstId, processed, Timestamp.from(Instant.now()));
+				return processed;
+			});
+			last = progress.chunkCompleted(items);
+		}
+		catch (DuplicateKeyException ex) {
+			// committed by another instance resuming the same run
+			last = progress.chunkCompleted(0);
+		}
+		catch (RuntimeException ex) {
+			logger.warn("Chunk " + firstId + "-" + lastId + " of batch job " + job.getName() + " failed", ex);
+			last = progress.chunkFailed();
+		}
+		if (last) {
+			finish(run, progress);
+		}
+	}
+
+	private void finish(Run run, JobProgress progress) {
+		Status status = (progress.getFailedChunks() > 0) ? Status.FAILED : Status.COMPLETED;
+		this.jdbcTemplate.update(UPDATE_RUN, status.name(), Timestamp.from(Instant.now()), run.id());
+		progress.finish();
+		logger.info("Batch job " + progress.getJob() + " " + status.name().toLowerCase() + " with "
+				+ progress.getItems() + " items");
+	}
+
+	private static Long toLong(Object value) {
+		return (value != null) ? ((Number) value).longValue() : null;
+	}
+
+	@Override
+	public void destroy() {
+		// unfinished chunks are picked up when the run is resumed
+		this.executor.shutdownNow();
+	}
+
+	private record Run(long id, Long firstId, Long lastId, int chunkSize) {
+
+		List<Long> chunks() {
+			if (this.firstId == null) {
+				return List.of();
+			}
+			return LongStream.iterate(this.firstId, id -> id <= this.lastId, id -> id + this.chunkSize)
+				.boxed()
+				.toList();
+		}
+
+	}
+
+}
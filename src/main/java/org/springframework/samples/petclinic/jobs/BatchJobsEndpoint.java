@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.jobs;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint reporting the progress of batch jobs at {@code /actuator/jobs}. A
+ * {@code POST} to {@code /actuator/jobs/{name}} starts or resumes a job.
+ */
+@Component
+@Endpoint(id = "jobs")
+class BatchJobsEndpoint {
+
+	private final BatchJobRunner runner;
+
+	BatchJobsEndpoint(BatchJobRunner runner) {
+		this.runner = runner;
+	}
+
+	@ReadOperation
+	public Map<String, JobProgress> jobs() {
+		return this.runner.getProgress();
+	}
+
+	@ReadOperation
+	public JobProgress job(@Selector String name) {
+		return this.runner.getProgress().get(name);
+	}
+
+	@WriteOperation
+	public JobProgress start(@Selector String name) {
+		try {
+			return this.runner.start(name);
+		}
+		catch (IllegalArgumentException ex) {
+			throw new InvalidEndpointRequestException(ex.getMessage(), "Unknown job");
+		}
+	}
+
+}
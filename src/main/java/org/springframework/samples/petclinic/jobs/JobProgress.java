@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.jobs;
+
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a job run on this instance, as reported by the {@code jobs} actuator
+ * endpoint.
+ */
+public class JobProgress {
+
+	/**
+	 * Status of a run, also stored in {@code job_runs}.
+	 */
+	public enum Status {
+
+		RUNNING, COMPLETED, FAILED
+
+	}
+
+	private final String job;
+
+	private final long runId;
+
+	private final int totalChunks;
+
+	private final Instant startedAt = Instant.now();
+
+	private final AtomicInteger completedChunks = new AtomicInteger();
+
+	private final AtomicInteger failedChunks = new AtomicInteger();
+
+	private final AtomicLong items = new AtomicLong();
+
+	private final AtomicInteger remainingChunks;
+
+	private final CountDownLatch finished = new CountDownLatch(1);
+
+	private volatile Instant finishedAt;
+
+	JobProgress(String job, long runId, int totalChunks, int resumedChunks) {
+		this.job = job;
+		this.runId = runId;
+		this.totalChunks = totalChunks;
+		this.completedChunks.set(resumedChunks);
+		this.remainingChunks = new AtomicInteger(totalChunks - resumedChunks);
+	}
+
+	public String getJob() {
+		return this.job;
+	}
+
+	public long getRunId() {
+		return this.runId;
+	}
+
+	public Status getStatus() {
+		if (this.finishedAt == null) {
+			return Status.RUNNING;
+		}
+		return (this.failedChunks.get() > 0) ? Status.FAILED : Status.COMPLETED;
+	}
+
+	public int getTotalChunks() {
+		return this.totalChunks;
+	}
+
+	public int getCompletedChunks() {
+		return this.completedChunks.get();
+	}
+
+	public int getFailedChunks() {
+		return this.failedChunks.get();
+	}
+
+	public long getItems() {
+		return this.items.get();
+	}
+
+	public Instant getStartedAt() {
+		return this.startedAt;
+	}
+
+	public Instant getFinishedAt() {
+		return this.finishedAt;
+	}
+
+	/**
+	 * Wait for the run to finish.
+	 * @return {@code true} if it finished within the timeout
+	 */
+	public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.finished.await(timeout, unit);
+	}
+
+	boolean hasRemainingChunks() {
+		return this.remainingChunks.get() > 0;
+	}
+
+	/**
+	 * Record a committed chunk.
+	 * @return {@code true} if it was the last chunk of the run
+	 */
+	boolean chunkCompleted(int chunkItems) {
+		this.items.addAndGet(chunkItems);
+		this.completedChunks.incrementAndGet();
+		return this.remainingChunks.decrementAndGet() == 0;
+	}
+
+	/**
+	 * Record a chunk that was rolled back.
+	 * @return {@code true} if it was the last chunk of the run
+	 */
+	boolean chunkFailed() {
+		this.failedChunks.incrementAndGet();
+		return this.remainingChunks.decrementAndGet() == 0;
+	}
+
+	void finish() {
+		this.finishedAt = Instant.now();
+		this.finished.countDown();
+	}
+
+}
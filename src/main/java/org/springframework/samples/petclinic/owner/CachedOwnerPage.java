@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.ModelAndView;
+
+/**
+ * Renders the owner page from the {@link OwnerDetailsCache} instead of loading the owner
+ * aggregate on every view. Only the read-only page is served this way: the pet and visit
+ * forms save the owner they load, so they keep loading managed entities. Owners whose
+ * snapshot left out older visits are loaded as well, so that the page lists every visit.
+ * <p>
+ * The page also gets the number of archived visits as {@code archivedVisitCount}, so it
+ * can offer to load them from {@code /owners/{ownerId}/visits/archive}.
+ */
+@Aspect
+@Component
+class CachedOwnerPage {
+
+	private final OwnerDetailsCache owners;
+
+	private final VisitArchive archive;
+
+	CachedOwnerPage(OwnerDetailsCache owners, VisitArchive archive) {
+		this.owners = owners;
+		this.archive = archive;
+	}
+
+	// the owner model attribute is also resolved before the page handler runs
+	@Around("execution(* org.springframework.samples.petclinic.owner.OwnerController.findOwner(..)) && args(ownerId)")
+	Object findOwner(ProceedingJoinPoint joinPoint, Integer ownerId) throws Throwable {
+		if (ownerId != null && isOwnerPage()) {
+			OwnerDetails details = this.owners.get(ownerId);
+			if (details != null && !details.hasOlderVisits()) {
+				return details.toOwner();
+			}
+		}
+		return joinPoint.proceed();
+	}
+
+	@Around("execution(* org.springframework.samples.petclinic.owner.OwnerController.showOwner(..)) && args(ownerId)")
+	Object showOwner(ProceedingJoinPoint joinPoint, int ownerId) throws Throwable {
+		OwnerDetails details = this.owners.get(ownerId);
+		ModelAndView mav;
+		if (details == null || details.hasOlderVisits()) {
+			Object page = joinPoint.proceed();
+			if (!(page instanceof ModelAndView)) {
+				return page;
+			}
+			mav = (ModelAndView) page;
+		}
+		else {
+			mav = new ModelAndView("owners/ownerDetails");
+			mav.addObject(details.toOwner());
+		}
+		mav.addObject("archivedVisitCount", this.archive.countForOwner(ownerId));
+		return mav;
+	}
+
+	private static boolean isOwnerPage() {
+		RequestAttributes request = RequestContextHolder.getRequestAttributes();
+		Object handler = (request != null)
+				? request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)
+				: null;
+		return handler instanceof HandlerMethod method && method.getMethod().getName().equals("showOwner");
+	}
+
+}
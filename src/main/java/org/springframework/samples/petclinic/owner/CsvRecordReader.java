@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 records from a CSV stream. {@link #next()} only joins the physical lines
+ * of a record, tracking whether a quoted field is still open, so that splitting a record
+ * into its fields with {@link #split(String)} can be left to another thread.
+ */
+class CsvRecordReader {
+
+	private final BufferedReader reader;
+
+	private int lineNumber;
+
+	private int recordLine;
+
+	CsvRecordReader(Reader reader) {
+		this.reader = new BufferedReader(reader);
+	}
+
+	/**
+	 * Return the next record, without its line terminator, or {@code null} at the end of
+	 * the stream.
+	 * @throws IllegalArgumentException if the stream ends in a quoted field
+	 */
+	String next() throws IOException {
+		String line = this.reader.readLine();
+		if (line == null) {
+			return null;
+		}
+		this.recordLine = ++this.lineNumber;
+		if (!isOpen(line, false)) {
+			return line;
+		}
+		StringBuilder record = new StringBuilder(line);
+		boolean open = true;
+		while (open) {
+			line = this.reader.readLine();
+			if (line == null) {
+				throw new IllegalArgumentException("Unterminated quoted field in record at line " + this.recordLine);
+			}
+			this.lineNumber++;
+			record.append('\n').append(line);
+			open = isOpen(line, true);
+		}
+		return record.toString();
+	}
+
+	/**
+	 * Return the line number on which the last record returned by {@link #next()}
+	 * started.
+	 */
+	int getRecordLine() {
+		return this.recordLine;
+	}
+
+	private static boolean isOpen(String line, boolean open) {
+		for (int i = 0; i < line.length(); i++) {
+			if (line.charAt(i) == '"') {
+				open = !open;
+			}
+		}
+		return open;
+	}
+
+	/**
+	 * Split a record into its fields, unquoting quoted ones.
+	 */
+	static List<String> split(String record) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < record.length(); i++) {
+			char c = record.charAt(i);
+			if (quoted) {
+				if (c != '"') {
+					field.append(c);
+				}
+				else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+					field.append('"');
+					i++;
+				}
+				else {
+					quoted = false;
+				}
+			}
+			else if (c == '"') {
+				quoted = true;
+			}
+			else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			}
+			else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	/**
+	 * Return the first field of a record, without splitting the rest of it.
+	 */
+	static String firstField(String record) {
+		if (!record.startsWith("\"")) {
+			int comma = record.indexOf(',');
+			return (comma >= 0) ? record.substring(0, comma) : record;
+		}
+		return split(record).get(0);
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.owner.DuplicateOwners.Suggestion;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Ranked suggestions of owners to merge, for example
+ * {@code /owners/duplicates?minScore=0.9&limit=20}.
+ */
+@RestController
+class DuplicateOwnerController {
+
+	private static final int MAX_LIMIT = 500;
+
+	private final DuplicateOwners duplicates;
+
+	DuplicateOwnerController(DuplicateOwners duplicates) {
+		this.duplicates = duplicates;
+	}
+
+	@GetMapping("/owners/duplicates")
+	public List<Suggestion> findDuplicates(@RequestParam(defaultValue = "0") double minScore,
+			@RequestParam(defaultValue = "50") int limit) {
+		if (limit < 1 || limit > MAX_LIMIT) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_LIMIT);
+		}
+		return this.duplicates.findDuplicates(minScore, limit);
+	}
+
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Finds owners that were probably registered twice. Owners are grouped into blocks that
+ * share a key, and only owners within a block are compared:
+ * <ul>
+ * <li>the Soundex code of the last name with the last four digits of the telephone</li>
+ * <li>the Soundex codes of the last and first name, for a changed telephone</li>
+ * <li>the full telephone number, for a misspelled last name</li>
+ * </ul>
+ * Blocks with more than {@code max-block-size} owners are too common to tell duplicates
+ * apart and are skipped. Candidate pairs are compared in parallel on a fork/join pool and
+ * those scoring above the threshold are kept as merge suggestions.
+ * <p>
+ * The blocks and suggestions are kept in memory. The first refresh loads every owner;
+ * later ones only re-block and compare the owners whose change was announced since.
+ */
+@Component
+public class DuplicateOwners implements DisposableBean {
+
+	private static final String SELECT_OWNERS = "SELECT id, first_name, last_name, address, city, telephone FROM owners";
+
+	private static final int LOAD_CHUNK_SIZE = 1000;
+
+	private static final int PAIRS_PER_TASK = 256;
+
+	private final NamedParameterJdbcTemplate jdbcTemplate;
+
+	private final double threshold;
+
+	private final int maxBlockSize;
+
+	private final ForkJoinPool pool;
+
+	private final Map<Integer, Candidate> owners = new HashMap<>();
+
+	private final Map<String, Set<Integer>> blocks = new HashMap<>();
+
+	private final Map<Long, Suggestion> suggestions = new HashMap<>();
+
+	private final Set<Integer> changed = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean reload = true;
+
+	DuplicateOwners(NamedParameterJdbcTemplate jdbcTemplate,
+			@Value("${petclinic.owners.duplicates.threshold:0.8}") double threshold,
+			@Value("${petclinic.owners.duplicates.max-block-size:200}") int maxBlockSize,
+			@Value("${petclinic.owners.duplicates.parallelism:0}") int parallelism) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.threshold = threshold;
+		this.maxBlockSize = maxBlockSize;
+		this.pool = new ForkJoinPool((parallelism > 0) ? parallelism : Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Return the merge suggestions scoring at least {@code minScore}, best first. Each
+	 * suggests merging the later registration into the earlier one.
+	 */
+	public synchronized List<Suggestion> findDuplicates(double minScore, int limit) {
+		refresh();
+		return this.suggestions.values()
+			.stream()
+			.filter(suggestion -> suggestion.score() >= minScore)
+			.sorted(Comparator.comparingDouble(Suggestion::score)
+				.reversed()
+				.thenComparing(suggestion -> suggestion.owner().id()))
+			.limit(limit)
+			.toList();
+	}
+
+	@EventListener
+	void onEntityChanged(EntityChangedEvent event) {
+		if (EntityChangedEvent.OWNER.equals(event.entity())) {
+			if (event.id() != null) {
+				this.changed.add(event.id());
+			}
+			else {
+				this.reload = true;
+			}
+		}
+	}
+
+	/**
+	 * Re-block and compare the owners that changed since the last refresh, or every owner
+	 * the first time.
+	 */
+	@Scheduled(fixedDelayString = "${petclinic.owners.duplicates.refresh-delay:60000}")
+	synchronized void refresh() {
+		Set<Integer> ids;
+		Map<Integer, Candidate> loaded = new HashMap<>();
+		if (this.reload) {
+			this.reload = false;
+			this.changed.clear();
+			this.owners.values().forEach(this::unblock);
+			this.suggestions.clear();
+			this.jdbcTemplate.getJdbcTemplate().query(SELECT_OWNERS, rs -> {
+				Candidate candidate = Candidate.of(rs);
+				loaded.put(candidate.id(), candidate);
+			});
+			ids = loaded.keySet();
+		}
+		else {
+			ids = new HashSet<>(this.changed);
+			if (ids.isEmpty()) {
+				return;
+			}
+			this.changed.removeAll(ids);
+			List<Integer> idList = List.copyOf(ids);
+			for (int from = 0; from < idList.size(); from += LOAD_CHUNK_SIZE) {
+				List<Integer> chunk = idList.subList(from, Math.min(idList.size(), from + LOAD_CHUNK_SIZE));
+				this.jdbcTemplate.query(SELECT_OWNERS + " WHERE id IN (:ids)", Map.of("ids", chunk), rs -> {
+					Candidate candidate = Candidate.of(rs);
+					loaded.put(candidate.id(), candidate);
+				});
+			}
+			this.suggestions.keySet().removeIf(pair -> ids.contains(low(pair)) || ids.contains(high(pair)));
+		}
+		for (Integer id : ids) {
+			Candidate previous = this.owners.remove(id);
+			if (previous != null) {
+				unblock(previous);
+			}
+		}
+		loaded.values().forEach(candidate -> {
+			this.owners.put(candidate.id(), candidate);
+			candidate.blockingKeys()
+				.forEach(key -> this.blocks.computeIfAbsent(key, k -> new HashSet<>()).add(candidate.id()));
+		});
+		for (Suggestion suggestion : this.pool.invoke(new Comparison(candidatePairs(loaded.values())))) {
+			this.suggestions.put(pair(suggestion.owner().id(), suggestion.duplicate().id()), suggestion);
+		}
+	}
+
+	private List<Candidate[]> candidatePairs(Collection<Candidate> candidates) {
+		Set<Long> seen = new HashSet<>();
+		List<Candidate[]> pairs = new ArrayList<>();
+		for (Candidate candidate : candidates) {
+			for (String key : candidate.blockingKeys()) {
+				Set<Integer> block = this.blocks.get(key);
+				if (block.size() > this.maxBlockSize) {
+					continue;
+				}
+				for (Integer other : block) {
+					if (!other.equals(candidate.id()) && seen.add(pair(candidate.id(), other))) {
+						pairs.add(new Candidate[] { candidate, this.owners.get(other) });
+					}
+				}
+			}
+		}
+		return pairs;
+	}
+
+	private void unblock(Candidate candidate) {
+		for (String key : candidate.blockingKeys()) {
+			Set<Integer> block = this.blocks.get(key);
+			if (block != null && block.remove(candidate.id()) && block.isEmpty()) {
+				this.blocks.remove(key);
+			}
+		}
+	}
+
+	private static long pair(int first, int second) {
+		return ((long) Math.min(first, second) << 32) | Math.max(first, second);
+	}
+
+	private static int low(long pair) {
+		return (int) (pair >>> 32);
+	}
+
+	private static int high(long pair) {
+		return (int) pair;
+	}
+
+	@Override
+	public void destroy() {
+		this.pool.shutdownNow();
+	}
+
+	/**
+	 * The fields of an owner that are compared.
+	 */
+	public record Candidate(Integer id, String firstName, String lastName, String address, String city,
+			String telephone) {
+
+		static Candidate of(ResultSet rs) throws SQLException {
+			return new Candidate(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5),
+					rs.getString(6));
+		}
+
+		Set<String> blockingKeys() {
+			Set<String> keys = new LinkedHashSet<>();
+			String lastName = OwnerSimilarity.soundex(this.lastName);
+			String digits = OwnerSimilarity.digits(this.telephone);
+			if (!lastName.isEmpty() && !digits.isEmpty()) {
+				keys.add("pt:" + lastName + OwnerSimilarity.telephoneSuffix(this.telephone, 4));
+			}
+			String firstName = OwnerSimilarity.soundex(this.firstName);
+			if (!lastName.isEmpty() && !firstName.isEmpty()) {
+				keys.add("pn:" + lastName + firstName);
+			}
+			if (digits.length() >= 7) {
+				keys.add("t:" + digits);
+			}
+			return keys;
+		}
+
+		/**
+		 * Score how likely it is that both candidates are the same owner, from 0 to 1.
+		 */
+		double score(Candidate other) {
+			String digits = OwnerSimilarity.digits(this.telephone);
+			double telephone = digits.isEmpty() ? 0
+					: digits.equals(OwnerSimilarity.digits(other.telephone)) ? 1
+							: OwnerSimilarity.telephoneSuffix(this.telephone, 4)
+								.equals(OwnerSimilarity.telephoneSuffix(other.telephone, 4)) ? 0.6 : 0;
+			return 0.3 * OwnerSimilarity.jaroWinkler(this.lastName, other.lastName)
+					+ 0.2 * OwnerSimilarity.jaroWinkler(this.firstName, other.firstName) + 0.25 * telephone
+					+ 0.15 * OwnerSimilarity.jaroWinkler(this.address, other.address)
+					+ 0.1 * OwnerSimilarity.jaroWinkler(this.city, other.city);
+		}
+
+	}
+
+	/**
+	 * A suggestion to merge {@code duplicate} into {@code owner}, the earlier
+	 * registration.
+	 */
+	public record Suggestion(Candidate owner, Candidate duplicate, double score) {
+	}
+
+	/**
+	 * Compares a range of candidate pairs, splitting it until it is small enough.
+	 */
+	private final class Comparison extends RecursiveTask<List<Suggestion>> {
+
+		private final List<Candidate[]> pairs;
+
+		private Comparison(List<Candidate[]> pairs) {
+			this.pairs = pairs;
+		}
+
+		@Override
+		protected List<Suggestion> compute() {
+			if (this.pairs.size() > PAIRS_PER_TASK) {
+				int middle = this.pairs.size() / 2;
+				Comparison right = new Comparison(this.pairs.subList(middle, this.pairs.size()));
+				right.fork();
+				List<Suggestion> suggestions = new ArrayList<>(new Comparison(this.pairs.subList(0, middle)).compute());
+				suggestions.addAll(right.join());
+				return suggestions;
+			}
+			List<Suggestion> suggestions = new ArrayList<>();
+			for (Candidate[] pair : this.pairs) {
+				double score = pair[0].score(pair[1]);
+				if (score >= DuplicateOwners.this.threshold) {
+					boolean ordered = pair[0].id() < pair[1].id();
+					suggestions.add(new Suggestion(ordered ? pair[0] : pair[1], ordered ? pair[1] : pair[0], score));
+				}
+			}
+			return suggestions;
+		}
+
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.Period;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangeBus;
+
+/**
+ * {@link VisitPartitionManager} for MySQL, where {@code visits} is partitioned by
+ * {@code RANGE COLUMNS(visit_date)}. New months are split off the {@code pmax} partition;
+ * the first split also creates {@code phistory} for the rows older than the managed
+ * months. MySQL commits DDL implicitly, so expiring a partition copies its rows with
+ * {@code INSERT IGNORE} and can be repeated safely if the drop fails.
+ */
+class MySqlVisitPartitionManager extends VisitPartitionManager {
+
+	private static final String HISTORY = "phistory";
+
+	private static final String SELECT_PARTITIONS = "SELECT PARTITION_NAME FROM information_schema.PARTITIONS"
+			+ " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'visits' AND PARTITION_NAME IS NOT NULL";
+
+	MySqlVisitPartitionManager(JdbcTemplate jdbcTemplate, EntityChangeBus changes, int premake, Period retention) {
+		super(jdbcTemplate, changes, premake, retention);
+	}
+
+	@Override
+	protected boolean isPartitioned() {
+		return !partitionNames().isEmpty();
+	}
+
+	@Override
+	protected SortedSet<YearMonth> getPartitions() {
+		SortedSet<YearMonth> months = new TreeSet<>();
+		partitionNames().stream()
+			.map(VisitPartitionManager::partitionMonth)
+			.filter(Objects::nonNull)
+			.forEach(months::add);
+		return months;
+	}
+
+	@Override
+	protected void createPartition(YearMonth month) {
+		SortedSet<YearMonth> existing = getPartitions();
+		if (!existing.isEmpty() && month.isBefore(existing.last())) {
+			// range partitions can only be split off the top
+			this.logger.warn("Not creating visits partition for " + month + " below " + existing.last());
+			return;
+		}
+		StringBuilder partitions = new StringBuilder();
+		if (!partitionNames().contains(HISTORY)) {
+			partitions.append("PARTITION ")
+				.append(HISTORY)
+				.append(" VALUES LESS THAN ('")
+				.append(month.atDay(1))
+				.append("'), ");
+		}
+		partitions.append("PARTITION ")
+			.append(partitionName(month))
+			.append(" VALUES LESS THAN ('")
+			.append(month.plusMonths(1).atDay(1))
+			.append("'), PARTITION pmax VALUES LESS THAN (MAXVALUE)");
+		this.jdbcTemplate.execute("ALTER TABLE visits REORGANIZE PARTITION pmax INTO (" + partitions + ")");
+	}
+
+	@Override
+	protected int expirePartition(YearMonth month) {
+		String partition = partitionName(month);
+		int copied = this.jdbcTemplate.update(
+				"INSERT IGNORE INTO visits_archive (id, pet_id, visit_date, description, archived_at)"
+						+ " SELECT id, pet_id, visit_date, description, ? FROM visits PARTITION (" + partition + ")",
+				Timestamp.from(Instant.now()));
+		this.jdbcTemplate.execute("ALTER TABLE visits DROP PARTITION " + partition);
+		return copied;
+	}
+
+	private List<String> partitionNames() {
+		return this.jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class);
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * JSON owner API with sparse fieldsets, for example
+ * {@code /api/owners?lastName=Davis&fields=lastName,city,pets.name&include=pets}. Only
+ * the columns behind the requested fields are queried and the response is streamed as it
+ * is read.
+ */
+@Controller
+class OwnerApiController {
+
+	private static final int MAX_PAGE_SIZE = 100;
+
+	private final OwnerJsonWriter writer;
+
+	OwnerApiController(OwnerJsonWriter writer) {
+		this.writer = writer;
+	}
+
+	@GetMapping("/api/owners")
+	public void listOwners(@RequestParam(defaultValue = "") String lastName, @RequestParam(defaultValue = "1") int page,
+			@RequestParam(defaultValue = "20") int size, @RequestParam(required = false) String fields,
+			@RequestParam(required = false) String include, HttpServletResponse response) throws IOException {
+		if (page < 1 || size < 1 || size > MAX_PAGE_SIZE) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"page must be positive and size between 1 and " + MAX_PAGE_SIZE);
+		}
+		OwnerFieldSelection selection = select(fields, include);
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		this.writer.writePage(lastName, page, size, selection, response.getOutputStream());
+	}
+
+	@GetMapping("/api/owners/{ownerId}")
+	public void showOwner(@PathVariable("ownerId") int ownerId, @RequestParam(required = false) String fields,
+			@RequestParam(required = false) String include, HttpServletResponse response) throws IOException {
+		OwnerFieldSelection selection = select(fields, include);
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		if (!this.writer.writeOwner(ownerId, selection, response.getOutputStream())) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Owner " + ownerId + " not found");
+		}
+	}
+
+	private static OwnerFieldSelection select(String fields, String include) {
+		try {
+			return OwnerFieldSelection.parse(fields, include);
+		}
+		catch (IllegalArgumentException ex) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.owner.OwnerDetailsLoader.OwnedPet;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * JSON endpoints that resolve many owners or pets in one request, for integrations that
+ * would otherwise fetch them one by one. Results come back in request order, and ids that
+ * do not exist are listed under {@code missing}.
+ */
+@RestController
+class OwnerBatchController {
+
+	private final OwnerDetailsCache owners;
+
+	private final OwnerDetailsLoader loader;
+
+	private final int maxIds;
+
+	OwnerBatchController(OwnerDetailsCache owners, OwnerDetailsLoader loader,
+			@Value("${petclinic.api.batch.max-ids:1000}") int maxIds) {
+		this.owners = owners;
+		this.loader = loader;
+		this.maxIds = maxIds;
+	}
+
+	@GetMapping("/api/owners/batch")
+	public BatchResult<OwnerDetails> findOwners(@RequestParam("ids") List<Integer> ids) {
+		checkSize(ids);
+		return BatchResult.of(ids, this.owners.getAll(ids));
+	}
+
+	@GetMapping("/api/pets/batch")
+	public BatchResult<OwnedPet> findPets(@RequestParam("ids") List<Integer> ids) {
+		checkSize(ids);
+		return BatchResult.of(ids, this.loader.loadPets(ids));
+	}
+
+	private void checkSize(List<Integer> ids) {
+		if (ids.size() > this.maxIds) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"At most " + this.maxIds + " ids can be requested at once");
+		}
+	}
+
+	/**
+	 * The entities found, in the order their ids were requested, and the ids that were
+	 * not found.
+	 */
+	record BatchResult<T>(List<T> items, List<Integer> missing) {
+
+		static <T> BatchResult<T> of(List<Integer> ids, Map<Integer, T> found) {
+			List<T> items = new ArrayList<>();
+			List<Integer> missing = new ArrayList<>();
+			for (Integer id : ids.stream().distinct().toList()) {
+				T item = found.get(id);
+				if (item != null) {
+					items.add(item);
+				}
+				else {
+					missing.add(id);
+				}
+			}
+			return new BatchResult<>(items, missing);
+		}
+
+	}
+
+}
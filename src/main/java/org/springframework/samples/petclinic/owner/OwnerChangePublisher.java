@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.lang.reflect.UndeclaredThrowableException;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.samples.petclinic.changes.EntityChangeBus;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Announces a change to the owner aggregate whenever an {@link Owner}, together with its
+ * pets and visits, is saved through the {@link OwnerRepository}. The save and the
+ * announcement share one transaction, so a change is only announced if it commits.
+ */
+@Aspect
+@Component
+class OwnerChangePublisher {
+
+	private final EntityChangeBus changes;
+
+	private final TransactionTemplate transactionTemplate;
+
+	OwnerChangePublisher(EntityChangeBus changes, TransactionTemplate transactionTemplate) {
+		this.changes = changes;
+		this.transactionTemplate = transactionTemplate;
+	}
+
+	@Around("execution(* org.springframework.samples.petclinic.owner.OwnerRepository.save(..)) && args(owner)")
+	Object saveOwner(ProceedingJoinPoint joinPoint, Owner owner) {
+		// the repository's own transaction joins this one instead of committing early
+		return this.transactionTemplate.execute(status -> {
+			Object saved = proceed(joinPoint);
+			this.changes.publish(EntityChangedEvent.owner(owner.getId()));
+			return saved;
+		});
+	}
+
+	private static Object proceed(ProceedingJoinPoint joinPoint) {
+		try {
+			return joinPoint.proceed();
+		}
+		catch (RuntimeException | Error ex) {
+			throw ex;
+		}
+		catch (Throwable ex) {
+			throw new UndeclaredThrowableException(ex);
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.info.BuildProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.CollectionUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Answers repeated GETs of the owner page and of the owner, pet and visit forms with
+ * {@code 304 Not Modified} while the {@link OwnerVersions version} of the owner is
+ * unchanged, before the owner is loaded or the page rendered.
+ */
+@Configuration(proxyBeanMethods = false)
+class OwnerConditionalGetConfiguration implements WebMvcConfigurer {
+
+	private final ObjectProvider<OwnerVersions> versions;
+
+	// pages change with a new build, but not with a restart of the same one
+	private final String build;
+
+	OwnerConditionalGetConfiguration(ObjectProvider<OwnerVersions> versions, ObjectProvider<BuildProperties> build) {
+		this.versions = versions;
+		BuildProperties properties = build.getIfAvailable();
+		this.build = (properties != null && properties.getTime() != null)
+				? "." + Long.toString(properties.getTime().toEpochMilli(), 36) : "";
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		this.versions.ifAvailable(versions -> {
+			registry.addInterceptor(new OwnerConditionalGetInterceptor(versions, this.build, false))
+				.addPathPatterns("/owners/{ownerId}", "/owners/{ownerId}/edit", "/owners/{ownerId}/pets/new",
+						"/owners/{ownerId}/pets/{petId}/edit");
+			// the visit form defaults the date of the new visit to today
+			registry.addInterceptor(new OwnerConditionalGetInterceptor(versions, this.build, true))
+				.addPathPatterns("/owners/{ownerId}/pets/{petId}/visits/new");
+		});
+	}
+
+	/**
+	 * Compares the {@code If-None-Match} header with a weak ETag made of the
+	 * {@link OwnerVersions#getEpoch() epoch} of the versions and the build time, the
+	 * owner version and the locale, and of the current date if {@code daily}.
+	 */
+	static class OwnerConditionalGetInterceptor implements HandlerInterceptor {
+
+		private static final String CACHE_CONTROL = CacheControl.noCache().cachePrivate().getHeaderValue();
+
+		private final OwnerVersions versions;
+
+		private final String build;
+
+		private final boolean daily;
+
+		OwnerConditionalGetInterceptor(OwnerVersions versions, String build, boolean daily) {
+			this.versions = versions;
+			this.build = build;
+			this.daily = daily;
+		}
+
+		@Override
+		public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+			Integer ownerId = ownerId(request);
+			if (ownerId == null || !"GET".equals(request.getMethod())
+					|| !CollectionUtils.isEmpty(RequestContextUtils.getInputFlashMap(request))) {
+				// a flash message is shown once, so that page must not be cached
+				return true;
+			}
+			StringBuilder etag = new StringBuilder("W/\"").append(this.versions.getEpoch())
+				.append(this.build)
+				.append('-')
+				.append(this.versions.getVersion(ownerId))
+				.append('-')
+				.append(RequestContextUtils.getLocale(request).toLanguageTag());
+			if (this.daily) {
+				etag.append('-').append(LocalDate.now());
+			}
+			etag.append('"');
+			response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+			return !new ServletWebRequest(request, response).checkNotModified(etag.toString());
+		}
+
+		@SuppressWarnings("unchecked")
+		private static Integer ownerId(HttpServletRequest request) {
+			Map<String, String> variables = (Map<String, String>) request
+				.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+			String ownerId = (variables != null) ? variables.get("ownerId") : null;
+			if (ownerId == null || ownerId.isEmpty() || !ownerId.chars().allMatch(Character::isDigit)
+					|| ownerId.length() > 9) {
+				return null;
+			}
+			return Integer.valueOf(ownerId);
+		}
+
+	}
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable snapshot of an owner aggregate: the owner, their pets with the pet type name
+ * and each pet's most recent visits, with the number of older visits left out. Unlike
+ * {@link Owner} it is safe to share between requests and threads.
+ */
+public record OwnerDetails(Integer id, String firstName, String lastName, String address, String city, String telephone,
+		List<PetDetails> pets) {
+
+	static OwnerDetails of(Owner owner, int recentVisits) {
+		return new OwnerDetails(owner.getId(), owner.getFirstName(), owner.getLastName(), owner.getAddress(),
+				owner.getCity(), owner.getTelephone(),
+				owner.getPets().stream().map(pet -> PetDetails.of(pet, recentVisits)).toList());
+	}
+
+	/**
+	 * Return whether the snapshot left out older visits of any pet.
+	 */
+	boolean hasOlderVisits() {
+		return this.pets.stream().anyMatch(pet -> pet.olderVisits() > 0);
+	}
+
+	/**
+	 * Return a new, unmanaged {@link Owner} with the content of this snapshot, for views
+	 * that render an owner. It only holds the recent visits and must never be saved.
+	 */
+	Owner toOwner() {
+		Owner owner = new Owner();
+		owner.setId(this.id);
+		owner.setFirstName(this.firstName);
+		owner.setLastName(this.lastName);
+		owner.setAddress(this.address);
+		owner.setCity(this.city);
+		owner.setTelephone(this.telephone);
+		for (PetDetails details : this.pets) {
+			owner.getPets().add(details.toPet());
+		}
+		return owner;
+	}
+
+	public record PetDetails(Integer id, String name, LocalDate birthDate, String type, List<VisitDetails> visits,
+			int olderVisits) {
+
+		static PetDetails of(Pet pet, int recentVisits) {
+			Collection<Visit> visits = pet.getVisits();
+			int olderVisits = Math.max(0, visits.size() - recentVisits);
+			return new PetDetails(pet.getId(), pet.getName(), pet.getBirthDate(),
+					(pet.getType() != null) ? pet.getType().getName() : null,
+					visits.stream().skip(olderVisits).map(VisitDetails::of).toList(), olderVisits);
+		}
+
+		Pet toPet() {
+			Pet pet = new Pet();
+			pet.setId(this.id);
+			pet.setName(this.name);
+			pet.setBirthDate(this.birthDate);
+			if (this.type != null) {
+				PetType petType = new PetType();
+				petType.setName(this.type);
+				pet.setType(petType);
+			}
+			for (VisitDetails details : this.visits) {
+				pet.addVisit(details.toVisit());
+			}
+			return pet;
+		}
+
+	}
+
+	public record VisitDetails(Integer id, LocalDate date, String description) {
+
+		static VisitDetails of(Visit visit) {
+			return new VisitDetails(visit.getId(), visit.getDate(), visit.getDescription());
+		}
+
+		Visit toVisit() {
+			Visit visit = new Visit();
+			visit.setId(this.id);
+			visit.setDate(this.date);
+			visit.setDescription(this.description);
+			return visit;
+		}
+
+	}
+
+}
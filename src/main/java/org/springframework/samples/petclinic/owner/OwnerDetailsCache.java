@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * Bounded read-through cache of {@link OwnerDetails} snapshots keyed by owner id.
+ * <p>
+ * Concurrent misses for the same owner share a single load. Every owner id maps to a
+ * version stripe that is bumped whenever that owner's aggregate changes on any instance;
+ * a snapshot whose load started before the bump is discarded on the next read, so a load
+ * racing with a write can never keep stale data in the cache. Snapshots also expire after
+ * {@code petclinic.owners.cache.expire-after-write}, which bounds how long a change
+ * notification lost by the bus could leave one stale.
+ */
+@Component
+public class OwnerDetailsCache {
+
+	private static final int STRIPES = 1024;
+
+	private final OwnerRepository owners;
+
+	private final OwnerDetailsLoader loader;
+
+	private final int recentVisits;
+
+	private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+	private final Cache<Integer, Snapshot> cache;
+
+	@Autowired
+	OwnerDetailsCache(OwnerRepository owners, OwnerDetailsLoader loader,
+			@Value("${petclinic.owners.cache.maximum-size:10000}") long maximumSize,
+			@Value("${petclinic.owners.cache.expire-after-write:PT1H}") Duration expireAfterWrite,
+			@Value("${petclinic.owners.cache.recent-visits:20}") int recentVisits) {
+		this(owners, loader, maximumSize, expireAfterWrite, recentVisits, Ticker.systemTicker());
+	}
+
+	OwnerDetailsCache(OwnerRepository owners, OwnerDetailsLoader loader, long maximumSize, Duration expireAfterWrite,
+			int recentVisits, Ticker ticker) {
+		this.owners = owners;
+		this.loader = loader;
+		this.recentVisits = recentVisits;
+		this.cache = Caffeine.newBuilder()
+			.maximumSize(maximumSize)
+			.expireAfterWrite(expireAfterWrite)
+			.ticker(ticker)
+			.build();
+	}
+
+	/**
+	 * Return the snapshot of the given owner, loading it if needed.
+	 * @return the snapshot, or {@code null} if there is no such owner
+	 */
+	public OwnerDetails get(int ownerId) {
+		while (true) {
+			Snapshot snapshot = this.cache.get(ownerId, this::load);
+			if (snapshot.version() == version(ownerId)) {
+				return snapshot.details();
+			}
+			this.cache.asMap().remove(ownerId, snapshot);
+		}
+	}
+
+	/**
+	 * Return the snapshots of the given owners, loading all misses together.
+	 * @return the snapshots keyed by owner id, without the ids that do not exist
+	 */
+	public Map<Integer, OwnerDetails> getAll(Collection<Integer> ownerIds) {
+		Map<Integer, OwnerDetails> found = new HashMap<>();
+		Map<Integer, Long> misses = new HashMap<>();
+		for (Integer ownerId : ownerIds) {
+			Snapshot snapshot = this.cache.getIfPresent(ownerId);
+			if (snapshot != null && snapshot.version() == version(ownerId)) {
+				if (snapshot.details() != null) {
+					found.put(ownerId, snapshot.details());
+				}
+			}
+			else {
+				misses.put(ownerId, version(ownerId));
+			}
+		}
+		if (!misses.isEmpty()) {
+			this.loader.loadOwners(misses.keySet()).forEach((ownerId, details) -> {
+				found.put(ownerId, details);
+				this.cache.asMap().putIfAbsent(ownerId, new Snapshot(details, misses.get(ownerId)));
+			});
+		}
+		return found;
+	}
+
+	private long version(int ownerId) {
+		return this.versions.get(ownerId & (STRIPES - 1));
+	}
+
+	private Snapshot load(int ownerId) {
+		long version = version(ownerId);
+		Owner owner = this.owners.findById(ownerId);
+		return new Snapshot((owner != null) ? OwnerDetails.of(owner, this.recentVisits) : null, version);
+	}
+
+	@EventListener
+	void onEntityChanged(EntityChangedEvent event) {
+		if (EntityChangedEvent.OWNER.equals(event.entity()) && event.id() != null) {
+			this.versions.incrementAndGet(event.id() & (STRIPES - 1));
+			this.cache.invalidate(event.id());
+		}
+		else if (EntityChangedEvent.OWNER.equals(event.entity())
+				|| EntityChangedEvent.PET_TYPE.equals(event.entity())) {
+			for (int i = 0; i < STRIPES; i++) {
+				this.versions.incrementAndGet(i);
+			}
+			this.cache.invalidateAll();
+		}
+	}
+
+	private record Snapshot(OwnerDetails details, long version) {
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.samples.petclinic.owner.OwnerDetails.PetDetails;
+import org.springframework.samples.petclinic.owner.OwnerDetails.VisitDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Loads {@link OwnerDetails} for many owners or pets at once with a fixed number of
+ * {@code IN} queries per chunk of ids: one for the owners or pets, one for the pets with
+ * their type and one for the visits.
+ */
+@Component
+class OwnerDetailsLoader {
+
+	private static final int CHUNK_SIZE = 500;
+
+	private static final String SELECT_OWNERS = "SELECT id, first_name, last_name, address, city, telephone FROM owners WHERE id IN (:ids)";
+
+	private static final String SELECT_PETS = "SELECT p.id, p.name, p.birth_date, p.owner_id, t.name AS type_name FROM pets p LEFT JOIN types t ON t.id = p.type_id";
+
+	private static final String SELECT_VISITS = "SELECT id, pet_id, visit_date, description FROM visits WHERE pet_id IN (:ids) ORDER BY pet_id, visit_date, id";
+
+	private final NamedParameterJdbcTemplate jdbcTemplate;
+
+	private final int recentVisits;
+
+	OwnerDetailsLoader(NamedParameterJdbcTemplate jdbcTemplate,
+			@Value("${petclinic.owners.cache.recent-visits:20}") int recentVisits) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.recentVisits = recentVisits;
+	}
+
+	/**
+	 * Load the given owners. Ids that do not exist are absent from the result.
+	 */
+	@Transactional(readOnly = true)
+	public Map<Integer, OwnerDetails> loadOwners(Collection<Integer> ownerIds) {
+		Map<Integer, OwnerDetails> owners = new HashMap<>();
+		for (List<Integer> chunk : chunks(ownerIds)) {
+			Map<Integer, List<PetRow>> pets = new HashMap<>();
+			query(SELECT_PETS + " WHERE p.owner_id IN (:ids) ORDER BY p.name", chunk,
+					rs -> pets.computeIfAbsent(rs.getInt("owner_id"), id -> new ArrayList<>()).add(PetRow.of(rs)));
+			Map<Integer, List<VisitDetails>> visits = loadVisits(
+					pets.values().stream().flatMap(List::stream).map(PetRow::id).toList());
+			query(SELECT_OWNERS, chunk, rs -> {
+				int id = rs.getInt("id");
+				List<PetDetails> ownerPets = pets.getOrDefault(id, List.of())
+					.stream()
+					.map(pet -> pet.toDetails(visits, this.recentVisits))
+					.toList();
+				owners.put(id, new OwnerDetails(id, rs.getString("first_name"), rs.getString("last_name"),
+						rs.getString("address"), rs.getString("city"), rs.getString("telephone"), ownerPets));
+			});
+		}
+		return owners;
+	}
+
+	/**
+	 * Load the given pets, keyed by pet id, together with the id of their owner. Ids that
+	 * do not exist are absent from the result.
+	 */
+	@Transactional(readOnly = true)
+	public Map<Integer, OwnedPet> loadPets(Collection<Integer> petIds) {
+		Map<Integer, OwnedPet> pets = new HashMap<>();
+		for (List<Integer> chunk : chunks(petIds)) {
+			List<PetRow> rows = new ArrayList<>();
+			query(SELECT_PETS + " WHERE p.id IN (:ids)", chunk, rs -> rows.add(PetRow.of(rs)));
+			Map<Integer, List<VisitDetails>> visits = loadVisits(rows.stream().map(PetRow::id).toList());
+			for (PetRow row : rows) {
+				pets.put(row.id(), new OwnedPet(row.ownerId(), row.toDetails(visits, this.recentVisits)));
+			}
+		}
+		return pets;
+	}
+
+	private Map<Integer, List<VisitDetails>> loadVisits(List<Integer> petIds) {
+		Map<Integer, List<VisitDetails>> visits = new HashMap<>();
+		for (List<Integer> chunk : chunks(petIds)) {
+			query(SELECT_VISITS, chunk,
+					rs -> visits.computeIfAbsent(rs.getInt("pet_id"), id -> new ArrayList<>())
+						.add(new VisitDetails(rs.getInt("id"), toLocalDate(rs.getDate("visit_date")),
+								rs.getString("description"))));
+		}
+		return visits;
+	}
+
+	private void query(String sql, List<Integer> ids, RowCallbackHandler handler) {
+		this.jdbcTemplate.query(sql, Map.of("ids", ids), handler);
+	}
+
+	private static List<List<Integer>> chunks(Collection<Integer> ids) {
+		List<List<Integer>> chunks = new ArrayList<>();
+		List<Integer> distinct = ids.stream().distinct().toList();
+		for (int from = 0; from < distinct.size(); from += CHUNK_SIZE) {
+			chunks.add(distinct.subList(from, Math.min(distinct.size(), from + CHUNK_SIZE)));
+		}
+		return chunks;
+	}
+
+	private static LocalDate toLocalDate(Date date) {
+		return (date != null) ? date.toLocalDate() : null;
+	}
+
+	/**
+	 * A pet together with the id of its owner.
+	 */
+	public record OwnedPet(Integer ownerId, PetDetails pet) {
+	}
+
+	private record PetRow(int id, String name, LocalDate birthDate, Integer ownerId, String type) {
+
+		static PetRow of(ResultSet rs) throws SQLException {
+			return new PetRow(rs.getInt("id"), rs.getString("name"), toLocalDate(rs.getDate("birth_date")),
+					rs.getObject("owner_id", Integer.class), rs.getString("type_name"));
+		}
+
+		PetDetails toDetails(Map<Integer, List<VisitDetails>> visits, int recentVisits) {
+			List<VisitDetails> petVisits = visits.getOrDefault(this.id, List.of());
+			int olderVisits = Math.max(0, petVisits.size() - recentVisits);
+			return new PetDetails(this.id, this.name, this.birthDate, this.type,
+					List.copyOf(petVisits.subList(olderVisits, petVisits.size())), olderVisits);
+		}
+
+	}
+
+}
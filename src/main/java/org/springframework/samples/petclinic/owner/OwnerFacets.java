@@ -0,0 +1,329 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory facets for owner search: a bitmap of owner ids per city and per type of pet
+ * owned, next to the owners sorted by last name. A search collects the owners matching
+ * the last name prefix into a bitmap, which walks the matching names, and intersects it
+ * with the bitmaps of the selected facet values. The count of each facet value is the
+ * cardinality of one more intersection, whose cost depends on the number of owners but
+ * not on the number of matches.
+ * <p>
+ * Like the last name, cities and pet types are matched ignoring case, and the values
+ * differing only in case are counted together under the first spelling indexed.
+ * <p>
+ * The counts of a facet are computed without its own selection, so that they tell how
+ * many owners each alternative value would match. The bitmaps are built when the
+ * application is ready, and each owner is re-indexed when a change to its aggregate, pets
+ * included, is announced.
+ */
+@Component
+class OwnerFacets {
+
+	private static final Comparator<Name> BY_NAME = Comparator.comparing(Name::lastName)
+		.thenComparingInt(Name::ownerId);
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Set<Integer> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean rebuilding;
+
+	private Index index = new Index(Map.of());
+
+	OwnerFacets(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * Search the owners whose last name starts with the given prefix that live in
+	 * {@code city} and own a pet of type {@code petType}, both optional, all ignoring
+	 * case.
+	 * @return a page of the ids of the matching owners, ordered by last name, with the
+	 * facet counts
+	 */
+	FacetedResult search(String lastName, String city, String petType, Pageable pageable) {
+		this.lock.readLock().lock();
+		try {
+			Index index = this.index;
+			BitSet names = index.matchingNames(normalize(lastName));
+			BitSet cities = (city != null) ? owners(index.cities, city) : null;
+			BitSet petTypes = (petType != null) ? owners(index.petTypes, petType) : null;
+
+			BitSet results = intersect(names, cities, petTypes);
+			List<Integer> ids = new ArrayList<>(pageable.getPageSize());
+			long skip = pageable.getOffset();
+			for (Name name : index.namesStartingWith(normalize(lastName))) {
+				if (ids.size() == pageable.getPageSize()) {
+					break;
+				}
+				if (results.get(name.ownerId()) && skip-- <= 0) {
+					ids.add(name.ownerId());
+				}
+			}
+			BitSet scratch = new BitSet();
+			return new FacetedResult(ids, results.cardinality(),
+					count(index.cities, intersect(names, null, petTypes), scratch),
+					count(index.petTypes, intersect(names, cities, null), scratch));
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	private static BitSet owners(Map<String, Facet> facet, String value) {
+		Facet selected = facet.get(normalize(value));
+		return (selected != null) ? selected.owners() : new BitSet();
+	}
+
+	private static BitSet intersect(BitSet names, BitSet cities, BitSet petTypes) {
+		BitSet result = (BitSet) names.clone();
+		if (cities != null) {
+			result.and(cities);
+		}
+		if (petTypes != null) {
+			result.and(petTypes);
+		}
+		return result;
+	}
+
+	private static Map<String, Integer> count(Map<String, Facet> facet, BitSet matches, BitSet scratch) {
+		List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+		facet.values().forEach(value -> {
+			scratch.clear();
+			scratch.or(matches);
+			scratch.and(value.owners());
+			int count = scratch.cardinality();
+			if (count > 0) {
+				counts.add(Map.entry(value.label(), count));
+			}
+		});
+		counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+		Map<String, Integer> sorted = new LinkedHashMap<>();
+		counts.forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+		return sorted;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	synchronized void rebuild() {
+		this.rebuilding = true;
+		try {
+			Index rebuilt = new Index(loadPetTypes());
+			this.jdbcTemplate.query("SELECT id, last_name, city FROM owners", rs -> {
+				rebuilt.add(new Facets(rs.getInt(1), rs.getString(2), rs.getString(3), new ArrayList<>()));
+			});
+			this.jdbcTemplate.query("SELECT DISTINCT owner_id, type_id FROM pets WHERE owner_id IS NOT NULL", rs -> {
+				rebuilt.addPetType(rs.getInt(1), rs.getInt(2));
+			});
+			this.lock.writeLock().lock();
+			try {
+				this.index = rebuilt;
+			}
+			finally {
+				this.lock.writeLock().unlock();
+			}
+		}
+		finally {
+			// only once the new index is in place, so that no change is applied to the
+			// previous one without being queued
+			this.rebuilding = false;
+		}
+		// changes applied to the previous index while the new one was being read
+		for (Integer ownerId : List.copyOf(this.changedDuringRebuild)) {
+			this.changedDuringRebuild.remove(ownerId);
+			reindex(ownerId);
+		}
+	}
+
+	@EventListener
+	void onEntityChanged(EntityChangedEvent event) {
+		if (EntityChangedEvent.PET_TYPE.equals(event.entity())) {
+			rebuild();
+		}
+		else if (EntityChangedEvent.OWNER.equals(event.entity())) {
+			if (event.id() == null) {
+				rebuild();
+				return;
+			}
+			if (this.rebuilding) {
+				this.changedDuringRebuild.add(event.id());
+			}
+			reindex(event.id());
+		}
+	}
+
+	private void reindex(int ownerId) {
+		List<Facets> owner = this.jdbcTemplate.query("SELECT id, last_name, city FROM owners WHERE id = ?",
+				(rs, rowNum) -> new Facets(rs.getInt(1), rs.getString(2), rs.getString(3), new ArrayList<>()), ownerId);
+		List<Integer> petTypes = this.jdbcTemplate.queryForList("SELECT DISTINCT type_id FROM pets WHERE owner_id = ?",
+				Integer.class, ownerId);
+		this.lock.writeLock().lock();
+		try {
+			this.index.remove(ownerId);
+			if (!owner.isEmpty()) {
+				this.index.add(owner.get(0));
+				petTypes.forEach(typeId -> this.index.addPetType(ownerId, typeId));
+			}
+		}
+		finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	private static String normalize(String value) {
+		return (value != null) ? value.toLowerCase(Locale.ROOT) : "";
+	}
+
+	private Map<Integer, String> loadPetTypes() {
+		Map<Integer, String> petTypes = new HashMap<>();
+		this.jdbcTemplate.query("SELECT id, name FROM types", rs -> {
+			petTypes.put(rs.getInt(1), rs.getString(2));
+		});
+		return petTypes;
+	}
+
+	/**
+	 * The matching owner ids of a page and the facet counts, by facet value in decreasing
+	 * order of count.
+	 */
+	record FacetedResult(List<Integer> ownerIds, int totalItems, Map<String, Integer> cities,
+			Map<String, Integer> petTypes) {
+	}
+
+	private record Name(String lastName, int ownerId) {
+	}
+
+	private record Facets(int ownerId, String lastName, String city, List<String> petTypes) {
+	}
+
+	/**
+	 * The owners with one value of a facet, spelled as it was first indexed.
+	 */
+	private record Facet(String label, BitSet owners) {
+	}
+
+	/**
+	 * The bitmaps, guarded by the lock of the enclosing instance.
+	 */
+	private static final class Index {
+
+		private final Map<Integer, String> petTypeNames;
+
+		private final Map<Integer, Facets> owners = new HashMap<>();
+
+		private final NavigableSet<Name> names = new TreeSet<>(BY_NAME);
+
+		private final BitSet all = new BitSet();
+
+		private final Map<String, Facet> cities = new HashMap<>();
+
+		private final Map<String, Facet> petTypes = new HashMap<>();
+
+		Index(Map<Integer, String> petTypeNames) {
+			this.petTypeNames = petTypeNames;
+		}
+
+		void add(Facets owner) {
+			this.owners.put(owner.ownerId(), owner);
+			this.names.add(new Name(normalize(owner.lastName()), owner.ownerId()));
+			this.all.set(owner.ownerId());
+			if (owner.city() != null) {
+				set(this.cities, owner.city(), owner.ownerId());
+			}
+		}
+
+		void addPetType(int ownerId, int typeId) {
+			Facets owner = this.owners.get(ownerId);
+			String petType = this.petTypeNames.get(typeId);
+			if (owner != null && petType != null) {
+				owner.petTypes().add(petType);
+				set(this.petTypes, petType, ownerId);
+			}
+		}
+
+		void remove(int ownerId) {
+			Facets owner = this.owners.remove(ownerId);
+			if (owner == null) {
+				return;
+			}
+			this.names.remove(new Name(normalize(owner.lastName()), ownerId));
+			this.all.clear(ownerId);
+			if (owner.city() != null) {
+				clear(this.cities, owner.city(), ownerId);
+			}
+			owner.petTypes().forEach(petType -> clear(this.petTypes, petType, ownerId));
+		}
+
+		BitSet matchingNames(String prefix) {
+			if (prefix.isEmpty()) {
+				return this.all;
+			}
+			BitSet matches = new BitSet();
+			namesStartingWith(prefix).forEach(name -> matches.set(name.ownerId()));
+			return matches;
+		}
+
+		NavigableSet<Name> namesStartingWith(String prefix) {
+			if (prefix.isEmpty()) {
+				return this.names;
+			}
+			return this.names.subSet(new Name(prefix, Integer.MIN_VALUE), true,
+					new Name(prefix + Character.MAX_VALUE, Integer.MIN_VALUE), false);
+		}
+
+		private static void set(Map<String, Facet> facet, String value, int ownerId) {
+			facet.computeIfAbsent(normalize(value), key -> new Facet(value, new BitSet())).owners().set(ownerId);
+		}
+
+		private static void clear(Map<String, Facet> facet, String value, int ownerId) {
+			Facet owners = facet.get(normalize(value));
+			if (owners != null) {
+				owners.owners().clear(ownerId);
+				if (owners.owners().isEmpty()) {
+					facet.remove(normalize(value));
+				}
+			}
+		}
+
+	}
+
+}
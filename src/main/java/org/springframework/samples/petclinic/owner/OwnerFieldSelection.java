@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * The owner, pet and visit fields requested from the owner JSON API, each mapped to the
+ * column it is read from. Built from a {@code fields} parameter such as
+ * {@code lastName,city,pets.name,visits.date} and an {@code include} parameter of
+ * {@code pets} and/or {@code visits}. Ids are always selected.
+ */
+final class OwnerFieldSelection {
+
+	private static final Map<String, Column> OWNER_COLUMNS = columns(new Column("id", "o.id", Type.INTEGER),
+			new Column("firstName", "o.first_name", Type.STRING), new Column("lastName", "o.last_name", Type.STRING),
+			new Column("address", "o.address", Type.STRING), new Column("city", "o.city", Type.STRING),
+			new Column("telephone", "o.telephone", Type.STRING));
+
+	private static final Map<String, Column> PET_COLUMNS = columns(new Column("id", "p.id", Type.INTEGER),
+			new Column("name", "p.name", Type.STRING), new Column("birthDate", "p.birth_date", Type.DATE),
+			new Column("type", "t.name", Type.STRING));
+
+	private static final Map<String, Column> VISIT_COLUMNS = columns(new Column("id", "v.id", Type.INTEGER),
+			new Column("date", "v.visit_date", Type.DATE), new Column("description", "v.description", Type.STRING));
+
+	private final List<Column> owner;
+
+	private final List<Column> pet;
+
+	private final List<Column> visit;
+
+	private final boolean pets;
+
+	private final boolean visits;
+
+	private OwnerFieldSelection(List<Column> owner, List<Column> pet, List<Column> visit, boolean pets,
+			boolean visits) {
+		this.owner = owner;
+		this.pet = pet;
+		this.visit = visit;
+		this.pets = pets;
+		this.visits = visits;
+	}
+
+	/**
+	 * Parse the request parameters.
+	 * @throws IllegalArgumentException for an unknown field or include
+	 */
+	static OwnerFieldSelection parse(String fields, String include) {
+		List<String> includes = StringUtils.hasText(include) ? List.of(StringUtils.tokenizeToStringArray(include, ","))
+				: List.of();
+		for (String name : includes) {
+			if (!name.equals("pets") && !name.equals("visits")) {
+				throw new IllegalArgumentException("Unknown include: " + name);
+			}
+		}
+		boolean visits = includes.contains("visits");
+		boolean pets = visits || includes.contains("pets");
+		List<String> requested = StringUtils.hasText(fields) ? List.of(StringUtils.tokenizeToStringArray(fields, ","))
+				: List.of();
+		return new OwnerFieldSelection(select(OWNER_COLUMNS, "", requested), select(PET_COLUMNS, "pets.", requested),
+				select(VISIT_COLUMNS, "visits.", requested), pets, visits);
+	}
+
+	private static List<Column> select(Map<String, Column> available, String prefix, List<String> requested) {
+		List<String> names = requested.stream()
+			.filter(name -> prefix.isEmpty() ? !name.contains(".") : name.startsWith(prefix))
+			.map(name -> name.substring(prefix.length()))
+			.toList();
+		for (String name : names) {
+			if (!available.containsKey(name)) {
+				throw new IllegalArgumentException("Unknown field: " + prefix + name);
+			}
+		}
+		if (names.isEmpty()) {
+			return List.copyOf(available.values());
+		}
+		List<Column> columns = new ArrayList<>();
+		columns.add(available.get("id"));
+		names.stream().filter(name -> !name.equals("id")).distinct().map(available::get).forEach(columns::add);
+		return columns;
+	}
+
+	List<Column> owner() {
+		return this.owner;
+	}
+
+	List<Column> pet() {
+		return this.pet;
+	}
+
+	List<Column> visit() {
+		return this.visit;
+	}
+
+	boolean includesPets() {
+		return this.pets;
+	}
+
+	boolean includesVisits() {
+		return this.visits;
+	}
+
+	static String sql(List<Column> columns) {
+		return columns.stream().map(Column::sql).collect(Collectors.joining(", "));
+	}
+
+	private static Map<String, Column> columns(Column... columns) {
+		Map<String, Column> map = new LinkedHashMap<>();
+		for (Column column : columns) {
+			map.put(column.name(), column);
+		}
+		return map;
+	}
+
+	enum Type {
+
+		INTEGER, STRING, DATE
+
+	}
+
+	record Column(String name, String sql, Type type) {
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.owner.OwnerImporter.ImportResult;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Bulk import of owners and pets, for example
+ * {@code curl --data-binary @owners.csv -H 'Content-Type: text/csv' /owners/import}. The
+ * rows that were skipped are listed by {@code /owners/import/{run}/errors}, and posting
+ * the same file to {@code /owners/import?run={run}} resumes a run that did not complete.
+ *
+ * @see OwnerImporter
+ */
+@RestController
+class OwnerImportController {
+
+	private final OwnerImporter importer;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	OwnerImportController(OwnerImporter importer, JdbcTemplate jdbcTemplate) {
+		this.importer = importer;
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	@PostMapping(path = "/owners/import", consumes = "text/csv")
+	public ImportResult importOwners(@RequestParam(required = false) Long run, HttpServletRequest request)
+			throws IOException {
+		try (InputStreamReader csv = new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8)) {
+			return this.importer.importCsv(csv, run);
+		}
+		catch (IllegalArgumentException ex) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+		}
+	}
+
+	@GetMapping(path = "/owners/import/{run}/errors", produces = "text/csv")
+	public void importErrors(@PathVariable long run, HttpServletResponse response) throws IOException {
+		response.setContentType("text/csv;charset=UTF-8");
+		PrintWriter writer = response.getWriter();
+		writer.println("line,message");
+		this.jdbcTemplate.query("SELECT line_no, message FROM owner_import_errors WHERE run_id = ? ORDER BY line_no",
+				rs -> {
+					writer.println(rs.getInt(1) + ",\"" + rs.getString(2).replace("\"", "\"\"") + "\"");
+				}, run);
+		writer.flush();
+	}
+
+}
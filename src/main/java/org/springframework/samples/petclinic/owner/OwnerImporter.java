@@ -0,0 +1,479 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.samples.petclinic.changes.EntityChangeBus;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.samples.petclinic.jobs.JobProgress.Status;
+import org.springframework.samples.petclinic.owner.OwnerRowsWritten.Operation;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/**
+ * Bulk import of owners and their pets from CSV, with one row per pet:
+ * {@code owner_ref,first_name,last_name,address,city,telephone,pet_name,pet_birth_date,pet_type}.
+ * Rows of the same owner share an {@code owner_ref} and must be adjacent; the owner
+ * columns are taken from the first of them, and an owner without pets has empty pet
+ * columns.
+ * <p>
+ * The stream is read on the calling thread and cut into chunks of whole owners. Chunks
+ * are split into fields, validated with the same rules as the owner and pet forms, and
+ * inserted in JDBC batches on a bounded pool, each in its own transaction. Rows that do
+ * not validate are skipped and reported in {@code owner_import_errors}; rows of an owner
+ * that does not validate are skipped with it. Runs and committed chunks are recorded in
+ * the batch job tables, so importing the same file again into a run that did not complete
+ * only processes its missing chunks. The inserted owners and pets of each chunk are
+ * announced as {@link OwnerRowsWritten} for the audit log.
+ */
+@Component
+class OwnerImporter implements DisposableBean {
+
+	static final String JOB_NAME = "owner-import";
+
+	static final List<String> COLUMNS = List.of("owner_ref", "first_name", "last_name", "address", "city", "telephone",
+			"pet_name", "pet_birth_date", "pet_type");
+
+	private static final Log logger = LogFactory.getLog(OwnerImporter.class);
+
+	private static final int MAX_MESSAGE = 500;
+
+	private static final String INSERT_RUN = "INSERT INTO job_runs (job_name, chunk_size, status, started_at) VALUES (?, ?, ?, ?)";
+
+	private static final String UPDATE_RUN = "UPDATE job_runs SET status = ?, first_id = 1, last_id = ?, finished_at = ? WHERE id = ?";
+
+	private static final String INSERT_CHUNK = "INSERT INTO job_chunks (run_id, first_id, items, completed_at) VALUES (?, ?, ?, ?)";
+
+	private static final String INSERT_OWNER = "INSERT INTO owners (first_name, last_name, address, city, telephone) VALUES (?, ?, ?, ?, ?)";
+
+	private static final String INSERT_PET = "INSERT INTO pets (name, birth_date, type_id, owner_id) VALUES (?, ?, ?, ?)";
+
+	private static final String INSERT_ERROR = "INSERT INTO owner_import_errors (run_id, line_no, message) VALUES (?, ?, ?)";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final Validator validator;
+
+	private final EntityChangeBus changes;
+
+	private final ApplicationEventPublisher events;
+
+	private final int chunkSize;
+
+	private final ThreadPoolExecutor executor;
+
+	OwnerImporter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, Validator validator,
+			EntityChangeBus changes, ApplicationEventPublisher events,
+			@Value("${petclinic.owners.import.chunk-size:1000}") int chunkSize,
+			@Value("${petclinic.owners.import.parallelism:0}") int parallelism) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+		this.validator = validator;
+		this.changes = changes;
+		this.events = events;
+		this.chunkSize = chunkSize;
+		int threads = (parallelism > 0) ? parallelism : Runtime.getRuntime().availableProcessors();
+		// a full queue makes the reading thread process chunks itself, which bounds the
+		// number of chunks held in memory
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(threads), new CustomizableThreadFactory("owner-import-"),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	/**
+	 * Import a CSV stream, starting a new run or resuming the given one.
+	 * @throws IllegalArgumentException if the header does not list the expected columns
+	 * or the run is not an owner import
+	 */
+	ImportResult importCsv(Reader csv, Long resumeRunId) throws IOException {
+		CsvRecordReader reader = new CsvRecordReader(csv);
+		String header = reader.next();
+		if (header == null || !COLUMNS.equals(CsvRecordReader.split(header)
+			.stream()
+			.map(column -> column.trim().toLowerCase(Locale.ROOT))
+			.toList())) {
+			throw new IllegalArgumentException("The first line must be the header " + String.join(",", COLUMNS));
+		}
+		Run run = (resumeRunId != null) ? findRun(resumeRunId) : createRun();
+		Set<Integer> done = Set.copyOf(this.jdbcTemplate
+			.queryForList("SELECT first_id FROM job_chunks WHERE run_id = ?", Integer.class, run.id()));
+		Map<String, PetType> types = loadPetTypes();
+		Progress progress = new Progress();
+		List<Future<?>> chunks = new ArrayList<>();
+		List<Row> chunk = new ArrayList<>();
+		String record;
+		while ((record = reader.next()) != null) {
+			if (record.isBlank()) {
+				continue;
+			}
+			Row row = new Row(reader.getRecordLine(), CsvRecordReader.firstField(record), record);
+			if (chunk.size() >= run.chunkSize() && !row.ownerRef().equals(chunk.get(chunk.size() - 1).ownerRef())) {
+				chunks.add(submit(run, chunk, done, types, progress));
+				chunk = new ArrayList<>();
+			}
+			chunk.add(row);
+		}
+		if (!chunk.isEmpty()) {
+			chunks.add(submit(run, chunk, done, types, progress));
+		}
+		for (Future<?> submitted : chunks) {
+			try {
+				submitted.get();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while importing owners", ex);
+			}
+			catch (ExecutionException ex) {
+				// already logged and counted by the chunk
+			}
+		}
+		Status status = (progress.failedChunks.get() > 0) ? Status.FAILED : Status.COMPLETED;
+		this.jdbcTemplate.update(UPDATE_RUN, status.name(), reader.getRecordLine(), Timestamp.from(Instant.now()),
+				run.id());
+		if (progress.owners.sum() > 0) {
+			this.changes.publish(EntityChangedEvent.owner(null));
+		}
+		return new ImportResult(run.id(), status.name(), progress.rows.sum(), progress.owners.sum(),
+				progress.pets.sum(), progress.errors.sum(), progress.skippedRows.sum(), progress.failedChunks.get());
+	}
+
+	private Future<?> submit(Run run, List<Row> chunk, Set<Integer> done, Map<String, PetType> types,
+			Progress progress) {
+		int firstLine = chunk.get(0).line();
+		if (done.contains(firstLine)) {
+			progress.skippedRows.add(chunk.size());
+			return this.executor.submit(() -> {
+			});
+		}
+		return this.executor.submit(() -> {
+			try {
+				importChunk(run, firstLine, chunk, types, progress);
+			}
+			catch (RuntimeException ex) {
+				logger.warn("Chunk at line " + firstLine + " of owner import " + run.id() + " failed", ex);
+				progress.failedChunks.incrementAndGet();
+				throw ex;
+			}
+		});
+	}
+
+	private void importChunk(Run run, int firstLine, List<Row> rows, Map<String, PetType> types, Progress progress) {
+		List<Owner> owners = new ArrayList<>();
+		List<ImportError> errors = new ArrayList<>();
+		int from = 0;
+		while (from < rows.size()) {
+			int to = from + 1;
+			while (to < rows.size() && rows.get(to).ownerRef().equals(rows.get(from).ownerRef())) {
+				to++;
+			}
+			Owner owner = validateOwner(rows.subList(from, to), types, errors);
+			if (owner != null) {
+				owners.add(owner);
+			}
+			from = to;
+		}
+		try {
+			this.transactionTemplate.executeWithoutResult(status -> {
+				insertOwners(owners);
+				insertPets(owners);
+				announce(owners);
+				this.jdbcTemplate.batchUpdate(INSERT_ERROR, errors, errors.size(), (ps, error) -> {
+					ps.setLong(1, run.id());
+					ps.setInt(2, error.line());
+					ps.setString(3, StringUtils.truncate(error.message(), MAX_MESSAGE));
+				});
+				this.jdbcTemplate.update(INSERT_CHUNK, run.id(), firstLine, rows.size(), Timestamp.from(Instant.now()));
+			});
+		}
+		catch (DuplicateKeyException ex) {
+			// committed by a concurrent import resuming the same run
+			progress.skippedRows.add(rows.size());
+			return;
+		}
+		progress.rows.add(rows.size());
+		progress.owners.add(owners.size());
+		progress.pets.add(owners.stream().mapToInt(owner -> owner.getPets().size()).sum());
+		progress.errors.add(errors.size());
+	}
+
+	/**
+	 * Build and validate an owner and the pets of its rows.
+	 * @return the owner, or {@code null} if it is not valid
+	 */
+	private Owner validateOwner(List<Row> rows, Map<String, PetType> types, List<ImportError> errors) {
+		List<List<String>> fields = new ArrayList<>();
+		for (Row row : rows) {
+			List<String> values = CsvRecordReader.split(row.record());
+			if (values.size() != COLUMNS.size()) {
+				errors.add(new ImportError(row.line(),
+						"expected " + COLUMNS.size() + " columns but found " + values.size()));
+				return null;
+			}
+			fields.add(values.stream().map(String::trim).toList());
+		}
+		List<String> first = fields.get(0);
+		Owner owner = new Owner();
+		owner.setFirstName(first.get(1));
+		owner.setLastName(first.get(2));
+		owner.setAddress(first.get(3));
+		owner.setCity(first.get(4));
+		owner.setTelephone(first.get(5));
+		Set<ConstraintViolation<Owner>> violations = this.validator.validate(owner);
+		if (!violations.isEmpty()) {
+			for (ConstraintViolation<Owner> violation : violations) {
+				errors.add(new ImportError(rows.get(0).line(),
+						violation.getPropertyPath() + ": " + violation.getMessage() + " (owner skipped)"));
+			}
+			return null;
+		}
+		Set<String> names = new HashSet<>();
+		for (int i = 0; i < rows.size(); i++) {
+			List<String> values = fields.get(i);
+			if (!values.get(6).isEmpty() || !values.get(7).isEmpty() || !values.get(8).isEmpty()) {
+				Pet pet = validatePet(rows.get(i).line(), values, types, names, errors);
+				if (pet != null) {
+					owner.addPet(pet);
+				}
+			}
+		}
+		return owner;
+	}
+
+	private Pet validatePet(int line, List<String> values, Map<String, PetType> types, Set<String> names,
+			List<ImportError> errors) {
+		Pet pet = new Pet();
+		pet.setName(values.get(6));
+		Errors result = new BeanPropertyBindingResult(pet, "pet");
+		try {
+			pet.setBirthDate(values.get(7).isEmpty() ? null : LocalDate.parse(values.get(7)));
+		}
+		catch (DateTimeParseException ex) {
+			result.rejectValue("birthDate", "typeMismatch", "is not a date like 2012-08-06");
+		}
+		PetType type = types.get(values.get(8).toLowerCase(Locale.ROOT));
+		if (type == null && !values.get(8).isEmpty()) {
+			result.rejectValue("type", "unknown", "is not a known pet type");
+		}
+		pet.setType(type);
+		new PetValidator().validate(pet, result);
+		if (!result.hasErrors() && !names.add(pet.getName().toLowerCase(Locale.ROOT))) {
+			result.rejectValue("name", "duplicate", "already exists");
+		}
+		Map<String, String> messages = new LinkedHashMap<>();
+		// report one error per field, a date that does not parse is not also missing
+		result.getFieldErrors().forEach(error -> messages.putIfAbsent(error.getField(), error.getDefaultMessage()));
+		messages
+			.forEach((field, message) -> errors.add(new ImportError(line, field + ": " + message + " (pet skipped)")));
+		return result.hasErrors() ? null : pet;
+	}
+
+	private void insertOwners(List<Owner> owners) {
+		this.jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+			try (PreparedStatement ps = connection.prepareStatement(INSERT_OWNER, new String[] { "id" })) {
+				for (Owner owner : owners) {
+					ps.setString(1, owner.getFirstName());
+					ps.setString(2, owner.getLastName());
+					ps.setString(3, owner.getAddress());
+					ps.setString(4, owner.getCity());
+					ps.setString(5, owner.getTelephone());
+					ps.addBatch();
+				}
+				ps.executeBatch();
+				try (ResultSet keys = ps.getGeneratedKeys()) {
+					for (Owner owner : owners) {
+						if (!keys.next()) {
+							throw new IllegalStateException("The database did not return the ids of imported owners");
+						}
+						owner.setId(keys.getInt(1));
+					}
+				}
+			}
+			return null;
+		});
+	}
+
+	private void insertPets(List<Owner> owners) {
+		List<Pet> pets = new ArrayList<>();
+		this.jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+			try (PreparedStatement ps = connection.prepareStatement(INSERT_PET, new String[] { "id" })) {
+				for (Owner owner : owners) {
+					for (Pet pet : owner.getPets()) {
+						ps.setString(1, pet.getName());
+						ps.setDate(2, Date.valueOf(pet.getBirthDate()));
+						ps.setInt(3, pet.getType().getId());
+						ps.setInt(4, owner.getId());
+						ps.addBatch();
+						pets.add(pet);
+					}
+				}
+				if (pets.isEmpty()) {
+					return null;
+				}
+				ps.executeBatch();
+				try (ResultSet keys = ps.getGeneratedKeys()) {
+					for (Pet pet : pets) {
+						if (!keys.next()) {
+							throw new IllegalStateException("The database did not return the ids of imported pets");
+						}
+						pet.setId(keys.getInt(1));
+					}
+				}
+			}
+			return null;
+		});
+	}
+
+	private void announce(List<Owner> owners) {
+		List<OwnerRowsWritten.Row> ownerRows = new ArrayList<>();
+		List<OwnerRowsWritten.Row> petRows = new ArrayList<>();
+		for (Owner owner : owners) {
+			Map<String, Object> values = new LinkedHashMap<>();
+			values.put("firstName", owner.getFirstName());
+			values.put("lastName", owner.getLastName());
+			values.put("address", owner.getAddress());
+			values.put("city", owner.getCity());
+			values.put("telephone", owner.getTelephone());
+			ownerRows.add(new OwnerRowsWritten.Row(owner.getId(), owner.getId(), values));
+			for (Pet pet : owner.getPets()) {
+				Map<String, Object> petValues = new LinkedHashMap<>();
+				petValues.put("name", pet.getName());
+				petValues.put("birthDate", pet.getBirthDate());
+				petValues.put("type", pet.getType().getName());
+				petRows.add(new OwnerRowsWritten.Row(pet.getId(), owner.getId(), petValues));
+			}
+		}
+		this.events.publishEvent(new OwnerRowsWritten(OwnerRowsWritten.OWNER, Operation.INSERT, ownerRows));
+		this.events.publishEvent(new OwnerRowsWritten(OwnerRowsWritten.PET, Operation.INSERT, petRows));
+	}
+
+	private Run createRun() {
+		KeyHolder keyHolder = new GeneratedKeyHolder();
+		this.jdbcTemplate.update(connection -> {
+			PreparedStatement ps = connection.prepareStatement(INSERT_RUN, new String[] { "id" });
+			ps.setString(1, JOB_NAME);
+			ps.setInt(2, this.chunkSize);
+			ps.setString(3, Status.RUNNING.name());
+			ps.setTimestamp(4, Timestamp.from(Instant.now()));
+			return ps;
+		}, keyHolder);
+		return new Run(keyHolder.getKey().longValue(), this.chunkSize);
+	}
+
+	private Run findRun(long runId) {
+		List<Integer> chunkSizes = this.jdbcTemplate.queryForList(
+				"SELECT chunk_size FROM job_runs WHERE id = ? AND job_name = ?", Integer.class, runId, JOB_NAME);
+		if (chunkSizes.isEmpty()) {
+			throw new IllegalArgumentException("No owner import run " + runId);
+		}
+		this.jdbcTemplate.update("UPDATE job_runs SET status = ?, finished_at = NULL WHERE id = ?",
+				Status.RUNNING.name(), runId);
+		return new Run(runId, chunkSizes.get(0));
+	}
+
+	private Map<String, PetType> loadPetTypes() {
+		Map<String, PetType> types = new HashMap<>();
+		this.jdbcTemplate.query("SELECT id, name FROM types", rs -> {
+			PetType type = new PetType();
+			type.setId(rs.getInt(1));
+			type.setName(rs.getString(2));
+			types.put(type.getName().toLowerCase(Locale.ROOT), type);
+		});
+		return types;
+	}
+
+	@Override
+	public void destroy() {
+		this.executor.shutdownNow();
+	}
+
+	/**
+	 * The outcome of an import, or of the part of it that a resumed run processed.
+	 */
+	record ImportResult(long run, String status, long rows, long owners, long pets, long errors, long skippedRows,
+			int failedChunks) {
+	}
+
+	private record Run(long id, int chunkSize) {
+	}
+
+	private record Row(int line, String ownerRef, String record) {
+	}
+
+	private record ImportError(int line, String message) {
+	}
+
+	private static final class Progress {
+
+		private final LongAdder rows = new LongAdder();
+
+		private final LongAdder owners = new LongAdder();
+
+		private final LongAdder pets = new LongAdder();
+
+		private final LongAdder errors = new LongAdder();
+
+		private final LongAdder skippedRows = new LongAdder();
+
+		private final AtomicInteger failedChunks = new AtomicInteger();
+
+	}
+
+}
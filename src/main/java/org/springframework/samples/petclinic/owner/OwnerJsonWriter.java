@@ -0,0 +1,220 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.samples.petclinic.owner.OwnerFieldSelection.Column;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes owners as JSON straight from the result set with a streaming
+ * {@link JsonGenerator}, selecting only the columns of the requested fields. Pets and
+ * visits, when included, are fetched with one {@code IN} query each for the whole page.
+ */
+@Component
+class OwnerJsonWriter {
+
+	private static final String FROM_OWNERS = " FROM owners o";
+
+	private static final String FROM_PETS = " FROM pets p LEFT JOIN types t ON t.id = p.type_id WHERE p.owner_id IN (:ids) ORDER BY p.name";
+
+	private static final String FROM_VISITS = " FROM visits v WHERE v.pet_id IN (:ids) ORDER BY v.visit_date";
+
+	private final NamedParameterJdbcTemplate jdbcTemplate;
+
+	private final ObjectMapper objectMapper;
+
+	OwnerJsonWriter(NamedParameterJdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Write one page of owners whose last name starts with the given prefix.
+	 */
+	@Transactional(readOnly = true)
+	public void writePage(String lastName, int page, int size, OwnerFieldSelection fields, OutputStream out)
+			throws IOException {
+		MapSqlParameterSource params = new MapSqlParameterSource("lastName", lastName + "%").addValue("size", size)
+			.addValue("offset", (page - 1) * size);
+		Long total = this.jdbcTemplate
+			.queryForObject("SELECT COUNT(*)" + FROM_OWNERS + " WHERE o.last_name LIKE :lastName", params, Long.class);
+		List<Integer> ids = this.jdbcTemplate.queryForList(
+				"SELECT o.id" + FROM_OWNERS
+						+ " WHERE o.last_name LIKE :lastName ORDER BY o.id LIMIT :size OFFSET :offset",
+				params, Integer.class);
+		try (JsonGenerator json = createGenerator(out)) {
+			json.writeStartObject();
+			json.writeNumberField("page", page);
+			json.writeNumberField("totalItems", (total != null) ? total : 0);
+			json.writeArrayFieldStart("owners");
+			writeOwners(ids, fields, json);
+			json.writeEndArray();
+			json.writeEndObject();
+		}
+	}
+
+	/**
+	 * Write a single owner.
+	 * @return {@code false} if there is no such owner and nothing was written
+	 */
+	@Transactional(readOnly = true)
+	public boolean writeOwner(int ownerId, OwnerFieldSelection fields, OutputStream out) throws IOException {
+		// checked up front, as closing the generator flushes and commits the response
+		Long count = this.jdbcTemplate.queryForObject("SELECT COUNT(*)" + FROM_OWNERS + " WHERE o.id = :id",
+				Map.of("id", ownerId), Long.class);
+		if (count == null || count == 0) {
+			return false;
+		}
+		try (JsonGenerator json = createGenerator(out)) {
+			return writeOwners(List.of(ownerId), fields, json) > 0;
+		}
+	}
+
+	/**
+	 * Write the given owners as a JSON array, in id order.
+	 */
+	@Transactional(readOnly = true)
+	public void writeOwners(List<Integer> ownerIds, OwnerFieldSelection fields, OutputStream out) throws IOException {
+		try (JsonGenerator json = createGenerator(out)) {
+			json.writeStartArray();
+			writeOwners(ownerIds, fields, json);
+			json.writeEndArray();
+		}
+	}
+
+	private JsonGenerator createGenerator(OutputStream out) throws IOException {
+		JsonGenerator json = this.objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+		return json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	}
+
+	private int writeOwners(List<Integer> ids, OwnerFieldSelection fields, JsonGenerator json) {
+		if (ids.isEmpty()) {
+			return 0;
+		}
+		Map<Integer, List<Object[]>> pets = fields.includesPets() ? loadPets(ids, fields) : Map.of();
+		Map<Integer, List<Object[]>> visits = fields.includesVisits() ? loadVisits(pets, fields) : Map.of();
+		int[] written = new int[1];
+		this.jdbcTemplate.query("SELECT " + OwnerFieldSelection.sql(fields.owner()) + FROM_OWNERS
+				+ " WHERE o.id IN (:ids) ORDER BY o.id", Map.of("ids", ids), rs -> {
+					try {
+						json.writeStartObject();
+						writeFields(fields.owner(), read(rs, fields.owner(), 1), json);
+						if (fields.includesPets()) {
+							writePets(pets.getOrDefault(rs.getInt(1), List.of()), visits, fields, json);
+						}
+						json.writeEndObject();
+						written[0]++;
+					}
+					catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				});
+		return written[0];
+	}
+
+	private void writePets(List<Object[]> pets, Map<Integer, List<Object[]>> visits, OwnerFieldSelection fields,
+			JsonGenerator json) throws IOException {
+		json.writeArrayFieldStart("pets");
+		for (Object[] pet : pets) {
+			json.writeStartObject();
+			writeFields(fields.pet(), pet, json);
+			if (fields.includesVisits()) {
+				json.writeArrayFieldStart("visits");
+				for (Object[] visit : visits.getOrDefault((Integer) pet[0], List.of())) {
+					json.writeStartObject();
+					writeFields(fields.visit(), visit, json);
+					json.writeEndObject();
+				}
+				json.writeEndArray();
+			}
+			json.writeEndObject();
+		}
+		json.writeEndArray();
+	}
+
+	private Map<Integer, List<Object[]>> loadPets(List<Integer> ownerIds, OwnerFieldSelection fields) {
+		return loadChildren("SELECT p.owner_id, " + OwnerFieldSelection.sql(fields.pet()) + FROM_PETS, ownerIds,
+				fields.pet());
+	}
+
+	private Map<Integer, List<Object[]>> loadVisits(Map<Integer, List<Object[]>> pets, OwnerFieldSelection fields) {
+		List<Integer> petIds = pets.values().stream().flatMap(List::stream).map(pet -> (Integer) pet[0]).toList();
+		if (petIds.isEmpty()) {
+			return Map.of();
+		}
+		return loadChildren("SELECT v.pet_id, " + OwnerFieldSelection.sql(fields.visit()) + FROM_VISITS, petIds,
+				fields.visit());
+	}
+
+	private Map<Integer, List<Object[]>> loadChildren(String sql, List<Integer> parentIds, List<Column> columns) {
+		Map<Integer, List<Object[]>> children = new HashMap<>();
+		this.jdbcTemplate.query(sql, Map.of("ids", parentIds),
+				(RowCallbackHandler) rs -> children.computeIfAbsent(rs.getInt(1), id -> new ArrayList<>())
+					.add(read(rs, columns, 2)));
+		return children;
+	}
+
+	private static Object[] read(ResultSet rs, List<Column> columns, int first) throws SQLException {
+		Object[] values = new Object[columns.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = switch (columns.get(i).type()) {
+				case INTEGER -> rs.getObject(first + i, Integer.class);
+				case STRING -> rs.getString(first + i);
+				case DATE -> {
+					Date date = rs.getDate(first + i);
+					yield (date != null) ? date.toLocalDate().toString() : null;
+				}
+			};
+		}
+		return values;
+	}
+
+	private static void writeFields(List<Column> columns, Object[] values, JsonGenerator json) throws IOException {
+		for (int i = 0; i < values.length; i++) {
+			json.writeFieldName(columns.get(i).name());
+			if (values[i] instanceof Integer number) {
+				json.writeNumber(number);
+			}
+			else if (values[i] != null) {
+				json.writeString((String) values[i]);
+			}
+			else {
+				json.writeNull();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rows of owner aggregates inserted or deleted with plain JDBC, which Hibernate listeners
+ * do not see. Published as an application event inside the writing transaction, so that a
+ * {@code @TransactionalEventListener} only sees the rows that were committed.
+ *
+ * @param entity the kind of rows, {@code owner}, {@code pet} or {@code visit}
+ * @param operation how the rows were written
+ * @param rows the rows, in the order they were written
+ */
+public record OwnerRowsWritten(String entity, Operation operation, List<Row> rows) {
+
+	public static final String OWNER = "owner";
+
+	public static final String PET = "pet";
+
+	public static final String VISIT = "visit";
+
+	/**
+	 * How rows were written.
+	 */
+	public enum Operation {
+
+		INSERT, DELETE
+
+	}
+
+	/**
+	 * A row with its column values, after an insert or before a delete.
+	 */
+	public record Row(int id, int ownerId, Map<String, Object> values) {
+	}
+
+}
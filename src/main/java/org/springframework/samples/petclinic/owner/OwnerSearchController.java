@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.owner.OwnerFacets.FacetedResult;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Faceted owner search, for example
+ * {@code /api/owners/search?lastName=Da&city=Madison&petType=dog}. Answers a page of
+ * owners together with the number of owners per city and per pet type.
+ */
+@RestController
+class OwnerSearchController {
+
+	private static final int MAX_PAGE_SIZE = 100;
+
+	private final OwnerFacets facets;
+
+	private final OwnerSummaries summaries;
+
+	OwnerSearchController(OwnerFacets facets, OwnerSummaries summaries) {
+		this.facets = facets;
+		this.summaries = summaries;
+	}
+
+	@GetMapping("/api/owners/search")
+	public SearchPage searchOwners(@RequestParam(defaultValue = "") String lastName,
+			@RequestParam(required = false) String city, @RequestParam(required = false) String petType,
+			@RequestParam(defaultValue = "1") int page, @RequestParam(defaultValue = "20") int size) {
+		if (page < 1 || size < 1 || size > MAX_PAGE_SIZE) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"page must be positive and size between 1 and " + MAX_PAGE_SIZE);
+		}
+		FacetedResult result = this.facets.search(lastName, city, petType, PageRequest.of(page - 1, size));
+		int totalPages = (result.totalItems() + size - 1) / size;
+		return new SearchPage(page, totalPages, result.totalItems(), this.summaries.findByIds(result.ownerIds()),
+				result.cities(), result.petTypes());
+	}
+
+	record SearchPage(int page, int totalPages, int totalItems, List<OwnerSummary> owners, Map<String, Integer> cities,
+			Map<String, Integer> petTypes) {
+	}
+
+}
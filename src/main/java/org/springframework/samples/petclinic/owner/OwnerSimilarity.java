@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Locale;
+
+/**
+ * String similarity functions used to find owners that were registered twice: American
+ * Soundex codes for blocking, and Jaro-Winkler similarity for comparing names and
+ * addresses.
+ */
+final class OwnerSimilarity {
+
+	// Jaro similarity above which a common prefix raises the score, as in Winkler's paper
+	private static final double BOOST_THRESHOLD = 0.7;
+
+	// codes of the letters A to Z, 0 for vowels and the ignored letters H, W and Y
+	private static final String SOUNDEX_CODES = "01230120022455012623010202";
+
+	private OwnerSimilarity() {
+	}
+
+	/**
+	 * Return the four character Soundex code of a name, or an empty string if it has no
+	 * letters.
+	 */
+	static String soundex(String name) {
+		if (name == null) {
+			return "";
+		}
+		String letters = name.toUpperCase(Locale.ROOT).replaceAll("[^A-Z]", "");
+		if (letters.isEmpty()) {
+			return "";
+		}
+		StringBuilder code = new StringBuilder(4).append(letters.charAt(0));
+		char previous = SOUNDEX_CODES.charAt(letters.charAt(0) - 'A');
+		for (int i = 1; i < letters.length() && code.length() < 4; i++) {
+			char letter = letters.charAt(i);
+			char digit = SOUNDEX_CODES.charAt(letter - 'A');
+			if (digit != '0' && digit != previous) {
+				code.append(digit);
+			}
+			// H and W do not separate letters with the same code, vowels do
+			if (letter != 'H' && letter != 'W') {
+				previous = digit;
+			}
+		}
+		while (code.length() < 4) {
+			code.append('0');
+		}
+		return code.toString();
+	}
+
+	/**
+	 * Return the digits of a telephone number.
+	 */
+	static String digits(String telephone) {
+		return (telephone != null) ? telephone.replaceAll("\\D", "") : "";
+	}
+
+	/**
+	 * Return the last {@code length} digits of a telephone number, or all of them if
+	 * there are fewer.
+	 */
+	static String telephoneSuffix(String telephone, int length) {
+		String digits = digits(telephone);
+		return digits.substring(Math.max(0, digits.length() - length));
+	}
+
+	/**
+	 * Return the Jaro-Winkler similarity of two strings, ignoring case and surrounding
+	 * whitespace: 1 for equal strings and 0 for strings with nothing in common.
+	 */
+	static double jaroWinkler(String first, String second) {
+		String a = normalize(first);
+		String b = normalize(second);
+		if (a.equals(b)) {
+			return a.isEmpty() ? 0 : 1;
+		}
+		if (a.isEmpty() || b.isEmpty()) {
+			return 0;
+		}
+		int window = Math.max(0, Math.max(a.length(), b.length()) / 2 - 1);
+		boolean[] matchedA = new boolean[a.length()];
+		boolean[] matchedB = new boolean[b.length()];
+		int matches = 0;
+		for (int i = 0; i < a.length(); i++) {
+			for (int j = Math.max(0, i - window); j < Math.min(b.length(), i + window + 1); j++) {
+				if (!matchedB[j] && a.charAt(i) == b.charAt(j)) {
+					matchedA[i] = true;
+					matchedB[j] = true;
+					matches++;
+					break;
+				}
+			}
+		}
+		if (matches == 0) {
+			return 0;
+		}
+		int transpositions = 0;
+		for (int i = 0, j = 0; i < a.length(); i++) {
+			if (matchedA[i]) {
+				while (!matchedB[j]) {
+					j++;
+				}
+				if (a.charAt(i) != b.charAt(j)) {
+					transpositions++;
+				}
+				j++;
+			}
+		}
+		double m = matches;
+		double jaro = (m / a.length() + m / b.length() + (m - transpositions / 2.0) / m) / 3;
+		if (jaro <= BOOST_THRESHOLD) {
+			return jaro;
+		}
+		int prefix = 0;
+		while (prefix < Math.min(4, Math.min(a.length(), b.length())) && a.charAt(prefix) == b.charAt(prefix)) {
+			prefix++;
+		}
+		return jaro + prefix * 0.1 * (1 - jaro);
+	}
+
+	private static String normalize(String value) {
+		return (value != null) ? value.trim().toLowerCase(Locale.ROOT) : "";
+	}
+
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.samples.petclinic.jobs.BatchJob;
+import org.springframework.samples.petclinic.jobs.BatchJobRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * The {@code owner_summary} read model: one row per owner with their pet count, pet names
+ * and last visit date, so that searching and listing owners is a single scan of the
+ * {@code last_name} index. A row is recomputed whenever a change to its owner aggregate
+ * is announced, which every write path does once its transaction has committed. The row
+ * is therefore written in a transaction of its own rather than in the committed one of
+ * the writer. Changes from other instances are announced too, and recomputing a row again
+ * is harmless.
+ * <p>
+ * The whole table is rebuilt by the {@value #NAME} batch job, and at startup if it is
+ * empty. {@link #check()} compares every row with a fresh computation; the scheduled
+ * check recomputes the rows that drifted, for example because the instance stopped
+ * between a commit and the update of the summary.
+ */
+@Component
+public class OwnerSummaries implements BatchJob {
+
+	static final String NAME = "owner-summary";
+
+	private static final Log logger = LogFactory.getLog(OwnerSummaries.class);
+
+	private static final int MAX_PET_NAMES = 255;
+
+	private static final int CHECK_CHUNK_SIZE = 1000;
+
+	private static final String SELECT_OWNERS = "SELECT id, first_name, last_name, address, city, telephone FROM owners WHERE id %s";
+
+	private static final String SELECT_PETS = "SELECT owner_id, name FROM pets WHERE owner_id %s ORDER BY name, id";
+
+	private static final String SELECT_LAST_VISITS = "SELECT p.owner_id, MAX(v.visit_date) FROM %s v JOIN pets p ON p.id = v.pet_id"
+			+ " WHERE p.owner_id %s GROUP BY p.owner_id";
+
+	private static final String SELECT_SUMMARIES = "SELECT owner_id, first_name, last_name, address, city, telephone,"
+			+ " pet_count, pet_names, last_visit_date FROM owner_summary";
+
+	private static final String INSERT_SUMMARY = "INSERT INTO owner_summary (owner_id, first_name, last_name, address,"
+			+ " city, telephone, pet_count, pet_names, last_visit_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+	private static final String IN_IDS = "IN (:ids)";
+
+	private static final String BETWEEN_IDS = "BETWEEN :first AND :last";
+
+	private static final RowMapper<OwnerSummary> SUMMARY_MAPPER = (rs, rowNum) -> new OwnerSummary(rs.getInt(1),
+			rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5), rs.getString(6), rs.getInt(7),
+			rs.getString(8), toLocalDate(rs.getDate(9)));
+
+	private final NamedParameterJdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final BatchJobRunner runner;
+
+	OwnerSummaries(NamedParameterJdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+			BatchJobRunner runner) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.runner = runner;
+	}
+
+	/**
+	 * Return a page of the owners whose last name starts with the given prefix, ordered
+	 * by last name. The total is only counted when the page does not tell it already.
+	 */
+	public Page<OwnerSummary> findByLastName(String lastName, Pageable pageable) {
+		MapSqlParameterSource params = new MapSqlParameterSource("lastName", lastName + "%")
+			.addValue("size", pageable.getPageSize())
+			.addValue("offset", pageable.getOffset());
+		List<OwnerSummary> content = this.jdbcTemplate.query(
+				SELECT_SUMMARIES
+						+ " WHERE last_name LIKE :lastName ORDER BY last_name, owner_id LIMIT :size OFFSET :offset",
+				params, SUMMARY_MAPPER);
+		return PageableExecutionUtils.getPage(content, pageable, () -> this.jdbcTemplate
+			.queryForObject("SELECT COUNT(*) FROM owner_summary WHERE last_name LIKE :lastName", params, Long.class));
+	}
+
+	/**
+	 * Return the summaries of the given owners, in the order of their ids. The summaries
+	 * not written yet, for example of an owner created since the last refresh, are
+	 * computed from the owner aggregates, so that only owners that no longer exist are
+	 * left out.
+	 */
+	public List<OwnerSummary> findByIds(List<Integer> ownerIds) {
+		if (ownerIds.isEmpty()) {
+			return List.of();
+		}
+		Map<Integer, OwnerSummary> summaries = new HashMap<>();
+		this.jdbcTemplate.query(SELECT_SUMMARIES + " WHERE owner_id " + IN_IDS, Map.of("ids", ownerIds), SUMMARY_MAPPER)
+			.forEach(summary -> summaries.put(summary.id(), summary));
+		List<Integer> missing = ownerIds.stream().filter(id -> !summaries.containsKey(id)).toList();
+		if (!missing.isEmpty()) {
+			summaries.putAll(compute(IN_IDS, new MapSqlParameterSource("ids", missing)));
+		}
+		return ownerIds.stream().map(summaries::get).filter(Objects::nonNull).toList();
+	}
+
+	@EventListener
+	void onEntityChanged(EntityChangedEvent event) {
+		if (EntityChangedEvent.OWNER.equals(event.entity())) {
+			if (event.id() != null) {
+				refresh(List.of(event.id()));
+			}
+			else {
+				this.runner.start(NAME);
+			}
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	void buildIfEmpty() {
+		if (count("SELECT COUNT(*) FROM owner_summary") == 0) {
+			long max = count("SELECT MAX(id) FROM owners");
+			this.transactionTemplate.executeWithoutResult(status -> processChunk(0, max));
+		}
+	}
+
+	/**
+	 * Recompute the summaries of the given owners.
+	 */
+	public void refresh(Collection<Integer> ownerIds) {
+		MapSqlParameterSource ids = new MapSqlParameterSource("ids", ownerIds);
+		this.transactionTemplate.executeWithoutResult(status -> write(IN_IDS, ids));
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public String getTable() {
+		return "owners";
+	}
+
+	@Override
+	public int processChunk(long firstId, long lastId) {
+		return write(BETWEEN_IDS, new MapSqlParameterSource("first", firstId).addValue("last", lastId));
+	}
+
+	/**
+	 * Compare every summary with a fresh computation.
+	 * @return the owners whose summary is missing, stale or left over, empty if the read
+	 * model is consistent
+	 */
+	public List<Discrepancy> check() {
+		long max = Math.max(count("SELECT MAX(id) FROM owners"), count("SELECT MAX(owner_id) FROM owner_summary"));
+		List<Discrepancy> discrepancies = new ArrayList<>();
+		for (long first = 0; first <= max; first += CHECK_CHUNK_SIZE) {
+			MapSqlParameterSource range = new MapSqlParameterSource("first", first).addValue("last",
+					first + CHECK_CHUNK_SIZE - 1);
+			Map<Integer, OwnerSummary> expected = compute(BETWEEN_IDS, range);
+			Map<Integer, OwnerSummary> actual = new HashMap<>();
+			this.jdbcTemplate.query(SELECT_SUMMARIES + " WHERE owner_id " + BETWEEN_IDS, range, rs -> {
+				OwnerSummary summary = SUMMARY_MAPPER.mapRow(rs, 0);
+				actual.put(summary.id(), summary);
+			});
+			expected.forEach((id, summary) -> {
+				if (!summary.equals(actual.get(id))) {
+					discrepancies.add(new Discrepancy(id, summary, actual.get(id)));
+				}
+			});
+			actual.forEach((id, summary) -> {
+				if (!expected.containsKey(id)) {
+					discrepancies.add(new Discrepancy(id, null, summary));
+				}
+			});
+		}
+		return discrepancies;
+	}
+
+	@Scheduled(fixedDelayString = "${petclinic.owners.summary.check-delay:3600000}",
+			initialDelayString = "${petclinic.owners.summary.check-delay:3600000}")
+	void checkAndRepair() {
+		List<Discrepancy> discrepancies = check();
+		if (!discrepancies.isEmpty()) {
+			logger.warn("Owner summaries drifted for " + discrepancies.size() + " owners, refreshing: "
+					+ discrepancies.stream().map(Discrepancy::ownerId).toList());
+			refresh(discrepancies.stream().map(Discrepancy::ownerId).toList());
+		}
+	}
+
+	private int write(String ids, MapSqlParameterSource params) {
+		Map<Integer, OwnerSummary> summaries = compute(ids, params);
+		this.jdbcTemplate.update("DELETE FROM owner_summary WHERE owner_id " + ids, params);
+		List<OwnerSummary> rows = new ArrayList<>(summaries.values());
+		this.jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_SUMMARY, rows, rows.size(), (ps, summary) -> {
+			ps.setInt(1, summary.id());
+			ps.setString(2, summary.firstName());
+			ps.setString(3, summary.lastName());
+			ps.setString(4, summary.address());
+			ps.setString(5, summary.city());
+			ps.setString(6, summary.telephone());
+			ps.setInt(7, summary.petCount());
+			ps.setString(8, summary.petNames());
+			ps.setDate(9, (summary.lastVisitDate() != null) ? Date.valueOf(summary.lastVisitDate()) : null);
+		});
+		return rows.size();
+	}
+
+	private Map<Integer, OwnerSummary> compute(String ids, MapSqlParameterSource params) {
+		Map<Integer, List<String>> pets = new HashMap<>();
+		this.jdbcTemplate.query(SELECT_PETS.formatted(ids), params, rs -> {
+			pets.computeIfAbsent(rs.getInt(1), id -> new ArrayList<>()).add(rs.getString(2));
+		});
+		Map<Integer, LocalDate> lastVisits = new HashMap<>();
+		for (String table : List.of("visits", "visits_archive")) {
+			this.jdbcTemplate.query(SELECT_LAST_VISITS.formatted(table, ids), params, rs -> {
+				LocalDate date = toLocalDate(rs.getDate(2));
+				if (date != null) {
+					lastVisits.merge(rs.getInt(1), date, (a, b) -> a.isAfter(b) ? a : b);
+				}
+			});
+		}
+		Map<Integer, OwnerSummary> summaries = new LinkedHashMap<>();
+		this.jdbcTemplate.query(SELECT_OWNERS.formatted(ids), params, rs -> {
+			OwnerSummary summary = summarize(rs, pets.getOrDefault(rs.getInt(1), List.of()),
+					lastVisits.get(rs.getInt(1)));
+			summaries.put(summary.id(), summary);
+		});
+		return summaries;
+	}
+
+	private long count(String sql) {
+		Long count = this.jdbcTemplate.getJdbcTemplate().queryForObject(sql, Long.class);
+		return (count != null) ? count : 0;
+	}
+
+	private static OwnerSummary summarize(ResultSet rs, List<String> pets, LocalDate lastVisit) throws SQLException {
+		String names = pets.isEmpty() ? null : String.join(", ", pets);
+		if (names != null && names.length() > MAX_PET_NAMES) {
+			names = names.substring(0, MAX_PET_NAMES - 3) + "...";
+		}
+		return new OwnerSummary(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5),
+				rs.getString(6), pets.size(), names, lastVisit);
+	}
+
+	private static LocalDate toLocalDate(Date date) {
+		return (date != null) ? date.toLocalDate() : null;
+	}
+
+	/**
+	 * An owner whose stored summary differs from a fresh computation.
+	 *
+	 * @param expected the computed summary, {@code null} if the owner does not exist
+	 * @param actual the stored summary, {@code null} if there is none
+	 */
+	public record Discrepancy(Integer ownerId, OwnerSummary expected, OwnerSummary actual) {
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.owner.OwnerSummaries.Discrepancy;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Owner search served from the {@code owner_summary} read model, for example
+ * {@code /api/owners/summaries?lastName=Dav&page=1&size=20}.
+ */
+@RestController
+class OwnerSummaryController {
+
+	private static final int MAX_PAGE_SIZE = 100;
+
+	private final OwnerSummaries summaries;
+
+	OwnerSummaryController(OwnerSummaries summaries) {
+		this.summaries = summaries;
+	}
+
+	@GetMapping("/api/owners/summaries")
+	public SummaryPage findOwners(@RequestParam(defaultValue = "") String lastName,
+			@RequestParam(defaultValue = "1") int page, @RequestParam(defaultValue = "20") int size) {
+		if (page < 1 || size < 1 || size > MAX_PAGE_SIZE) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"page must be positive and size between 1 and " + MAX_PAGE_SIZE);
+		}
+		Page<OwnerSummary> owners = this.summaries.findByLastName(lastName, PageRequest.of(page - 1, size));
+		return new SummaryPage(page, owners.getTotalPages(), owners.getTotalElements(), owners.getContent());
+	}
+
+	@GetMapping("/api/owners/summaries/check")
+	public List<Discrepancy> checkSummaries() {
+		return this.summaries.check();
+	}
+
+	record SummaryPage(int page, int totalPages, long totalItems, List<OwnerSummary> owners) {
+	}
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.server.ResponseStatusException;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Caller ID lookup of owners, for example {@code /owners/by-phone/608-555-1749}. Answers
+ * a JSON array of the owners with that number, as a household can share one.
+ */
+@Controller
+class OwnerTelephoneController {
+
+	private static final int MAX_OWNERS = 16;
+
+	private final OwnerTelephones telephones;
+
+	private final OwnerJsonWriter writer;
+
+	private final OwnerFieldSelection fields = OwnerFieldSelection.parse(null, null);
+
+	OwnerTelephoneController(OwnerTelephones telephones, OwnerJsonWriter writer) {
+		this.telephones = telephones;
+		this.writer = writer;
+	}
+
+	@GetMapping("/owners/by-phone/{number}")
+	public void findByTelephone(@PathVariable("number") String number, HttpServletResponse response)
+			throws IOException {
+		if (TelephoneIndex.key(number) == TelephoneIndex.NO_KEY) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not a telephone number: " + number);
+		}
+		int[] ownerIds = new int[MAX_OWNERS];
+		int found = Math.min(this.telephones.find(number, ownerIds), MAX_OWNERS);
+		if (found == 0) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No owner with telephone " + number);
+		}
+		List<Integer> ids = new ArrayList<>(found);
+		for (int i = 0; i < found; i++) {
+			ids.add(ownerIds[i]);
+		}
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		this.writer.writeOwners(ids, this.fields, response.getOutputStream());
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the {@link TelephoneIndex} of owners in step with the {@code owners} table. The
+ * index is built with one scan when the application is ready and each owner is re-indexed
+ * when its change is announced, which every save through the {@link OwnerRepository}
+ * does.
+ */
+@Component
+class OwnerTelephones {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final int expectedOwners;
+
+	private final TelephoneIndex index;
+
+	private final Set<Integer> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean rebuilding;
+
+	OwnerTelephones(JdbcTemplate jdbcTemplate,
+			@Value("${petclinic.owners.telephones.expected-owners:1024}") int expectedOwners) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.expectedOwners = expectedOwners;
+		this.index = new TelephoneIndex(expectedOwners);
+	}
+
+	/**
+	 * Look up the owners with the given telephone number.
+	 * @see TelephoneIndex#find(CharSequence, int[])
+	 */
+	int find(CharSequence telephone, int[] ownerIds) {
+		return this.index.find(telephone, ownerIds);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	synchronized void rebuild() {
+		this.rebuilding = true;
+		try {
+			Integer count = this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM owners", Integer.class);
+			TelephoneIndex rebuilt = new TelephoneIndex(Math.max(this.expectedOwners, (count != null) ? count : 0));
+			this.jdbcTemplate.query("SELECT id, telephone FROM owners", rs -> {
+				rebuilt.put(rs.getInt(1), rs.getString(2));
+			});
+			this.index.replaceWith(rebuilt);
+		}
+		finally {
+			this.rebuilding = false;
+		}
+		// changes applied to the previous index while the new one was being read
+		for (Integer ownerId : List.copyOf(this.changedDuringRebuild)) {
+			this.changedDuringRebuild.remove(ownerId);
+			reindex(ownerId);
+		}
+	}
+
+	@EventListener
+	void onEntityChanged(EntityChangedEvent event) {
+		if (EntityChangedEvent.OWNER.equals(event.entity())) {
+			if (event.id() == null) {
+				rebuild();
+				return;
+			}
+			if (this.rebuilding) {
+				this.changedDuringRebuild.add(event.id());
+			}
+			reindex(event.id());
+		}
+	}
+
+	private void reindex(int ownerId) {
+		List<String> telephone = this.jdbcTemplate.queryForList("SELECT telephone FROM owners WHERE id = ?",
+				String.class, ownerId);
+		if (telephone.isEmpty()) {
+			this.index.remove(ownerId);
+		}
+		else {
+			this.index.put(ownerId, telephone.get(0));
+		}
+	}
+
+}
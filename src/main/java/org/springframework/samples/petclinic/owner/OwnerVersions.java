@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Versions of the owner aggregates, kept in the {@code owner_versions} table and bumped
+ * whenever a change to an owner, its pets or its visits is published on the
+ * {@code EntityChangeBus}. The bump joins the transaction of the publisher, which for
+ * saves through the {@code OwnerRepository} is also the transaction of the save, see
+ * {@code OwnerChangePublisher}, so it commits or rolls back with the change.
+ * <p>
+ * A change to every owner, or to the pet types, bumps the rows of all owners, adding the
+ * missing ones, so that reading a version stays a single row lookup.
+ * <p>
+ * The {@link #getEpoch() epoch} identifies the {@code owner_versions} table itself, so
+ * that versions that start over with a new database can be told apart.
+ */
+@Aspect
+@Component
+public class OwnerVersions {
+
+	private static final String SELECT_VERSION = "SELECT version FROM owner_versions WHERE owner_id = ?";
+
+	private static final String SELECT_EPOCH = "SELECT created_at FROM owner_versions_epoch WHERE id = 1";
+
+	private static final String BUMP_ALL_VERSIONS = "UPDATE owner_versions SET version = version + 1";
+
+	private static final String INSERT_MISSING_VERSIONS = "INSERT INTO owner_versions (owner_id, version)"
+			+ " SELECT id, 1 FROM owners o WHERE NOT EXISTS (SELECT 1 FROM owner_versions v WHERE v.owner_id = o.id)";
+
+	private static final String MERGE_VERSION = "MERGE INTO owner_versions v USING (VALUES (CAST(? AS INTEGER))) AS s (owner_id)"
+			+ " ON v.owner_id = s.owner_id WHEN MATCHED THEN UPDATE SET version = v.version + 1"
+			+ " WHEN NOT MATCHED THEN INSERT (owner_id, version) VALUES (s.owner_id, 1)";
+
+	private static final String MYSQL_UPSERT_VERSION = "INSERT INTO owner_versions (owner_id, version) VALUES (?, 1)"
+			+ " ON DUPLICATE KEY UPDATE version = version + 1";
+
+	private static final String POSTGRES_UPSERT_VERSION = "INSERT INTO owner_versions (owner_id, version) VALUES (?, 1)"
+			+ " ON CONFLICT (owner_id) DO UPDATE SET version = owner_versions.version + 1";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final String bumpVersion;
+
+	private volatile String epoch;
+
+	OwnerVersions(JdbcTemplate jdbcTemplate, @Value("${database}") String database) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.bumpVersion = switch (database) {
+			case "mysql" -> MYSQL_UPSERT_VERSION;
+			case "postgres" -> POSTGRES_UPSERT_VERSION;
+			default -> MERGE_VERSION;
+		};
+	}
+
+	/**
+	 * Return the version of the given owner's aggregate, with a single primary key
+	 * lookup.
+	 */
+	public long getVersion(int ownerId) {
+		List<Long> version = this.jdbcTemplate.queryForList(SELECT_VERSION, Long.class, ownerId);
+		return version.isEmpty() ? 0 : version.get(0);
+	}
+
+	/**
+	 * Return when the versions were created, as written with the schema. It changes when
+	 * the database is created afresh, for example on every start with an in-memory
+	 * database, and is the same on every instance that shares the database.
+	 */
+	public String getEpoch() {
+		String epoch = this.epoch;
+		if (epoch == null) {
+			Timestamp created = this.jdbcTemplate.queryForObject(SELECT_EPOCH, Timestamp.class);
+			epoch = Long.toString(created.getTime(), 36);
+			this.epoch = epoch;
+		}
+		return epoch;
+	}
+
+	/**
+	 * Bump the version of the given owner's aggregate.
+	 */
+	public void bump(int ownerId) {
+		this.jdbcTemplate.update(this.bumpVersion, ownerId);
+	}
+
+	/**
+	 * Bump the versions of all owners' aggregates.
+	 */
+	public void bumpAll() {
+		this.jdbcTemplate.update(BUMP_ALL_VERSIONS);
+		this.jdbcTemplate.update(INSERT_MISSING_VERSIONS);
+	}
+
+	@Before("execution(* org.springframework.samples.petclinic.changes.EntityChangeBus.publish(..)) && args(event)")
+	void changePublished(EntityChangedEvent event) {
+		if (EntityChangedEvent.OWNER.equals(event.entity())) {
+			if (event.id() != null) {
+				bump(event.id());
+			}
+			else {
+				bumpAll();
+			}
+		}
+		else if (EntityChangedEvent.PET_TYPE.equals(event.entity())) {
+			bumpAll();
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.Period;
+import java.time.YearMonth;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangeBus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * {@link VisitPartitionManager} for Postgres, where each month is a table
+ * {@code visits_pYYYYMM} attached to {@code visits}. The composite index declared on
+ * {@code visits} is created on every new partition. Creating a partition moves the rows
+ * of its month out of {@code visits_default}, all in one transaction.
+ */
+class PostgresVisitPartitionManager extends VisitPartitionManager {
+
+	private static final String COUNT_PARTITIONED = "SELECT COUNT(*) FROM pg_partitioned_table pt"
+			+ " JOIN pg_class c ON c.oid = pt.partrelid WHERE c.relname = 'visits' AND pg_table_is_visible(c.oid)";
+
+	private static final String SELECT_PARTITIONS = "SELECT c.relname FROM pg_inherits i"
+			+ " JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent"
+			+ " WHERE p.relname = 'visits' AND pg_table_is_visible(p.oid)";
+
+	private final TransactionTemplate transactionTemplate;
+
+	PostgresVisitPartitionManager(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+			EntityChangeBus changes, int premake, Period retention) {
+		super(jdbcTemplate, changes, premake, retention);
+		this.transactionTemplate = transactionTemplate;
+	}
+
+	@Override
+	protected boolean isPartitioned() {
+		Integer count = this.jdbcTemplate.queryForObject(COUNT_PARTITIONED, Integer.class);
+		return count != null && count > 0;
+	}
+
+	@Override
+	protected SortedSet<YearMonth> getPartitions() {
+		SortedSet<YearMonth> months = new TreeSet<>();
+		this.jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class)
+			.stream()
+			.map(VisitPartitionManager::partitionMonth)
+			.filter(Objects::nonNull)
+			.forEach(months::add);
+		return months;
+	}
+
+	@Override
+	protected void createPartition(YearMonth month) {
+		String table = tableName(month);
+		String range = " visit_date >= '" + month.atDay(1) + "' AND visit_date < '" + month.plusMonths(1).atDay(1)
+				+ "'";
+		// a partition cannot be attached while the default partition holds rows of its
+		// month, so those are moved into the new table first
+		this.transactionTemplate.executeWithoutResult(status -> {
+			this.jdbcTemplate
+				.execute("CREATE TABLE " + table + " (LIKE visits INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+			this.jdbcTemplate.update("INSERT INTO " + table + " SELECT * FROM visits_default WHERE" + range);
+			this.jdbcTemplate.update("DELETE FROM visits_default WHERE" + range);
+			this.jdbcTemplate.execute("ALTER TABLE visits ATTACH PARTITION " + table + " FOR VALUES FROM ('"
+					+ month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+		});
+	}
+
+	@Override
+	protected int expirePartition(YearMonth month) {
+		String table = tableName(month);
+		Integer archived = this.transactionTemplate.execute(status -> {
+			int copied = this.jdbcTemplate
+				.update("INSERT INTO visits_archive (id, pet_id, visit_date, description, archived_at)"
+						+ " SELECT id, pet_id, visit_date, description, ? FROM " + table
+						+ " ON CONFLICT (id) DO NOTHING", Timestamp.from(Instant.now()));
+			this.jdbcTemplate.execute("DROP TABLE " + table);
+			return copied;
+		});
+		return (archived != null) ? archived : 0;
+	}
+
+	private static String tableName(YearMonth month) {
+		return "visits_" + partitionName(month);
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Finds the owner of a pet or visit for Hibernate post-commit listeners. Pets and visits
+ * do not reference their owner, so the owner is looked up among the owners of the
+ * session, which holds the whole aggregate when it was saved through the
+ * {@code OwnerRepository}. The pets and visits of those owners are indexed once per
+ * transaction, on its first lookup.
+ */
+public class SessionOwners {
+
+	private final Map<EventSource, Map<Object, Member>> members = new ConcurrentHashMap<>();
+
+	/**
+	 * Append the given listener for each post-commit event type it implements.
+	 */
+	public static void register(EntityManagerFactory entityManagerFactory, Object listener) {
+		EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+			.getServiceRegistry()
+			.getService(EventListenerRegistry.class);
+		if (listener instanceof PostCommitInsertEventListener insert) {
+			registry.appendListeners(EventType.POST_COMMIT_INSERT, insert);
+		}
+		if (listener instanceof PostCommitUpdateEventListener update) {
+			registry.appendListeners(EventType.POST_COMMIT_UPDATE, update);
+		}
+		if (listener instanceof PostCommitDeleteEventListener delete) {
+			registry.appendListeners(EventType.POST_COMMIT_DELETE, delete);
+		}
+	}
+
+	/**
+	 * Return the owner and pet of the given owner, pet or visit of the session.
+	 * @return the member, or {@code null} if its owner is not in the session
+	 */
+	public Member find(Object entity, EventSource session) {
+		if (entity instanceof Owner owner) {
+			return new Member(owner, null);
+		}
+		Map<Object, Member> members = this.members.get(session);
+		if (members == null) {
+			members = index(session);
+			this.members.put(session, members);
+			// runs after the remaining post-commit events of the transaction
+			session.getActionQueue().registerProcess((success, completed) -> this.members.remove(completed));
+		}
+		return members.get(entity);
+	}
+
+	private static Map<Object, Member> index(EventSource session) {
+		Map<Object, Member> members = new IdentityHashMap<>();
+		for (Object managed : session.getPersistenceContextInternal().getEntitiesByKey().values()) {
+			if (managed instanceof Owner owner) {
+				for (Pet pet : owner.getPets()) {
+					Member member = new Member(owner, pet);
+					members.put(pet, member);
+					pet.getVisits().forEach(visit -> members.put(visit, member));
+				}
+			}
+		}
+		return members;
+	}
+
+	/**
+	 * An entity of an owner aggregate with its owner and, unless it is the owner, its
+	 * pet.
+	 */
+	public record Member(Owner owner, Pet pet) {
+	}
+
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Index of owners by normalised telephone number, for caller ID lookups. A number is
+ * normalised to its digits, packed with their count into a {@code long}, so that
+ * {@code 608-555-1749} and {@code (608) 5551749} share a key and leading zeros still
+ * count. Numbers with no digits, or more than the 15 digits of an international number,
+ * are not indexed.
+ * <p>
+ * Keys and owner ids are kept in open addressing tables of primitives, so a {@link #find
+ * lookup} allocates neither boxed keys nor strings. Lookups are optimistic reads that
+ * only take the read lock when they overlapped a write.
+ */
+class TelephoneIndex {
+
+	static final long NO_KEY = 0;
+
+	private static final int MAX_DIGITS = 15;
+
+	private final StampedLock lock = new StampedLock();
+
+	private LongTable owners;
+
+	private LongTable telephones;
+
+	TelephoneIndex(int expectedOwners) {
+		this.owners = new LongTable(expectedOwners);
+		this.telephones = new LongTable(expectedOwners);
+	}
+
+	/**
+	 * Return the key of a telephone number, or {@link #NO_KEY} if it cannot be indexed.
+	 */
+	static long key(CharSequence telephone) {
+		if (telephone == null) {
+			return NO_KEY;
+		}
+		long digits = 0;
+		int count = 0;
+		for (int i = 0; i < telephone.length(); i++) {
+			char c = telephone.charAt(i);
+			if (c >= '0' && c <= '9') {
+				if (++count > MAX_DIGITS) {
+					return NO_KEY;
+				}
+				digits = digits * 10 + (c - '0');
+			}
+		}
+		return (count > 0) ? (digits << 4) | count : NO_KEY;
+	}
+
+	/**
+	 * Copy the ids of the owners with the given telephone number into {@code ownerIds}.
+	 * @return the number of owners found, which can be more than the length of
+	 * {@code ownerIds}
+	 */
+	int find(CharSequence telephone, int[] ownerIds) {
+		long key = key(telephone);
+		if (key == NO_KEY) {
+			return 0;
+		}
+		long stamp = this.lock.tryOptimisticRead();
+		int found = this.owners.get(key, ownerIds);
+		if (!this.lock.validate(stamp)) {
+			stamp = this.lock.readLock();
+			try {
+				found = this.owners.get(key, ownerIds);
+			}
+			finally {
+				this.lock.unlockRead(stamp);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Index an owner under a new telephone number, replacing the previous one.
+	 */
+	void put(int ownerId, String telephone) {
+		long key = key(telephone);
+		long stamp = this.lock.writeLock();
+		try {
+			removeOwner(ownerId);
+			if (key != NO_KEY) {
+				this.owners.put(key, ownerId);
+				this.telephones.put(ownerId, key);
+			}
+		}
+		finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	void remove(int ownerId) {
+		long stamp = this.lock.writeLock();
+		try {
+			removeOwner(ownerId);
+		}
+		finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Replace the whole index with the contents of another one.
+	 */
+	void replaceWith(TelephoneIndex index) {
+		long stamp = this.lock.writeLock();
+		try {
+			this.owners = index.owners;
+			this.telephones = index.telephones;
+		}
+		finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	int size() {
+		return this.telephones.size;
+	}
+
+	private void removeOwner(int ownerId) {
+		long previous = this.telephones.removeKey(ownerId);
+		if (previous != NO_KEY) {
+			this.owners.remove(previous, ownerId);
+		}
+	}
+
+	/**
+	 * Multimap of non-zero {@code long} keys to {@code long} values, with linear probing
+	 * over a single array of key and value pairs. A reader holding a stale array still
+	 * sees pairs that belong together. Removal shifts the following entries back instead
+	 * of leaving tombstones.
+	 */
+	private static final class LongTable {
+
+		private long[] entries;
+
+		private int size;
+
+		LongTable(int expected) {
+			int capacity = Integer.highestOneBit(Math.max(8, expected * 2 - 1)) << 1;
+			this.entries = new long[capacity * 2];
+		}
+
+		int get(long key, int[] values) {
+			long[] entries = this.entries;
+			int mask = entries.length / 2 - 1;
+			int found = 0;
+			for (int slot = slot(key, mask), probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+				long current = entries[slot * 2];
+				if (current == NO_KEY) {
+					break;
+				}
+				if (current == key) {
+					if (found < values.length) {
+						values[found] = (int) entries[slot * 2 + 1];
+					}
+					found++;
+				}
+			}
+			return found;
+		}
+
+		void put(long key, long value) {
+			if ((this.size + 1) * 2 > this.entries.length / 2) {
+				resize();
+			}
+			int mask = this.entries.length / 2 - 1;
+			int slot = slot(key, mask);
+			while (this.entries[slot * 2] != NO_KEY) {
+				slot = (slot + 1) & mask;
+			}
+			this.entries[slot * 2 + 1] = value;
+			this.entries[slot * 2] = key;
+			this.size++;
+		}
+
+		/**
+		 * Remove the first entry with the given key and return its value, or
+		 * {@link #NO_KEY}.
+		 */
+		long removeKey(long key) {
+			int slot = find(key, 0, false);
+			if (slot < 0) {
+				return NO_KEY;
+			}
+			long value = this.entries[slot * 2 + 1];
+			delete(slot);
+			return value;
+		}
+
+		void remove(long key, long value) {
+			int slot = find(key, value, true);
+			if (slot >= 0) {
+				delete(slot);
+			}
+		}
+
+		private int find(long key, long value, boolean matchValue) {
+			int mask = this.entries.length / 2 - 1;
+			for (int slot = slot(key, mask);; slot = (slot + 1) & mask) {
+				long current = this.entries[slot * 2];
+				if (current == NO_KEY) {
+					return -1;
+				}
+				if (current == key && (!matchValue || this.entries[slot * 2 + 1] == value)) {
+					return slot;
+				}
+			}
+		}
+
+		private void delete(int slot) {
+			int mask = this.entries.length / 2 - 1;
+			int hole = slot;
+			for (int next = (hole + 1) & mask;; next = (next + 1) & mask) {
+				long key = this.entries[next * 2];
+				if (key == NO_KEY) {
+					break;
+				}
+				int home = slot(key, mask);
+				// move the entry back unless its home lies cyclically in (hole, next]
+				boolean reachable = (hole <= next) ? (hole < home && home <= next) : (hole < home || home <= next);
+				if (!reachable) {
+					this.entries[hole * 2] = key;
+					this.entries[hole * 2 + 1] = this.entries[next * 2 + 1];
+					hole = next;
+				}
+			}
+			this.entries[hole * 2] = NO_KEY;
+			this.entries[hole * 2 + 1] = 0;
+			this.size--;
+		}
+
+		private void resize() {
+			long[] previous = this.entries;
+			LongTable resized = new LongTable(previous.length / 2);
+			for (int i = 0; i < previous.length; i += 2) {
+				if (previous[i] != NO_KEY) {
+					resized.put(previous[i], previous[i + 1]);
+				}
+			}
+			this.entries = resized.entries;
+		}
+
+		private static int slot(long key, int mask) {
+			// the finalizer of MurmurHash3, as consecutive keys must not share slots
+			long hash = key;
+			hash ^= hash >>> 33;
+			hash *= 0xff51afd7ed558ccdL;
+			hash ^= hash >>> 33;
+			hash *= 0xc4ceb9fe1a85ec53L;
+			hash ^= hash >>> 33;
+			return (int) hash & mask;
+		}
+
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.jobs.BatchJob;
+import org.springframework.samples.petclinic.jobs.BatchJobRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Nightly job recording a vaccination reminder for every pet whose last visit, or birth
+ * date if it was never seen, is more than the vaccination interval ago. Reminders that
+ * fall due within the look-ahead period are recorded too, so owners can be told in
+ * advance. A reminder is only recorded if the pet has none for that due date or a later
+ * one.
+ */
+@Component
+class VaccinationReminderJob implements BatchJob {
+
+	static final String NAME = "vaccination-reminders";
+
+	private static final String SELECT_PETS = "SELECT p.id, p.owner_id, p.birth_date, MAX(v.visit_date)"
+			+ " FROM pets p LEFT JOIN visits v ON v.pet_id = p.id"
+			+ " WHERE p.id BETWEEN ? AND ? AND p.owner_id IS NOT NULL GROUP BY p.id, p.owner_id, p.birth_date";
+
+	private static final String SELECT_LAST_REMINDERS = "SELECT pet_id, MAX(due_date) FROM vaccination_reminders"
+			+ " WHERE pet_id BETWEEN ? AND ? GROUP BY pet_id";
+
+	private static final String INSERT_REMINDER = "INSERT INTO vaccination_reminders (pet_id, owner_id, due_date, created_at) VALUES (?, ?, ?, ?)";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final BatchJobRunner runner;
+
+	private final Period interval;
+
+	private final Period lookAhead;
+
+	VaccinationReminderJob(JdbcTemplate jdbcTemplate, BatchJobRunner runner,
+			@Value("${petclinic.jobs.vaccination-reminders.interval:P1Y}") Period interval,
+			@Value("${petclinic.jobs.vaccination-reminders.look-ahead:P30D}") Period lookAhead) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.runner = runner;
+		this.interval = interval;
+		this.lookAhead = lookAhead;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public String getTable() {
+		return "pets";
+	}
+
+	@Override
+	public int processChunk(long firstId, long lastId) {
+		LocalDate horizon = LocalDate.now().plus(this.lookAhead);
+		Map<Integer, LocalDate> lastReminders = new HashMap<>();
+		this.jdbcTemplate.query(SELECT_LAST_REMINDERS, rs -> {
+			lastReminders.put(rs.getInt(1), rs.getDate(2).toLocalDate());
+		}, firstId, lastId);
+		List<Reminder> reminders = new ArrayList<>();
+		this.jdbcTemplate.query(SELECT_PETS, rs -> {
+			LocalDate lastSeen = latest(rs.getDate(3), rs.getDate(4));
+			if (lastSeen != null) {
+				Reminder reminder = new Reminder(rs.getInt(1), rs.getInt(2), lastSeen.plus(this.interval));
+				LocalDate lastReminder = lastReminders.get(reminder.petId());
+				if (!reminder.dueDate().isAfter(horizon)
+						&& (lastReminder == null || lastReminder.isBefore(reminder.dueDate()))) {
+					reminders.add(reminder);
+				}
+			}
+		}, firstId, lastId);
+		Timestamp now = Timestamp.from(Instant.now());
+		this.jdbcTemplate.batchUpdate(INSERT_REMINDER, reminders, reminders.size(), (ps, reminder) -> {
+			ps.setInt(1, reminder.petId());
+			ps.setInt(2, reminder.ownerId());
+			ps.setDate(3, Date.valueOf(reminder.dueDate()));
+			ps.setTimestamp(4, now);
+		});
+		return reminders.size();
+	}
+
+	@Scheduled(cron = "${petclinic.jobs.vaccination-reminders.cron:0 0 2 * * *}")
+	void runNightly() {
+		this.runner.start(NAME);
+	}
+
+	private static LocalDate latest(Date birthDate, Date lastVisit) {
+		if (lastVisit == null) {
+			return (birthDate != null) ? birthDate.toLocalDate() : null;
+		}
+		if (birthDate == null || lastVisit.after(birthDate)) {
+			return lastVisit.toLocalDate();
+		}
+		return birthDate.toLocalDate();
+	}
+
+	private record Reminder(int petId, int ownerId, LocalDate dueDate) {
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Read access to the visits moved to {@code visits_archive} by the
+ * {@link VisitArchiveJob}.
+ */
+@Component
+public class VisitArchive {
+
+	private static final String COUNT_FOR_OWNER = "SELECT COUNT(*) FROM visits_archive a"
+			+ " JOIN pets p ON p.id = a.pet_id WHERE p.owner_id = ?";
+
+	private static final String SELECT_FOR_OWNER = "SELECT a.id, a.pet_id, p.name, a.visit_date, a.description"
+			+ " FROM visits_archive a JOIN pets p ON p.id = a.pet_id WHERE p.owner_id = ? ORDER BY a.visit_date, a.id";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public VisitArchive(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * Count the archived visits of all pets of the given owner.
+	 */
+	public long countForOwner(int ownerId) {
+		Long count = this.jdbcTemplate.queryForObject(COUNT_FOR_OWNER, Long.class, ownerId);
+		return (count != null) ? count : 0;
+	}
+
+	/**
+	 * Return the archived visits of all pets of the given owner, oldest first.
+	 */
+	public List<ArchivedVisit> findForOwner(int ownerId) {
+		return this.jdbcTemplate.query(SELECT_FOR_OWNER, (rs, rowNum) -> new ArchivedVisit(rs.getInt(1), rs.getInt(2),
+				rs.getString(3), rs.getObject(4, LocalDate.class), rs.getString(5)), ownerId);
+	}
+
+	/**
+	 * A visit that was moved to the archive.
+	 */
+	public record ArchivedVisit(int id, int petId, String petName, LocalDate date, String description) {
+	}
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+
+import org.springframework.samples.petclinic.owner.VisitArchive.ArchivedVisit;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * On-demand retrieval of an owner's archived visits, which are not loaded with the owner.
+ */
+@RestController
+class VisitArchiveController {
+
+	private final VisitArchive archive;
+
+	VisitArchiveController(VisitArchive archive) {
+		this.archive = archive;
+	}
+
+	@GetMapping("/owners/{ownerId}/visits/archive")
+	public List<ArchivedVisit> findArchivedVisits(@PathVariable("ownerId") int ownerId) {
+		return this.archive.findForOwner(ownerId);
+	}
+
+}
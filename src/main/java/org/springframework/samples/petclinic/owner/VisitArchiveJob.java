@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangeBus;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.samples.petclinic.jobs.BatchJob;
+import org.springframework.samples.petclinic.jobs.BatchJobRunner;
+import org.springframework.samples.petclinic.owner.OwnerRowsWritten.Operation;
+import org.springframework.samples.petclinic.owner.OwnerRowsWritten.Row;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Nightly job moving visits older than the archive horizon from {@code visits} to
+ * {@code visits_archive}, one chunk of visit ids per transaction, so that the hot table
+ * only holds recent history. Archived visits keep their id and can still be retrieved
+ * through {@link VisitArchive}. The moved visits are announced as deleted
+ * {@link OwnerRowsWritten} for the audit log.
+ */
+@Component
+class VisitArchiveJob implements BatchJob {
+
+	static final String NAME = "visit-archival";
+
+	private static final String COPY_VISITS = "INSERT INTO visits_archive (id, pet_id, visit_date, description, archived_at)"
+			+ " SELECT id, pet_id, visit_date, description, ? FROM visits WHERE id BETWEEN ? AND ? AND visit_date < ?";
+
+	private static final String SELECT_VISITS = "SELECT v.id, p.owner_id, v.pet_id, v.visit_date, v.description"
+			+ " FROM visits v LEFT JOIN pets p ON p.id = v.pet_id WHERE v.id BETWEEN ? AND ? AND v.visit_date < ?";
+
+	static final String DELETE_VISITS = "DELETE FROM visits WHERE id BETWEEN ? AND ? AND visit_date < ?";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final EntityChangeBus changes;
+
+	private final BatchJobRunner runner;
+
+	private final ApplicationEventPublisher events;
+
+	private final Period horizon;
+
+	VisitArchiveJob(JdbcTemplate jdbcTemplate, EntityChangeBus changes, BatchJobRunner runner,
+			ApplicationEventPublisher events, @Value("${petclinic.visits.archive.horizon:P5Y}") Period horizon) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.changes = changes;
+		this.runner = runner;
+		this.events = events;
+		this.horizon = horizon;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public String getTable() {
+		return "visits";
+	}
+
+	@Override
+	public int processChunk(long firstId, long lastId) {
+		Date cutoff = Date.valueOf(LocalDate.now().minus(this.horizon));
+		// visits recorded meanwhile get higher ids, so these are the rows copied below
+		List<Row> visits = this.jdbcTemplate.query(SELECT_VISITS, (rs, rowNum) -> {
+			Map<String, Object> values = new LinkedHashMap<>();
+			values.put("date", rs.getDate(4).toLocalDate());
+			values.put("description", rs.getString(5));
+			values.put("petId", rs.getInt(3));
+			return new Row(rs.getInt(1), rs.getInt(2), values);
+		}, firstId, lastId, cutoff);
+		if (visits.isEmpty()) {
+			return 0;
+		}
+		int copied = this.jdbcTemplate.update(COPY_VISITS, Timestamp.from(Instant.now()), firstId, lastId, cutoff);
+		int deleted = this.jdbcTemplate.update(DELETE_VISITS, firstId, lastId, cutoff);
+		if (deleted != copied || copied != visits.size()) {
+			throw new IllegalStateException("Archived " + copied + " of " + visits.size() + " visits but deleted "
+					+ deleted + " in " + firstId + "-" + lastId);
+		}
+		this.events.publishEvent(new OwnerRowsWritten(OwnerRowsWritten.VISIT, Operation.DELETE, visits));
+		visits.stream()
+			.map(Row::ownerId)
+			.filter(ownerId -> ownerId != 0)
+			.distinct()
+			.forEach(ownerId -> this.changes.publish(EntityChangedEvent.owner(ownerId)));
+		return copied;
+	}
+
+	@Scheduled(cron = "${petclinic.visits.archive.cron:0 30 2 * * *}")
+	void runNightly() {
+		this.runner.start(NAME);
+	}
+
+}
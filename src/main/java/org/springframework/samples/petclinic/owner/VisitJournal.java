@@ -0,0 +1,288 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped journal of visits that have been acknowledged by the
+ * write-behind path but not yet inserted into the {@code visits} table.
+ * <p>
+ * The file starts with a small header holding the drained offset, followed by records of
+ * {@code [length][crc32][ownerId][petId][epochDay][description]}. Appenders return once a
+ * group fsync covering their record has completed, so concurrent appends share a single
+ * {@code force}. When every record has been drained the journal is rewound to the start;
+ * otherwise, once the drained prefix is larger than the records still pending, those
+ * records are moved to the start so a journal that never empties still reclaims space. On
+ * open, records after the drained offset are recovered by scanning up to the first empty
+ * or corrupt record.
+ *
+ * @see WriteBehindVisits
+ */
+class VisitJournal implements Closeable {
+
+	private static final int MAGIC = 0x56495354;
+
+	private static final int DRAINED_OFFSET = 8;
+
+	static final int HEADER_SIZE = 16;
+
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	private static final int FIXED_PAYLOAD_SIZE = 16;
+
+	private final FileChannel channel;
+
+	private final MappedByteBuffer buffer;
+
+	private final int capacity;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Object syncMonitor = new Object();
+
+	private int writeOffset;
+
+	private int drainedOffset;
+
+	private volatile int syncedOffset;
+
+	private volatile int generation;
+
+	VisitJournal(Path file, int capacity) throws IOException {
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		this.capacity = capacity;
+		recover();
+	}
+
+	private void recover() {
+		if (this.buffer.getInt(0) != MAGIC) {
+			this.buffer.putInt(0, MAGIC);
+			this.buffer.putInt(HEADER_SIZE, 0);
+			writeDrainedOffset(HEADER_SIZE);
+		}
+		this.drainedOffset = this.buffer.getInt(DRAINED_OFFSET);
+		int position = this.drainedOffset;
+		while (readRecord(position) != null) {
+			position += RECORD_HEADER_SIZE + this.buffer.getInt(position);
+		}
+		this.writeOffset = position;
+		this.syncedOffset = position;
+	}
+
+	/**
+	 * Append a visit and wait until it is durable.
+	 * @return {@code false} if the journal is full and the caller has to fall back to a
+	 * synchronous insert
+	 */
+	boolean append(int ownerId, int petId, LocalDate date, String description) {
+		byte[] text = description.getBytes(StandardCharsets.UTF_8);
+		int length = FIXED_PAYLOAD_SIZE + text.length;
+		int end;
+		int appendGeneration;
+		this.lock.lock();
+		try {
+			int start = this.writeOffset;
+			end = start + RECORD_HEADER_SIZE + length;
+			if (end + Integer.BYTES > this.capacity) {
+				return false;
+			}
+			ByteBuffer payload = ByteBuffer.allocate(length);
+			payload.putInt(ownerId).putInt(petId).putLong(date.toEpochDay()).put(text);
+			this.buffer.put(start + RECORD_HEADER_SIZE, payload.array());
+			this.buffer.putInt(start + Integer.BYTES, checksum(payload.array()));
+			// terminate the log so that recovery never reads past the last record
+			this.buffer.putInt(end, 0);
+			this.buffer.putInt(start, length);
+			this.writeOffset = end;
+			appendGeneration = this.generation;
+		}
+		finally {
+			this.lock.unlock();
+		}
+		sync(end, appendGeneration);
+		return true;
+	}
+
+	private void sync(int upTo, int appendGeneration) {
+		synchronized (this.syncMonitor) {
+			if (this.generation != appendGeneration || this.syncedOffset >= upTo) {
+				// covered by another thread's force, or already moved by a compaction
+				return;
+			}
+			int from = this.syncedOffset;
+			int to;
+			this.lock.lock();
+			try {
+				to = this.writeOffset;
+			}
+			finally {
+				this.lock.unlock();
+			}
+			this.buffer.force(from, to + Integer.BYTES - from);
+			this.syncedOffset = to;
+		}
+	}
+
+	/**
+	 * Return up to {@code max} records that have not been drained yet, oldest first.
+	 */
+	List<PendingVisit> pending(int max) {
+		this.lock.lock();
+		try {
+			return read(this.drainedOffset, this.writeOffset, max, null);
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Return every record for the given owner that has not been drained yet.
+	 */
+	List<PendingVisit> pendingForOwner(int ownerId) {
+		this.lock.lock();
+		try {
+			return read(this.drainedOffset, this.writeOffset, Integer.MAX_VALUE, ownerId);
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Record that every record up to {@code offset} has been committed to the database.
+	 */
+	void markDrained(int offset) {
+		synchronized (this.syncMonitor) {
+			this.lock.lock();
+			try {
+				int live = this.writeOffset - offset;
+				if (offset - HEADER_SIZE >= live + Integer.BYTES) {
+					compact(offset, live);
+					offset = HEADER_SIZE;
+				}
+				writeDrainedOffset(offset);
+				this.drainedOffset = offset;
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Move the {@code live} bytes of pending records starting at {@code offset} to the
+	 * start of the journal. The copy never overlaps its source, so the old records stay
+	 * intact until the drained offset is rewritten and a crash in between recovers them
+	 * from where they were. Pending syncs are skipped as this forces the moved records.
+	 */
+	private void compact(int offset, int live) {
+		if (live > 0) {
+			byte[] records = new byte[live];
+			this.buffer.get(offset, records);
+			this.buffer.put(HEADER_SIZE, records);
+		}
+		this.buffer.putInt(HEADER_SIZE + live, 0);
+		this.buffer.force(HEADER_SIZE, live + Integer.BYTES);
+		this.writeOffset = HEADER_SIZE + live;
+		this.syncedOffset = this.writeOffset;
+		this.generation++;
+	}
+
+	private void writeDrainedOffset(int offset) {
+		this.buffer.putInt(DRAINED_OFFSET, offset);
+		this.buffer.force(0, HEADER_SIZE + Integer.BYTES);
+	}
+
+	private List<PendingVisit> read(int from, int to, int max, Integer ownerId) {
+		List<PendingVisit> visits = new ArrayList<>();
+		int position = from;
+		while (position < to && visits.size() < max) {
+			PendingVisit visit = readRecord(position);
+			position += RECORD_HEADER_SIZE + this.buffer.getInt(position);
+			if (ownerId == null || ownerId == visit.ownerId()) {
+				visits.add(visit);
+			}
+		}
+		return visits;
+	}
+
+	private PendingVisit readRecord(int position) {
+		if (position + RECORD_HEADER_SIZE > this.capacity) {
+			return null;
+		}
+		int length = this.buffer.getInt(position);
+		if (length < FIXED_PAYLOAD_SIZE || position + RECORD_HEADER_SIZE + length > this.capacity) {
+			return null;
+		}
+		byte[] payload = new byte[length];
+		this.buffer.get(position + RECORD_HEADER_SIZE, payload);
+		if (checksum(payload) != this.buffer.getInt(position + Integer.BYTES)) {
+			return null;
+		}
+		ByteBuffer record = ByteBuffer.wrap(payload);
+		int ownerId = record.getInt();
+		int petId = record.getInt();
+		LocalDate date = LocalDate.ofEpochDay(record.getLong());
+		String description = new String(payload, record.position(), record.remaining(), StandardCharsets.UTF_8);
+		return new PendingVisit(ownerId, petId, date, description, position + RECORD_HEADER_SIZE + length);
+	}
+
+	private static int checksum(byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		return (int) crc.getValue();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.buffer.force();
+		this.channel.close();
+	}
+
+	/**
+	 * A journaled visit, together with the journal offset just past its record.
+	 */
+	record PendingVisit(int ownerId, int petId, LocalDate date, String description, int endOffset) {
+
+		Visit toVisit() {
+			Visit visit = new Visit();
+			visit.setDate(this.date);
+			visit.setDescription(this.description);
+			return visit;
+		}
+
+	}
+
+}
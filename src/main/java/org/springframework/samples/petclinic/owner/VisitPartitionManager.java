@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.YearMonth;
+import java.util.SortedSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangeBus;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Maintains the monthly range partitions of {@code visits} on databases that support
+ * them. Partitions are created a few months ahead, so that new visits never land in the
+ * catch-all partition, and partitions whose whole month is older than the retention
+ * period are expired: their rows are copied to {@code visits_archive} and the partition
+ * is dropped, which is much cheaper than deleting the rows.
+ * <p>
+ * Queries that filter on a plain {@code visit_date} range, without functions applied to
+ * the column, only touch the partitions covering that range.
+ */
+abstract class VisitPartitionManager {
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	protected final JdbcTemplate jdbcTemplate;
+
+	private final EntityChangeBus changes;
+
+	private final int premake;
+
+	private final Period retention;
+
+	private boolean reportedUnpartitioned;
+
+	protected VisitPartitionManager(JdbcTemplate jdbcTemplate, EntityChangeBus changes, int premake, Period retention) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.changes = changes;
+		this.premake = premake;
+		this.retention = retention;
+	}
+
+	/**
+	 * Create missing partitions for the current month and the next ones, and expire the
+	 * partitions that are past the retention period.
+	 */
+	@Scheduled(fixedDelayString = "${petclinic.visits.partitions.check-delay:21600000}")
+	public synchronized void maintain() {
+		if (!isPartitioned()) {
+			if (!this.reportedUnpartitioned) {
+				this.logger.warn("Table visits was created before it was partitioned, recreate it to partition it");
+				this.reportedUnpartitioned = true;
+			}
+			return;
+		}
+		SortedSet<YearMonth> partitions = getPartitions();
+		YearMonth current = YearMonth.now();
+		for (int i = 0; i <= this.premake; i++) {
+			YearMonth month = current.plusMonths(i);
+			if (!partitions.contains(month)) {
+				try {
+					createPartition(month);
+					this.logger.info("Created visits partition for " + month);
+				}
+				catch (DataAccessException ex) {
+					this.logger.warn("Could not create visits partition for " + month, ex);
+				}
+			}
+		}
+		LocalDate cutoff = LocalDate.now().minus(this.retention);
+		for (YearMonth month : partitions) {
+			if (!month.plusMonths(1).atDay(1).isAfter(cutoff)) {
+				int archived = expirePartition(month);
+				this.logger.info("Expired visits partition for " + month + ", archived " + archived + " visits");
+				if (archived > 0) {
+					this.changes.publish(new EntityChangedEvent(EntityChangedEvent.OWNER, null));
+				}
+			}
+		}
+	}
+
+	/**
+	 * The name of the partition holding the visits of the given month.
+	 */
+	static String partitionName(YearMonth month) {
+		return "p%04d%02d".formatted(month.getYear(), month.getMonthValue());
+	}
+
+	/**
+	 * The month held by a partition, or {@code null} if it is not a monthly partition.
+	 */
+	static YearMonth partitionMonth(String name) {
+		if (!name.matches(".*p\\d{6}")) {
+			return null;
+		}
+		String digits = name.substring(name.length() - 6);
+		return YearMonth.of(Integer.parseInt(digits.substring(0, 4)), Integer.parseInt(digits.substring(4)));
+	}
+
+	protected abstract boolean isPartitioned();
+
+	/**
+	 * Return the months that have a partition.
+	 */
+	protected abstract SortedSet<YearMonth> getPartitions();
+
+	protected abstract void createPartition(YearMonth month);
+
+	/**
+	 * Copy the rows of the month's partition to {@code visits_archive} and drop it.
+	 * @return the number of archived visits
+	 */
+	protected abstract int expirePartition(YearMonth month);
+
+}
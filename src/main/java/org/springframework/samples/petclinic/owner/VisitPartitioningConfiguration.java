@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.time.Period;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangeBus;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Maintains the partitions of {@code visits} with the {@code postgres} and {@code mysql}
+ * databases. Partitions expire with the archive horizon by default, as their visits would
+ * be archived anyway.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableScheduling
+class VisitPartitioningConfiguration {
+
+	@Bean
+	@ConditionalOnProperty(name = "database", havingValue = "postgres")
+	PostgresVisitPartitionManager postgresVisitPartitionManager(JdbcTemplate jdbcTemplate,
+			TransactionTemplate transactionTemplate, EntityChangeBus changes,
+			@Value("${petclinic.visits.partitions.premake:3}") int premake,
+			@Value("${petclinic.visits.partitions.retention:${petclinic.visits.archive.horizon:P5Y}}") Period retention) {
+		return new PostgresVisitPartitionManager(jdbcTemplate, transactionTemplate, changes, premake, retention);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "database", havingValue = "mysql")
+	MySqlVisitPartitionManager mySqlVisitPartitionManager(JdbcTemplate jdbcTemplate, EntityChangeBus changes,
+			@Value("${petclinic.visits.partitions.premake:3}") int premake,
+			@Value("${petclinic.visits.partitions.retention:${petclinic.visits.archive.horizon:P5Y}}") Period retention) {
+		return new MySqlVisitPartitionManager(jdbcTemplate, changes, premake, retention);
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.InitBinder;
+
+/**
+ * <code>Validator</code> for <code>Visit</code> forms, added to the bean validation of
+ * both visit controllers.
+ * <p>
+ * The visit date is the partition key of {@code visits} on Postgres and MySQL, where it
+ * is {@code NOT NULL}, so a cleared date field has to be reported on the form rather than
+ * fail the insert.
+ */
+@ControllerAdvice(assignableTypes = { VisitController.class, WriteBehindVisitController.class })
+public class VisitValidator implements Validator {
+
+	private static final String REQUIRED = "required";
+
+	@InitBinder("visit")
+	public void addVisitValidator(WebDataBinder dataBinder) {
+		dataBinder.addValidators(this);
+	}
+
+	@Override
+	public void validate(Object obj, Errors errors) {
+		Visit visit = (Visit) obj;
+		if (visit.getDate() == null) {
+			errors.rejectValue("date", REQUIRED, REQUIRED);
+		}
+	}
+
+	@Override
+	public boolean supports(Class<?> clazz) {
+		return Visit.class.isAssignableFrom(clazz);
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.board.VisitBoard;
+import org.springframework.samples.petclinic.changes.EntityChangeBus;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Optional write-behind mode for visits, enabled with
+ * {@code petclinic.visits.write-behind.enabled=true}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "petclinic.visits.write-behind.enabled")
+@EnableScheduling
+class VisitWriteBehindConfiguration {
+
+	@Bean(destroyMethod = "close")
+	VisitJournal visitJournal(@Value("${petclinic.visits.write-behind.journal:data/visits.journal}") Path file,
+			@Value("${petclinic.visits.write-behind.journal-size:16777216}") int size) throws IOException {
+		return new VisitJournal(file, size);
+	}
+
+	@Bean
+	WriteBehindVisits writeBehindVisits(VisitJournal journal, JdbcTemplate jdbcTemplate,
+			TransactionTemplate transactionTemplate, EntityChangeBus changes, VisitBoard board, OwnerVersions versions,
+			ApplicationEventPublisher events, @Value("${petclinic.visits.write-behind.batch-size:500}") int batchSize) {
+		return new WriteBehindVisits(journal, jdbcTemplate, transactionTemplate, changes, board, versions, events,
+				batchSize);
+	}
+
+	@Bean
+	WebMvcConfigurer pendingVisitsConfigurer(WriteBehindVisits visits, EntityManager entityManager) {
+		return new WebMvcConfigurer() {
+
+			@Override
+			public void addInterceptors(InterceptorRegistry registry) {
+				registry.addInterceptor(new PendingVisitsInterceptor(visits, entityManager))
+					.addPathPatterns("/owners/*");
+			}
+
+		};
+	}
+
+	/**
+	 * Merges visits still waiting in the journal into the owner shown on the owner page.
+	 * The owner is detached first so the extra visits are never flushed by the
+	 * open-in-view session.
+	 */
+	static class PendingVisitsInterceptor implements HandlerInterceptor {
+
+		private final WriteBehindVisits visits;
+
+		private final EntityManager entityManager;
+
+		PendingVisitsInterceptor(WriteBehindVisits visits, EntityManager entityManager) {
+			this.visits = visits;
+			this.entityManager = entityManager;
+		}
+
+		@Override
+		public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+				ModelAndView modelAndView) {
+			if (modelAndView != null && modelAndView.getModel().get("owner") instanceof Owner owner) {
+				if (this.entityManager.contains(owner)) {
+					this.entityManager.detach(owner);
+				}
+				this.visits.mergePending(owner);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Map;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Controller;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.bind.annotation.InitBinder;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+
+import jakarta.validation.Valid;
+
+/**
+ * Records new visits through {@link WriteBehindVisits} instead of loading and saving the
+ * whole owner aggregate. Only the validation error path still loads the owner, to
+ * re-render the form.
+ */
+@Controller
+@ConditionalOnProperty(name = "petclinic.visits.write-behind.enabled")
+class WriteBehindVisitController {
+
+	private final OwnerRepository owners;
+
+	private final WriteBehindVisits visits;
+
+	public WriteBehindVisitController(OwnerRepository owners, WriteBehindVisits visits) {
+		this.owners = owners;
+		this.visits = visits;
+	}
+
+	@InitBinder
+	public void setAllowedFields(WebDataBinder dataBinder) {
+		dataBinder.setDisallowedFields("id");
+	}
+
+	@PostMapping("/owners/{ownerId}/pets/{petId}/visits")
+	public String processNewVisitForm(@PathVariable("ownerId") int ownerId, @PathVariable("petId") int petId,
+			@Valid Visit visit, BindingResult result, Map<String, Object> model) {
+		if (result.hasErrors()) {
+			Owner owner = this.owners.findById(ownerId);
+			model.put("owner", owner);
+			model.put("pet", owner.getPet(petId));
+			return "pets/createOrUpdateVisitForm";
+		}
+		if (!this.visits.isPetOfOwner(ownerId, petId)) {
+			throw new IllegalArgumentException("Invalid Pet identifier!");
+		}
+		if (!this.visits.record(ownerId, petId, visit)) {
+			// journal full: fall back to the synchronous path
+			Owner owner = this.owners.findById(ownerId);
+			owner.addVisit(petId, visit);
+			this.owners.save(owner);
+		}
+		return "redirect:/owners/{ownerId}";
+	}
+
+}
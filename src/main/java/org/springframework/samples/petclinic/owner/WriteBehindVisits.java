@@ -0,0 +1,207 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.board.BoardEvent;
+import org.springframework.samples.petclinic.board.BoardEvent.VisitData;
+import org.springframework.samples.petclinic.board.VisitBoard;
+import org.springframework.samples.petclinic.changes.EntityChangeBus;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.samples.petclinic.owner.OwnerRowsWritten.Operation;
+import org.springframework.samples.petclinic.owner.OwnerRowsWritten.Row;
+import org.springframework.samples.petclinic.owner.VisitJournal.PendingVisit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Write-behind recording of visits. Visits are appended to the {@link VisitJournal} and
+ * acknowledged straight away; {@link #drain()} later inserts them into the {@code visits}
+ * table in JDBC batches, announced as {@link OwnerRowsWritten} for the audit log and
+ * published to the {@link VisitBoard} once their batch has committed.
+ * <p>
+ * Delivery is at-least-once: a crash between a batch commit and the journal checkpoint
+ * replays that batch on restart.
+ */
+class WriteBehindVisits {
+
+	private static final Log logger = LogFactory.getLog(WriteBehindVisits.class);
+
+	private static final String INSERT_VISIT = "INSERT INTO visits (pet_id, visit_date, description) VALUES (?, ?, ?)";
+
+	private static final String COUNT_OWNER_PET = "SELECT COUNT(*) FROM pets WHERE id = ? AND owner_id = ?";
+
+	private final VisitJournal journal;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final EntityChangeBus changes;
+
+	private final VisitBoard board;
+
+	private final OwnerVersions versions;
+
+	private final ApplicationEventPublisher events;
+
+	private final int batchSize;
+
+	WriteBehindVisits(VisitJournal journal, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+			EntityChangeBus changes, VisitBoard board, OwnerVersions versions, ApplicationEventPublisher events,
+			int batchSize) {
+		this.journal = journal;
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+		this.changes = changes;
+		this.board = board;
+		this.versions = versions;
+		this.events = events;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Check, with a single primary key lookup, that the pet belongs to the owner.
+	 */
+	boolean isPetOfOwner(int ownerId, int petId) {
+		Integer count = this.jdbcTemplate.queryForObject(COUNT_OWNER_PET, Integer.class, petId, ownerId);
+		return count != null && count > 0;
+	}
+
+	/**
+	 * Journal a validated visit.
+	 * @return {@code false} if the journal is full and the visit was not recorded
+	 */
+	boolean record(int ownerId, int petId, Visit visit) {
+		if (!this.journal.append(ownerId, petId, visit.getDate(), visit.getDescription())) {
+			return false;
+		}
+		// the owner page shows the visit from now on, see mergePending
+		this.versions.bump(ownerId);
+		return true;
+	}
+
+	/**
+	 * Add visits that are still waiting in the journal to the given owner's pets, so that
+	 * a visit shows up on the owner page as soon as it has been acknowledged.
+	 */
+	void mergePending(Owner owner) {
+		if (owner.isNew()) {
+			return;
+		}
+		for (PendingVisit pending : this.journal.pendingForOwner(owner.getId())) {
+			Pet pet = owner.getPet(pending.petId());
+			if (pet != null) {
+				pet.addVisit(pending.toVisit());
+			}
+		}
+	}
+
+	/**
+	 * Insert journaled visits in batches, checkpointing the journal after each committed
+	 * batch. Also replays whatever an earlier run left in the journal.
+	 */
+	@Scheduled(fixedDelayString = "${petclinic.visits.write-behind.drain-delay:500}")
+	void drain() {
+		List<PendingVisit> batch = this.journal.pending(this.batchSize);
+		while (!batch.isEmpty()) {
+			try {
+				insert(batch);
+			}
+			catch (DataAccessException ex) {
+				logger.warn("Could not drain " + batch.size() + " journaled visits, will retry", ex);
+				return;
+			}
+			this.journal.markDrained(batch.get(batch.size() - 1).endOffset());
+			batch = this.journal.pending(this.batchSize);
+		}
+	}
+
+	private void insert(List<PendingVisit> batch) {
+		this.transactionTemplate.executeWithoutResult(status -> {
+			List<Integer> ids = this.jdbcTemplate.execute((ConnectionCallback<List<Integer>>) connection -> {
+				try (PreparedStatement ps = connection.prepareStatement(INSERT_VISIT, new String[] { "id" })) {
+					for (PendingVisit visit : batch) {
+						ps.setInt(1, visit.petId());
+						ps.setDate(2, Date.valueOf(visit.date()));
+						ps.setString(3, visit.description());
+						ps.addBatch();
+					}
+					ps.executeBatch();
+					List<Integer> keys = new ArrayList<>(batch.size());
+					try (ResultSet rs = ps.getGeneratedKeys()) {
+						while (rs.next()) {
+							keys.add(rs.getInt(1));
+						}
+					}
+					return keys;
+				}
+			});
+			this.events.publishEvent(new OwnerRowsWritten(OwnerRowsWritten.VISIT, Operation.INSERT, rows(batch, ids)));
+			batch.stream()
+				.map(PendingVisit::ownerId)
+				.distinct()
+				.forEach(ownerId -> this.changes.publish(EntityChangedEvent.owner(ownerId)));
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					publishToBoard(batch, ids);
+				}
+			});
+		});
+	}
+
+	private void publishToBoard(List<PendingVisit> batch, List<Integer> ids) {
+		for (int i = 0; i < batch.size(); i++) {
+			PendingVisit visit = batch.get(i);
+			this.board.publish(BoardEvent.VISIT, visit.ownerId(),
+					new VisitData(ids.get(i), visit.petId(), visit.date(), visit.description()));
+		}
+	}
+
+	private static List<Row> rows(List<PendingVisit> batch, List<Integer> ids) {
+		if (ids.size() != batch.size()) {
+			throw new IllegalStateException("The database did not return the ids of drained visits");
+		}
+		List<Row> rows = new ArrayList<>(batch.size());
+		for (int i = 0; i < batch.size(); i++) {
+			PendingVisit visit = batch.get(i);
+			Map<String, Object> values = new LinkedHashMap<>();
+			values.put("date", visit.date());
+			values.put("description", visit.description());
+			values.put("petId", visit.petId());
+			rows.add(new Row(ids.get(i), visit.ownerId(), values));
+		}
+		return rows;
+	}
+
+}
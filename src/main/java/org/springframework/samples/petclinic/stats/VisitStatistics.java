@@ -0,0 +1,356 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.stats;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Visit counts per day, pet type and owner city, kept in memory so that dashboards do not
+ * scan the {@code visits} join. Counts are built with a parallel scan over chunks of
+ * visit ids and then maintained incrementally per owner: every owner change, which is how
+ * the visit form, the write-behind path and pet edits are announced, recounts that
+ * owner's visits with an indexed query and replaces the owner's previous contribution.
+ * This also moves visits to another bucket when the owner's city or a pet's type changes,
+ * and picks up visits whatever order their transactions commit in. Visits moved to
+ * {@code visits_archive} are still counted.
+ * <p>
+ * Recounts are queued and run one at a time in the background, so that the request that
+ * announced a change never waits for them, nor for a rebuild in progress. Owners
+ * recounted while a rebuild scans the visits are recounted again once it is swapped in.
+ * <p>
+ * {@link #check()} recounts everything with a query per visit table and reports any
+ * difference; the scheduled check rebuilds the counts when it finds one.
+ */
+@Component
+public class VisitStatistics implements DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(VisitStatistics.class);
+
+	private static final String JOIN_DIMENSIONS = " JOIN pets p ON p.id = v.pet_id"
+			+ " JOIN types t ON t.id = p.type_id JOIN owners o ON o.id = p.owner_id";
+
+	private static final List<String> VISIT_TABLES = List.of("visits", "visits_archive");
+
+	private static final String COUNT_VISITS = "SELECT v.visit_date, t.name, o.city, COUNT(*) FROM %s v"
+			+ JOIN_DIMENSIONS;
+
+	private static final String GROUP_BY = " GROUP BY v.visit_date, t.name, o.city";
+
+	private static final String COUNT_OWNER_VISITS = "SELECT p.owner_id, v.visit_date, t.name, o.city, COUNT(*) FROM %s v"
+			+ JOIN_DIMENSIONS;
+
+	private static final String GROUP_BY_OWNER = " GROUP BY p.owner_id, v.visit_date, t.name, o.city";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final int chunkSize;
+
+	private final ExecutorService executor;
+
+	private final Set<Integer> pendingRecounts = ConcurrentHashMap.newKeySet();
+
+	private final AtomicBoolean recounting = new AtomicBoolean();
+
+	private final Set<Integer> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean rebuilding;
+
+	private volatile Rollup rollup;
+
+	public VisitStatistics(JdbcTemplate jdbcTemplate, @Value("${petclinic.stats.chunk-size:10000}") int chunkSize,
+			@Value("${petclinic.stats.parallelism:0}") int parallelism) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.chunkSize = chunkSize;
+		this.executor = Executors.newFixedThreadPool(
+				(parallelism > 0) ? parallelism : Runtime.getRuntime().availableProcessors(),
+				new CustomizableThreadFactory("visit-statistics-"));
+	}
+
+	/**
+	 * Count visits between {@code from} and {@code to} (both inclusive and optional),
+	 * grouped by the given dimension and ordered by key.
+	 */
+	public List<Bucket> count(Dimension groupBy, LocalDate from, LocalDate to) {
+		Rollup current = this.rollup;
+		if (current == null) {
+			current = rebuild();
+		}
+		Map<String, Long> totals = new HashMap<>();
+		current.counts.forEach((key, count) -> {
+			long visits = count.sum();
+			if (visits != 0 && key.isBetween(from, to)) {
+				totals.merge(groupBy.key.apply(key), visits, Long::sum);
+			}
+		});
+		List<Bucket> buckets = new ArrayList<>();
+		totals.forEach((key, visits) -> buckets.add(new Bucket(key, visits)));
+		buckets.sort(Comparator.comparing(Bucket::key, Comparator.nullsLast(Comparator.naturalOrder())));
+		return buckets;
+	}
+
+	@EventListener
+	void onEntityChanged(EntityChangedEvent event) {
+		if (EntityChangedEvent.OWNER.equals(event.entity()) && event.id() != null) {
+			scheduleRecount(event.id());
+		}
+		else if ((EntityChangedEvent.OWNER.equals(event.entity()) || EntityChangedEvent.PET_TYPE.equals(event.entity()))
+				&& this.rollup != null) {
+			rebuild();
+		}
+	}
+
+	private void scheduleRecount(int ownerId) {
+		this.pendingRecounts.add(ownerId);
+		if (this.recounting.compareAndSet(false, true)) {
+			this.executor.execute(this::recountPending);
+		}
+	}
+
+	private void recountPending() {
+		try {
+			for (Integer ownerId : List.copyOf(this.pendingRecounts)) {
+				this.pendingRecounts.remove(ownerId);
+				recount(ownerId);
+			}
+		}
+		catch (RuntimeException ex) {
+			logger.warn("Could not recount visit statistics, the scheduled check will repair them", ex);
+		}
+		finally {
+			this.recounting.set(false);
+		}
+		// owners queued after the loop but before the flag was cleared
+		if (!this.pendingRecounts.isEmpty() && this.recounting.compareAndSet(false, true)) {
+			this.executor.execute(this::recountPending);
+		}
+	}
+
+	/**
+	 * Recount the visits of the given owner and replace what they contributed before.
+	 */
+	void recount(int ownerId) {
+		if (this.rebuilding) {
+			this.changedDuringRebuild.add(ownerId);
+		}
+		Rollup current = this.rollup;
+		if (current == null) {
+			// the first rebuild reads whatever has been committed by then
+			return;
+		}
+		Map<Key, Long> counts = new HashMap<>();
+		for (String table : VISIT_TABLES) {
+			this.jdbcTemplate.query(COUNT_VISITS.formatted(table) + " WHERE p.owner_id = ?" + GROUP_BY, rs -> {
+				counts.merge(new Key(toLocalDate(rs.getDate(1)), rs.getString(2), rs.getString(3)), rs.getLong(4),
+						Long::sum);
+			}, ownerId);
+		}
+		current.replace(ownerId, counts);
+	}
+
+	/**
+	 * Recount every visit with a parallel scan over id ranges and swap in the result.
+	 */
+	public synchronized Rollup rebuild() {
+		this.rebuilding = true;
+		Rollup rebuilt = new Rollup();
+		try {
+			long max = 0;
+			for (String table : VISIT_TABLES) {
+				Long tableMax = this.jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+				max = Math.max(max, Objects.requireNonNullElse(tableMax, 0L));
+			}
+			List<Future<?>> chunks = new ArrayList<>();
+			for (long start = 1; start <= max; start += this.chunkSize) {
+				long first = start;
+				long last = Math.min(max, start + this.chunkSize - 1);
+				for (String table : VISIT_TABLES) {
+					String sql = COUNT_OWNER_VISITS.formatted(table) + " WHERE v.id BETWEEN ? AND ?" + GROUP_BY_OWNER;
+					chunks.add(this.executor.submit(() -> this.jdbcTemplate.query(sql, rs -> {
+						rebuilt.add(rs.getInt(1), new Key(toLocalDate(rs.getDate(2)), rs.getString(3), rs.getString(4)),
+								rs.getLong(5));
+					}, first, last)));
+				}
+			}
+			for (Future<?> chunk : chunks) {
+				chunk.get();
+			}
+			this.rollup = rebuilt;
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while rebuilding visit statistics", ex);
+		}
+		catch (ExecutionException ex) {
+			throw new IllegalStateException("Could not rebuild visit statistics", ex.getCause());
+		}
+		finally {
+			this.rebuilding = false;
+		}
+		// owners recounted into the previous counts while the chunks were scanned
+		for (Integer ownerId : List.copyOf(this.changedDuringRebuild)) {
+			this.changedDuringRebuild.remove(ownerId);
+			scheduleRecount(ownerId);
+		}
+		return rebuilt;
+	}
+
+	/**
+	 * Compare the counts with a full recount.
+	 * @return the groups whose counts differ, empty if the counts are consistent
+	 */
+	public synchronized List<Discrepancy> check() {
+		Rollup current = this.rollup;
+		Map<Key, Long> expected = new HashMap<>();
+		for (String table : VISIT_TABLES) {
+			this.jdbcTemplate.query(COUNT_VISITS.formatted(table) + GROUP_BY, rs -> {
+				expected.merge(new Key(toLocalDate(rs.getDate(1)), rs.getString(2), rs.getString(3)), rs.getLong(4),
+						Long::sum);
+			});
+		}
+		Map<Key, Long> actual = new HashMap<>();
+		if (current != null) {
+			current.counts.forEach((key, count) -> actual.put(key, count.sum()));
+		}
+		List<Discrepancy> discrepancies = new ArrayList<>();
+		expected.forEach((key, count) -> {
+			long counted = actual.getOrDefault(key, 0L);
+			if (counted != count) {
+				discrepancies.add(new Discrepancy(key.day(), key.type(), key.city(), count, counted));
+			}
+		});
+		actual.forEach((key, counted) -> {
+			if (counted != 0 && !expected.containsKey(key)) {
+				discrepancies.add(new Discrepancy(key.day(), key.type(), key.city(), 0, counted));
+			}
+		});
+		return discrepancies;
+	}
+
+	@Scheduled(fixedDelayString = "${petclinic.stats.check-delay:3600000}",
+			initialDelayString = "${petclinic.stats.check-delay:3600000}")
+	void checkAndRepair() {
+		if (this.rollup == null) {
+			return;
+		}
+		List<Discrepancy> discrepancies = check();
+		if (!discrepancies.isEmpty()) {
+			logger
+				.warn("Visit statistics drifted in " + discrepancies.size() + " groups, rebuilding: " + discrepancies);
+			rebuild();
+		}
+	}
+
+	@Override
+	public void destroy() {
+		this.executor.shutdownNow();
+	}
+
+	private static LocalDate toLocalDate(Date date) {
+		return (date != null) ? date.toLocalDate() : null;
+	}
+
+	/**
+	 * The dimensions visits can be grouped by.
+	 */
+	public enum Dimension {
+
+		DAY(key -> Objects.toString(key.day(), null)), TYPE(Key::type), CITY(Key::city);
+
+		private final Function<Key, String> key;
+
+		Dimension(Function<Key, String> key) {
+			this.key = key;
+		}
+
+	}
+
+	/**
+	 * The number of visits for one value of the grouping dimension.
+	 */
+	public record Bucket(String key, long visits) {
+	}
+
+	/**
+	 * A group whose maintained count differs from a full recount.
+	 */
+	public record Discrepancy(LocalDate day, String type, String city, long expected, long counted) {
+	}
+
+	record Key(LocalDate day, String type, String city) {
+
+		boolean isBetween(LocalDate from, LocalDate to) {
+			if (from == null && to == null) {
+				return true;
+			}
+			return this.day != null && (from == null || !this.day.isBefore(from))
+					&& (to == null || !this.day.isAfter(to));
+		}
+
+	}
+
+	/**
+	 * Counts per day, type and city, with what each owner contributed to them.
+	 */
+	static final class Rollup {
+
+		private final Map<Key, LongAdder> counts = new ConcurrentHashMap<>();
+
+		private final Map<Integer, Map<Key, Long>> owners = new ConcurrentHashMap<>();
+
+		void add(int ownerId, Key key, long visits) {
+			this.owners.computeIfAbsent(ownerId, id -> new ConcurrentHashMap<>()).merge(key, visits, Long::sum);
+			this.counts.computeIfAbsent(key, k -> new LongAdder()).add(visits);
+		}
+
+		void replace(int ownerId, Map<Key, Long> visits) {
+			Map<Key, Long> previous = visits.isEmpty() ? this.owners.remove(ownerId) : this.owners.put(ownerId, visits);
+			if (previous != null) {
+				previous.forEach((key, count) -> this.counts.get(key).add(-count));
+			}
+			visits.forEach((key, count) -> this.counts.computeIfAbsent(key, k -> new LongAdder()).add(count));
+		}
+
+	}
+
+}
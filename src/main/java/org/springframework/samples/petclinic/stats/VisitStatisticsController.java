@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.stats;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.stats.VisitStatistics.Bucket;
+import org.springframework.samples.petclinic.stats.VisitStatistics.Discrepancy;
+import org.springframework.samples.petclinic.stats.VisitStatistics.Dimension;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Visit statistics for dashboards, for example
+ * {@code /stats/visits?groupBy=city&from=2013-01-01&to=2013-12-31}.
+ */
+@RestController
+class VisitStatisticsController {
+
+	private final VisitStatistics statistics;
+
+	VisitStatisticsController(VisitStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	@GetMapping("/stats/visits")
+	public VisitCounts countVisits(@RequestParam String groupBy,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+		Dimension dimension = parseDimension(groupBy);
+		if (from != null && to != null && from.isAfter(to)) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
+		}
+		return new VisitCounts(dimension.name().toLowerCase(Locale.ROOT), from, to,
+				this.statistics.count(dimension, from, to));
+	}
+
+	@GetMapping("/stats/visits/check")
+	public List<Discrepancy> checkVisits() {
+		return this.statistics.check();
+	}
+
+	private static Dimension parseDimension(String groupBy) {
+		try {
+			return Dimension.valueOf(groupBy.toUpperCase(Locale.ROOT));
+		}
+		catch (IllegalArgumentException ex) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "groupBy must be 'day', 'type' or 'city'");
+		}
+	}
+
+	record VisitCounts(String groupBy, LocalDate from, LocalDate to, List<Bucket> counts) {
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Evicts the vets cache when a vet or specialty change is announced on any instance,
+ * which lets that cache keep its entries without an expiry.
+ */
+@Component
+class CacheInvalidationListener {
+
+	private final CacheManager cacheManager;
+
+	CacheInvalidationListener(CacheManager cacheManager) {
+		this.cacheManager = cacheManager;
+	}
+
+	// evict before other listeners reload from the cached repositories
+	@EventListener
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	void onEntityChanged(EntityChangedEvent event) {
+		if (EntityChangedEvent.VET.equals(event.entity()) || EntityChangedEvent.SPECIALTY.equals(event.entity())) {
+			Cache cache = this.cacheManager.getCache("vets");
+			if (cache != null) {
+				cache.clear();
+			}
+		}
+	}
+
+}
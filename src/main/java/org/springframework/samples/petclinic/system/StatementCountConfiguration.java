@@ -0,0 +1,64 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Registers the {@link StatementCounter} around the {@link javax.sql.DataSource} and
+ * counts the statements of sampled requests. Import this configuration in test slices
+ * that assert statement counts with {@code @MaxQueries}.
+ */
+@Configuration(proxyBeanMethods = false)
+public class StatementCountConfiguration implements WebMvcConfigurer {
+
+	private final StatementCounter counter;
+
+	private final ObjectProvider<MeterRegistry> meterRegistry;
+
+	private final int threshold;
+
+	private final double sampleRate;
+
+	StatementCountConfiguration(StatementCounter counter, ObjectProvider<MeterRegistry> meterRegistry,
+			@Value("${petclinic.sql.statement-threshold:10}") int threshold,
+			@Value("${petclinic.sql.sample-rate:0.1}") double sampleRate) {
+		this.counter = counter;
+		this.meterRegistry = meterRegistry;
+		this.threshold = threshold;
+		this.sampleRate = sampleRate;
+	}
+
+	@Bean
+	static StatementCounter statementCounter() {
+		return new StatementCounter();
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(
+				new StatementCountInterceptor(this.counter, this.meterRegistry, this.threshold, this.sampleRate));
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.samples.petclinic.system.StatementCounter.Tally;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Counts the SQL statements of a sample of requests. The count is recorded per handler in
+ * the {@code petclinic.request.statements} summary, and a request that exceeds the
+ * threshold is logged with its handler and query shapes.
+ */
+class StatementCountInterceptor implements HandlerInterceptor {
+
+	private static final Log logger = LogFactory.getLog(StatementCountInterceptor.class);
+
+	private static final String TALLY_ATTRIBUTE = StatementCountInterceptor.class.getName() + ".tally";
+
+	private final StatementCounter counter;
+
+	private final ObjectProvider<MeterRegistry> meterRegistry;
+
+	private final int threshold;
+
+	private final double sampleRate;
+
+	StatementCountInterceptor(StatementCounter counter, ObjectProvider<MeterRegistry> meterRegistry, int threshold,
+			double sampleRate) {
+		this.counter = counter;
+		this.meterRegistry = meterRegistry;
+		this.threshold = threshold;
+		this.sampleRate = sampleRate;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if (handler instanceof HandlerMethod && request.getAttribute(TALLY_ATTRIBUTE) == null
+				&& ThreadLocalRandom.current().nextDouble() < this.sampleRate) {
+			request.setAttribute(TALLY_ATTRIBUTE, this.counter.start());
+		}
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		if (!(request.getAttribute(TALLY_ATTRIBUTE) instanceof Tally tally)) {
+			return;
+		}
+		request.removeAttribute(TALLY_ATTRIBUTE);
+		tally.close();
+		String name = name((HandlerMethod) handler);
+		this.meterRegistry.ifAvailable(registry -> DistributionSummary.builder("petclinic.request.statements")
+			.description("SQL statements per sampled request")
+			.tag("handler", name)
+			.register(registry)
+			.record(tally.getCount()));
+		if (tally.getCount() > this.threshold) {
+			logger.warn(name + " prepared " + tally.getCount() + " SQL statements for " + request.getRequestURI()
+					+ " (threshold " + this.threshold + "):" + tally.describe());
+		}
+	}
+
+	private static String name(HandlerMethod handler) {
+		return handler.getBeanType().getSimpleName() + "." + handler.getMethod().getName();
+	}
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Counts the SQL statements issued on the current thread while a {@link Tally} is open,
+ * grouped by query shape. Used to catch N+1 selects per request and in tests.
+ * <p>
+ * Statements are counted at the {@link DataSource}, so Hibernate and {@code JdbcTemplate}
+ * statements are both seen: every prepared or callable statement, and every SQL string
+ * executed or batched on a plain {@link Statement}.
+ *
+ * @see StatementCountConfiguration
+ */
+public class StatementCounter implements BeanPostProcessor {
+
+	private static final Set<String> PREPARE_METHODS = Set.of("prepareStatement", "prepareCall");
+
+	private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate",
+			"executeLargeUpdate", "addBatch");
+
+	private static final int MAX_SHAPES = 50;
+
+	private static final Pattern LITERAL = Pattern.compile("'(?:[^']|'')*'|\\b\\d+\\b");
+
+	private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private final ThreadLocal<List<Tally>> tallies = ThreadLocal.withInitial(ArrayList::new);
+
+	/**
+	 * Start counting the statements of the current thread. Tallies may be nested, for
+	 * example a test around a request, and each one sees every statement.
+	 */
+	public Tally start() {
+		Tally tally = new Tally();
+		this.tallies.get().add(tally);
+		return tally;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (bean instanceof DataSource dataSource) {
+			return proxy(DataSource.class, dataSource, (target, method, args) -> {
+				Object result = method.invoke(target, args);
+				return (result instanceof Connection connection) ? proxy(Connection.class, connection, this::connection)
+						: result;
+			});
+		}
+		return bean;
+	}
+
+	private Object connection(Object connection, Method method, Object[] args) throws Throwable {
+		Object result = method.invoke(connection, args);
+		if (PREPARE_METHODS.contains(method.getName())) {
+			count((String) args[0]);
+		}
+		else if (method.getName().equals("createStatement")) {
+			return proxy(Statement.class, (Statement) result, (statement, executed, sql) -> {
+				if (EXECUTE_METHODS.contains(executed.getName()) && sql != null && sql[0] instanceof String text) {
+					count(text);
+				}
+				return executed.invoke(statement, sql);
+			});
+		}
+		return result;
+	}
+
+	private void count(String sql) {
+		List<Tally> open = this.tallies.get();
+		if (!open.isEmpty()) {
+			String shape = shape(sql);
+			for (Tally tally : open) {
+				tally.add(shape);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, T target, Handler handler) {
+		InvocationHandler invocationHandler = (proxy, method, args) -> {
+			try {
+				return handler.invoke(target, method, args);
+			}
+			catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+		};
+		return (T) Proxy.newProxyInstance(StatementCounter.class.getClassLoader(), new Class<?>[] { type },
+				invocationHandler);
+	}
+
+	/**
+	 * Reduce a statement to its shape: literals and parameter lists are replaced by a
+	 * single {@code ?} and whitespace is collapsed.
+	 */
+	static String shape(String sql) {
+		String shape = LITERAL.matcher(sql).replaceAll("?");
+		shape = PARAMETER_LIST.matcher(shape).replaceAll("?");
+		return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+	}
+
+	private interface Handler {
+
+		Object invoke(Object target, Method method, Object[] args) throws Throwable;
+
+	}
+
+	/**
+	 * The statements counted since {@link StatementCounter#start()}.
+	 */
+	public final class Tally implements AutoCloseable {
+
+		private final Map<String, Integer> shapes = new LinkedHashMap<>();
+
+		private int count;
+
+		private void add(String shape) {
+			this.count++;
+			if (this.shapes.containsKey(shape) || this.shapes.size() < MAX_SHAPES) {
+				this.shapes.merge(shape, 1, Integer::sum);
+			}
+		}
+
+		public int getCount() {
+			return this.count;
+		}
+
+		/**
+		 * Return how often each query shape was executed, in order of first use.
+		 */
+		public Map<String, Integer> getShapes() {
+			return Collections.unmodifiableMap(this.shapes);
+		}
+
+		/**
+		 * Describe the statements, one line per shape, most frequent first.
+		 */
+		public String describe() {
+			StringBuilder description = new StringBuilder();
+			this.shapes.entrySet()
+				.stream()
+				.sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+				.forEach(entry -> description.append(System.lineSeparator())
+					.append(entry.getValue())
+					.append(" x ")
+					.append(entry.getKey()));
+			return description.toString();
+		}
+
+		@Override
+		public void close() {
+			List<Tally> open = StatementCounter.this.tallies.get();
+			open.remove(this);
+			if (open.isEmpty()) {
+				StatementCounter.this.tallies.remove();
+			}
+		}
+
+	}
+
+}
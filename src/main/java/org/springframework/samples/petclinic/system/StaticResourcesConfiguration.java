@@ -0,0 +1,64 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Caching of static resources. Templates link to them with the content hash in the URL,
+ * so such a URL never changes its content and may be cached for a year without being
+ * revalidated. Resources requested without a hash, by links that do not go through the
+ * resource chain, are only cached for a few hours.
+ */
+@Configuration(proxyBeanMethods = false)
+class StaticResourcesConfiguration implements WebMvcConfigurer {
+
+	private static final Pattern CONTENT_VERSION = Pattern.compile("-[0-9a-f]{32}\\.[^/]+$");
+
+	private static final String IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365))
+		.cachePublic()
+		.immutable()
+		.getHeaderValue();
+
+	private static final String REVALIDATED = CacheControl.maxAge(Duration.ofHours(12)).getHeaderValue();
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new HandlerInterceptor() {
+
+			@Override
+			public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+				boolean versioned = CONTENT_VERSION.matcher(request.getRequestURI()).find();
+				response.setHeader(HttpHeaders.CACHE_CONTROL, versioned ? IMMUTABLE : REVALIDATED);
+				return true;
+			}
+
+		}).addPathPatterns("/resources/**", "/webjars/**");
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.vet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory directory of vets that answers specialty filters with bitwise operations.
+ * Each {@link Specialty} is given a bit position and each vet's specialties are kept as a
+ * bitmask, so a filter is a single pass of word-wise {@code AND}s over the vets.
+ * <p>
+ * The directory is built on first use and rebuilt when vets or specialties change. A
+ * rebuild prepares a complete new index and then swaps it in, so readers always see a
+ * consistent one.
+ */
+@Component
+public class VetDirectory {
+
+	/**
+	 * How the requested specialties are combined.
+	 */
+	public enum Mode {
+
+		/** Vets having every requested specialty. */
+		ALL,
+
+		/** Vets having at least one of the requested specialties. */
+		ANY
+
+	}
+
+	private final VetRepository vets;
+
+	private volatile Index index;
+
+	public VetDirectory(VetRepository vets) {
+		this.vets = vets;
+	}
+
+	/**
+	 * Return the vets matching the given specialty names, in repository order. Names are
+	 * matched ignoring case. A name that no vet has matches nothing.
+	 */
+	public List<Vet> findBySpecialties(Collection<String> specialties, Mode mode) {
+		Index current = this.index;
+		if (current == null) {
+			current = rebuild();
+		}
+		return current.find(specialties, mode);
+	}
+
+	@EventListener
+	void onEntityChanged(EntityChangedEvent event) {
+		switch (event.entity()) {
+			case EntityChangedEvent.VET, EntityChangedEvent.SPECIALTY -> rebuild();
+			default -> {
+			}
+		}
+	}
+
+	/**
+	 * Load every vet and atomically replace the index.
+	 */
+	synchronized Index rebuild() {
+		Index rebuilt = new Index(new ArrayList<>(this.vets.findAll()));
+		this.index = rebuilt;
+		return rebuilt;
+	}
+
+	private static String key(String specialty) {
+		return specialty.trim().toLowerCase(Locale.ROOT);
+	}
+
+	static final class Index {
+
+		private final List<Vet> vets;
+
+		private final Map<String, Integer> bits = new HashMap<>();
+
+		private final int words;
+
+		private final long[] masks;
+
+		Index(List<Vet> vets) {
+			this.vets = vets;
+			for (Vet vet : vets) {
+				for (Specialty specialty : vet.getSpecialties()) {
+					this.bits.putIfAbsent(key(specialty.getName()), this.bits.size());
+				}
+			}
+			this.words = Math.max(1, (this.bits.size() + Long.SIZE - 1) / Long.SIZE);
+			this.masks = new long[vets.size() * this.words];
+			for (int i = 0; i < vets.size(); i++) {
+				for (Specialty specialty : vets.get(i).getSpecialties()) {
+					int bit = this.bits.get(key(specialty.getName()));
+					this.masks[i * this.words + bit / Long.SIZE] |= 1L << bit;
+				}
+			}
+		}
+
+		List<Vet> find(Collection<String> specialties, Mode mode) {
+			long[] query = new long[this.words];
+			for (String specialty : specialties) {
+				Integer bit = this.bits.get(key(specialty));
+				if (bit != null) {
+					query[bit / Long.SIZE] |= 1L << bit;
+				}
+				else if (mode == Mode.ALL) {
+					return List.of();
+				}
+			}
+			List<Vet> matches = new ArrayList<>();
+			for (int i = 0; i < this.vets.size(); i++) {
+				if (matches(i * this.words, query, mode)) {
+					matches.add(this.vets.get(i));
+				}
+			}
+			return matches;
+		}
+
+		private boolean matches(int offset, long[] query, Mode mode) {
+			boolean any = false;
+			for (int word = 0; word < this.words; word++) {
+				long common = this.masks[offset + word] & query[word];
+				if (mode == Mode.ALL && common != query[word]) {
+					return false;
+				}
+				any |= common != 0;
+			}
+			return mode == Mode.ALL || any;
+		}
+
+	}
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.vet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Filters the vet resource list by specialty, for example
+ * {@code /vets?specialty=surgery,dentistry&mode=all}. Requests without a
+ * {@code specialty} parameter are still handled by {@link VetController}.
+ */
+@Controller
+class VetDirectoryController {
+
+	private final VetDirectory directory;
+
+	VetDirectoryController(VetDirectory directory) {
+		this.directory = directory;
+	}
+
+	@GetMapping(path = "/vets", params = "specialty")
+	public @ResponseBody Vets findBySpecialty(@RequestParam("specialty") String specialty,
+			@RequestParam(defaultValue = "all") String mode) {
+		List<String> specialties = Arrays.stream(specialty.split(",")).filter(name -> !name.isBlank()).toList();
+		Vets vets = new Vets();
+		vets.getVetList().addAll(this.directory.findBySpecialties(specialties, parseMode(mode)));
+		return vets;
+	}
+
+	private static VetDirectory.Mode parseMode(String mode) {
+		try {
+			return VetDirectory.Mode.valueOf(mode.toUpperCase(Locale.ROOT));
+		}
+		catch (IllegalArgumentException ex) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "mode must be 'all' or 'any'");
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.warmup;
+
+/**
+ * Decides when warm-up rounds have stabilised: the median latency of a round has to stay
+ * within a relative tolerance of the previous round's, a number of rounds in a row.
+ */
+class Stabilisation {
+
+	private final double tolerance;
+
+	private final int requiredRounds;
+
+	private long previousMedian = -1;
+
+	private int stableRounds;
+
+	Stabilisation(double tolerance, int requiredRounds) {
+		this.tolerance = tolerance;
+		this.requiredRounds = requiredRounds;
+	}
+
+	/**
+	 * Add the median latency of a round.
+	 * @return whether latency is now stable
+	 */
+	boolean add(long median) {
+		if (this.previousMedian > 0 && Math.abs(median - this.previousMedian) <= this.tolerance * this.previousMedian) {
+			this.stableRounds++;
+		}
+		else {
+			this.stableRounds = 0;
+		}
+		this.previousMedian = median;
+		return this.stableRounds >= this.requiredRounds;
+	}
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.warmup;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.samples.petclinic.warmup.WarmUpRunner.Outcome;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the instance out of service until the warm-up has ended, and up with the
+ * outcome of the warm-up from then on. Part of the readiness health group, so that
+ * traffic is routed to an instance once it is warm. A failed warm-up does not keep the
+ * instance out of service, as the warm-up is only an optimisation.
+ */
+@Component
+class WarmUpHealthIndicator implements HealthIndicator {
+
+	private final WarmUpRunner runner;
+
+	WarmUpHealthIndicator(WarmUpRunner runner) {
+		this.runner = runner;
+	}
+
+	@Override
+	public Health health() {
+		Outcome outcome = this.runner.getOutcome();
+		if (outcome == null) {
+			return Health.outOfService().build();
+		}
+		return Health.up().withDetail("outcome", outcome.name().toLowerCase()).build();
+	}
+
+}
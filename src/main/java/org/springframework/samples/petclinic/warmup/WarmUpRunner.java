@@ -0,0 +1,272 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.server.Ssl;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Sends a synthetic read-only workload to the application's own HTTP port once it has
+ * started, so that Hibernate query plans, template caches and JIT-compiled code are warm
+ * before the instance takes traffic. {@link WarmUpHealthIndicator} keeps the readiness
+ * probe out of service until the warm-up is over.
+ * <p>
+ * The workload runs in rounds that request every configured path a number of times. It
+ * ends when the median latency of a round has been stable for a few rounds, or when the
+ * time budget is spent. Failed requests are logged once per path and left out of the
+ * latencies, and the next round tries them again; the warm-up only fails if none of its
+ * requests succeeded.
+ */
+@Component
+class WarmUpRunner {
+
+	private static final Log logger = LogFactory.getLog(WarmUpRunner.class);
+
+	private final ObjectProvider<MeterRegistry> meterRegistry;
+
+	private final ObjectProvider<ServerProperties> serverProperties;
+
+	private final boolean enabled;
+
+	private final List<String> paths;
+
+	private final int threads;
+
+	private final int requestsPerRound;
+
+	private final Duration timeBudget;
+
+	private final double tolerance;
+
+	private final int stableRounds;
+
+	private final Set<String> failedPaths = ConcurrentHashMap.newKeySet();
+
+	private volatile Outcome outcome;
+
+	WarmUpRunner(ObjectProvider<MeterRegistry> meterRegistry, ObjectProvider<ServerProperties> serverProperties,
+			@Value("${petclinic.warmup.enabled:true}") boolean enabled,
+			@Value("${petclinic.warmup.paths:/,/vets.html,/owners/find,/owners?lastName=,/owners/1}") List<String> paths,
+			@Value("${petclinic.warmup.threads:2}") int threads,
+			@Value("${petclinic.warmup.requests-per-round:20}") int requestsPerRound,
+			@Value("${petclinic.warmup.time-budget:PT60S}") Duration timeBudget,
+			@Value("${petclinic.warmup.tolerance:0.1}") double tolerance,
+			@Value("${petclinic.warmup.stable-rounds:3}") int stableRounds) {
+		this.meterRegistry = meterRegistry;
+		this.serverProperties = serverProperties;
+		this.enabled = enabled;
+		this.paths = paths;
+		this.threads = threads;
+		this.requestsPerRound = requestsPerRound;
+		this.timeBudget = timeBudget;
+		this.tolerance = tolerance;
+		this.stableRounds = stableRounds;
+	}
+
+	/**
+	 * Return how the warm-up ended, or {@code null} while it has not.
+	 */
+	Outcome getOutcome() {
+		return this.outcome;
+	}
+
+	@EventListener
+	void onApplicationReady(ApplicationReadyEvent event) {
+		if (!this.enabled || this.paths.isEmpty()
+				|| !(event.getApplicationContext() instanceof WebServerApplicationContext context)) {
+			this.outcome = Outcome.SKIPPED;
+			return;
+		}
+		URI baseUri = baseUri(context.getWebServer().getPort());
+		Thread thread = new Thread(() -> run(baseUri), "warm-up");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private URI baseUri(int port) {
+		ServerProperties server = this.serverProperties.getIfAvailable(ServerProperties::new);
+		String contextPath = server.getServlet().getContextPath();
+		return URI.create(((Ssl.isEnabled(server.getSsl())) ? "https" : "http") + "://localhost:" + port
+				+ ((contextPath != null) ? contextPath : "") + "/");
+	}
+
+	private void run(URI baseUri) {
+		long start = System.nanoTime();
+		long deadline = start + this.timeBudget.toNanos();
+		ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+		Stabilisation stabilisation = new Stabilisation(this.tolerance, this.stableRounds);
+		Outcome outcome = Outcome.FAILED;
+		int rounds = 0;
+		long median = 0;
+		try {
+			while (System.nanoTime() < deadline) {
+				long roundMedian = round(client, executor, baseUri);
+				rounds++;
+				if (roundMedian < 0) {
+					continue;
+				}
+				median = roundMedian;
+				outcome = Outcome.TIME_BUDGET;
+				if (stabilisation.add(median)) {
+					outcome = Outcome.STABLE;
+					break;
+				}
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException ex) {
+			logger.warn("Warm-up stopped after " + rounds + " rounds", ex);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		complete(outcome, rounds, System.nanoTime() - start, median);
+	}
+
+	private void complete(Outcome outcome, int rounds, long elapsed, long median) {
+		this.meterRegistry.ifAvailable(registry -> Timer.builder("petclinic.warmup")
+			.description("Time spent warming up before readiness")
+			.tag("outcome", outcome.name().toLowerCase())
+			.register(registry)
+			.record(elapsed, TimeUnit.NANOSECONDS));
+		logger.info("Warm-up ended (" + outcome.name().toLowerCase() + ") after " + rounds + " rounds in "
+				+ TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms, median latency of the last round "
+				+ TimeUnit.NANOSECONDS.toMicros(median) + " us");
+		this.outcome = outcome;
+	}
+
+	/**
+	 * Request every path {@link #requestsPerRound} times and return the median latency in
+	 * nanoseconds of the requests that succeeded, or {@code -1} if none did.
+	 */
+	private long round(HttpClient client, ExecutorService executor, URI baseUri)
+			throws InterruptedException, ExecutionException {
+		List<Callable<Long>> requests = new ArrayList<>();
+		for (int i = 0; i < this.requestsPerRound; i++) {
+			for (String path : this.paths) {
+				requests.add(() -> send(client, baseUri, path));
+			}
+		}
+		long[] latencies = new long[requests.size()];
+		int succeeded = 0;
+		for (Future<Long> result : executor.invokeAll(requests)) {
+			long latency = result.get();
+			if (latency >= 0) {
+				latencies[succeeded++] = latency;
+			}
+		}
+		if (succeeded == 0) {
+			return -1;
+		}
+		Arrays.sort(latencies, 0, succeeded);
+		return latencies[succeeded / 2];
+	}
+
+	/**
+	 * Request the given path and return its latency in nanoseconds, or {@code -1} if it
+	 * failed.
+	 */
+	private long send(HttpClient client, URI baseUri, String path) throws InterruptedException {
+		// paths are relative to the context path
+		HttpRequest request = HttpRequest.newBuilder(baseUri.resolve(path.startsWith("/") ? path.substring(1) : path))
+			.timeout(Duration.ofSeconds(10))
+			.build();
+		long start = System.nanoTime();
+		int status;
+		try {
+			status = client.send(request, BodyHandlers.discarding()).statusCode();
+		}
+		catch (IOException ex) {
+			failed(path, ex.toString());
+			return -1;
+		}
+		long latency = System.nanoTime() - start;
+		if (status >= 400) {
+			failed(path, "status " + status);
+			return -1;
+		}
+		this.meterRegistry.ifAvailable(registry -> Timer.builder("petclinic.warmup.requests")
+			.description("Latency of warm-up requests")
+			.tag("path", path)
+			.register(registry)
+			.record(latency, TimeUnit.NANOSECONDS));
+		return latency;
+	}
+
+	private void failed(String path, String reason) {
+		if (this.failedPaths.add(path)) {
+			logger.warn("Warm-up request to " + path + " failed (" + reason + "), retrying in the next rounds");
+		}
+	}
+
+	enum Outcome {
+
+		/**
+		 * Latency stabilised.
+		 */
+		STABLE,
+
+		/**
+		 * The time budget ran out first.
+		 */
+		TIME_BUDGET,
+
+		/**
+		 * No warm-up request succeeded.
+		 */
+		FAILED,
+
+		/**
+		 * Warm-up is disabled, or there is no web server to warm up.
+		 */
+		SKIPPED
+
+	}
+
+}
@@ -1,18 +1,36 @@
+DROP TABLE owner_versions_epoch IF EXISTS;
+DROP TABLE owner_versions IF EXISTS;
+DROP TABLE owner_import_errors IF EXISTS;
+DROP TABLE owner_summary IF EXISTS;
+DROP TABLE job_chunks IF EXISTS;
+DROP TABLE job_runs IF EXISTS;
+DROP TABLE vaccination_reminders IF EXISTS;
+DROP TABLE entity_changes IF EXISTS;
 DROP TABLE vet_specialties IF EXISTS;
 DROP TABLE vets IF EXISTS;
 DROP TABLE specialties IF EXISTS;
+DROP TABLE visits_archive IF EXISTS;
 DROP TABLE visits IF EXISTS;
 DROP TABLE pets IF EXISTS;
 DROP TABLE types IF EXISTS;
 DROP TABLE owners IF EXISTS;
+DROP SEQUENCE change_seq IF EXISTS;
 
 
+-- Bumped on every insert and update of owners, pets, visits and vets for the change
+-- feed, by the triggers below each table.
+CREATE SEQUENCE change_seq;
+
 CREATE TABLE vets (
   id         INTEGER IDENTITY PRIMARY KEY,
   first_name VARCHAR(30),
-  last_name  VARCHAR(30)
+  last_name  VARCHAR(30),
+  change_seq BIGINT
 );
 CREATE INDEX vets_last_name ON vets (last_name);
+CREATE INDEX vets_change_seq ON vets (change_seq);
+CREATE TRIGGER vets_change_seq_insert BEFORE INSERT ON vets REFERENCING NEW ROW AS newrow FOR EACH ROW SET newrow.change_seq = NEXT VALUE FOR change_seq;
+CREATE TRIGGER vets_change_seq_update BEFORE UPDATE ON vets REFERENCING NEW ROW AS newrow FOR EACH ROW SET newrow.change_seq = NEXT VALUE FOR change_seq;
 
 CREATE TABLE specialties (
   id   INTEGER IDENTITY PRIMARY KEY,
@@ -26,6 +44,8 @@ CREATE TABLE vet_specialties (
 );
 ALTER TABLE vet_specialties ADD CONSTRAINT fk_vet_specialties_vets FOREIGN KEY (vet_id) REFERENCES vets (id);
 ALTER TABLE vet_specialties ADD CONSTRAINT fk_vet_specialties_specialties FOREIGN KEY (specialty_id) REFERENCES specialties (id);
+CREATE UNIQUE INDEX vet_specialties_vet_specialty ON vet_specialties (vet_id, specialty_id);
+CREATE INDEX vet_specialties_specialty_id ON vet_specialties (specialty_id);
 
 CREATE TABLE types (
   id   INTEGER IDENTITY PRIMARY KEY,
@@ -39,26 +59,127 @@ CREATE TABLE owners (
   last_name  VARCHAR_IGNORECASE(30),
   address    VARCHAR(255),
   city       VARCHAR(80),
-  telephone  VARCHAR(20)
+  telephone  VARCHAR(20),
+  change_seq BIGINT
 );
 CREATE INDEX owners_last_name ON owners (last_name);
+CREATE INDEX owners_change_seq ON owners (change_seq);
+CREATE TRIGGER owners_change_seq_insert BEFORE INSERT ON owners REFERENCING NEW ROW AS newrow FOR EACH ROW SET newrow.change_seq = NEXT VALUE FOR change_seq;
+CREATE TRIGGER owners_change_seq_update BEFORE UPDATE ON owners REFERENCING NEW ROW AS newrow FOR EACH ROW SET newrow.change_seq = NEXT VALUE FOR change_seq;
 
 CREATE TABLE pets (
   id         INTEGER IDENTITY PRIMARY KEY,
   name       VARCHAR(30),
   birth_date DATE,
   type_id    INTEGER NOT NULL,
-  owner_id   INTEGER
+  owner_id   INTEGER,
+  change_seq BIGINT
 );
 ALTER TABLE pets ADD CONSTRAINT fk_pets_owners FOREIGN KEY (owner_id) REFERENCES owners (id);
 ALTER TABLE pets ADD CONSTRAINT fk_pets_types FOREIGN KEY (type_id) REFERENCES types (id);
 CREATE INDEX pets_name ON pets (name);
+CREATE INDEX pets_owner_id ON pets (owner_id);
+CREATE INDEX pets_type_id ON pets (type_id);
+CREATE INDEX pets_change_seq ON pets (change_seq);
+CREATE TRIGGER pets_change_seq_insert BEFORE INSERT ON pets REFERENCING NEW ROW AS newrow FOR EACH ROW SET newrow.change_seq = NEXT VALUE FOR change_seq;
+CREATE TRIGGER pets_change_seq_update BEFORE UPDATE ON pets REFERENCING NEW ROW AS newrow FOR EACH ROW SET newrow.change_seq = NEXT VALUE FOR change_seq;
 
 CREATE TABLE visits (
   id          INTEGER IDENTITY PRIMARY KEY,
   pet_id      INTEGER,
   visit_date  DATE,
-  description VARCHAR(255)
+  description VARCHAR(255),
+  change_seq  BIGINT
 );
 ALTER TABLE visits ADD CONSTRAINT fk_visits_pets FOREIGN KEY (pet_id) REFERENCES pets (id);
 CREATE INDEX visits_pet_id ON visits (pet_id);
+CREATE INDEX visits_change_seq ON visits (change_seq);
+CREATE TRIGGER visits_change_seq_insert BEFORE INSERT ON visits REFERENCING NEW ROW AS newrow FOR EACH ROW SET newrow.change_seq = NEXT VALUE FOR change_seq;
+CREATE TRIGGER visits_change_seq_update BEFORE UPDATE ON visits REFERENCING NEW ROW AS newrow FOR EACH ROW SET newrow.change_seq = NEXT VALUE FOR change_seq;
+
+CREATE TABLE visits_archive (
+  id          INTEGER PRIMARY KEY,
+  pet_id      INTEGER,
+  visit_date  DATE,
+  description VARCHAR(255),
+  archived_at TIMESTAMP NOT NULL
+);
+ALTER TABLE visits_archive ADD CONSTRAINT fk_visits_archive_pets FOREIGN KEY (pet_id) REFERENCES pets (id);
+CREATE INDEX visits_archive_pet_id ON visits_archive (pet_id);
+
+CREATE TABLE entity_changes (
+  id         BIGINT IDENTITY PRIMARY KEY,
+  entity     VARCHAR(30) NOT NULL,
+  entity_id  INTEGER,
+  origin     VARCHAR(36),
+  changed_at TIMESTAMP NOT NULL
+);
+CREATE INDEX entity_changes_changed_at ON entity_changes (changed_at);
+
+CREATE TABLE job_runs (
+  id          BIGINT IDENTITY PRIMARY KEY,
+  job_name    VARCHAR(50) NOT NULL,
+  first_id    BIGINT,
+  last_id     BIGINT,
+  chunk_size  INTEGER NOT NULL,
+  status      VARCHAR(20) NOT NULL,
+  started_at  TIMESTAMP NOT NULL,
+  finished_at TIMESTAMP
+);
+CREATE INDEX job_runs_job_name ON job_runs (job_name);
+
+CREATE TABLE job_chunks (
+  run_id       BIGINT NOT NULL,
+  first_id     BIGINT NOT NULL,
+  items        INTEGER NOT NULL,
+  completed_at TIMESTAMP NOT NULL,
+  PRIMARY KEY (run_id, first_id)
+);
+ALTER TABLE job_chunks ADD CONSTRAINT fk_job_chunks_job_runs FOREIGN KEY (run_id) REFERENCES job_runs (id);
+
+CREATE TABLE vaccination_reminders (
+  id         INTEGER IDENTITY PRIMARY KEY,
+  pet_id     INTEGER NOT NULL,
+  owner_id   INTEGER NOT NULL,
+  due_date   DATE NOT NULL,
+  created_at TIMESTAMP NOT NULL
+);
+ALTER TABLE vaccination_reminders ADD CONSTRAINT fk_vaccination_reminders_pets FOREIGN KEY (pet_id) REFERENCES pets (id);
+CREATE UNIQUE INDEX vaccination_reminders_pet_due ON vaccination_reminders (pet_id, due_date);
+
+CREATE TABLE owner_summary (
+  owner_id        INTEGER PRIMARY KEY,
+  first_name      VARCHAR(30),
+  last_name       VARCHAR_IGNORECASE(30),
+  address         VARCHAR(255),
+  city            VARCHAR(80),
+  telephone       VARCHAR(20),
+  pet_count       INTEGER NOT NULL,
+  pet_names       VARCHAR(255),
+  last_visit_date DATE
+);
+CREATE INDEX owner_summary_last_name ON owner_summary (last_name, owner_id);
+
+CREATE TABLE owner_import_errors (
+  run_id  BIGINT NOT NULL,
+  line_no INTEGER NOT NULL,
+  message VARCHAR(500) NOT NULL
+);
+ALTER TABLE owner_import_errors ADD CONSTRAINT fk_owner_import_errors_job_runs FOREIGN KEY (run_id) REFERENCES job_runs (id);
+CREATE INDEX owner_import_errors_run_line ON owner_import_errors (run_id, line_no);
+
+-- Version of each owner aggregate for conditional GETs, bumped on every change to the
+-- owner, its pets or its visits; every row is bumped when any owner may have changed
+CREATE TABLE owner_versions (
+  owner_id INTEGER PRIMARY KEY,
+  version  BIGINT NOT NULL
+);
+
+-- When the owner versions were created. It is part of every owner ETag, so that versions
+-- that start over with a new database never match an ETag handed out before, and it is
+-- the same on every instance sharing the database
+CREATE TABLE owner_versions_epoch (
+  id         INTEGER PRIMARY KEY,
+  created_at TIMESTAMP NOT NULL
+);
+INSERT INTO owner_versions_epoch (id, created_at) VALUES (1, CURRENT_TIMESTAMP);
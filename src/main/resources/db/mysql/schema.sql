@@ -2,7 +2,9 @@ CREATE TABLE IF NOT EXISTS vets (
   id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
   first_name VARCHAR(30),
   last_name VARCHAR(30),
-  INDEX(last_name)
+  change_seq BIGINT UNSIGNED,
+  INDEX(last_name),
+  INDEX(change_seq)
 ) engine=InnoDB;
 
 CREATE TABLE IF NOT EXISTS specialties (
@@ -16,7 +18,8 @@ CREATE TABLE IF NOT EXISTS vet_specialties (
   specialty_id INT(4) UNSIGNED NOT NULL,
   FOREIGN KEY (vet_id) REFERENCES vets(id),
   FOREIGN KEY (specialty_id) REFERENCES specialties(id),
-  UNIQUE (vet_id,specialty_id)
+  UNIQUE (vet_id,specialty_id),
+  INDEX(specialty_id)
 ) engine=InnoDB;
 
 CREATE TABLE IF NOT EXISTS types (
@@ -32,7 +35,9 @@ CREATE TABLE IF NOT EXISTS owners (
   address VARCHAR(255),
   city VARCHAR(80),
   telephone VARCHAR(20),
-  INDEX(last_name)
+  change_seq BIGINT UNSIGNED,
+  INDEX(last_name),
+  INDEX(change_seq)
 ) engine=InnoDB;
 
 CREATE TABLE IF NOT EXISTS pets (
@@ -41,15 +46,160 @@ CREATE TABLE IF NOT EXISTS pets (
   birth_date DATE,
   type_id INT(4) UNSIGNED NOT NULL,
   owner_id INT(4) UNSIGNED,
+  change_seq BIGINT UNSIGNED,
   INDEX(name),
+  INDEX(owner_id),
+  INDEX(type_id),
+  INDEX(change_seq),
   FOREIGN KEY (owner_id) REFERENCES owners(id),
   FOREIGN KEY (type_id) REFERENCES types(id)
 ) engine=InnoDB;
 
+-- Monthly partitions pYYYYMM are created and expired by the application; older rows
+-- end up in phistory. Partitioned InnoDB tables cannot have foreign keys.
 CREATE TABLE IF NOT EXISTS visits (
-  id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT,
+  pet_id INT(4) UNSIGNED,
+  visit_date DATE NOT NULL,
+  description VARCHAR(255),
+  change_seq BIGINT UNSIGNED,
+  PRIMARY KEY (id, visit_date),
+  INDEX(pet_id, visit_date),
+  INDEX(change_seq)
+) engine=InnoDB
+PARTITION BY RANGE COLUMNS(visit_date) (
+  PARTITION pmax VALUES LESS THAN (MAXVALUE)
+);
+
+CREATE TABLE IF NOT EXISTS visits_archive (
+  id INT(4) UNSIGNED NOT NULL PRIMARY KEY,
   pet_id INT(4) UNSIGNED,
   visit_date DATE,
   description VARCHAR(255),
+  archived_at TIMESTAMP NOT NULL,
+  FOREIGN KEY (pet_id) REFERENCES pets(id)
+) engine=InnoDB;
+
+CREATE TABLE IF NOT EXISTS entity_changes (
+  id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  entity VARCHAR(30) NOT NULL,
+  entity_id INT(4) UNSIGNED,
+  origin VARCHAR(36),
+  changed_at TIMESTAMP NOT NULL,
+  INDEX(changed_at)
+) engine=InnoDB;
+
+CREATE TABLE IF NOT EXISTS job_runs (
+  id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  job_name VARCHAR(50) NOT NULL,
+  first_id BIGINT,
+  last_id BIGINT,
+  chunk_size INT NOT NULL,
+  status VARCHAR(20) NOT NULL,
+  started_at TIMESTAMP NOT NULL,
+  finished_at TIMESTAMP NULL,
+  INDEX(job_name)
+) engine=InnoDB;
+
+CREATE TABLE IF NOT EXISTS job_chunks (
+  run_id BIGINT UNSIGNED NOT NULL,
+  first_id BIGINT NOT NULL,
+  items INT NOT NULL,
+  completed_at TIMESTAMP NOT NULL,
+  PRIMARY KEY (run_id, first_id),
+  FOREIGN KEY (run_id) REFERENCES job_runs(id)
+) engine=InnoDB;
+
+CREATE TABLE IF NOT EXISTS vaccination_reminders (
+  id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  pet_id INT(4) UNSIGNED NOT NULL,
+  owner_id INT(4) UNSIGNED NOT NULL,
+  due_date DATE NOT NULL,
+  created_at TIMESTAMP NOT NULL,
+  UNIQUE INDEX(pet_id, due_date),
   FOREIGN KEY (pet_id) REFERENCES pets(id)
 ) engine=InnoDB;
+
+CREATE TABLE IF NOT EXISTS owner_summary (
+  owner_id INT(4) UNSIGNED NOT NULL PRIMARY KEY,
+  first_name VARCHAR(30),
+  last_name VARCHAR(30),
+  address VARCHAR(255),
+  city VARCHAR(80),
+  telephone VARCHAR(20),
+  pet_count INT NOT NULL,
+  pet_names VARCHAR(255),
+  last_visit_date DATE,
+  INDEX(last_name, owner_id)
+) engine=InnoDB;
+
+CREATE TABLE IF NOT EXISTS owner_import_errors (
+  run_id BIGINT UNSIGNED NOT NULL,
+  line_no INT NOT NULL,
+  message VARCHAR(500) NOT NULL,
+  INDEX(run_id, line_no),
+  FOREIGN KEY (run_id) REFERENCES job_runs(id)
+) engine=InnoDB;
+
+-- Version of each owner aggregate for conditional GETs, bumped on every change to the
+-- owner, its pets or its visits; every row is bumped when any owner may have changed
+CREATE TABLE IF NOT EXISTS owner_versions (
+  owner_id INT(4) UNSIGNED NOT NULL PRIMARY KEY,
+  version BIGINT UNSIGNED NOT NULL
+) engine=InnoDB;
+
+-- When the owner versions were created. It is part of every owner ETag, so that versions
+-- that start over with a new database never match an ETag handed out before, and it is
+-- the same on every instance sharing the database
+CREATE TABLE IF NOT EXISTS owner_versions_epoch (
+  id INT(4) UNSIGNED NOT NULL PRIMARY KEY,
+  created_at DATETIME(3) NOT NULL
+) engine=InnoDB;
+INSERT IGNORE INTO owner_versions_epoch (id, created_at) VALUES (1, CURRENT_TIMESTAMP(3));
+
+-- Change sequence numbers for the change feed. MySQL has no sequences, UUID_SHORT()
+-- increases monotonically for as long as the server_id stays the same. With binary
+-- logging on, creating triggers needs log_bin_trust_function_creators.
+-- Databases created before the change feed get the change_seq columns first; MySQL has
+-- no ADD COLUMN IF NOT EXISTS, so the statement is chosen from information_schema.
+SET @ddl = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE vets ADD COLUMN change_seq BIGINT UNSIGNED, ADD INDEX (change_seq)', 'DO 0')
+  FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'vets' AND column_name = 'change_seq');
+PREPARE add_change_seq FROM @ddl;
+EXECUTE add_change_seq;
+DEALLOCATE PREPARE add_change_seq;
+SET @ddl = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE owners ADD COLUMN change_seq BIGINT UNSIGNED, ADD INDEX (change_seq)', 'DO 0')
+  FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'owners' AND column_name = 'change_seq');
+PREPARE add_change_seq FROM @ddl;
+EXECUTE add_change_seq;
+DEALLOCATE PREPARE add_change_seq;
+SET @ddl = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE pets ADD COLUMN change_seq BIGINT UNSIGNED, ADD INDEX (change_seq)', 'DO 0')
+  FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'pets' AND column_name = 'change_seq');
+PREPARE add_change_seq FROM @ddl;
+EXECUTE add_change_seq;
+DEALLOCATE PREPARE add_change_seq;
+SET @ddl = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE visits ADD COLUMN change_seq BIGINT UNSIGNED, ADD INDEX (change_seq)', 'DO 0')
+  FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'visits' AND column_name = 'change_seq');
+PREPARE add_change_seq FROM @ddl;
+EXECUTE add_change_seq;
+DEALLOCATE PREPARE add_change_seq;
+DROP TRIGGER IF EXISTS vets_change_seq_insert;
+CREATE TRIGGER vets_change_seq_insert BEFORE INSERT ON vets FOR EACH ROW SET NEW.change_seq = UUID_SHORT();
+DROP TRIGGER IF EXISTS vets_change_seq_update;
+CREATE TRIGGER vets_change_seq_update BEFORE UPDATE ON vets FOR EACH ROW SET NEW.change_seq = UUID_SHORT();
+DROP TRIGGER IF EXISTS owners_change_seq_insert;
+CREATE TRIGGER owners_change_seq_insert BEFORE INSERT ON owners FOR EACH ROW SET NEW.change_seq = UUID_SHORT();
+DROP TRIGGER IF EXISTS owners_change_seq_update;
+CREATE TRIGGER owners_change_seq_update BEFORE UPDATE ON owners FOR EACH ROW SET NEW.change_seq = UUID_SHORT();
+DROP TRIGGER IF EXISTS pets_change_seq_insert;
+CREATE TRIGGER pets_change_seq_insert BEFORE INSERT ON pets FOR EACH ROW SET NEW.change_seq = UUID_SHORT();
+DROP TRIGGER IF EXISTS pets_change_seq_update;
+CREATE TRIGGER pets_change_seq_update BEFORE UPDATE ON pets FOR EACH ROW SET NEW.change_seq = UUID_SHORT();
+DROP TRIGGER IF EXISTS visits_change_seq_insert;
+CREATE TRIGGER visits_change_seq_insert BEFORE INSERT ON visits FOR EACH ROW SET NEW.change_seq = UUID_SHORT();
+DROP TRIGGER IF EXISTS visits_change_seq_update;
+CREATE TRIGGER visits_change_seq_update BEFORE UPDATE ON visits FOR EACH ROW SET NEW.change_seq = UUID_SHORT();
+-- rows written before the triggers existed
+UPDATE vets SET change_seq = UUID_SHORT() WHERE change_seq IS NULL;
+UPDATE owners SET change_seq = UUID_SHORT() WHERE change_seq IS NULL;
+UPDATE pets SET change_seq = UUID_SHORT() WHERE change_seq IS NULL;
+UPDATE visits SET change_seq = UUID_SHORT() WHERE change_seq IS NULL;
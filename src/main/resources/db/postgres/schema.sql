@@ -16,6 +16,7 @@ CREATE TABLE IF NOT EXISTS vet_specialties (
   specialty_id INT NOT NULL REFERENCES specialties (id),
   UNIQUE (vet_id, specialty_id)
 );
+CREATE INDEX IF NOT EXISTS vet_specialties_specialty_id ON vet_specialties (specialty_id);
 
 CREATE TABLE IF NOT EXISTS types (
   id   INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -32,6 +33,8 @@ CREATE TABLE IF NOT EXISTS owners (
   telephone  TEXT
 );
 CREATE INDEX ON owners (last_name);
+-- the default collation cannot serve LIKE 'prefix%' from a plain index
+CREATE INDEX IF NOT EXISTS owners_last_name_pattern ON owners (last_name text_pattern_ops);
 
 CREATE TABLE IF NOT EXISTS pets (
   id         INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -42,11 +45,128 @@ CREATE TABLE IF NOT EXISTS pets (
 );
 CREATE INDEX ON pets (name);
 CREATE INDEX ON pets (owner_id);
+CREATE INDEX IF NOT EXISTS pets_type_id ON pets (type_id);
 
+-- Monthly partitions visits_pYYYYMM are created and expired by the application; older
+-- rows land in the default partition. A visits table created before partitioning is left
+-- unpartitioned, and the application logs that it has to be recreated to partition it.
 CREATE TABLE IF NOT EXISTS visits (
-  id          INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  id          INT GENERATED BY DEFAULT AS IDENTITY,
+  pet_id      INT REFERENCES pets (id),
+  visit_date  DATE NOT NULL,
+  description TEXT,
+  PRIMARY KEY (id, visit_date)
+) PARTITION BY RANGE (visit_date);
+DO 'BEGIN IF EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = ''visits''::regclass) THEN
+  CREATE TABLE IF NOT EXISTS visits_default PARTITION OF visits DEFAULT; END IF; END';
+CREATE INDEX IF NOT EXISTS visits_pet_id_visit_date ON visits (pet_id, visit_date);
+
+CREATE TABLE IF NOT EXISTS visits_archive (
+  id          INT PRIMARY KEY,
   pet_id      INT REFERENCES pets (id),
   visit_date  DATE,
-  description TEXT
+  description TEXT,
+  archived_at TIMESTAMP NOT NULL
+);
+CREATE INDEX ON visits_archive (pet_id);
+
+CREATE TABLE IF NOT EXISTS entity_changes (
+  id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  entity     TEXT NOT NULL,
+  entity_id  INT,
+  origin     TEXT,
+  changed_at TIMESTAMP NOT NULL
+);
+CREATE INDEX ON entity_changes (changed_at);
+
+CREATE TABLE IF NOT EXISTS job_runs (
+  id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  job_name    TEXT NOT NULL,
+  first_id    BIGINT,
+  last_id     BIGINT,
+  chunk_size  INT NOT NULL,
+  status      TEXT NOT NULL,
+  started_at  TIMESTAMP NOT NULL,
+  finished_at TIMESTAMP
+);
+CREATE INDEX ON job_runs (job_name);
+
+CREATE TABLE IF NOT EXISTS job_chunks (
+  run_id       BIGINT NOT NULL REFERENCES job_runs (id),
+  first_id     BIGINT NOT NULL,
+  items        INT NOT NULL,
+  completed_at TIMESTAMP NOT NULL,
+  PRIMARY KEY (run_id, first_id)
+);
+
+CREATE TABLE IF NOT EXISTS vaccination_reminders (
+  id         INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  pet_id     INT NOT NULL REFERENCES pets (id),
+  owner_id   INT NOT NULL,
+  due_date   DATE NOT NULL,
+  created_at TIMESTAMP NOT NULL,
+  UNIQUE (pet_id, due_date)
+);
+
+CREATE TABLE IF NOT EXISTS owner_summary (
+  owner_id        INT PRIMARY KEY,
+  first_name      TEXT,
+  last_name       TEXT,
+  address         TEXT,
+  city            TEXT,
+  telephone       TEXT,
+  pet_count       INT NOT NULL,
+  pet_names       TEXT,
+  last_visit_date DATE
+);
+CREATE INDEX IF NOT EXISTS owner_summary_last_name ON owner_summary (last_name text_pattern_ops, owner_id);
+
+CREATE TABLE IF NOT EXISTS owner_import_errors (
+  run_id  BIGINT NOT NULL REFERENCES job_runs (id),
+  line_no INT NOT NULL,
+  message TEXT NOT NULL
 );
-CREATE INDEX ON visits (pet_id);
+CREATE INDEX IF NOT EXISTS owner_import_errors_run_line ON owner_import_errors (run_id, line_no);
+
+-- Version of each owner aggregate for conditional GETs, bumped on every change to the
+-- owner, its pets or its visits; every row is bumped when any owner may have changed
+CREATE TABLE IF NOT EXISTS owner_versions (
+  owner_id INT PRIMARY KEY,
+  version  BIGINT NOT NULL
+);
+
+-- When the owner versions were created. It is part of every owner ETag, so that versions
+-- that start over with a new database never match an ETag handed out before, and it is
+-- the same on every instance sharing the database
+CREATE TABLE IF NOT EXISTS owner_versions_epoch (
+  id         INT PRIMARY KEY,
+  created_at TIMESTAMP NOT NULL
+);
+INSERT INTO owner_versions_epoch (id, created_at) VALUES (1, CURRENT_TIMESTAMP) ON CONFLICT DO NOTHING;
+
+-- Change sequence numbers for the change feed, bumped by a trigger on every insert and
+-- update. The function body is a plain string literal so that the script splitter
+-- does not break it up at its semicolons.
+CREATE SEQUENCE IF NOT EXISTS change_seq;
+CREATE OR REPLACE FUNCTION next_change_seq() RETURNS trigger LANGUAGE plpgsql
+  AS 'BEGIN NEW.change_seq := nextval(''change_seq''); RETURN NEW; END';
+ALTER TABLE vets ADD COLUMN IF NOT EXISTS change_seq BIGINT;
+CREATE INDEX IF NOT EXISTS vets_change_seq ON vets (change_seq);
+CREATE OR REPLACE TRIGGER vets_change_seq BEFORE INSERT OR UPDATE ON vets
+  FOR EACH ROW EXECUTE FUNCTION next_change_seq();
+UPDATE vets SET change_seq = nextval('change_seq') WHERE change_seq IS NULL;
+ALTER TABLE owners ADD COLUMN IF NOT EXISTS change_seq BIGINT;
+CREATE INDEX IF NOT EXISTS owners_change_seq ON owners (change_seq);
+CREATE OR REPLACE TRIGGER owners_change_seq BEFORE INSERT OR UPDATE ON owners
+  FOR EACH ROW EXECUTE FUNCTION next_change_seq();
+UPDATE owners SET change_seq = nextval('change_seq') WHERE change_seq IS NULL;
+ALTER TABLE pets ADD COLUMN IF NOT EXISTS change_seq BIGINT;
+CREATE INDEX IF NOT EXISTS pets_change_seq ON pets (change_seq);
+CREATE OR REPLACE TRIGGER pets_change_seq BEFORE INSERT OR UPDATE ON pets
+  FOR EACH ROW EXECUTE FUNCTION next_change_seq();
+UPDATE pets SET change_seq = nextval('change_seq') WHERE change_seq IS NULL;
+ALTER TABLE visits ADD COLUMN IF NOT EXISTS change_seq BIGINT;
+CREATE INDEX IF NOT EXISTS visits_change_seq ON visits (change_seq);
+CREATE OR REPLACE TRIGGER visits_change_seq BEFORE INSERT OR UPDATE ON visits
+  FOR EACH ROW EXECUTE FUNCTION next_change_seq();
+UPDATE visits SET change_seq = nextval('change_seq') WHERE change_seq IS NULL;
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.stream.IntStream;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.StatementRecorder.RecordedStatement;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.vet.VetRepository;
+import org.springframework.test.annotation.DirtiesContext;
+
+/**
+ * Runs the repository queries against a database filled with a few thousand owners, pets
+ * and visits, and fails when the plan of any filtered query reads more than
+ * {@link #ROW_THRESHOLD} rows with a full table scan. Subclasses supply the database and
+ * the dialect specific {@code EXPLAIN}.
+ * <p>
+ * Unfiltered statements, such as the count query of an unfiltered page, read the whole
+ * table by definition and are not checked.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+@Import(StatementRecorder.class)
+@DirtiesContext
+abstract class AbstractQueryPlanTests {
+
+	static final int ROW_THRESHOLD = 1000;
+
+	private static final int OWNERS = 5000;
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private VetRepository vets;
+
+	@Autowired
+	private StatementRecorder recorder;
+
+	@Autowired
+	protected JdbcTemplate jdbcTemplate;
+
+	@BeforeAll
+	void populate() {
+		List<Integer> ids = IntStream.rangeClosed(1, OWNERS).boxed().toList();
+		this.jdbcTemplate.batchUpdate(
+				"INSERT INTO owners (first_name, last_name, address, city, telephone) VALUES (?, ?, ?, ?, ?)", ids, 500,
+				(ps, i) -> {
+					ps.setString(1, "First" + i);
+					ps.setString(2, "Owner" + i);
+					ps.setString(3, i + " Main St.");
+					ps.setString(4, "City" + (i % 50));
+					ps.setString(5, "6085550000");
+				});
+		this.jdbcTemplate.batchUpdate("INSERT INTO pets (name, birth_date, type_id, owner_id) "
+				+ "SELECT ?, ?, 1, id FROM owners WHERE last_name = ?", ids, 500, (ps, i) -> {
+					ps.setString(1, "Pet" + i);
+					ps.setDate(2, Date.valueOf(LocalDate.of(2020, 1, 1)));
+					ps.setString(3, "Owner" + i);
+				});
+		this.jdbcTemplate.batchUpdate("INSERT INTO visits (pet_id, visit_date, description) "
+				+ "SELECT id, ?, 'checkup' FROM pets WHERE name = ?", ids, 500, (ps, i) -> {
+					ps.setDate(1, Date.valueOf(LocalDate.now().minusDays(i % 365)));
+					ps.setString(2, "Pet" + i);
+				});
+		analyze();
+	}
+
+	/**
+	 * Refresh the optimizer statistics after the test data has been loaded.
+	 */
+	protected void analyze() {
+	}
+
+	@Test
+	void ownerQueriesShouldNotScanLargeTables() {
+		assertNoLargeScans(this.recorder.record(() -> {
+			this.owners.findByLastName("Owner4321", PageRequest.of(0, 5));
+			this.owners.findById(4321);
+			this.owners.findAll(PageRequest.of(2, 5));
+			this.owners.findPetTypes();
+		}));
+	}
+
+	@Test
+	void vetQueriesShouldNotScanLargeTables() {
+		assertNoLargeScans(this.recorder.record(() -> {
+			this.vets.findAll();
+			this.vets.findAll(PageRequest.of(0, 5));
+		}));
+	}
+
+	private void assertNoLargeScans(List<RecordedStatement> statements) {
+		assertThat(statements).isNotEmpty();
+		SoftAssertions softly = new SoftAssertions();
+		for (RecordedStatement statement : statements) {
+			if (statement.sql().toLowerCase().contains(" where ")) {
+				String plan = explain(statement);
+				softly.assertThat(largeScans(plan)).as("%s%n%s", statement.sql(), plan).isEmpty();
+			}
+		}
+		softly.assertAll();
+	}
+
+	private String explain(RecordedStatement statement) {
+		return this.jdbcTemplate.execute(explain(statement.sql()), (PreparedStatement ps) -> {
+			if (ps.getParameterMetaData().getParameterCount() > 0) {
+				statement.bind(ps);
+			}
+			StringJoiner plan = new StringJoiner("\n");
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					plan.add(rs.getString(1));
+				}
+			}
+			return plan.toString();
+		});
+	}
+
+	/**
+	 * Return the statement that explains, and preferably also runs, the given query.
+	 */
+	protected abstract String explain(String sql);
+
+	/**
+	 * Describe each full table scan in the plan that read more than
+	 * {@link #ROW_THRESHOLD} rows.
+	 */
+	protected abstract List<String> largeScans(String plan);
+
+}
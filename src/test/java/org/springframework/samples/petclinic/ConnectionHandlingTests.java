@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Checks that a request gives its connection back after each JPA transaction. The owner
+ * page loads the owner through JPA and then counts archived visits with a
+ * {@code JdbcTemplate}, outside any transaction. If the open-in-view session held on to
+ * its connection, every request would need two connections at once, and enough concurrent
+ * requests would exhaust the pool while each waits for its second connection. A pool of
+ * one shows that deadlock with a single request.
+ */
+@SpringBootTest(properties = { "spring.datasource.hikari.maximum-pool-size=1",
+		"spring.datasource.hikari.connection-timeout=5000", "petclinic.owners.cache.recent-visits=1" })
+@AutoConfigureMockMvc
+class ConnectionHandlingTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	void shouldShowOwnerWithASingleConnection() throws Exception {
+		// Jean Coleman, whose pets have older visits than the snapshot keeps, so the
+		// page loads her through JPA
+		this.mockMvc.perform(get("/owners/{ownerId}", 6))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("archivedVisitCount", 0L));
+	}
+
+}
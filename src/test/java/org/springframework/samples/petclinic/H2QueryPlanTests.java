@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Query plans on the default H2 database. {@code EXPLAIN ANALYZE} reports the rows each
+ * table access read.
+ */
+@SpringBootTest
+class H2QueryPlanTests extends AbstractQueryPlanTests {
+
+	private static final Pattern TABLE_SCAN = Pattern
+		.compile("/\\* PUBLIC\\.(\\w+)\\.tableScan \\*/.*?/\\* scanCount: (\\d+) \\*/", Pattern.DOTALL);
+
+	@Override
+	protected void analyze() {
+		this.jdbcTemplate.execute("ANALYZE");
+	}
+
+	@Override
+	protected String explain(String sql) {
+		return "EXPLAIN ANALYZE " + sql;
+	}
+
+	@Override
+	protected List<String> largeScans(String plan) {
+		return TABLE_SCAN.matcher(plan)
+			.results()
+			.filter(scan -> Long.parseLong(scan.group(2)) > ROW_THRESHOLD)
+			.map(scan -> scan.group(1) + " (" + scan.group(2) + " rows)")
+			.toList();
+	}
+
+}
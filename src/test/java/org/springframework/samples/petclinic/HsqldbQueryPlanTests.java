@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Query plans on HSQLDB. {@code EXPLAIN PLAN} does not run the query, so a full scan is
+ * measured by the cardinality of the scanned table.
+ */
+@SpringBootTest(properties = { "database=hsqldb", "spring.datasource.url=jdbc:hsqldb:mem:queryplans" })
+class HsqldbQueryPlanTests extends AbstractQueryPlanTests {
+
+	private static final Pattern FULL_SCAN = Pattern
+		.compile("table=(\\w+)\\s+(?:alias=\\w+\\s+)?cardinality=(\\d+)\\s+access=FULL SCAN");
+
+	@Override
+	protected String explain(String sql) {
+		return "EXPLAIN PLAN FOR " + sql;
+	}
+
+	@Override
+	protected List<String> largeScans(String plan) {
+		return FULL_SCAN.matcher(plan)
+			.results()
+			.filter(scan -> Long.parseLong(scan.group(2)) > ROW_THRESHOLD)
+			.map(scan -> scan.group(1) + " (" + scan.group(2) + " rows)")
+			.toList();
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Query plans on MySQL, started with Testcontainers when Docker is available.
+ * {@code EXPLAIN ANALYZE} needs MySQL 8.0.18 or later.
+ */
+@SpringBootTest
+@ActiveProfiles("mysql")
+@Testcontainers(disabledWithoutDocker = true)
+class MySqlQueryPlanTests extends AbstractQueryPlanTests {
+
+	private static final Pattern TABLE_SCAN = Pattern
+		.compile("Table scan on (\\w+).*?\\(actual time=\\S+ rows=([\\d.]+) loops=(\\d+)\\)");
+
+	@ServiceConnection
+	@Container
+	static MySQLContainer<?> container = new MySQLContainer<>("mysql:8.0");
+
+	@Override
+	protected void analyze() {
+		this.jdbcTemplate.execute("ANALYZE TABLE owners, pets, visits");
+	}
+
+	@Override
+	protected String explain(String sql) {
+		return "EXPLAIN ANALYZE " + sql;
+	}
+
+	@Override
+	protected List<String> largeScans(String plan) {
+		return TABLE_SCAN.matcher(plan)
+			.results()
+			.filter(scan -> rows(scan.group(2), scan.group(3)) > ROW_THRESHOLD)
+			.map(scan -> scan.group(1) + " (" + rows(scan.group(2), scan.group(3)) + " rows)")
+			.toList();
+	}
+
+	private static long rows(String rows, String loops) {
+		return Math.round(Double.parseDouble(rows) * Long.parseLong(loops));
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Query plans on PostgreSQL, started with Testcontainers when Docker is available. The
+ * rows read by a sequential scan are the rows it returned plus those its filter removed.
+ */
+@SpringBootTest
+@ActiveProfiles("postgres")
+@Testcontainers(disabledWithoutDocker = true)
+class PostgresQueryPlanTests extends AbstractQueryPlanTests {
+
+	private static final Pattern SEQ_SCAN = Pattern
+		.compile("Seq Scan on (\\w+).*\\(actual time=\\S+ rows=(\\d+) loops=(\\d+)\\)");
+
+	private static final Pattern REMOVED = Pattern.compile("Rows Removed by Filter: (\\d+)");
+
+	@ServiceConnection
+	@Container
+	static PostgreSQLContainer<?> container = new PostgreSQLContainer<>("postgres:15.3");
+
+	@Override
+	protected void analyze() {
+		this.jdbcTemplate.execute("ANALYZE");
+	}
+
+	@Override
+	protected String explain(String sql) {
+		return "EXPLAIN ANALYZE " + sql;
+	}
+
+	@Override
+	protected List<String> largeScans(String plan) {
+		List<String> scans = new ArrayList<>();
+		String table = null;
+		long loops = 0;
+		long rows = 0;
+		for (String line : plan.split("\n")) {
+			Matcher scan = SEQ_SCAN.matcher(line);
+			Matcher removed = REMOVED.matcher(line);
+			if (scan.find()) {
+				addIfLarge(scans, table, rows);
+				table = scan.group(1);
+				loops = Long.parseLong(scan.group(3));
+				rows = Long.parseLong(scan.group(2)) * loops;
+			}
+			else if (table != null && removed.find()) {
+				rows += Long.parseLong(removed.group(1)) * loops;
+			}
+			else if (table != null && line.contains("->")) {
+				addIfLarge(scans, table, rows);
+				table = null;
+			}
+		}
+		addIfLarge(scans, table, rows);
+		return scans;
+	}
+
+	private static void addIfLarge(List<String> scans, String table, long rows) {
+		if (table != null && rows > ROW_THRESHOLD) {
+			scans.add(table + " (" + rows + " rows)");
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Wraps the {@link DataSource} so that tests can capture the SQL, and the parameters
+ * bound to it, of the prepared statements issued by a block of code.
+ */
+class StatementRecorder implements BeanPostProcessor {
+
+	private final ThreadLocal<List<RecordedStatement>> recording = new ThreadLocal<>();
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (bean instanceof DataSource dataSource) {
+			return proxy(DataSource.class, dataSource, (target, method, args) -> {
+				Object result = method.invoke(target, args);
+				return (result instanceof Connection connection) ? proxy(Connection.class, connection, this::prepare)
+						: result;
+			});
+		}
+		return bean;
+	}
+
+	/**
+	 * Run the given code and return the statements it prepared on the calling thread.
+	 */
+	List<RecordedStatement> record(Runnable code) {
+		List<RecordedStatement> statements = new ArrayList<>();
+		this.recording.set(statements);
+		try {
+			code.run();
+		}
+		finally {
+			this.recording.remove();
+		}
+		return statements;
+	}
+
+	private Object prepare(Object connection, Method method, Object[] args) throws Throwable {
+		Object result = method.invoke(connection, args);
+		List<RecordedStatement> statements = this.recording.get();
+		if (statements == null || !method.getName().equals("prepareStatement")) {
+			return result;
+		}
+		RecordedStatement recorded = new RecordedStatement((String) args[0], new ArrayList<>());
+		statements.add(recorded);
+		return proxy(PreparedStatement.class, (PreparedStatement) result, (target, setter, setterArgs) -> {
+			if (setter.getName().startsWith("set") && setterArgs != null && setterArgs.length > 1
+					&& setterArgs[0] instanceof Integer) {
+				recorded.parameters().add(new Parameter(setter, setterArgs));
+			}
+			return setter.invoke(target, setterArgs);
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, T target, Handler handler) {
+		InvocationHandler invocationHandler = (proxy, method, args) -> {
+			try {
+				return handler.invoke(target, method, args);
+			}
+			catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+		};
+		return (T) Proxy.newProxyInstance(StatementRecorder.class.getClassLoader(), new Class<?>[] { type },
+				invocationHandler);
+	}
+
+	private interface Handler {
+
+		Object invoke(Object target, Method method, Object[] args) throws Throwable;
+
+	}
+
+	/**
+	 * The SQL of a prepared statement and the parameters that were bound to it.
+	 */
+	record RecordedStatement(String sql, List<Parameter> parameters) {
+
+		/**
+		 * Bind the recorded parameters to another statement, for example an
+		 * {@code EXPLAIN} of the same SQL.
+		 */
+		void bind(PreparedStatement statement) throws SQLException {
+			for (Parameter parameter : this.parameters) {
+				try {
+					parameter.setter().invoke(statement, parameter.args());
+				}
+				catch (ReflectiveOperationException ex) {
+					throw new SQLException("Could not bind " + parameter.setter().getName(), ex);
+				}
+			}
+		}
+
+	}
+
+	record Parameter(Method setter, Object[] args) {
+
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.samples.petclinic.audit.AuditEntry.Change;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.owner.OwnerRowsWritten;
+import org.springframework.samples.petclinic.owner.OwnerRowsWritten.Operation;
+import org.springframework.samples.petclinic.owner.OwnerRowsWritten.Row;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.Visit;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration test of the {@link AuditListener}, saving an owner aggregate through the
+ * {@link OwnerRepository}.
+ */
+@DataJpaTest
+@Import({ AuditConfiguration.class, AuditedJdbcWrites.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AuditListenerTests {
+
+	@TempDir
+	static Path directory;
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private AuditRecorder recorder;
+
+	@Autowired
+	private AuditLog log;
+
+	@Autowired
+	private ApplicationEventPublisher events;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@DynamicPropertySource
+	static void auditProperties(DynamicPropertyRegistry registry) {
+		registry.add("petclinic.audit.enabled", () -> "true");
+		registry.add("petclinic.audit.directory", () -> directory.toString());
+	}
+
+	@Test
+	void shouldAuditCommittedChangesOfAnOwnerAggregate() {
+		Owner owner = new Owner();
+		owner.setFirstName("Sam");
+		owner.setLastName("Schultz");
+		owner.setAddress("4, Evans Street");
+		owner.setCity("Wollongong");
+		owner.setTelephone("4444444444");
+		Pet pet = new Pet();
+		pet.setName("bowser");
+		pet.setBirthDate(LocalDate.of(2020, 1, 1));
+		pet.setType(this.owners.findPetTypes().get(0));
+		owner.addPet(pet);
+		this.owners.save(owner);
+
+		Owner saved = this.owners.findById(owner.getId());
+		saved.setCity("Sydney");
+		Visit visit = new Visit();
+		visit.setDescription("check-up");
+		saved.addVisit(saved.getPets().get(0).getId(), visit);
+		this.owners.save(saved);
+		assertThat(this.recorder.awaitDurable(5, TimeUnit.SECONDS)).isTrue();
+
+		List<AuditEntry> entries = this.log.find(owner.getId(), 10);
+		assertThat(entries).extracting(AuditEntry::entity, AuditEntry::operation)
+			.containsExactlyInAnyOrder(tuple("owner", "insert"), tuple("pet", "insert"), tuple("owner", "update"),
+					tuple("visit", "insert"));
+		assertThat(entries).filteredOn(entry -> entry.operation().equals("update"))
+			.singleElement()
+			.extracting(AuditEntry::changes)
+			.isEqualTo(List.of(new Change("city", "Wollongong", "Sydney")));
+		assertThat(entries).filteredOn(entry -> entry.entity().equals("pet"))
+			.singleElement()
+			.satisfies(entry -> assertThat(entry.changes()).contains(new Change("name", null, "bowser"))
+				.extracting(Change::field)
+				.doesNotContain("visits"));
+	}
+
+	@Test
+	void shouldAuditRowsWrittenWithJdbcOnceCommitted() {
+		Map<String, Object> values = new LinkedHashMap<>();
+		values.put("date", LocalDate.of(2013, 1, 1));
+		values.put("description", "rabies shot");
+		OwnerRowsWritten visits = new OwnerRowsWritten(OwnerRowsWritten.VISIT, Operation.DELETE,
+				List.of(new Row(1, 6, values)));
+		this.transactionTemplate.executeWithoutResult(status -> {
+			this.events.publishEvent(visits);
+			status.setRollbackOnly();
+		});
+		this.transactionTemplate.executeWithoutResult(status -> this.events.publishEvent(visits));
+		assertThat(this.recorder.awaitDurable(5, TimeUnit.SECONDS)).isTrue();
+
+		assertThat(this.log.find(6, 10)).singleElement().satisfies(entry -> {
+			assertThat(entry.entity()).isEqualTo("visit");
+			assertThat(entry.operation()).isEqualTo("delete");
+			assertThat(entry.changes()).containsExactly(new Change("date", "2013-01-01", null),
+					new Change("description", "rabies shot", null));
+		});
+	}
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.samples.petclinic.audit.AuditEntry.Change;
+
+/**
+ * Test class for {@link AuditRecorder} and {@link AuditLog}
+ */
+class AuditLogTests {
+
+	private static final String[] OWNER_FIELDS = { "address", "city", "firstName", "lastName", "pets", "telephone" };
+
+	private static final boolean[] AUDITABLE = { true, true, true, true, false, true };
+
+	private static final int[] ALL = { 0, 1, 2, 3, 4, 5 };
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void shouldFindChangesOfAnOwnerNewestFirst() throws Exception {
+		try (AuditLog log = new AuditLog(this.directory, 1 << 20, 4)) {
+			try (AuditRecorder recorder = new AuditRecorder(new AuditRing(16, 1024), log, 8)) {
+				Object[] created = { "638 Cardinal Ave.", "Sun Prairie", "Betty", "Davis", List.of(), "6085551749" };
+				Object[] moved = { "12 Žižkova", "Madison", "Betty", "Davis", List.of(), "6085551749" };
+				recorder.record(0, 2, 2, AuditEntry.INSERT, OWNER_FIELDS, null, created, ALL, AUDITABLE);
+				recorder.record(0, 4, 4, AuditEntry.INSERT, OWNER_FIELDS, null, created, ALL, AUDITABLE);
+				recorder.record(0, 2, 2, AuditEntry.UPDATE, OWNER_FIELDS, created, moved, ALL, AUDITABLE);
+				recorder.record(2, 9, 2, AuditEntry.INSERT, new String[] { "date", "description" }, null,
+						new Object[] { LocalDate.of(2023, 5, 10), null }, new int[] { 0, 1 },
+						new boolean[] { true, true });
+				assertThat(recorder.awaitDurable(5, TimeUnit.SECONDS)).isTrue();
+			}
+
+			List<AuditEntry> entries = log.find(2, 10);
+			assertThat(entries).extracting(AuditEntry::entity, AuditEntry::operation)
+				.containsExactly(tuple("visit", "insert"), tuple("owner", "update"), tuple("owner", "insert"));
+			assertThat(entries.get(0).changes()).containsExactly(new Change("date", null, "2023-05-10"),
+					new Change("description", null, null));
+			assertThat(entries.get(1).changes()).containsExactly(
+					new Change("address", "638 Cardinal Ave.", "12 Žižkova"),
+					new Change("city", "Sun Prairie", "Madison"));
+			assertThat(entries.get(2).changes()).hasSize(5).extracting(Change::field).doesNotContain("pets");
+			assertThat(log.find(2, 1)).hasSize(1);
+			assertThat(log.find(3, 10)).isEmpty();
+		}
+	}
+
+	@Test
+	void shouldRollSegmentsAndRecoverTheirIndex() throws Exception {
+		try (AuditLog log = new AuditLog(this.directory, 4096, 3)) {
+			try (AuditRecorder recorder = new AuditRecorder(new AuditRing(16, 1024), log, 8)) {
+				for (int i = 0; i < 400; i++) {
+					recordRename(recorder, i % 10, "name " + i);
+				}
+				assertThat(recorder.awaitDurable(5, TimeUnit.SECONDS)).isTrue();
+			}
+			assertThat(log.segmentCount()).isEqualTo(3);
+			assertThat(log.find(7, 1)).singleElement()
+				.extracting(entry -> entry.changes().get(0).after())
+				.isEqualTo("name 397");
+		}
+		try (AuditLog log = new AuditLog(this.directory, 4096, 3)) {
+			assertThat(log.segmentCount()).isEqualTo(3);
+			List<AuditEntry> entries = log.find(7, 100);
+			assertThat(entries).isNotEmpty().hasSizeLessThan(40);
+			assertThat(entries.get(0).changes().get(0).after()).isEqualTo("name 397");
+		}
+	}
+
+	@Test
+	void shouldWriteEveryChangeOfConcurrentProducers() throws Exception {
+		int producers = 4;
+		int changes = 2000;
+		try (AuditLog log = new AuditLog(this.directory, 1 << 22, 4)) {
+			try (AuditRecorder recorder = new AuditRecorder(new AuditRing(8, 256), log, 4)) {
+				List<Thread> threads = new ArrayList<>();
+				for (int producer = 0; producer < producers; producer++) {
+					int ownerId = producer + 1;
+					Thread thread = new Thread(() -> {
+						for (int i = 0; i < changes; i++) {
+							recordRename(recorder, ownerId, String.valueOf(i));
+						}
+					});
+					thread.start();
+					threads.add(thread);
+				}
+				for (Thread thread : threads) {
+					thread.join();
+				}
+				assertThat(recorder.awaitDurable(10, TimeUnit.SECONDS)).isTrue();
+			}
+			for (int ownerId = 1; ownerId <= producers; ownerId++) {
+				List<AuditEntry> entries = log.find(ownerId, changes * 2);
+				assertThat(entries).hasSize(changes);
+				// newest first, and in the order each producer recorded them
+				assertThat(entries.get(0).changes().get(0).after()).isEqualTo(String.valueOf(changes - 1));
+				assertThat(entries.get(changes - 1).changes().get(0).after()).isEqualTo("0");
+			}
+		}
+	}
+
+	private static void recordRename(AuditRecorder recorder, int ownerId, String name) {
+		recorder.record(0, ownerId, ownerId, AuditEntry.UPDATE, OWNER_FIELDS, new Object[6],
+				new Object[] { null, null, name, null, null, null }, new int[] { 2 }, AUDITABLE);
+	}
+
+}
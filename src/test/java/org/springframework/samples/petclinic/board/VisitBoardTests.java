@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.board;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.board.BoardEvent.VisitData;
+
+/**
+ * Tests for {@link VisitBoard}.
+ */
+class VisitBoardTests {
+
+	private final VisitBoard board = new VisitBoard(8, 2);
+
+	@AfterEach
+	void closeBoard() {
+		this.board.close();
+	}
+
+	@Test
+	void shouldFanOutToEverySubscriber() throws InterruptedException {
+		BlockingQueue<BoardEvent> all = subscribe(null);
+		BlockingQueue<BoardEvent> george = subscribe(1);
+		publishVisit(1, "rabies shot");
+		publishVisit(2, "spayed");
+		publishVisit(1, "neutered");
+
+		assertThat(take(all, 3)).extracting(BoardEvent::seq).containsExactly(1L, 2L, 3L);
+		List<BoardEvent> events = take(george, 2);
+		assertThat(events).extracting(BoardEvent::ownerId).containsOnly(1);
+		assertThat(events).extracting(event -> ((VisitData) event.data()).description())
+			.containsExactly("rabies shot", "neutered");
+		assertThat(this.board.getSubscriptionCount()).isEqualTo(2);
+		assertThat(this.board.getPublishedCount()).isEqualTo(3);
+	}
+
+	@Test
+	void shouldResetSlowSubscriber() throws InterruptedException {
+		CountDownLatch stalled = new CountDownLatch(1);
+		BlockingQueue<BoardEvent> slow = new LinkedBlockingQueue<>();
+		this.board.subscribe(null, null, events -> {
+			slow.addAll(events);
+			try {
+				stalled.await();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		BlockingQueue<BoardEvent> fast = subscribe(null);
+		publishVisit(1, "first");
+		assertThat(take(slow, 1)).extracting(BoardEvent::seq).containsExactly(1L);
+
+		assertThat(take(fast, 1)).extracting(BoardEvent::seq).containsExactly(1L);
+		for (int i = 2; i <= 21; i++) {
+			// one at a time, so that only the stalled subscriber falls behind
+			publishVisit(1, "visit " + i);
+			assertThat(take(fast, 1)).extracting(BoardEvent::seq).containsExactly((long) i);
+		}
+		stalled.countDown();
+
+		BoardEvent reset = take(slow, 1).get(0);
+		assertThat(reset.type()).isEqualTo(BoardEvent.RESET);
+		assertThat(reset.seq()).isEqualTo(21);
+		assertThat(this.board.getResetCount()).isEqualTo(1);
+		publishVisit(1, "after reset");
+		assertThat(take(slow, 1)).extracting(BoardEvent::seq).containsExactly(22L);
+	}
+
+	@Test
+	void shouldResumeAfterLastSeenEvent() throws InterruptedException {
+		BlockingQueue<BoardEvent> first = subscribe(null);
+		publishVisit(1, "one");
+		publishVisit(1, "two");
+		publishVisit(1, "three");
+		take(first, 3);
+
+		BlockingQueue<BoardEvent> resumed = new LinkedBlockingQueue<>();
+		this.board.subscribe(null, 1L, resumed::addAll);
+		assertThat(take(resumed, 2)).extracting(BoardEvent::seq).containsExactly(2L, 3L);
+	}
+
+	@Test
+	void shouldCancelSubscriptionWhenSendFails() throws InterruptedException {
+		CountDownLatch failed = new CountDownLatch(1);
+		this.board.subscribe(null, null, events -> {
+			failed.countDown();
+			throw new IOException("Broken pipe");
+		});
+		publishVisit(1, "rabies shot");
+		assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (this.board.getSubscriptionCount() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(this.board.getSubscriptionCount()).isZero();
+	}
+
+	private BlockingQueue<BoardEvent> subscribe(Integer ownerId) {
+		BlockingQueue<BoardEvent> events = new LinkedBlockingQueue<>();
+		this.board.subscribe(ownerId, null, events::addAll);
+		return events;
+	}
+
+	private void publishVisit(int ownerId, String description) {
+		this.board.publish(BoardEvent.VISIT, ownerId, new VisitData(null, 1, LocalDate.of(2023, 6, 1), description));
+	}
+
+	private static List<BoardEvent> take(BlockingQueue<BoardEvent> queue, int count) throws InterruptedException {
+		List<BoardEvent> events = new ArrayList<>();
+		while (events.size() < count) {
+			BoardEvent event = queue.poll(5, TimeUnit.SECONDS);
+			assertThat(event).as("event %d of %d", events.size() + 1, count).isNotNull();
+			events.add(event);
+		}
+		return events;
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.changes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.ChangeFeed.Change;
+import org.springframework.samples.petclinic.changes.ChangeFeed.Page;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Integration test of the {@link ChangeFeed} against the sample data, which holds 33
+ * owners, pets, visits and vets.
+ */
+@JdbcTest
+@Import(ChangeFeed.class)
+@TestPropertySource(properties = "petclinic.changes.feed.settle=0")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ChangeFeedTests {
+
+	@Autowired
+	private ChangeFeed feed;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void restoreSampleData() {
+		this.jdbcTemplate.update("UPDATE owners SET city = 'Madison' WHERE id = 1");
+		this.jdbcTemplate.update("DELETE FROM owners WHERE last_name = 'Feed'");
+	}
+
+	@Test
+	void shouldReadEverythingInSequenceOrder() {
+		Page page = this.feed.read(0, 100);
+		assertThat(page.more()).isFalse();
+		assertThat(page.changes()).hasSize(33).extracting(Change::seq).isSorted().doesNotHaveDuplicates();
+		assertThat(page.cursor()).isEqualTo(page.changes().get(32).seq());
+		assertThat(page.changes()).filteredOn(change -> change.entity().equals("visit") && change.id() == 1)
+			.singleElement()
+			.extracting(Change::data)
+			.isEqualTo(Map.of("petId", 7, "visitDate", LocalDate.of(2013, 1, 1), "description", "rabies shot"));
+	}
+
+	@Test
+	void shouldPageWithCursor() {
+		List<Change> changes = new ArrayList<>();
+		Page page = this.feed.read(0, 10);
+		changes.addAll(page.changes());
+		while (page.more()) {
+			assertThat(page.changes()).hasSize(10);
+			page = this.feed.read(page.cursor(), 10);
+			changes.addAll(page.changes());
+		}
+		assertThat(changes).hasSize(33).extracting(Change::seq).isSorted().doesNotHaveDuplicates();
+		assertThat(this.feed.read(page.cursor(), 10).changes()).isEmpty();
+	}
+
+	@Test
+	void shouldReportUpdatedRowAgain() {
+		long cursor = this.feed.read(0, 100).cursor();
+		this.jdbcTemplate.update("UPDATE owners SET city = 'Monona' WHERE id = 1");
+		Page page = this.feed.read(cursor, 100);
+		assertThat(page.changes()).singleElement().satisfies(change -> {
+			assertThat(change.entity()).isEqualTo("owner");
+			assertThat(change.id()).isEqualTo(1);
+			assertThat(change.seq()).isGreaterThan(cursor);
+			assertThat(change.data()).containsEntry("lastName", "Franklin").containsEntry("city", "Monona");
+		});
+	}
+
+	@Test
+	void shouldWriteSequenceNumbersAsUnsigned() throws Exception {
+		Page page = new Page(List.of(), -2, false);
+		assertThat(new ObjectMapper().writeValueAsString(page)).contains("\"cursor\":18446744073709551614");
+	}
+
+	@Test
+	void shouldHoldBackChangesUntilSettled() {
+		ChangeFeed settling = new ChangeFeed(this.jdbcTemplate, Duration.ofNanos(1));
+		assertThat(settling.read(0, 100).changes()).isEmpty();
+		settling.sample();
+		long cursor = settling.read(0, 100).cursor();
+		this.jdbcTemplate.update("INSERT INTO owners (first_name, last_name) VALUES ('Change', 'Feed')");
+		assertThat(settling.read(cursor, 100).changes()).isEmpty();
+		settling.sample();
+		assertThat(settling.read(cursor, 100).changes()).singleElement()
+			.satisfies(change -> assertThat(change.data()).containsEntry("lastName", "Feed"));
+	}
+
+}
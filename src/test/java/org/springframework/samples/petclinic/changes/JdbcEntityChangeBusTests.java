@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.changes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.PetClinicApplication;
+import org.springframework.samples.petclinic.service.EntityUtils;
+import org.springframework.samples.petclinic.vet.Vet;
+import org.springframework.samples.petclinic.vet.VetRepository;
+
+/**
+ * Runs two application contexts against one file-backed H2 database, the way two
+ * instances behind a load balancer share a database.
+ */
+class JdbcEntityChangeBusTests {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void shouldInvalidateVetsCacheOnOtherInstance() {
+		String url = "jdbc:h2:file:" + this.directory.resolve("petclinic").toAbsolutePath();
+		try (ConfigurableApplicationContext first = start(url, "always");
+				ConfigurableApplicationContext second = start(url, "never")) {
+			VetRepository vets = second.getBean(VetRepository.class);
+			JdbcEntityChangeBus secondBus = second.getBean(JdbcEntityChangeBus.class);
+			secondBus.poll();
+			assertThat(lastName(vets, 1)).isEqualTo("Carter");
+
+			first.getBean(JdbcTemplate.class).update("UPDATE vets SET last_name = 'Carter-Smith' WHERE id = 1");
+			assertThat(lastName(vets, 1)).isEqualTo("Carter");
+
+			first.getBean(EntityChangeBus.class).publish(EntityChangedEvent.vet(1));
+			secondBus.poll();
+			assertThat(lastName(vets, 1)).isEqualTo("Carter-Smith");
+		}
+	}
+
+	@Test
+	void shouldDeliverChangesAroundAnUncommittedInsert() throws Exception {
+		String url = "jdbc:h2:file:" + this.directory.resolve("petclinic").toAbsolutePath();
+		try (ConfigurableApplicationContext first = start(url, "always");
+				ConfigurableApplicationContext second = start(url, "never")) {
+			List<EntityChangedEvent> received = new CopyOnWriteArrayList<>();
+			second.addApplicationListener(ApplicationListener.forPayload(payload -> {
+				if (payload instanceof EntityChangedEvent event) {
+					received.add(event);
+				}
+			}));
+			JdbcEntityChangeBus secondBus = second.getBean(JdbcEntityChangeBus.class);
+			secondBus.poll();
+
+			try (Connection connection = first.getBean(DataSource.class).getConnection()) {
+				connection.setAutoCommit(false);
+				try (PreparedStatement insert = connection.prepareStatement(
+						"INSERT INTO entity_changes (entity, entity_id, origin, changed_at) VALUES ('vet', 2, 'console', ?)")) {
+					insert.setTimestamp(1, Timestamp.from(Instant.now()));
+					insert.executeUpdate();
+				}
+				// later changes commit first and are not held back by the open one, even
+				// when a poll reads a single row
+				EntityChangeBus firstBus = first.getBean(EntityChangeBus.class);
+				firstBus.publish(EntityChangedEvent.vet(3));
+				secondBus.poll();
+				firstBus.publish(EntityChangedEvent.vet(4));
+				secondBus.poll();
+				assertThat(received).containsExactly(EntityChangedEvent.vet(3), EntityChangedEvent.vet(4));
+
+				connection.commit();
+			}
+			secondBus.poll();
+			assertThat(received).containsExactly(EntityChangedEvent.vet(3), EntityChangedEvent.vet(4),
+					EntityChangedEvent.vet(2));
+			secondBus.poll();
+			assertThat(received).hasSize(3);
+		}
+	}
+
+	private static String lastName(VetRepository vets, int id) {
+		return EntityUtils.getById(vets.findAll(), Vet.class, id).getLastName();
+	}
+
+	private static ConfigurableApplicationContext start(String url, String initMode) {
+		return new SpringApplicationBuilder(PetClinicApplication.class).web(WebApplicationType.NONE)
+			.run("--spring.datasource.url=" + url, "--spring.sql.init.mode=" + initMode,
+					"--petclinic.changes.poll-delay=3600000", "--petclinic.changes.batch-size=1");
+	}
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.samples.petclinic.load.TestPlan.Step;
+
+/**
+ * Replays the {@link TestPlan} against a running server and records the latency of each
+ * step in an HdrHistogram, in microseconds.
+ * <p>
+ * In the {@link Mode#OPEN open} model requests are sent at a constant arrival rate,
+ * whatever the server's response times, and latency is measured from the time each
+ * request was due to be sent. In the {@link Mode#CLOSED closed} model a fixed number of
+ * users each run the plan in a loop, pausing for the think time between requests;
+ * latencies longer than the think time are corrected for coordinated omission, as the
+ * requests that a stalled user did not send are otherwise missing from the histogram.
+ */
+class LoadGenerator {
+
+	private final Settings settings;
+
+	private final HttpClient client;
+
+	private final Map<String, Histogram> latencies = new LinkedHashMap<>();
+
+	private final Map<String, LongAdder> errors = new LinkedHashMap<>();
+
+	LoadGenerator(Settings settings) {
+		this.settings = settings;
+		this.client = HttpClient.newBuilder()
+			.followRedirects(HttpClient.Redirect.NORMAL)
+			.connectTimeout(Duration.ofSeconds(10))
+			.build();
+		for (Step step : TestPlan.STEPS) {
+			this.latencies.put(step.id(), new ConcurrentHistogram(3));
+			this.errors.put(step.id(), new LongAdder());
+		}
+	}
+
+	LoadReport run() throws InterruptedException {
+		long start = System.nanoTime();
+		long measureFrom = start + this.settings.warmup().toNanos();
+		long end = measureFrom + this.settings.duration().toNanos();
+		if (this.settings.mode() == Mode.OPEN) {
+			runOpen(start, measureFrom, end);
+		}
+		else {
+			runClosed(measureFrom, end);
+		}
+		Map<String, Long> errorCounts = new LinkedHashMap<>();
+		this.errors.forEach((id, count) -> errorCounts.put(id, count.sum()));
+		return new LoadReport(this.latencies, errorCounts, this.settings.duration());
+	}
+
+	private void runOpen(long start, long measureFrom, long end) throws InterruptedException {
+		List<Step> steps = TestPlan.STEPS;
+		long interval = (long) (TimeUnit.SECONDS.toNanos(1) / this.settings.rate());
+		Semaphore inFlight = new Semaphore(this.settings.maxInFlight());
+		for (long i = 0;; i++) {
+			long due = start + i * interval;
+			if (due >= end) {
+				break;
+			}
+			long wait = due - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			Step step = steps.get((int) (i % steps.size()));
+			boolean measured = due >= measureFrom;
+			if (!inFlight.tryAcquire()) {
+				// the server is so far behind that sending more would only measure the
+				// client
+				if (measured) {
+					this.errors.get(step.id()).increment();
+				}
+				continue;
+			}
+			this.client.sendAsync(step.request(this.settings.baseUri(), i / steps.size()), BodyHandlers.discarding())
+				.whenComplete((response, ex) -> {
+					inFlight.release();
+					if (measured) {
+						record(step, System.nanoTime() - due, 0, ex == null && isSuccess(response));
+					}
+				});
+		}
+		if (!inFlight.tryAcquire(this.settings.maxInFlight(), 1, TimeUnit.MINUTES)) {
+			throw new IllegalStateException("Requests still in flight a minute after the run");
+		}
+	}
+
+	private void runClosed(long measureFrom, long end) throws InterruptedException {
+		AtomicLong iterations = new AtomicLong();
+		long thinkTime = this.settings.thinkTime().toNanos();
+		ExecutorService users = Executors.newFixedThreadPool(this.settings.users());
+		for (int user = 0; user < this.settings.users(); user++) {
+			users.execute(() -> {
+				while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+					long iteration = iterations.getAndIncrement();
+					for (Step step : TestPlan.STEPS) {
+						long sent = System.nanoTime();
+						boolean success = send(step, iteration);
+						if (sent >= measureFrom && sent < end) {
+							record(step, System.nanoTime() - sent, thinkTime, success);
+						}
+						LockSupport.parkNanos(thinkTime);
+					}
+				}
+			});
+		}
+		users.shutdown();
+		if (!users.awaitTermination(end - System.nanoTime() + TimeUnit.MINUTES.toNanos(1), TimeUnit.NANOSECONDS)) {
+			users.shutdownNow();
+			throw new IllegalStateException("Users still running a minute after the run");
+		}
+	}
+
+	private boolean send(Step step, long iteration) {
+		try {
+			return isSuccess(
+					this.client.send(step.request(this.settings.baseUri(), iteration), BodyHandlers.discarding()));
+		}
+		catch (IOException ex) {
+			return false;
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private void record(Step step, long latencyNanos, long expectedIntervalNanos, boolean success) {
+		long latency = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+		long expectedInterval = TimeUnit.NANOSECONDS.toMicros(expectedIntervalNanos);
+		this.latencies.get(step.id()).recordValueWithExpectedInterval(latency, expectedInterval);
+		if (!success) {
+			this.errors.get(step.id()).increment();
+		}
+	}
+
+	private static boolean isSuccess(HttpResponse<?> response) {
+		return response.statusCode() < 400;
+	}
+
+	enum Mode {
+
+		/**
+		 * Constant arrival rate, independent of response times.
+		 */
+		OPEN,
+
+		/**
+		 * A fixed number of users, each waiting for a response before the next request.
+		 */
+		CLOSED
+
+	}
+
+	/**
+	 * How to drive the load. The rate applies to the open model, users and think time to
+	 * the closed model. Nothing is recorded during the warm-up.
+	 */
+	record Settings(Mode mode, URI baseUri, double rate, int users, Duration thinkTime, Duration warmup,
+			Duration duration, int maxInFlight) {
+
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.load;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency percentiles and error counts per step of a load run.
+ */
+class LoadReport {
+
+	private static final double MICROS_PER_MILLI = 1000.0;
+
+	private final Map<String, Histogram> latencies;
+
+	private final Map<String, Long> errors;
+
+	private final Duration duration;
+
+	LoadReport(Map<String, Histogram> latencies, Map<String, Long> errors, Duration duration) {
+		this.latencies = latencies;
+		this.errors = errors;
+		this.duration = duration;
+	}
+
+	long getRequests() {
+		return this.latencies.values().stream().mapToLong(Histogram::getTotalCount).sum();
+	}
+
+	long getErrors() {
+		return this.errors.values().stream().mapToLong(Long::longValue).sum();
+	}
+
+	/**
+	 * Describe every step whose 99th percentile latency is above its objective.
+	 */
+	List<String> p99Breaches(Function<String, Duration> objectives) {
+		List<String> breaches = new ArrayList<>();
+		this.latencies.forEach((id, histogram) -> {
+			Duration objective = objectives.apply(id);
+			long p99 = histogram.getValueAtPercentile(99.0);
+			if (histogram.getTotalCount() > 0 && p99 > objective.toNanos() / 1000) {
+				breaches
+					.add(String.format("%s: p99 %.1f ms > %d ms", id, p99 / MICROS_PER_MILLI, objective.toMillis()));
+			}
+		});
+		return breaches;
+	}
+
+	/**
+	 * Format a table of throughput and latency percentiles, in milliseconds, per step.
+	 */
+	String format() {
+		StringBuilder table = new StringBuilder(String.format("%-16s %8s %7s %8s %8s %8s %8s %8s %8s%n", "step",
+				"requests", "errors", "req/s", "p50", "p90", "p99", "p99.9", "max"));
+		this.latencies.forEach((id,
+				histogram) -> table.append(String.format("%-16s %8d %7d %8.1f %8.1f %8.1f %8.1f %8.1f %8.1f%n", id,
+						histogram.getTotalCount(), this.errors.get(id),
+						histogram.getTotalCount() / (this.duration.toMillis() / MICROS_PER_MILLI),
+						millis(histogram, 50.0), millis(histogram, 90.0), millis(histogram, 99.0),
+						millis(histogram, 99.9), histogram.getMaxValue() / MICROS_PER_MILLI)));
+		return table.toString();
+	}
+
+	private static double millis(Histogram histogram, double percentile) {
+		return histogram.getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+	}
+
+	/**
+	 * Write the full percentile distribution of each step to {@code <step>.hgrm}, in the
+	 * format read by the HdrHistogram plotter, with values in milliseconds.
+	 */
+	void write(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		for (Map.Entry<String, Histogram> step : this.latencies.entrySet()) {
+			try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(step.getKey() + ".hgrm")))) {
+				step.getValue().outputPercentileDistribution(out, MICROS_PER_MILLI);
+			}
+		}
+	}
+
+}
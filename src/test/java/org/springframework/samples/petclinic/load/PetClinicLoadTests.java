@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.samples.petclinic.load.LoadGenerator.Mode;
+import org.springframework.samples.petclinic.load.LoadGenerator.Settings;
+
+/**
+ * Replays the JMeter test plan against an embedded server and fails when a step misses
+ * its 99th percentile latency objective. Only runs when a load model is chosen, for
+ * example:
+ *
+ * <pre class="code">
+ * ./mvnw test -Dtest=PetClinicLoadTests -Dload.mode=open -Dload.rate=200 -Dload.slo.p99=250ms
+ * </pre>
+ *
+ * All settings are system properties: {@code load.mode} ({@code open} or {@code closed}),
+ * {@code load.rate} (requests per second, open model), {@code load.users} and
+ * {@code load.think-time} (closed model), {@code load.warmup}, {@code load.duration},
+ * {@code load.max-in-flight}, {@code load.max-error-rate}, {@code load.slo.p99} and
+ * {@code load.slo.p99.<step>} for a single step. Set {@code load.base-uri} to drive
+ * another server instead. Percentile distributions are written to
+ * {@code load.report-dir}.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "petclinic.warmup.enabled=true")
+@EnabledIfSystemProperty(named = "load.mode", matches = "(?i)open|closed")
+class PetClinicLoadTests {
+
+	@LocalServerPort
+	int port;
+
+	@Test
+	void testPlanShouldMeetLatencyObjectives() throws Exception {
+		Settings settings = new Settings(Mode.valueOf(property("load.mode", "open").toUpperCase()),
+				URI.create(property("load.base-uri", "http://localhost:" + port)),
+				Double.parseDouble(property("load.rate", "100")), Integer.parseInt(property("load.users", "50")),
+				duration("load.think-time", "300ms"), duration("load.warmup", "10s"), duration("load.duration", "30s"),
+				Integer.parseInt(property("load.max-in-flight", "1000")));
+		if (System.getProperty("load.base-uri") == null) {
+			awaitReadiness(settings.baseUri());
+		}
+		LoadReport report = new LoadGenerator(settings).run();
+		System.out.println(report.format());
+		report.write(Path.of(property("load.report-dir", "target/load")));
+
+		double maxErrorRate = Double.parseDouble(property("load.max-error-rate", "0.01"));
+		assertThat(report.getRequests()).isPositive();
+		assertThat((double) report.getErrors() / report.getRequests()).as("error rate")
+			.isLessThanOrEqualTo(maxErrorRate);
+		Duration p99 = duration("load.slo.p99", "500ms");
+		assertThat(report.p99Breaches(step -> duration("load.slo.p99." + step, p99.toMillis() + "ms")))
+			.as("p99 latency objectives")
+			.isEmpty();
+	}
+
+	/**
+	 * Wait for the embedded server's own warm-up to end, so that its requests are not
+	 * measured along with the test plan.
+	 */
+	private static void awaitReadiness(URI baseUri) throws Exception {
+		HttpClient client = HttpClient.newHttpClient();
+		HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/actuator/health/readiness")).build();
+		long deadline = System.nanoTime() + Duration.ofSeconds(90).toNanos();
+		while (client.send(request, BodyHandlers.discarding()).statusCode() != 200) {
+			assertThat(System.nanoTime()).as("readiness before timeout").isLessThan(deadline);
+			Thread.sleep(200);
+		}
+	}
+
+	private static String property(String name, String defaultValue) {
+		return System.getProperty(name, defaultValue);
+	}
+
+	private static Duration duration(String name, String defaultValue) {
+		return DurationStyle.detectAndParse(property(name, defaultValue));
+	}
+
+}
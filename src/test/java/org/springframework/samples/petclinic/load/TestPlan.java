@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.load;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The scenario of {@code src/test/jmeter/petclinic_test_plan.jmx}: thirteen requests per
+ * iteration, with the plan's global {@code count} and {@code petCount} counters cycling
+ * through owners and pets 1 to 3.
+ */
+final class TestPlan {
+
+	static final List<Step> STEPS = List.of(get("home", "/"), get("css", "/resources/css/petclinic.css"),
+			get("js", "/webjars/bootstrap/5.2.3/dist/js/bootstrap.bundle.min.js"), get("vets", "/vets.html"),
+			get("find-owner-form", "/owners/find"), get("find-owners", "/owners?lastName="),
+			get("owner", "/owners/{count}"), get("edit-owner-form", "/owners/{count}/edit"),
+			post("edit-owner", "/owners/{count}/edit", "firstName", "Test", "lastName", "{count}", "address",
+					"1234 Test St.", "city", "TestCity", "telephone", "612345678"),
+			get("new-pet-form", "/owners/{count}/pets/new"),
+			post("new-pet", "/owners/{count}/pets/new", "name", "Test Fluffy {petCount}", "birthDate", "2020-12-20",
+					"type", "cat"),
+			get("new-visit-form", "/owners/{count}/pets/{petCount}/visits/new"), post("new-visit",
+					"/owners/{count}/pets/{petCount}/visits/new", "date", "2013-02-22", "description", "visit"));
+
+	private static final int COUNTER_END = 3;
+
+	private TestPlan() {
+	}
+
+	private static Step get(String id, String path) {
+		return new Step(id, "GET", path, Map.of());
+	}
+
+	private static Step post(String id, String path, String... form) {
+		Map<String, String> fields = new LinkedHashMap<>();
+		for (int i = 0; i < form.length; i += 2) {
+			fields.put(form[i], form[i + 1]);
+		}
+		return new Step(id, "POST", path, fields);
+	}
+
+	/**
+	 * One request of the plan. Paths and form values may refer to {@code {count}} and
+	 * {@code {petCount}}.
+	 */
+	record Step(String id, String method, String path, Map<String, String> form) {
+
+		HttpRequest request(URI baseUri, long iteration) {
+			HttpRequest.Builder request = HttpRequest.newBuilder(baseUri.resolve(expand(this.path, iteration)))
+				.timeout(Duration.ofSeconds(30));
+			if (this.form.isEmpty()) {
+				return request.method(this.method, BodyPublishers.noBody()).build();
+			}
+			String body = this.form.entrySet()
+				.stream()
+				.map(field -> encode(field.getKey()) + "=" + encode(expand(field.getValue(), iteration)))
+				.collect(Collectors.joining("&"));
+			return request.header("Content-Type", "application/x-www-form-urlencoded")
+				.method(this.method, BodyPublishers.ofString(body))
+				.build();
+		}
+
+		private static String expand(String template, long iteration) {
+			// both counters are global and advance once per iteration
+			String counter = Long.toString(1 + iteration % COUNTER_END);
+			return template.replace("{count}", counter).replace("{petCount}", counter);
+		}
+
+		private static String encode(String value) {
+			return URLEncoder.encode(value, StandardCharsets.UTF_8);
+		}
+
+	}
+
+}
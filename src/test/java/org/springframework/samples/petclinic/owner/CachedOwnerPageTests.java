@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasProperty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Test class for {@link CachedOwnerPage}, with snapshots that keep only the latest visit
+ * of each pet.
+ */
+@SpringBootTest(properties = "petclinic.owners.cache.recent-visits=1")
+@AutoConfigureMockMvc
+class CachedOwnerPageTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@SpyBean
+	private OwnerRepository owners;
+
+	@Test
+	void shouldRenderOwnerPageFromSnapshot() throws Exception {
+		for (int i = 0; i < 2; i++) {
+			// George Franklin, whose cat Leo has no visits
+			this.mockMvc.perform(get("/owners/{ownerId}", 1))
+				.andExpect(status().isOk())
+				.andExpect(model().attribute("owner", hasProperty("lastName", is("Franklin"))))
+				.andExpect(model().attribute("archivedVisitCount", 0L));
+		}
+		verify(this.owners, times(1)).findById(1);
+	}
+
+	@Test
+	void shouldRenderEveryVisitWhenSnapshotLeftOlderOnesOut() throws Exception {
+		// Jean Coleman, whose cat Max has two visits
+		this.mockMvc.perform(get("/owners/{ownerId}", 6))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("owner",
+					hasProperty("pets",
+							hasItem(allOf(hasProperty("name", is("Max")), hasProperty("visits", hasSize(2)))))))
+			.andExpect(model().attribute("archivedVisitCount", 0L));
+	}
+
+}
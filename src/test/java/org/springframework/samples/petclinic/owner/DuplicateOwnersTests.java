@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Tests of {@link DuplicateOwners} and {@link OwnerSimilarity} against the sample data.
+ */
+@JdbcTest
+@Import(DuplicateOwners.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DuplicateOwnersTests {
+
+	@Autowired
+	private DuplicateOwners duplicates;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void removeAddedOwners() {
+		this.jdbcTemplate.update("DELETE FROM owners WHERE id > 10");
+		this.jdbcTemplate.update("UPDATE owners SET telephone = '6085551749' WHERE id = 2");
+		this.duplicates.onEntityChanged(EntityChangedEvent.owner(null));
+	}
+
+	@Test
+	void shouldScoreSimilarNames() {
+		assertThat(OwnerSimilarity.soundex("Robert")).isEqualTo("R163");
+		assertThat(OwnerSimilarity.soundex("Rupert")).isEqualTo("R163");
+		assertThat(OwnerSimilarity.soundex("Ashcraft")).isEqualTo("A261");
+		assertThat(OwnerSimilarity.soundex("Tymczak")).isEqualTo("T522");
+		assertThat(OwnerSimilarity.jaroWinkler("MARTHA", "marhta")).isCloseTo(0.961, within(0.001));
+		assertThat(OwnerSimilarity.jaroWinkler("Davis", "Franklin")).isLessThan(0.6);
+		// a common prefix only raises scores that are already above 0.7
+		assertThat(OwnerSimilarity.jaroWinkler("Estaban", "Esther")).isCloseTo(0.643, within(0.001));
+		assertThat(OwnerSimilarity.telephoneSuffix("(608) 555-1749", 4)).isEqualTo("1749");
+	}
+
+	@Test
+	void shouldNotSuggestDistinctSampleOwners() {
+		assertThat(this.duplicates.findDuplicates(0, 10)).isEmpty();
+	}
+
+	@Test
+	void shouldSuggestOwnerRegisteredTwice() {
+		this.duplicates.findDuplicates(0, 10);
+		this.jdbcTemplate.update("INSERT INTO owners (first_name, last_name, address, city, telephone) "
+				+ "VALUES ('Bety', 'Davies', '638 Cardinal Avenue', 'Sun Prairie', '608-555-1749')");
+		Integer id = this.jdbcTemplate.queryForObject("SELECT id FROM owners WHERE last_name = 'Davies'",
+				Integer.class);
+		assertThat(this.duplicates.findDuplicates(0, 10)).as("not announced yet").isEmpty();
+
+		this.duplicates.onEntityChanged(EntityChangedEvent.owner(id));
+		assertThat(this.duplicates.findDuplicates(0, 10)).singleElement().satisfies(suggestion -> {
+			assertThat(suggestion.owner().id()).isEqualTo(2);
+			assertThat(suggestion.duplicate().id()).isEqualTo(id);
+			assertThat(suggestion.score()).isGreaterThan(0.9);
+		});
+	}
+
+	@Test
+	void shouldRescoreChangedOwners() {
+		this.jdbcTemplate.update("INSERT INTO owners (first_name, last_name, address, city, telephone) "
+				+ "VALUES ('Betty', 'Davis', '638 Cardinal Ave.', 'Sun Prairie', '6085550000')");
+		Integer id = this.jdbcTemplate.queryForObject("SELECT MAX(id) FROM owners", Integer.class);
+		assertThat(this.duplicates.findDuplicates(0, 10)).as("another telephone keeps them under the threshold")
+			.isEmpty();
+
+		// the first registration gets the same telephone, which blocks and scores them
+		// above the threshold
+		this.jdbcTemplate.update("UPDATE owners SET telephone = '6085550000' WHERE id = 2");
+		this.duplicates.onEntityChanged(EntityChangedEvent.owner(2));
+		assertThat(this.duplicates.findDuplicates(0.99, 10)).singleElement()
+			.extracting(suggestion -> suggestion.duplicate().id())
+			.isEqualTo(id);
+
+		this.jdbcTemplate.update("DELETE FROM owners WHERE id = ?", id);
+		this.duplicates.onEntityChanged(EntityChangedEvent.owner(id));
+		assertThat(this.duplicates.findDuplicates(0, 10)).isEmpty();
+	}
+
+}
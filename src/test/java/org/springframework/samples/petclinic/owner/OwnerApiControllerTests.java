@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Test class for {@link OwnerApiController}
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class OwnerApiControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	void shouldListOwnersWithSparseFields() throws Exception {
+		mockMvc.perform(get("/api/owners").param("lastName", "Davis").param("fields", "lastName,city"))
+			.andExpect(status().isOk())
+			.andExpect(content().contentType(MediaType.APPLICATION_JSON))
+			.andExpect(jsonPath("$.totalItems").value(2))
+			.andExpect(jsonPath("$.owners", hasSize(2)))
+			.andExpect(jsonPath("$.owners[0].id").value(2))
+			.andExpect(jsonPath("$.owners[0].city").value("Sun Prairie"))
+			.andExpect(jsonPath("$.owners[0].firstName").doesNotExist())
+			.andExpect(jsonPath("$.owners[0].pets").doesNotExist());
+	}
+
+	@Test
+	void shouldIncludePetsAndVisits() throws Exception {
+		mockMvc
+			.perform(get("/api/owners/{ownerId}", 6).param("fields", "lastName,pets.name,visits.description")
+				.param("include", "visits"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.lastName").value("Coleman"))
+			.andExpect(jsonPath("$.pets[0].name").value("Max"))
+			.andExpect(jsonPath("$.pets[0].type").doesNotExist())
+			.andExpect(jsonPath("$.pets[0].visits[1].description").value("neutered"));
+	}
+
+	@Test
+	void shouldRejectUnknownField() throws Exception {
+		mockMvc.perform(get("/api/owners").param("fields", "password")).andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void shouldReturnNotFoundForUnknownOwner() throws Exception {
+		mockMvc.perform(get("/api/owners/{ownerId}", 404)).andExpect(status().isNotFound());
+	}
+
+}
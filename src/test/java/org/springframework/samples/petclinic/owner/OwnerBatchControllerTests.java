@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Test class for {@link OwnerBatchController}
+ */
+@WebMvcTest(OwnerBatchController.class)
+@TestPropertySource(properties = "petclinic.api.batch.max-ids=3")
+class OwnerBatchControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockBean
+	private OwnerDetailsCache owners;
+
+	@MockBean
+	private OwnerDetailsLoader loader;
+
+	private static OwnerDetails owner(int id, String lastName) {
+		return new OwnerDetails(id, "George", lastName, "110 W. Liberty St.", "Madison", "6085551023", List.of());
+	}
+
+	@Test
+	void shouldReturnOwnersInRequestOrder() throws Exception {
+		given(this.owners.getAll(any())).willReturn(Map.of(1, owner(1, "Franklin"), 2, owner(2, "Davis")));
+
+		mockMvc.perform(get("/api/owners/batch").param("ids", "2,404,1"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.items[0].lastName").value("Davis"))
+			.andExpect(jsonPath("$.items[1].lastName").value("Franklin"))
+			.andExpect(jsonPath("$.missing[0]").value(404));
+	}
+
+	@Test
+	void shouldRejectTooManyIds() throws Exception {
+		mockMvc.perform(get("/api/owners/batch").param("ids", "1,2,3,4")).andExpect(status().isBadRequest());
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.samples.petclinic.PetClinicApplication;
+
+/**
+ * Repeat views of an unchanged owner page: a full GET that loads and renders the owner
+ * against a conditional GET that the {@link OwnerVersions} ETag answers with
+ * {@code 304 Not Modified}. Both go over HTTP to an embedded server. Run
+ * {@link #main(String[])} to get latency and, through the GC profiler, allocation per
+ * operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OwnerConditionalGetBenchmark {
+
+	private ConfigurableApplicationContext context;
+
+	private HttpClient client;
+
+	private HttpRequest fullRequest;
+
+	private HttpRequest conditionalRequest;
+
+	@Setup
+	public void start() throws IOException, InterruptedException {
+		this.context = new SpringApplicationBuilder(PetClinicApplication.class).run("--server.port=0",
+				"--logging.level.root=WARN");
+		URI owner = URI
+			.create("http://localhost:" + this.context.getEnvironment().getProperty("local.server.port") + "/owners/1");
+		this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		this.fullRequest = HttpRequest.newBuilder(owner).build();
+		String etag = this.client.send(this.fullRequest, BodyHandlers.discarding())
+			.headers()
+			.firstValue("ETag")
+			.orElseThrow();
+		this.conditionalRequest = HttpRequest.newBuilder(owner).header("If-None-Match", etag).build();
+	}
+
+	@TearDown
+	public void stop() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public HttpResponse<byte[]> fullRender() throws IOException, InterruptedException {
+		return this.client.send(this.fullRequest, BodyHandlers.ofByteArray());
+	}
+
+	@Benchmark
+	public HttpResponse<byte[]> notModified() throws IOException, InterruptedException {
+		return this.client.send(this.conditionalRequest, BodyHandlers.ofByteArray());
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(OwnerConditionalGetBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Integration test of the owner page ETags, with the real {@link OwnerVersions}.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class OwnerConditionalGetTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private OwnerVersions versions;
+
+	@AfterEach
+	void restoreOwner() throws Exception {
+		saveOwner("Madison");
+	}
+
+	@Test
+	void shouldNotMatchETagAfterOwnerWasSaved() throws Exception {
+		String etag = this.mockMvc.perform(get("/owners/{ownerId}", 1))
+			.andExpect(status().isOk())
+			.andReturn()
+			.getResponse()
+			.getHeader(HttpHeaders.ETAG);
+		assertThat(etag).startsWith("W/\"" + this.versions.getEpoch());
+		this.mockMvc.perform(get("/owners/{ownerId}", 1).header(HttpHeaders.IF_NONE_MATCH, etag))
+			.andExpect(status().isNotModified());
+
+		saveOwner("Monona");
+
+		String changed = this.mockMvc.perform(get("/owners/{ownerId}", 1).header(HttpHeaders.IF_NONE_MATCH, etag))
+			.andExpect(status().isOk())
+			.andReturn()
+			.getResponse()
+			.getHeader(HttpHeaders.ETAG);
+		assertThat(changed).isNotEqualTo(etag);
+	}
+
+	private void saveOwner(String city) throws Exception {
+		// George Franklin
+		this.mockMvc
+			.perform(post("/owners/{ownerId}/edit", 1).param("firstName", "George")
+				.param("lastName", "Franklin")
+				.param("address", "110 W. Liberty St.")
+				.param("city", city)
+				.param("telephone", "6085551023"))
+			.andExpect(status().is3xxRedirection());
+	}
+
+}
@@ -19,13 +19,17 @@ package org.springframework.samples.petclinic.owner;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.hamcrest.Matchers.not;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
@@ -63,6 +67,9 @@ class OwnerControllerTests {
 	@MockBean
 	private OwnerRepository owners;
 
+	@MockBean
+	private OwnerVersions versions;
+
 	private Owner george() {
 		Owner george = new Owner();
 		george.setId(TEST_OWNER_ID);
@@ -241,4 +248,26 @@ class OwnerControllerTests {
 			.andExpect(view().name("owners/ownerDetails"));
 	}
 
+	@Test
+	void testShowOwnerNotModified() throws Exception {
+		given(this.versions.getEpoch()).willReturn("epoch");
+		given(this.versions.getVersion(TEST_OWNER_ID)).willReturn(3L);
+		String etag = mockMvc.perform(get("/owners/{ownerId}", TEST_OWNER_ID))
+			.andExpect(status().isOk())
+			.andExpect(header().string("ETag", matchesPattern("W/\"epoch(\\.[0-9a-z]+)?-3-en\"")))
+			.andReturn()
+			.getResponse()
+			.getHeader("ETag");
+		Mockito.clearInvocations(this.owners);
+
+		mockMvc.perform(get("/owners/{ownerId}", TEST_OWNER_ID).header("If-None-Match", etag))
+			.andExpect(status().isNotModified());
+		verify(this.owners, never()).findById(TEST_OWNER_ID);
+
+		given(this.versions.getVersion(TEST_OWNER_ID)).willReturn(4L);
+		mockMvc.perform(get("/owners/{ownerId}", TEST_OWNER_ID).header("If-None-Match", etag))
+			.andExpect(status().isOk())
+			.andExpect(view().name("owners/ownerDetails"));
+	}
+
 }
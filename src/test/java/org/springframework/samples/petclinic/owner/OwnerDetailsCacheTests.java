@@ -0,0 +1,201 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * Test class for {@link OwnerDetailsCache}
+ */
+@ExtendWith(MockitoExtension.class)
+class OwnerDetailsCacheTests {
+
+	private static final int TEST_OWNER_ID = 1;
+
+	@Mock
+	private OwnerRepository owners;
+
+	@Mock
+	private OwnerDetailsLoader loader;
+
+	private final AtomicLong nanos = new AtomicLong();
+
+	private OwnerDetailsCache cache;
+
+	@BeforeEach
+	void setup() {
+		Ticker ticker = this.nanos::get;
+		this.cache = new OwnerDetailsCache(this.owners, this.loader, 100, Duration.ofHours(1), 2, ticker);
+	}
+
+	private Owner george(String lastName) {
+		Owner george = new Owner();
+		george.setId(TEST_OWNER_ID);
+		george.setFirstName("George");
+		george.setLastName(lastName);
+		Pet max = new Pet();
+		PetType dog = new PetType();
+		dog.setName("dog");
+		max.setType(dog);
+		max.setName("Max");
+		george.addPet(max);
+		max.setId(1);
+		for (int i = 1; i <= 3; i++) {
+			Visit visit = new Visit();
+			visit.setDate(LocalDate.of(2023, 1, i));
+			max.addVisit(visit);
+		}
+		return george;
+	}
+
+	@Test
+	void shouldSnapshotOwnerWithRecentVisits() {
+		given(this.owners.findById(TEST_OWNER_ID)).willReturn(george("Franklin"));
+
+		OwnerDetails details = this.cache.get(TEST_OWNER_ID);
+
+		assertThat(details.lastName()).isEqualTo("Franklin");
+		assertThat(details.pets()).singleElement().satisfies(pet -> {
+			assertThat(pet.type()).isEqualTo("dog");
+			assertThat(pet.visits()).extracting(OwnerDetails.VisitDetails::date)
+				.containsExactly(LocalDate.of(2023, 1, 2), LocalDate.of(2023, 1, 3));
+		});
+	}
+
+	@Test
+	void shouldLoadOnceForConcurrentRequests() throws Exception {
+		CountDownLatch loading = new CountDownLatch(1);
+		given(this.owners.findById(TEST_OWNER_ID)).willAnswer(invocation -> {
+			loading.await(5, TimeUnit.SECONDS);
+			return george("Franklin");
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			CountDownLatch started = new CountDownLatch(8);
+			CompletableFuture<?>[] requests = new CompletableFuture<?>[8];
+			for (int i = 0; i < requests.length; i++) {
+				requests[i] = CompletableFuture.supplyAsync(() -> {
+					started.countDown();
+					return this.cache.get(TEST_OWNER_ID);
+				}, executor);
+			}
+			started.await(5, TimeUnit.SECONDS);
+			loading.countDown();
+			CompletableFuture.allOf(requests).get(5, TimeUnit.SECONDS);
+		}
+		finally {
+			executor.shutdown();
+		}
+		verify(this.owners, times(1)).findById(TEST_OWNER_ID);
+	}
+
+	@Test
+	void shouldReloadAfterOwnerChanged() {
+		given(this.owners.findById(TEST_OWNER_ID)).willReturn(george("Franklin"), george("Franklin-Davis"));
+		assertThat(this.cache.get(TEST_OWNER_ID).lastName()).isEqualTo("Franklin");
+		assertThat(this.cache.get(TEST_OWNER_ID).lastName()).isEqualTo("Franklin");
+
+		this.cache.onEntityChanged(EntityChangedEvent.owner(TEST_OWNER_ID));
+
+		assertThat(this.cache.get(TEST_OWNER_ID).lastName()).isEqualTo("Franklin-Davis");
+	}
+
+	@Test
+	void shouldDiscardSnapshotLoadedDuringChange() throws Exception {
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch changed = new CountDownLatch(1);
+		given(this.owners.findById(TEST_OWNER_ID)).willAnswer(invocation -> {
+			loading.countDown();
+			changed.await(5, TimeUnit.SECONDS);
+			return george("Franklin");
+		}).willReturn(george("Franklin-Davis"));
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<OwnerDetails> stale = executor.submit(() -> this.cache.get(TEST_OWNER_ID));
+			loading.await(5, TimeUnit.SECONDS);
+			// the change bumps the version, then waits for the load to finish to evict it
+			Thread change = new Thread(() -> this.cache.onEntityChanged(EntityChangedEvent.owner(TEST_OWNER_ID)));
+			change.start();
+			awaitBlocked(change);
+			changed.countDown();
+			stale.get(5, TimeUnit.SECONDS);
+			change.join(5000);
+		}
+		finally {
+			executor.shutdown();
+		}
+		assertThat(this.cache.get(TEST_OWNER_ID).lastName()).isEqualTo("Franklin-Davis");
+	}
+
+	@Test
+	void shouldExpireSnapshotsAfterWrite() {
+		given(this.owners.findById(TEST_OWNER_ID)).willReturn(george("Franklin"), george("Franklin-Davis"));
+		assertThat(this.cache.get(TEST_OWNER_ID).lastName()).isEqualTo("Franklin");
+
+		this.nanos.addAndGet(Duration.ofMinutes(59).toNanos());
+		assertThat(this.cache.get(TEST_OWNER_ID).lastName()).isEqualTo("Franklin");
+
+		this.nanos.addAndGet(Duration.ofMinutes(1).toNanos());
+		assertThat(this.cache.get(TEST_OWNER_ID).lastName()).isEqualTo("Franklin-Davis");
+	}
+
+	@Test
+	void shouldRebuildOwnerForOwnerPage() {
+		given(this.owners.findById(TEST_OWNER_ID)).willReturn(george("Franklin"));
+
+		Owner owner = this.cache.get(TEST_OWNER_ID).toOwner();
+
+		assertThat(owner.getId()).isEqualTo(TEST_OWNER_ID);
+		assertThat(owner.getLastName()).isEqualTo("Franklin");
+		Pet max = owner.getPet("Max");
+		assertThat(max.getId()).isEqualTo(1);
+		assertThat(max.getType().getName()).isEqualTo("dog");
+		assertThat(max.getVisits()).extracting(Visit::getDate)
+			.containsExactly(LocalDate.of(2023, 1, 2), LocalDate.of(2023, 1, 3));
+	}
+
+	private static void awaitBlocked(Thread thread) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (thread.getState() != Thread.State.BLOCKED && thread.getState() != Thread.State.WAITING
+				&& System.nanoTime() < deadline) {
+			Thread.onSpinWait();
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.samples.petclinic.owner.OwnerDetails.PetDetails;
+import org.springframework.samples.petclinic.owner.OwnerDetails.VisitDetails;
+import org.springframework.samples.petclinic.owner.OwnerDetailsLoader.OwnedPet;
+
+/**
+ * Test class for {@link OwnerDetailsLoader}
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@Import(OwnerDetailsLoader.class)
+class OwnerDetailsLoaderTests {
+
+	@Autowired
+	private OwnerDetailsLoader loader;
+
+	@Test
+	void shouldLoadOwnersWithPetsAndVisits() {
+		Map<Integer, OwnerDetails> owners = this.loader.loadOwners(List.of(6, 1, 404));
+
+		assertThat(owners).containsOnlyKeys(1, 6);
+		assertThat(owners.get(1).lastName()).isEqualTo("Franklin");
+		assertThat(owners.get(6).pets()).extracting(PetDetails::name).containsExactly("Max", "Samantha");
+		assertThat(owners.get(6).pets().get(0).type()).isEqualTo("cat");
+		assertThat(owners.get(6).pets().get(0).visits()).extracting(VisitDetails::description)
+			.containsExactly("rabies shot", "neutered");
+	}
+
+	@Test
+	void shouldLoadPetsWithTheirOwner() {
+		Map<Integer, OwnedPet> pets = this.loader.loadPets(List.of(7, 1, 404));
+
+		assertThat(pets).containsOnlyKeys(1, 7);
+		assertThat(pets.get(7).ownerId()).isEqualTo(6);
+		assertThat(pets.get(7).pet().visits()).hasSize(2);
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.samples.petclinic.owner.OwnerFacets.FacetedResult;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration test of the {@link OwnerFacets} bitmaps against the sample data.
+ */
+@JdbcTest
+@Import(OwnerFacets.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OwnerFacetsTests {
+
+	@Autowired
+	private OwnerFacets facets;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void buildFacets() {
+		this.facets.rebuild();
+	}
+
+	@AfterEach
+	void restoreOwners() {
+		this.jdbcTemplate.update("DELETE FROM pets WHERE name = 'facet test'");
+		this.jdbcTemplate.update("UPDATE owners SET city = 'Sun Prairie' WHERE id = 2");
+	}
+
+	@Test
+	void shouldCountEveryOwner() {
+		FacetedResult result = this.facets.search("", null, null, PageRequest.of(0, 5));
+		assertThat(result.totalItems()).isEqualTo(10);
+		// Black, Coleman, Davis, Davis and Escobito
+		assertThat(result.ownerIds()).containsExactly(7, 6, 2, 4, 8);
+		assertThat(result.cities()).containsExactly(entry("Madison", 4), entry("Monona", 2), entry("McFarland", 1),
+				entry("Sun Prairie", 1), entry("Waunakee", 1), entry("Windsor", 1));
+		assertThat(result.petTypes()).containsExactly(entry("cat", 3), entry("dog", 3), entry("bird", 2),
+				entry("hamster", 1), entry("lizard", 1), entry("snake", 1));
+		assertThat(this.facets.search("", null, null, PageRequest.of(1, 5)).ownerIds()).containsExactly(10, 1, 5, 3, 9);
+	}
+
+	@Test
+	void shouldCountFacetsWithoutTheirOwnSelection() {
+		FacetedResult madison = this.facets.search("", "Madison", null, PageRequest.of(0, 20));
+		assertThat(madison.totalItems()).isEqualTo(4);
+		assertThat(madison.cities()).containsEntry("Madison", 4).containsEntry("Monona", 2);
+		assertThat(madison.petTypes()).containsOnly(entry("bird", 1), entry("cat", 1), entry("dog", 1),
+				entry("snake", 1));
+
+		FacetedResult lizards = this.facets.search("DA", null, "lizard", PageRequest.of(0, 20));
+		assertThat(lizards.ownerIds()).containsExactly(4);
+		assertThat(lizards.cities()).containsOnly(entry("Windsor", 1));
+		assertThat(lizards.petTypes()).containsOnly(entry("hamster", 1), entry("lizard", 1));
+		assertThat(this.facets.search("", "Nowhere", null, PageRequest.of(0, 20)).totalItems()).isZero();
+	}
+
+	@Test
+	void shouldMatchFacetValuesIgnoringCase() {
+		FacetedResult madison = this.facets.search("", "MADISON", "Dog", PageRequest.of(0, 20));
+		assertThat(madison.totalItems()).isEqualTo(1);
+		assertThat(madison.cities()).containsEntry("Madison", 1);
+
+		this.jdbcTemplate.update("UPDATE owners SET city = 'madison' WHERE id = 2");
+		this.facets.onEntityChanged(EntityChangedEvent.owner(2));
+		assertThat(this.facets.search("", null, null, PageRequest.of(0, 20)).cities()).containsEntry("Madison", 5)
+			.doesNotContainKey("madison");
+	}
+
+	@Test
+	void shouldReindexChangedOwners() {
+		this.jdbcTemplate.update(
+				"INSERT INTO pets (name, birth_date, type_id, owner_id) VALUES ('facet test', ?, 1, 2)",
+				LocalDate.of(2020, 1, 1));
+		this.jdbcTemplate.update("UPDATE owners SET city = 'Madison' WHERE id = 2");
+		this.facets.onEntityChanged(EntityChangedEvent.owner(2));
+
+		FacetedResult cats = this.facets.search("", null, "cat", PageRequest.of(0, 20));
+		assertThat(cats.ownerIds()).containsExactly(6, 2, 10, 1);
+		assertThat(cats.cities()).containsEntry("Madison", 2).doesNotContainKey("Sun Prairie");
+	}
+
+}
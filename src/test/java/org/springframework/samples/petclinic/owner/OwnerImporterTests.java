@@ -0,0 +1,136 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.Mockito.verify;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangeBus;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.samples.petclinic.owner.OwnerImporter.ImportResult;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration test of {@link OwnerImporter}, with chunks of two rows so that a small file
+ * is spread over several chunks and threads.
+ */
+@JdbcTest(properties = { "petclinic.owners.import.chunk-size=2", "petclinic.owners.import.parallelism=2" })
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@Import(OwnerImporter.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OwnerImporterTests {
+
+	private static final String CSV = String.join("\n",
+			"owner_ref,first_name,last_name,address,city,telephone,pet_name,pet_birth_date,pet_type",
+			"a1,Ada,Lovelace,\"12 St. James's Square, London\",Importville,6085551000,Byron,2015-03-01,cat",
+			"a1,,,,,,Analytical,2016-04-02,Dog", "b2,Charles,Babbage,1 Dorset Street,Importville,6085551001,,,",
+			"c3,Grace,Hopper,\"Arlington, \"\"Virginia\"\"\",Importville,not a phone,Cobol,2017-01-01,snake",
+			"d4,Alan,Turing,Wilmslow,Importville,6085551003,Enigma,2018-13-01,cat",
+			"d4,,,,,,Colossus,2018-05-05,dragon", "d4,,,,,,Enigma,2018-05-05,bird", "d4,,,,,,Enigma,2018-05-06,dog");
+
+	@Autowired
+	private OwnerImporter importer;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@MockBean
+	private EntityChangeBus changes;
+
+	@AfterEach
+	void removeImport() {
+		this.jdbcTemplate
+			.update("DELETE FROM pets WHERE owner_id IN (SELECT id FROM owners WHERE city = 'Importville')");
+		this.jdbcTemplate.update("DELETE FROM owners WHERE city = 'Importville'");
+		this.jdbcTemplate.update("DELETE FROM owner_import_errors");
+		this.jdbcTemplate
+			.update("DELETE FROM job_chunks WHERE run_id IN (SELECT id FROM job_runs WHERE job_name = 'owner-import')");
+		this.jdbcTemplate.update("DELETE FROM job_runs WHERE job_name = 'owner-import'");
+	}
+
+	@Test
+	void shouldImportValidOwnersAndPets() throws Exception {
+		ImportResult result = this.importer.importCsv(new StringReader(CSV), null);
+		assertThat(result.status()).isEqualTo("COMPLETED");
+		assertThat(result.rows()).isEqualTo(8);
+		assertThat(result.owners()).isEqualTo(3);
+		assertThat(result.pets()).isEqualTo(3);
+		assertThat(this.jdbcTemplate.queryForList(
+				"SELECT o.last_name || ':' || p.name || ':' || t.name FROM owners o JOIN pets p ON p.owner_id = o.id"
+						+ " JOIN types t ON t.id = p.type_id WHERE o.city = 'Importville'",
+				String.class))
+			.containsExactlyInAnyOrder("Lovelace:Byron:cat", "Lovelace:Analytical:dog", "Turing:Enigma:bird");
+		assertThat(this.jdbcTemplate.queryForObject("SELECT address FROM owners WHERE last_name = 'Lovelace'",
+				String.class))
+			.isEqualTo("12 St. James's Square, London");
+		assertThat(this.jdbcTemplate.queryForList("SELECT line_no FROM owner_import_errors ORDER BY line_no",
+				Integer.class))
+			.containsExactly(5, 6, 7, 9);
+		verify(this.changes).publish(EntityChangedEvent.owner(null));
+	}
+
+	@Test
+	void shouldSkipCommittedChunksWhenResumed() throws Exception {
+		ImportResult first = this.importer.importCsv(new StringReader(CSV), null);
+		this.jdbcTemplate
+			.update("DELETE FROM pets WHERE owner_id IN (SELECT id FROM owners WHERE last_name = 'Turing')");
+		this.jdbcTemplate.update("DELETE FROM owners WHERE last_name = 'Turing'");
+		this.jdbcTemplate.update("DELETE FROM owner_import_errors WHERE line_no >= 6");
+		this.jdbcTemplate.update("DELETE FROM job_chunks WHERE run_id = ? AND first_id = 6", first.run());
+
+		ImportResult resumed = this.importer.importCsv(new StringReader(CSV), first.run());
+		assertThat(resumed.rows()).isEqualTo(4);
+		assertThat(resumed.skippedRows()).isEqualTo(4);
+		assertThat(this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM owners WHERE city = 'Importville'",
+				Integer.class))
+			.isEqualTo(3);
+		assertThat(this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM owner_import_errors", Integer.class))
+			.isEqualTo(4);
+	}
+
+	@Test
+	void shouldRejectUnexpectedHeader() {
+		assertThatIllegalArgumentException()
+			.isThrownBy(() -> this.importer.importCsv(new StringReader("name,city\nAda,London\n"), null))
+			.withMessageContaining("owner_ref,first_name");
+	}
+
+	@Test
+	void shouldReadQuotedFieldsAcrossLines() throws Exception {
+		CsvRecordReader reader = new CsvRecordReader(new StringReader("a,\"b\nc\",\"d \"\"e\"\"\"\nf\n"));
+		String record = reader.next();
+		assertThat(CsvRecordReader.split(record)).isEqualTo(List.of("a", "b\nc", "d \"e\""));
+		assertThat(reader.next()).isEqualTo("f");
+		assertThat(reader.getRecordLine()).isEqualTo(3);
+		assertThat(reader.next()).isNull();
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.samples.petclinic.PetClinicApplication;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares serialising a page of {@link Owner} entities with Jackson against streaming
+ * the same page with {@link OwnerJsonWriter}, with all fields and with a sparse fieldset.
+ * Run {@link #main(String[])} to get latency and, through the GC profiler, allocation per
+ * operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OwnerJsonBenchmark {
+
+	private static final int PAGE_SIZE = 10;
+
+	private ConfigurableApplicationContext context;
+
+	private OwnerRepository owners;
+
+	private ObjectMapper objectMapper;
+
+	private OwnerJsonWriter writer;
+
+	private OwnerFieldSelection allFields;
+
+	private OwnerFieldSelection sparseFields;
+
+	@Setup
+	public void start() {
+		this.context = new SpringApplicationBuilder(PetClinicApplication.class).web(WebApplicationType.NONE)
+			.run("--logging.level.root=WARN");
+		this.owners = this.context.getBean(OwnerRepository.class);
+		this.objectMapper = this.context.getBean(ObjectMapper.class);
+		this.writer = this.context.getBean(OwnerJsonWriter.class);
+		this.allFields = OwnerFieldSelection.parse(null, "pets,visits");
+		this.sparseFields = OwnerFieldSelection.parse("lastName,city", null);
+	}
+
+	@TearDown
+	public void stop() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public byte[] entities() throws IOException {
+		return this.objectMapper.writeValueAsBytes(this.owners.findAll(PageRequest.of(0, PAGE_SIZE)).getContent());
+	}
+
+	@Benchmark
+	public byte[] streamingAllFields() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		this.writer.writePage("", 1, PAGE_SIZE, this.allFields, out);
+		return out.toByteArray();
+	}
+
+	@Benchmark
+	public byte[] streamingSparseFields() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		this.writer.writePage("", 1, PAGE_SIZE, this.sparseFields, out);
+		return out.toByteArray();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(OwnerJsonBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+
+}
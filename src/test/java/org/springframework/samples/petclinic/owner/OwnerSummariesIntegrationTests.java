@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration test of the {@link OwnerSummaries} read model with the owners saved through
+ * the {@link OwnerRepository}. Pooled connections do not auto-commit, so that a summary
+ * written in the already committed transaction of the save is rolled back.
+ */
+@SpringBootTest(properties = "spring.datasource.hikari.auto-commit=false")
+class OwnerSummariesIntegrationTests {
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void restoreOwner() {
+		rename(1, "Franklin");
+	}
+
+	@Test
+	void shouldCommitSummaryOfSavedOwner() {
+		rename(1, "Frankly");
+		assertThat(this.jdbcTemplate.queryForObject("SELECT last_name FROM owner_summary WHERE owner_id = 1",
+				String.class))
+			.isEqualTo("Frankly");
+	}
+
+	private void rename(int ownerId, String lastName) {
+		this.transactionTemplate.executeWithoutResult(status -> {
+			Owner owner = this.owners.findById(ownerId);
+			owner.setLastName(lastName);
+			this.owners.save(owner);
+		});
+	}
+
+}
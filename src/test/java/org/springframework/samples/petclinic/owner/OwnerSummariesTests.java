@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.samples.petclinic.jobs.BatchJobRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration test of the {@link OwnerSummaries} read model against the sample data.
+ */
+@JdbcTest
+@Import(OwnerSummaries.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OwnerSummariesTests {
+
+	@Autowired
+	private OwnerSummaries summaries;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@MockBean
+	private BatchJobRunner runner;
+
+	@AfterEach
+	void removeAddedVisits() {
+		this.jdbcTemplate.update("DELETE FROM visits WHERE description = 'summary test'");
+		this.summaries.processChunk(1, 10);
+	}
+
+	@Test
+	void shouldFindOwnersByLastNamePrefix() {
+		this.summaries.buildIfEmpty();
+		Page<OwnerSummary> owners = this.summaries.findByLastName("Dav", PageRequest.of(0, 5));
+		assertThat(owners.getTotalElements()).isEqualTo(2);
+		assertThat(owners).extracting(OwnerSummary::firstName).containsExactly("Betty", "Harold");
+		assertThat(this.summaries.findByLastName("Coleman", PageRequest.of(0, 5))).singleElement()
+			.isEqualTo(new OwnerSummary(6, "Jean", "Coleman", "105 N. Lake St.", "Monona", "6085552654", 2,
+					"Max, Samantha", LocalDate.of(2013, 1, 4)));
+		assertThat(this.summaries.findByLastName("", PageRequest.of(1, 4))).hasSize(4)
+			.extracting(OwnerSummary::lastName)
+			.isSorted();
+	}
+
+	@Test
+	void shouldComputeSummariesNotWrittenYet() {
+		this.summaries.buildIfEmpty();
+		this.jdbcTemplate.update("DELETE FROM owner_summary WHERE owner_id = 6");
+		assertThat(this.summaries.findByIds(List.of(7, 6, 999))).extracting(OwnerSummary::lastName)
+			.containsExactly("Black", "Coleman");
+	}
+
+	@Test
+	void shouldRefreshSummaryOnOwnerChange() {
+		this.summaries.buildIfEmpty();
+		// Leo, the cat of George Franklin
+		this.jdbcTemplate.update("INSERT INTO visits (pet_id, visit_date, description) VALUES (1, ?, 'summary test')",
+				LocalDate.of(2020, 5, 1));
+		this.summaries.onEntityChanged(EntityChangedEvent.owner(1));
+		assertThat(this.summaries.findByLastName("Franklin", PageRequest.of(0, 5))).singleElement()
+			.extracting(OwnerSummary::lastVisitDate)
+			.isEqualTo(LocalDate.of(2020, 5, 1));
+		assertThat(this.summaries.check()).isEmpty();
+	}
+
+	@Test
+	void shouldReportAndRepairDrift() {
+		this.summaries.buildIfEmpty();
+		this.jdbcTemplate.update("UPDATE owner_summary SET pet_count = 0 WHERE owner_id = 3");
+		this.jdbcTemplate.update("DELETE FROM owner_summary WHERE owner_id = 5");
+		assertThat(this.summaries.check()).extracting(OwnerSummaries.Discrepancy::ownerId)
+			.containsExactlyInAnyOrder(3, 5);
+		this.summaries.checkAndRepair();
+		assertThat(this.summaries.check()).isEmpty();
+		assertThat(this.summaries.findByLastName("Rodriquez", PageRequest.of(0, 5))).singleElement()
+			.extracting(OwnerSummary::petCount)
+			.isEqualTo(2);
+	}
+
+}
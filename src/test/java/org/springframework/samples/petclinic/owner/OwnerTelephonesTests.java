@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Tests of the {@link TelephoneIndex} and of {@link OwnerTelephones} keeping it up to
+ * date with the sample data.
+ */
+@JdbcTest
+@Import(OwnerTelephones.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OwnerTelephonesTests {
+
+	@Autowired
+	private OwnerTelephones telephones;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final int[] ownerIds = new int[4];
+
+	@AfterEach
+	void restoreOwners() {
+		this.jdbcTemplate.update("DELETE FROM owners WHERE id > 10");
+		this.jdbcTemplate.update("UPDATE owners SET telephone = '6085551749' WHERE id = 2");
+	}
+
+	@Test
+	void shouldNormaliseTelephoneNumbers() {
+		assertThat(TelephoneIndex.key("(608) 555-1749")).isEqualTo(TelephoneIndex.key("6085551749"))
+			.isNotEqualTo(TelephoneIndex.NO_KEY);
+		assertThat(TelephoneIndex.key("0608 555 1749")).isNotEqualTo(TelephoneIndex.key("6085551749"));
+		assertThat(TelephoneIndex.key("unknown")).isEqualTo(TelephoneIndex.NO_KEY);
+		assertThat(TelephoneIndex.key("1234567890123456")).isEqualTo(TelephoneIndex.NO_KEY);
+	}
+
+	@Test
+	void shouldAgreeWithHashMapUnderRandomUpdates() {
+		TelephoneIndex index = new TelephoneIndex(4);
+		Map<Integer, String> expected = new HashMap<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			int ownerId = 1 + random.nextInt(2000);
+			if (random.nextInt(4) == 0) {
+				index.remove(ownerId);
+				expected.remove(ownerId);
+			}
+			else {
+				// few distinct numbers, so that households share them
+				String telephone = "608555" + (1000 + random.nextInt(500));
+				index.put(ownerId, telephone);
+				expected.put(ownerId, telephone);
+			}
+		}
+		assertThat(index.size()).isEqualTo(expected.size());
+		int[] found = new int[64];
+		for (int number = 1000; number < 1500; number++) {
+			String telephone = "608555" + number;
+			List<Integer> owners = new ArrayList<>();
+			expected.forEach((ownerId, value) -> {
+				if (value.equals(telephone)) {
+					owners.add(ownerId);
+				}
+			});
+			int count = index.find(telephone, found);
+			assertThat(count).isEqualTo(owners.size());
+			List<Integer> actual = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				actual.add(found[i]);
+			}
+			assertThat(actual).containsExactlyInAnyOrderElementsOf(owners);
+		}
+	}
+
+	@Test
+	void shouldFindSampleOwnersByTelephone() {
+		this.telephones.rebuild();
+		assertThat(this.telephones.find("608-555-1749", this.ownerIds)).isEqualTo(1);
+		assertThat(this.ownerIds[0]).isEqualTo(2);
+		assertThat(this.telephones.find("6085550000", this.ownerIds)).isZero();
+	}
+
+	@Test
+	void shouldReindexSavedOwners() {
+		this.telephones.rebuild();
+		this.jdbcTemplate.update("UPDATE owners SET telephone = '(608) 555-0000' WHERE id = 2");
+		this.jdbcTemplate.update("INSERT INTO owners (first_name, last_name, address, city, telephone) "
+				+ "VALUES ('Ann', 'Davis', '638 Cardinal Ave.', 'Sun Prairie', '608 555 0000')");
+		Integer added = this.jdbcTemplate.queryForObject("SELECT MAX(id) FROM owners", Integer.class);
+		this.telephones.onEntityChanged(EntityChangedEvent.owner(2));
+		this.telephones.onEntityChanged(EntityChangedEvent.owner(added));
+
+		assertThat(this.telephones.find("6085551749", this.ownerIds)).isZero();
+		assertThat(this.telephones.find("6085550000", this.ownerIds)).isEqualTo(2);
+		assertThat(List.of(this.ownerIds[0], this.ownerIds[1])).containsExactlyInAnyOrder(2, added);
+
+		this.jdbcTemplate.update("DELETE FROM owners WHERE id = ?", added);
+		this.telephones.onEntityChanged(EntityChangedEvent.owner(added));
+		assertThat(this.telephones.find("6085550000", this.ownerIds)).isEqualTo(1);
+	}
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+
+/**
+ * Integration test of {@link OwnerVersions}.
+ */
+@JdbcTest
+@Import(OwnerVersions.class)
+class OwnerVersionsTests {
+
+	@Autowired
+	private OwnerVersions versions;
+
+	@Test
+	void shouldBumpVersionOfChangedOwner() {
+		assertThat(this.versions.getVersion(1)).isZero();
+		this.versions.changePublished(EntityChangedEvent.owner(1));
+		this.versions.changePublished(EntityChangedEvent.owner(1));
+		this.versions.changePublished(EntityChangedEvent.vet(1));
+		assertThat(this.versions.getVersion(1)).isEqualTo(2);
+		assertThat(this.versions.getVersion(2)).isZero();
+	}
+
+	@Test
+	void shouldBumpEveryOwnerOnBulkChange() {
+		this.versions.changePublished(EntityChangedEvent.owner(1));
+		this.versions.changePublished(EntityChangedEvent.owner(null));
+		this.versions.changePublished(new EntityChangedEvent(EntityChangedEvent.PET_TYPE, 1));
+		assertThat(this.versions.getVersion(1)).isEqualTo(3);
+		assertThat(this.versions.getVersion(2)).isEqualTo(2);
+	}
+
+	@Test
+	void shouldReadEpochWrittenWithTheSchema() {
+		assertThat(this.versions.getEpoch()).matches("[0-9a-z]+");
+	}
+
+}
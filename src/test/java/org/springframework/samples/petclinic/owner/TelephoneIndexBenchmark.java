@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Samples caller ID lookups in a {@link TelephoneIndex} of a million owners, for numbers
+ * that are known and unknown, against a {@link HashMap} keyed by the normalised number as
+ * a string. Run {@link #main(String[])} to get the latency percentiles and, through the
+ * GC profiler, allocation per lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TelephoneIndexBenchmark {
+
+	private static final int OWNERS = 1_000_000;
+
+	private static final int LOOKUPS = 4096;
+
+	private final TelephoneIndex index = new TelephoneIndex(OWNERS);
+
+	private final Map<String, Integer> map = new HashMap<>();
+
+	private final String[] known = new String[LOOKUPS];
+
+	private final String[] unknown = new String[LOOKUPS];
+
+	private final int[] ownerIds = new int[16];
+
+	private int next;
+
+	@Setup
+	public void index() {
+		Random random = new Random(42);
+		String[] telephones = new String[OWNERS];
+		for (int ownerId = 1; ownerId <= OWNERS; ownerId++) {
+			// even numbers are taken, odd ones are unknown callers
+			long number = 2_000_000_000L + 2L * random.nextInt(1_000_000_000);
+			String telephone = "(" + (number / 10_000_000) + ") " + (number / 10_000 % 1000) + "-" + (number % 10_000);
+			telephones[ownerId - 1] = telephone;
+			this.index.put(ownerId, telephone);
+			this.map.put(telephone.replaceAll("\\D", ""), ownerId);
+		}
+		for (int i = 0; i < LOOKUPS; i++) {
+			String telephone = telephones[random.nextInt(OWNERS)];
+			this.known[i] = telephone;
+			this.unknown[i] = telephone.substring(0, telephone.length() - 1)
+					+ (char) (telephone.charAt(telephone.length() - 1) | 1);
+		}
+	}
+
+	private int next() {
+		this.next = (this.next + 1) & (LOOKUPS - 1);
+		return this.next;
+	}
+
+	@Benchmark
+	public int knownNumber() {
+		return this.index.find(this.known[next()], this.ownerIds);
+	}
+
+	@Benchmark
+	public int unknownNumber() {
+		return this.index.find(this.unknown[next()], this.ownerIds);
+	}
+
+	@Benchmark
+	public Integer hashMap() {
+		return this.map.get(this.known[next()].replaceAll("\\D", ""));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TelephoneIndexBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.jobs.BatchJobRunner;
+import org.springframework.samples.petclinic.jobs.JobProgress;
+import org.springframework.samples.petclinic.jobs.JobProgress.Status;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration test of the {@link VaccinationReminderJob} run by the
+ * {@link BatchJobRunner}. None of the 13 sample pets has been seen for years, so every
+ * one of them is due.
+ */
+@JdbcTest(properties = "petclinic.jobs.chunk-size=5")
+@Import({ BatchJobRunner.class, VaccinationReminderJob.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VaccinationReminderJobTests {
+
+	@Autowired
+	private BatchJobRunner runner;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void cleanUp() {
+		this.jdbcTemplate.update("DELETE FROM vaccination_reminders");
+		this.jdbcTemplate.update("DELETE FROM job_chunks");
+		this.jdbcTemplate.update("DELETE FROM job_runs");
+	}
+
+	@Test
+	void shouldRecordReminderForEveryDuePetOnce() throws Exception {
+		JobProgress progress = run();
+		assertThat(progress.getStatus()).isEqualTo(Status.COMPLETED);
+		assertThat(progress.getTotalChunks()).isEqualTo(3);
+		assertThat(progress.getCompletedChunks()).isEqualTo(3);
+		assertThat(progress.getItems()).isEqualTo(13);
+		assertThat(countReminders()).isEqualTo(13);
+
+		progress = run();
+		assertThat(progress.getItems()).isZero();
+		assertThat(countReminders()).isEqualTo(13);
+	}
+
+	@Test
+	void shouldResumeUnfinishedRunFromCheckpoints() throws Exception {
+		Timestamp now = Timestamp.from(Instant.now());
+		this.jdbcTemplate
+			.update("INSERT INTO job_runs (id, job_name, first_id, last_id, chunk_size, status, started_at)"
+					+ " VALUES (100, ?, 1, 13, 5, 'RUNNING', ?)", VaccinationReminderJob.NAME, now);
+		this.jdbcTemplate.update("INSERT INTO job_chunks (run_id, first_id, items, completed_at) VALUES (100, 1, 5, ?)",
+				now);
+
+		JobProgress progress = run();
+		assertThat(progress.getRunId()).isEqualTo(100);
+		assertThat(progress.getCompletedChunks()).isEqualTo(3);
+		assertThat(progress.getItems()).isEqualTo(8);
+		assertThat(this.jdbcTemplate.queryForObject("SELECT MIN(pet_id) FROM vaccination_reminders", Integer.class))
+			.isEqualTo(6);
+		assertThat(this.jdbcTemplate.queryForObject("SELECT status FROM job_runs WHERE id = 100", String.class))
+			.isEqualTo("COMPLETED");
+	}
+
+	private JobProgress run() throws InterruptedException {
+		JobProgress progress = this.runner.start(VaccinationReminderJob.NAME);
+		assertThat(progress.await(10, TimeUnit.SECONDS)).isTrue();
+		return progress;
+	}
+
+	private int countReminders() {
+		return this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM vaccination_reminders", Integer.class);
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangeBus;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.samples.petclinic.jobs.BatchJobRunner;
+import org.springframework.samples.petclinic.jobs.JobProgress;
+import org.springframework.samples.petclinic.owner.VisitArchive.ArchivedVisit;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration test of the {@link VisitArchiveJob} and {@link VisitArchive}. The sample
+ * visits all took place in 2013.
+ */
+@JdbcTest(properties = { "petclinic.jobs.chunk-size=2", "petclinic.visits.archive.horizon=P5Y" })
+@Import({ BatchJobRunner.class, VisitArchiveJob.class, VisitArchive.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VisitArchiveJobTests {
+
+	@Autowired
+	private BatchJobRunner runner;
+
+	@Autowired
+	private VisitArchive archive;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@MockBean
+	private EntityChangeBus changes;
+
+	@AfterEach
+	void restoreVisits() {
+		this.jdbcTemplate.update("DELETE FROM visits WHERE description = 'archive test'");
+		this.jdbcTemplate.update("INSERT INTO visits (id, pet_id, visit_date, description)"
+				+ " SELECT id, pet_id, visit_date, description FROM visits_archive");
+		this.jdbcTemplate.update("DELETE FROM visits_archive");
+		this.jdbcTemplate.update("DELETE FROM job_chunks");
+		this.jdbcTemplate.update("DELETE FROM job_runs");
+	}
+
+	@Test
+	void shouldMoveOldVisitsToArchive() throws Exception {
+		this.jdbcTemplate.update("INSERT INTO visits (pet_id, visit_date, description) VALUES (7, ?, 'archive test')",
+				LocalDate.now());
+		assertThat(this.archive.countForOwner(6)).isZero();
+
+		JobProgress progress = this.runner.start(VisitArchiveJob.NAME);
+		assertThat(progress.await(10, TimeUnit.SECONDS)).isTrue();
+
+		assertThat(progress.getItems()).isEqualTo(4);
+		assertThat(this.jdbcTemplate.queryForList("SELECT description FROM visits", String.class))
+			.containsExactly("archive test");
+		assertThat(this.archive.countForOwner(6)).isEqualTo(4);
+		assertThat(this.archive.findForOwner(6)).extracting(ArchivedVisit::description)
+			.containsExactly("rabies shot", "rabies shot", "neutered", "spayed");
+		assertThat(this.archive.findForOwner(6).get(0).petName()).isEqualTo("Samantha");
+		verify(this.changes, atLeastOnce()).publish(EntityChangedEvent.owner(6));
+	}
+
+}
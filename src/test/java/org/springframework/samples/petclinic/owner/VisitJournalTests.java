@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.samples.petclinic.owner.VisitJournal.PendingVisit;
+
+/**
+ * Test class for {@link VisitJournal}
+ */
+class VisitJournalTests {
+
+	private static final LocalDate TODAY = LocalDate.of(2023, 5, 10);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void shouldReturnAppendedVisitsInOrder() throws Exception {
+		try (VisitJournal journal = new VisitJournal(directory.resolve("visits.journal"), 4096)) {
+			journal.append(1, 1, TODAY, "rabies shot");
+			journal.append(6, 7, TODAY, "neutered");
+
+			List<PendingVisit> pending = journal.pending(10);
+			assertThat(pending).extracting(PendingVisit::description).containsExactly("rabies shot", "neutered");
+			assertThat(journal.pendingForOwner(6)).extracting(PendingVisit::petId).containsExactly(7);
+		}
+	}
+
+	@Test
+	void shouldReplayUndrainedVisitsOnReopen() throws Exception {
+		Path file = directory.resolve("visits.journal");
+		try (VisitJournal journal = new VisitJournal(file, 4096)) {
+			journal.append(1, 1, TODAY, "first");
+			journal.append(1, 1, TODAY, "second");
+			journal.markDrained(journal.pending(1).get(0).endOffset());
+		}
+		try (VisitJournal journal = new VisitJournal(file, 4096)) {
+			assertThat(journal.pending(10)).extracting(PendingVisit::description).containsExactly("second");
+		}
+	}
+
+	@Test
+	void shouldNotReplayStaleRecordsAfterRewind() throws Exception {
+		Path file = directory.resolve("visits.journal");
+		try (VisitJournal journal = new VisitJournal(file, 4096)) {
+			journal.append(1, 1, TODAY, "a long description that is drained");
+			journal.append(1, 1, TODAY, "another drained visit");
+			List<PendingVisit> pending = journal.pending(10);
+			journal.markDrained(pending.get(pending.size() - 1).endOffset());
+			journal.append(2, 2, TODAY, "new");
+		}
+		try (VisitJournal journal = new VisitJournal(file, 4096)) {
+			assertThat(journal.pending(10)).extracting(PendingVisit::description).containsExactly("new");
+		}
+	}
+
+	@Test
+	void shouldReclaimDrainedSpaceWhileVisitsArePending() throws Exception {
+		Path file = directory.resolve("visits.journal");
+		try (VisitJournal journal = new VisitJournal(file, 256)) {
+			// the journal never empties, yet keeps accepting visits as they are drained
+			assertThat(journal.append(1, 1, TODAY, "visit 0")).isTrue();
+			for (int i = 1; i < 50; i++) {
+				assertThat(journal.append(1, 1, TODAY, "visit " + i)).isTrue();
+				List<PendingVisit> pending = journal.pending(10);
+				assertThat(pending).extracting(PendingVisit::description)
+					.containsExactly("visit " + (i - 1), "visit " + i);
+				journal.markDrained(pending.get(0).endOffset());
+			}
+		}
+		try (VisitJournal journal = new VisitJournal(file, 256)) {
+			assertThat(journal.pending(10)).extracting(PendingVisit::description).containsExactly("visit 49");
+		}
+	}
+
+	@Test
+	void shouldRefuseAppendWhenFull() throws Exception {
+		try (VisitJournal journal = new VisitJournal(directory.resolve("visits.journal"), 64)) {
+			assertThat(journal.append(1, 1, TODAY, "fits")).isTrue();
+			assertThat(journal.append(1, 1, TODAY, "does not fit in the journal")).isFalse();
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Checks with {@code EXPLAIN} that date-range queries on the partitioned {@code visits}
+ * table only scan the partitions covering the range. Like
+ * {@code PostgresIntegrationTests} this starts Postgres with Docker Compose.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.NONE,
+		properties = { "spring.docker.compose.skip.in-tests=false", "spring.docker.compose.profiles.active=postgres" })
+@ActiveProfiles("postgres")
+class VisitPartitionPruningTests {
+
+	@Autowired
+	private PostgresVisitPartitionManager partitions;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void createPartitions() {
+		this.partitions.maintain();
+	}
+
+	@Test
+	void shouldOnlyScanPartitionOfRequestedMonth() {
+		YearMonth month = YearMonth.now().plusMonths(1);
+		String plan = explain("SELECT id FROM visits WHERE visit_date >= '" + month.atDay(1) + "' AND visit_date < '"
+				+ month.plusMonths(1).atDay(1) + "'");
+		assertThat(plan).contains(partition(month))
+			.doesNotContain(partition(month.minusMonths(1)))
+			.doesNotContain(partition(month.plusMonths(1)))
+			.doesNotContain("visits_default");
+	}
+
+	@Test
+	void shouldOnlyScanOldVisitsWhenArchiving() {
+		LocalDate cutoff = YearMonth.now().atDay(1);
+		String plan = explain(VisitArchiveJob.DELETE_VISITS.replaceFirst("\\?", "1")
+			.replaceFirst("\\?", "1000")
+			.replaceFirst("\\?", "'" + cutoff + "'"));
+		assertThat(plan).contains("visits_default").doesNotContain(partition(YearMonth.now()));
+	}
+
+	private String explain(String sql) {
+		return String.join("\n", this.jdbcTemplate.queryForList("EXPLAIN " + sql, String.class));
+	}
+
+	private static String partition(YearMonth month) {
+		return "visits_" + VisitPartitionManager.partitionName(month);
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasProperty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+/**
+ * Test class for {@link WriteBehindVisits}, {@link WriteBehindVisitController} and the
+ * pending visits interceptor. The scheduled drain is pushed out so each test drains
+ * explicitly.
+ */
+@SpringBootTest(properties = { "petclinic.visits.write-behind.enabled=true",
+		"petclinic.visits.write-behind.drain-delay=3600000" })
+@AutoConfigureMockMvc
+class WriteBehindVisitsTests {
+
+	private static final String DESCRIPTION = "write-behind test";
+
+	@TempDir
+	static Path directory;
+
+	@DynamicPropertySource
+	static void journal(DynamicPropertyRegistry registry) {
+		registry.add("petclinic.visits.write-behind.journal", () -> directory.resolve("visits.journal").toString());
+	}
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private WriteBehindVisits visits;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void removeVisits() {
+		this.jdbcTemplate.update("DELETE FROM visits WHERE description = ?", DESCRIPTION);
+	}
+
+	@Test
+	void shouldShowPendingVisitOnceBeforeAndAfterDrain() throws Exception {
+		// George Franklin, whose cat Leo has no visits
+		this.mockMvc.perform(post("/owners/{ownerId}/pets/{petId}/visits", 1, 1).param("description", DESCRIPTION))
+			.andExpect(status().is3xxRedirection())
+			.andExpect(redirectedUrl("/owners/1"));
+		assertThat(countVisits()).isZero();
+		showOwner().andExpect(leoHasOneVisit());
+
+		this.visits.drain();
+
+		assertThat(countVisits()).isEqualTo(1);
+		showOwner().andExpect(leoHasOneVisit());
+		this.visits.drain();
+		assertThat(countVisits()).isEqualTo(1);
+	}
+
+	private ResultActions showOwner() throws Exception {
+		return this.mockMvc.perform(get("/owners/{ownerId}", 1)).andExpect(status().isOk());
+	}
+
+	private static ResultMatcher leoHasOneVisit() {
+		return model().attribute("owner",
+				hasProperty("pets",
+						hasItem(allOf(hasProperty("name", is("Leo")),
+								hasProperty("visits", hasItem(hasProperty("description", is(DESCRIPTION)))),
+								hasProperty("visits", hasSize(1))))));
+	}
+
+	private Integer countVisits() {
+		return this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM visits WHERE description = ?", Integer.class,
+				DESCRIPTION);
+	}
+
+}
@@ -20,20 +20,28 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.samples.petclinic.owner.Owner;
 import org.springframework.samples.petclinic.owner.OwnerRepository;
 import org.springframework.samples.petclinic.owner.Pet;
 import org.springframework.samples.petclinic.owner.PetType;
 import org.springframework.samples.petclinic.owner.Visit;
+import org.springframework.samples.petclinic.system.MaxQueries;
+import org.springframework.samples.petclinic.system.StatementCountConfiguration;
+import org.springframework.samples.petclinic.system.StatementCounter;
+import org.springframework.samples.petclinic.system.StatementCounter.Tally;
 import org.springframework.samples.petclinic.vet.Vet;
 import org.springframework.samples.petclinic.vet.VetRepository;
 import org.springframework.stereotype.Service;
@@ -70,6 +78,7 @@ import org.springframework.transaction.annotation.Transactional;
 @DataJpaTest(includeFilters = @ComponentScan.Filter(Service.class))
 // Ensure that if the mysql profile is active we connect to the real database:
 @AutoConfigureTestDatabase(replace = Replace.NONE)
+@Import(StatementCountConfiguration.class)
 // @TestPropertySource("/application-postgres.properties")
 class ClinicServiceTests {
 
@@ -79,9 +88,16 @@ class ClinicServiceTests {
 	@Autowired
 	protected VetRepository vets;
 
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private StatementCounter statements;
+
 	Pageable pageable;
 
 	@Test
+	@MaxQueries(3)
 	void shouldFindOwnersByLastName() {
 		Page<Owner> owners = this.owners.findByLastName("Davis", pageable);
 		assertThat(owners).hasSize(2);
@@ -91,6 +107,48 @@ class ClinicServiceTests {
 	}
 
 	@Test
+	@Transactional
+	void shouldFindOwnersPageWithConstantStatements() {
+		List<PetType> types = this.owners.findPetTypes();
+		for (int i = 0; i < 100; i++) {
+			Owner owner = new Owner();
+			owner.setFirstName("Page" + i);
+			owner.setLastName("Paged");
+			owner.setAddress(i + " Paging Road");
+			owner.setCity("Pagetown");
+			owner.setTelephone("5555555555");
+			Pet pet = new Pet();
+			pet.setName("pet" + i);
+			pet.setBirthDate(LocalDate.now());
+			pet.setType(types.get(i % types.size()));
+			owner.addPet(pet);
+			Visit visit = new Visit();
+			visit.setDescription("check-up");
+			pet.addVisit(visit);
+			this.owners.save(owner);
+		}
+		this.entityManager.flush();
+
+		assertThat(countStatementsForPage(5)).isEqualTo(3);
+		assertThat(countStatementsForPage(100)).isEqualTo(3);
+	}
+
+	private int countStatementsForPage(int size) {
+		this.entityManager.clear();
+		try (Tally tally = this.statements.start()) {
+			Page<Owner> page = this.owners.findByLastName("Paged", PageRequest.of(0, size));
+			assertThat(page).hasSize(size);
+			for (Owner owner : page) {
+				Pet pet = owner.getPets().get(0);
+				assertThat(pet.getType().getName()).isNotNull();
+				assertThat(pet.getVisits()).hasSize(1);
+			}
+			return tally.getCount();
+		}
+	}
+
+	@Test
+	@MaxQueries(3)
 	void shouldFindSingleOwnerWithPet() {
 		Owner owner = this.owners.findById(1);
 		assertThat(owner.getLastName()).startsWith("Franklin");
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.stats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.samples.petclinic.stats.VisitStatistics.Bucket;
+import org.springframework.samples.petclinic.stats.VisitStatistics.Dimension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration test of {@link VisitStatistics} against the sample data, which has four
+ * visits to the two cats of an owner in Monona.
+ */
+@JdbcTest(properties = "petclinic.stats.chunk-size=2")
+@Import(VisitStatistics.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VisitStatisticsTests {
+
+	@Autowired
+	private VisitStatistics statistics;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void removeAddedVisits() {
+		this.jdbcTemplate.update("DELETE FROM visits WHERE description = 'statistics test'");
+		this.jdbcTemplate.update("UPDATE owners SET city = 'Monona' WHERE id = 6");
+		this.statistics.rebuild();
+	}
+
+	@Test
+	void shouldCountVisitsByDimension() {
+		assertThat(this.statistics.count(Dimension.CITY, null, null)).containsExactly(new Bucket("Monona", 4));
+		assertThat(this.statistics.count(Dimension.TYPE, null, null)).containsExactly(new Bucket("cat", 4));
+		assertThat(this.statistics.count(Dimension.DAY, LocalDate.of(2013, 1, 2), LocalDate.of(2013, 1, 3)))
+			.containsExactly(new Bucket("2013-01-02", 1), new Bucket("2013-01-03", 1));
+	}
+
+	@Test
+	void shouldCountNewVisitsIncrementally() throws InterruptedException {
+		this.statistics.count(Dimension.CITY, null, null);
+		// Leo, a cat in Madison
+		addVisit(1);
+		addVisit(1);
+		this.statistics.onEntityChanged(EntityChangedEvent.owner(1));
+		awaitRecounted();
+		assertThat(this.statistics.count(Dimension.CITY, null, null)).containsExactly(new Bucket("Madison", 2),
+				new Bucket("Monona", 4));
+		assertThat(this.statistics.check()).isEmpty();
+	}
+
+	@Test
+	void shouldMoveVisitsWhenOwnerMoves() throws InterruptedException {
+		this.statistics.count(Dimension.CITY, null, null);
+		// Jean Coleman, the owner of the two cats
+		this.jdbcTemplate.update("UPDATE owners SET city = 'Madison' WHERE id = 6");
+		this.statistics.onEntityChanged(EntityChangedEvent.owner(6));
+		awaitRecounted();
+		assertThat(this.statistics.count(Dimension.CITY, null, null)).containsExactly(new Bucket("Madison", 4));
+		assertThat(this.statistics.check()).isEmpty();
+	}
+
+	@Test
+	void shouldRecountWhileRebuildIsRunning() throws InterruptedException {
+		this.statistics.count(Dimension.CITY, null, null);
+		addVisit(1);
+		// rebuild() and check() hold the monitor
+		synchronized (this.statistics) {
+			this.statistics.onEntityChanged(EntityChangedEvent.owner(1));
+			awaitRecounted();
+			assertThat(this.statistics.count(Dimension.CITY, null, null)).containsExactly(new Bucket("Madison", 1),
+					new Bucket("Monona", 4));
+		}
+	}
+
+	@Test
+	void shouldReportAndRepairDrift() {
+		this.statistics.count(Dimension.CITY, null, null);
+		addVisit(1);
+		assertThat(this.statistics.check()).singleElement().satisfies(discrepancy -> {
+			assertThat(discrepancy.city()).isEqualTo("Madison");
+			assertThat(discrepancy.expected()).isEqualTo(1);
+			assertThat(discrepancy.counted()).isZero();
+		});
+		this.statistics.checkAndRepair();
+		assertThat(this.statistics.check()).isEmpty();
+	}
+
+	private void awaitRecounted() throws InterruptedException {
+		// recounts run in the background
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!this.statistics.check().isEmpty() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	private void addVisit(int petId) {
+		this.jdbcTemplate.update("INSERT INTO visits (pet_id, visit_date, description) VALUES (?, ?, ?)", petId,
+				LocalDate.of(2023, 5, 1), "statistics test");
+	}
+
+}
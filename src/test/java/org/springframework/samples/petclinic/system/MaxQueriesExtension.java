@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.springframework.samples.petclinic.system.StatementCounter.Tally;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * Counts the statements of each test annotated, or in a class annotated, with
+ * {@link MaxQueries}.
+ */
+class MaxQueriesExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+
+	private static final Namespace NAMESPACE = Namespace.create(MaxQueriesExtension.class);
+
+	@Override
+	public void beforeTestExecution(ExtensionContext context) {
+		if (maxQueries(context).isPresent()) {
+			StatementCounter counter = SpringExtension.getApplicationContext(context).getBean(StatementCounter.class);
+			context.getStore(NAMESPACE).put(context.getUniqueId(), counter.start());
+		}
+	}
+
+	@Override
+	public void afterTestExecution(ExtensionContext context) {
+		Tally tally = context.getStore(NAMESPACE).remove(context.getUniqueId(), Tally.class);
+		if (tally != null) {
+			tally.close();
+			int max = maxQueries(context).get().value();
+			assertThat(tally.getCount()).as("SQL statements, at most %d expected:%s", max, tally.describe())
+				.isLessThanOrEqualTo(max);
+		}
+	}
+
+	private static Optional<MaxQueries> maxQueries(ExtensionContext context) {
+		return AnnotationSupport.findAnnotation(context.getRequiredTestMethod(), MaxQueries.class)
+			.or(() -> AnnotationSupport.findAnnotation(context.getRequiredTestClass(), MaxQueries.class));
+	}
+
+}
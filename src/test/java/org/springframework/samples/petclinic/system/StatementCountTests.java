@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.PetClinicApplication;
+import org.springframework.samples.petclinic.system.StatementCounter.Tally;
+import org.springframework.test.web.servlet.MockMvc;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Tests for {@link StatementCounter} and the per-request statement count.
+ */
+@SpringBootTest(classes = PetClinicApplication.class,
+		properties = { "petclinic.sql.statement-threshold=1", "petclinic.sql.sample-rate=1" })
+@AutoConfigureMockMvc
+@ExtendWith(OutputCaptureExtension.class)
+class StatementCountTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@Autowired
+	private StatementCounter counter;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	@MaxQueries(5)
+	void shouldShowOwnerWithinStatementBudget() throws Exception {
+		mockMvc.perform(get("/owners/{ownerId}", 6)).andExpect(status().isOk());
+	}
+
+	@Test
+	void shouldRecordAndLogRequestsAboveThreshold(CapturedOutput output) throws Exception {
+		mockMvc.perform(get("/owners/{ownerId}", 3)).andExpect(status().isOk());
+		DistributionSummary statements = registry.find("petclinic.request.statements")
+			.tag("handler", "OwnerController.showOwner")
+			.summary();
+		assertThat(statements).isNotNull();
+		assertThat(statements.totalAmount()).isGreaterThan(1);
+		assertThat(output).contains("OwnerController.showOwner prepared", "for /owners/3 (threshold 1):", " x select ");
+	}
+
+	@Test
+	void shouldCountJdbcTemplateStatements() {
+		try (Tally tally = this.counter.start()) {
+			this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM owners", Integer.class);
+			this.jdbcTemplate.queryForObject("SELECT last_name FROM owners WHERE id = ?", String.class, 1);
+			this.jdbcTemplate.batchUpdate("UPDATE owners SET city = city WHERE id = 1",
+					"UPDATE owners SET city = city WHERE id = 2");
+			assertThat(tally.getCount()).isEqualTo(4);
+			assertThat(tally.getShapes()).containsEntry("UPDATE owners SET city = city WHERE id = ?", 2)
+				.containsKey("SELECT last_name FROM owners WHERE id = ?");
+		}
+	}
+
+	@Test
+	void shouldExportHibernateStatistics() throws Exception {
+		mockMvc.perform(get("/owners/{ownerId}", 1)).andExpect(status().isOk());
+		assertThat(registry.find("hibernate.statements").tag("status", "prepared").functionCounter())
+			.satisfies(counter -> assertThat(counter.count()).isPositive());
+		assertThat(registry.find("hibernate.entities.loads").functionCounter()).isNotNull();
+		assertThat(registry.find("hibernate.collections.fetches").functionCounter()).isNotNull();
+	}
+
+	@Test
+	void shouldReduceStatementsToShapes() {
+		assertThat(StatementCounter.shape("select p.name from pets p\n where p.id in (?, ?,?) and p.name = 'Leo' "))
+			.isEqualTo("select p.name from pets p where p.id in (?) and p.name = ?");
+	}
+
+}
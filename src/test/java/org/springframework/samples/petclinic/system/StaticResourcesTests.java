@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.samples.petclinic.PetClinicApplication;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+
+/**
+ * Tests for the fingerprinted URLs, caching and pre-compressed variants of static
+ * resources.
+ */
+@SpringBootTest(classes = PetClinicApplication.class)
+@AutoConfigureMockMvc
+class StaticResourcesTests {
+
+	private static final String BOOTSTRAP_JS = "/webjars/bootstrap/5.2.3/dist/js/bootstrap.bundle.min.js";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ResourceUrlProvider urls;
+
+	@Test
+	void shouldCacheVersionedResourceForever() throws Exception {
+		String url = this.urls.getForLookupPath("/resources/css/petclinic.css");
+		assertThat(url).matches("/resources/css/petclinic-[0-9a-f]{32}\\.css");
+		mockMvc.perform(get(url))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"));
+	}
+
+	@Test
+	void shouldRevalidateUnversionedResource() throws Exception {
+		mockMvc.perform(get("/resources/css/petclinic.css"))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=43200"));
+	}
+
+	@Test
+	void shouldVersionWebjars() {
+		assertThat(this.urls.getForLookupPath(BOOTSTRAP_JS))
+			.matches("/webjars/bootstrap/5.2.3/dist/js/bootstrap.bundle.min-[0-9a-f]{32}\\.js");
+	}
+
+	@Test
+	void shouldServePrecompressedVariant() throws Exception {
+		mockMvc.perform(get("/resources/css/petclinic.css").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+			.andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING));
+	}
+
+}
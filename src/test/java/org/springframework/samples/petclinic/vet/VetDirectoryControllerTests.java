@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.vet;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.changes.EntityChangedEvent;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Test class for {@link VetDirectoryController}
+ */
+@WebMvcTest(VetDirectoryController.class)
+@Import(VetDirectory.class)
+class VetDirectoryControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ApplicationEventPublisher events;
+
+	@MockBean
+	private VetRepository vets;
+
+	private Vet vet(int id, String lastName, String... specialties) {
+		Vet vet = new Vet();
+		vet.setId(id);
+		vet.setFirstName("Vet");
+		vet.setLastName(lastName);
+		for (String name : specialties) {
+			Specialty specialty = new Specialty();
+			specialty.setName(name);
+			vet.addSpecialty(specialty);
+		}
+		return vet;
+	}
+
+	@BeforeEach
+	void setup() {
+		given(this.vets.findAll()).willReturn(List.of(vet(1, "Carter"), vet(2, "Leary", "radiology"),
+				vet(3, "Douglas", "surgery", "dentistry"), vet(4, "Ortega", "surgery")));
+		this.events.publishEvent(new EntityChangedEvent(EntityChangedEvent.VET, null));
+	}
+
+	@Test
+	void shouldFindVetsWithAllSpecialties() throws Exception {
+		mockMvc.perform(get("/vets").param("specialty", "surgery,Dentistry").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.vetList", hasSize(1)))
+			.andExpect(jsonPath("$.vetList[0].id").value(3));
+	}
+
+	@Test
+	void shouldFindVetsWithAnySpecialty() throws Exception {
+		mockMvc
+			.perform(get("/vets").param("specialty", "radiology,dentistry,unknown")
+				.param("mode", "any")
+				.accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.vetList[*].id").value(contains(2, 3)));
+	}
+
+	@Test
+	void shouldMatchNothingForUnknownSpecialtyInAllMode() throws Exception {
+		mockMvc.perform(get("/vets").param("specialty", "surgery,unknown").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.vetList", hasSize(0)));
+	}
+
+	@Test
+	void shouldRebuildWhenVetsChange() throws Exception {
+		given(this.vets.findAll()).willReturn(List.of(vet(5, "Jenkins", "surgery")));
+		this.events.publishEvent(EntityChangedEvent.vet(5));
+		mockMvc.perform(get("/vets").param("specialty", "surgery").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.vetList[*].id").value(contains(5)));
+	}
+
+	@Test
+	void shouldRejectUnknownMode() throws Exception {
+		mockMvc.perform(get("/vets").param("specialty", "surgery").param("mode", "some"))
+			.andExpect(status().isBadRequest());
+	}
+
+}
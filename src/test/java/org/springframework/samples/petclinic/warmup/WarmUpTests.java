@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.warmup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.warmup.WarmUpRunner.Outcome;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Tests for {@link WarmUpRunner} and the readiness probe, behind a context path and with
+ * a warm-up path that is not found.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
+		properties = { "server.servlet.context-path=/petclinic", "petclinic.warmup.enabled=true",
+				"petclinic.warmup.requests-per-round=2", "petclinic.warmup.time-budget=PT20S",
+				"petclinic.warmup.paths=/vets.html,/owners/1,/missing" })
+class WarmUpTests {
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Autowired
+	private WarmUpRunner runner;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@Test
+	void shouldBecomeReadyAfterWarmUp() throws Exception {
+		long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+		// the outcome is read first: once it is set, readiness has to be up
+		Outcome outcome = runner.getOutcome();
+		ResponseEntity<Map> readiness = rest.getForEntity("/actuator/health/readiness", Map.class);
+		while (readiness.getStatusCode() != HttpStatus.OK && System.nanoTime() < deadline) {
+			assertThat(outcome).isNull();
+			Thread.sleep(100);
+			outcome = runner.getOutcome();
+			readiness = rest.getForEntity("/actuator/health/readiness", Map.class);
+		}
+		assertThat(readiness.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(runner.getOutcome()).isIn(Outcome.STABLE, Outcome.TIME_BUDGET);
+		assertThat(registry.find("petclinic.warmup.requests").tag("path", "/owners/1").timer().count()).isPositive();
+		assertThat(registry.find("petclinic.warmup.requests").tag("path", "/missing").timer()).isNull();
+		assertThat(registry.find("petclinic.warmup").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldWaitForConsecutiveStableRounds() {
+		Stabilisation stabilisation = new Stabilisation(0.1, 2);
+		assertThat(stabilisation.add(10_000)).isFalse();
+		assertThat(stabilisation.add(2_000)).isFalse();
+		assertThat(stabilisation.add(2_100)).isFalse();
+		assertThat(stabilisation.add(3_000)).isFalse();
+		assertThat(stabilisation.add(2_900)).isFalse();
+		assertThat(stabilisation.add(3_100)).isTrue();
+	}
+
+}